@@ -0,0 +1,63 @@
+package org.agmip.translators.dssat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the DSSAT model output handling, read the *.OUT files and
+ * ACMO.json in the bundled model output package and translate them into ACMO
+ * CSV file.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AcmoBenchmark {
+
+    private File dir;
+    private String path;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkData.createWorkDir();
+        path = BenchmarkData.extract("testCsv.zip", dir).getPath();
+    }
+
+    @Benchmark
+    public HashMap outputFile() {
+        return new DssatOutputFileInput().readFile(path);
+    }
+
+    @Benchmark
+    public HashMap acmoJson() {
+        return new DssatACMOJsonInput().readFile(path);
+    }
+
+    @Benchmark
+    public File acmoCsv() throws IOException {
+        DssatAcmoCsvTranslator translator = new DssatAcmoCsvTranslator();
+        translator.writeCsvFile(dir.getPath(), path);
+        File file = translator.getOutputFile();
+        if (file != null) {
+            file.delete();
+        }
+        return file;
+    }
+}
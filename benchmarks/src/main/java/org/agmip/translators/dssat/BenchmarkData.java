@@ -0,0 +1,203 @@
+package org.agmip.translators.dssat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import org.agmip.util.JSONAdapter;
+import static org.agmip.util.MapUtil.*;
+
+/**
+ * Fixture helper Class for the benchmarks, extract the bundled fixtures, load
+ * the data holder and build the scaled inputs by replicating experiments.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+final class BenchmarkData {
+
+    /**
+     * The sink which drops the content, used to measure the formatting cost of
+     * writers without the disk I/O
+     */
+    static final DssatOutputSink DISCARD_SINK = new DssatOutputSink() {
+        @Override
+        public boolean exists(File file) {
+            return false;
+        }
+
+        @Override
+        public Writer getWriter(File file, boolean append) throws IOException {
+            return new Writer() {
+                @Override
+                public void write(char[] cbuf, int off, int len) {
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+    };
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Create the working folder for one benchmark trial
+     *
+     * @return the empty folder which is removed when JVM exits
+     * @throws IOException
+     */
+    static File createWorkDir() throws IOException {
+        File dir = File.createTempFile("dssat-bench", "");
+        if (!dir.delete() || !dir.mkdirs()) {
+            throw new IOException("Failed to create folder " + dir.getPath());
+        }
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    /**
+     * Copy the bundled fixture into the working folder, the readers need a
+     * real file path
+     *
+     * @param name the fixture name
+     * @param dir the working folder
+     * @return the copied file
+     * @throws IOException
+     */
+    static File extract(String name, File dir) throws IOException {
+        InputStream in = BenchmarkData.class.getClassLoader().getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Fixture " + name + " is not found");
+        }
+        File f = new File(dir, name);
+        OutputStream out = new FileOutputStream(f);
+        try {
+            byte[] buf = new byte[8192];
+            int len;
+            while ((len = in.read(buf)) > 0) {
+                out.write(buf, 0, len);
+            }
+        } finally {
+            out.close();
+            in.close();
+        }
+        f.deleteOnExit();
+        return f;
+    }
+
+    /**
+     * Load the data holder from fixture, the JSON fixture is parsed directly
+     * and the DSSAT package is read by controller
+     *
+     * @param name the fixture name
+     * @param dir the working folder
+     * @return the data holder
+     * @throws IOException
+     */
+    static HashMap load(String name, File dir) throws IOException {
+        if (name.toUpperCase().endsWith(".JSON")) {
+            InputStream in = BenchmarkData.class.getClassLoader().getResourceAsStream(name);
+            if (in == null) {
+                throw new IOException("Fixture " + name + " is not found");
+            }
+            BufferedReader br = new BufferedReader(new InputStreamReader(in));
+            StringBuilder sb = new StringBuilder();
+            try {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    sb.append(line);
+                }
+            } finally {
+                br.close();
+            }
+            return JSONAdapter.fromJSON(sb.toString());
+        } else {
+            return new DssatControllerInput().readFile(extract(name, dir).getPath());
+        }
+    }
+
+    /**
+     * Build the scaled input by replicating the experiments, the copies share
+     * the soil/weather data and only have the different experiment names. The
+     * experiments are always copied since controller puts soil/weather data
+     * into them.
+     *
+     * @param data the data holder
+     * @param scale the number of copies for each experiment
+     * @return the scaled data holder
+     */
+    static HashMap scale(HashMap data, int scale) {
+        HashMap ret = new HashMap(data);
+        ArrayList<HashMap> expArr = getObjectOr(data, "experiments", new ArrayList());
+        ArrayList<HashMap> scaledArr = new ArrayList<HashMap>();
+        for (int i = 0; i < scale; i++) {
+            for (HashMap exp : expArr) {
+                HashMap copy = new HashMap(exp);
+                if (i > 0) {
+                    copy.put("exname", getScaledName(getValueOr(exp, "exname", "BNCH0001XX"), i));
+                }
+                scaledArr.add(copy);
+            }
+        }
+        ret.put("experiments", scaledArr);
+        return ret;
+    }
+
+    /**
+     * Get the per experiment data holders which include the soil and weather
+     * data, the same shape as the writers get from controller
+     *
+     * @param data the data holder
+     * @return the array of experiment data
+     */
+    static ArrayList<HashMap> getExpDataArr(Map data) {
+        ArrayList<HashMap> expArr = getObjectOr(data, "experiments", new ArrayList());
+        DssatSectionIndex soilIndex = new DssatSectionIndex(getObjectOr(data, "soils", new ArrayList()), "soil_id");
+        DssatSectionIndex wthIndex = new DssatSectionIndex(getObjectOr(data, "weathers", new ArrayList()), "wst_id");
+        ArrayList<HashMap> ret = new ArrayList<HashMap>();
+        for (HashMap exp : expArr) {
+            HashMap expData = new HashMap(exp);
+            HashMap soil = soilIndex.getSharedView(getValueOr(exp, "soil_id", ""));
+            if (soil != null) {
+                expData.put("soil", soil);
+            }
+            HashMap wth = wthIndex.getSharedView(getValueOr(exp, "wst_id", ""));
+            if (wth != null) {
+                expData.put("weather", wth);
+            }
+            ret.add(expData);
+        }
+        return ret;
+    }
+
+    /**
+     * Get the experiment name for the copy, the 4 digits after institute code
+     * are replaced by the copy number
+     *
+     * @param exname the original experiment name
+     * @param copy the copy number
+     * @return the experiment name for the copy
+     */
+    private static String getScaledName(String exname, int copy) {
+        String num = String.format("%04d", copy % 10000);
+        if (exname.length() >= 8) {
+            return exname.substring(0, 4) + num + exname.substring(8);
+        } else {
+            return exname + num;
+        }
+    }
+}
@@ -0,0 +1,892 @@
+package org.agmip.translators.dssat;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.agmip.util.JSONAdapter;
+
+/**
+ * Synthetic DSSAT dataset generator, create the DSSAT input files (X, WTH,
+ * SOL, A, T, CUL), the DSSAT model output files (SUMMARY.OUT, OVERVIEW.OUT,
+ * SOILORG.OUT, ACMO.json) and the AgMIP JSON data at configurable scale. The
+ * content only depends on the seed and the settings, so the same dataset can
+ * be rebuilt anywhere.
+ *
+ * The treatments are split into several experiment files since the treatment
+ * number in X file is limited to 2 digits; the weather files use the "yyddd"
+ * date, so the covered years have to be in 1916 ~ 2015.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+public class DssatDatasetGenerator {
+
+    public static final int MAX_TRT_PER_FILE = 99;
+    private static final int MIN_YEAR = 1916;
+    private static final int MAX_YEAR = 2015;
+    private static final long ENTRY_TIME = 1356998400000L;  // P.S. fixed entry time to keep the package content stable
+    private static final int[] LAYERS = {5, 15, 30, 45, 60, 90, 120, 150, 180};
+    private static final String CODES = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private long seed;
+    private int treatments = 6;
+    private int fields = 1;
+    private int stations = 1;
+    private int years = 1;
+    private int soilProfiles = 1;
+    private int cultivars = 1;
+    private int observations = 5;
+    private int startYear = 1982;
+
+    /**
+     * Constructor
+     *
+     * @param seed the seed of random values
+     */
+    public DssatDatasetGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Set the total number of treatments
+     *
+     * @param treatments the number of treatments
+     * @return the generator
+     */
+    public DssatDatasetGenerator setTreatments(int treatments) {
+        this.treatments = checkPositive(treatments, "treatments");
+        return this;
+    }
+
+    /**
+     * Set the number of fields, each field uses one soil profile and one
+     * weather station
+     *
+     * @param fields the number of fields
+     * @return the generator
+     */
+    public DssatDatasetGenerator setFields(int fields) {
+        this.fields = checkPositive(fields, "fields");
+        return this;
+    }
+
+    /**
+     * Set the number of weather stations, each station has one weather file
+     *
+     * @param stations the number of weather stations
+     * @return the generator
+     */
+    public DssatDatasetGenerator setWeatherStations(int stations) {
+        if (stations > CODES.length() * CODES.length()) {
+            throw new IllegalArgumentException("Too many weather stations: " + stations);
+        }
+        this.stations = checkPositive(stations, "weather stations");
+        return this;
+    }
+
+    /**
+     * Set the number of years in each weather file
+     *
+     * @param years the number of years
+     * @return the generator
+     */
+    public DssatDatasetGenerator setWeatherYears(int years) {
+        this.years = checkPositive(years, "weather years");
+        return this;
+    }
+
+    /**
+     * Set the number of profiles in the soil file
+     *
+     * @param soilProfiles the number of soil profiles
+     * @return the generator
+     */
+    public DssatDatasetGenerator setSoilProfiles(int soilProfiles) {
+        this.soilProfiles = checkPositive(soilProfiles, "soil profiles");
+        return this;
+    }
+
+    /**
+     * Set the number of cultivars in the cultivar file
+     *
+     * @param cultivars the number of cultivars
+     * @return the generator
+     */
+    public DssatDatasetGenerator setCultivars(int cultivars) {
+        this.cultivars = checkPositive(cultivars, "cultivars");
+        return this;
+    }
+
+    /**
+     * Set the number of time-series observations for each treatment
+     *
+     * @param observations the number of observations
+     * @return the generator
+     */
+    public DssatDatasetGenerator setObservations(int observations) {
+        this.observations = checkPositive(observations, "observations");
+        return this;
+    }
+
+    /**
+     * Set the first year of the weather data, the experiments are planted in
+     * this year
+     *
+     * @param startYear the first year
+     * @return the generator
+     */
+    public DssatDatasetGenerator setStartYear(int startYear) {
+        this.startYear = startYear;
+        return this;
+    }
+
+    /**
+     * Get the number of experiment files
+     *
+     * @return the number of experiment files
+     */
+    public int getExperimentFileCount() {
+        return (treatments + MAX_TRT_PER_FILE - 1) / MAX_TRT_PER_FILE;
+    }
+
+    /**
+     * Write the DSSAT input files into ZIP package
+     *
+     * @param zipFile the output ZIP package
+     * @return the output ZIP package
+     * @throws IOException
+     */
+    public File writeDssatZip(File zipFile) throws IOException {
+        ZipTarget target = new ZipTarget(zipFile);
+        boolean finished = false;
+        try {
+            writeDssatFiles(target);
+            finished = true;
+        } finally {
+            target.close();
+            if (!finished) {
+                zipFile.delete();
+            }
+        }
+        return zipFile;
+    }
+
+    /**
+     * Write the DSSAT input files into folder
+     *
+     * @param dir the output folder
+     * @return the output files
+     * @throws IOException
+     */
+    public ArrayList<File> writeDssatFiles(File dir) throws IOException {
+        DirTarget target = new DirTarget(dir);
+        writeDssatFiles(target);
+        return target.files;
+    }
+
+    /**
+     * Write the DSSAT model output files and ACMO.json into ZIP package, the
+     * package could be used by DssatAcmoCsvTranslator
+     *
+     * @param zipFile the output ZIP package
+     * @return the output ZIP package
+     * @throws IOException
+     */
+    public File writeModelOutputZip(File zipFile) throws IOException {
+        ZipTarget target = new ZipTarget(zipFile);
+        boolean finished = false;
+        try {
+            writeSummary(target);
+            writeRunInfo(target, "OVERVIEW.OUT");
+            writeRunInfo(target, "SOILORG.OUT");
+            writeAcmoJson(target);
+            finished = true;
+        } finally {
+            target.close();
+            if (!finished) {
+                zipFile.delete();
+            }
+        }
+        return zipFile;
+    }
+
+    /**
+     * Create the AgMIP data holder by reading the generated DSSAT package
+     * with controller
+     *
+     * @param dir the folder for the generated DSSAT package
+     * @return the AgMIP data holder
+     * @throws IOException
+     */
+    public HashMap createAgmipData(File dir) throws IOException {
+        File zipFile = writeDssatZip(new File(dir, "SYNTHETIC_DSSAT.zip"));
+        try {
+            return new DssatControllerInput().readFile(zipFile.getPath());
+        } finally {
+            zipFile.delete();
+        }
+    }
+
+    /**
+     * Write the AgMIP JSON data
+     *
+     * @param jsonFile the output JSON file
+     * @return the output JSON file
+     * @throws IOException
+     */
+    public File writeAgmipJson(File jsonFile) throws IOException {
+        HashMap data = createAgmipData(jsonFile.getAbsoluteFile().getParentFile());
+        BufferedWriter bw = new BufferedWriter(new FileWriter(jsonFile));
+        try {
+            bw.write(JSONAdapter.toJSON(data));
+        } finally {
+            bw.close();
+        }
+        return jsonFile;
+    }
+
+    /**
+     * Write all the DSSAT input files
+     *
+     * @param target the output target
+     * @throws IOException
+     */
+    private void writeDssatFiles(Target target) throws IOException {
+        if (startYear < MIN_YEAR || startYear + years - 1 > MAX_YEAR) {
+            throw new IllegalArgumentException("Weather years must be in " + MIN_YEAR + " ~ " + MAX_YEAR);
+        }
+        for (int i = 0; i < getExperimentFileCount(); i++) {
+            writeXFile(target, i);
+            writeAFile(target, i);
+            writeTFile(target, i);
+        }
+        for (int i = 0; i < stations; i++) {
+            writeWthFile(target, i);
+        }
+        writeSoilFile(target);
+        writeCulFile(target);
+    }
+
+    /**
+     * Write the experiment file (X file)
+     *
+     * @param target the output target
+     * @param idx the index of experiment file
+     * @throws IOException
+     */
+    private void writeXFile(Target target, int idx) throws IOException {
+        Random rand = getRandom(1, idx);
+        String exname = getExname(idx);
+        int trtNum = getTrtNum(idx);
+        int cuNum = Math.min(Math.min(cultivars, MAX_TRT_PER_FILE), trtNum);
+        int flNum = Math.min(Math.min(fields, MAX_TRT_PER_FILE), trtNum);
+        String yy = String.format("%02d", startYear % 100);
+        int pdoy = 60 + rand.nextInt(120);
+        String pdate = getDate(startYear, pdoy);
+
+        Writer w = target.open(exname.substring(0, 8) + ".MZX");
+        w.write(String.format("*EXP.DETAILS: %1$-10s %2$s\r\n\r\n", exname, "SYNTHETIC DATASET " + (idx + 1)));
+        w.write("*GENERAL\r\n");
+        w.write("@PEOPLE\r\n SYNTHETIC,G.\r\n");
+        w.write("@ADDRESS\r\n AGMIP, SYNTHETIC, USA\r\n");
+        w.write("@SITE\r\n SYNTHETIC SITE " + (idx + 1) + "\r\n\r\n");
+
+        // Treatments
+        w.write("*TREATMENTS                        -------------FACTOR LEVELS------------\r\n");
+        w.write("@N R O C TNAME.................... CU FL SA IC MP MI MF MR MC MT ME MH SM\r\n");
+        for (int i = 0; i < trtNum; i++) {
+            int trt = idx * MAX_TRT_PER_FILE + i;
+            w.write(String.format("%1$2s %2$1s %3$1s %4$1s %5$-25s %6$2s %7$2s %8$2s %9$2s %10$2s %11$2s %12$2s %13$2s %14$2s %15$2s %16$2s %17$2s %18$2s\r\n",
+                    i + 1, 1, 0, 0, "SYNTHETIC TRT " + (trt + 1),
+                    i % cuNum + 1, i % flNum + 1, 0, 1, 1, i % 3, i / 3 % 3, 0, 0, 0, 0, 0, 1));
+        }
+
+        // Cultivars
+        w.write("\r\n*CULTIVARS\r\n");
+        w.write("@C CR INGENO CNAME\r\n");
+        for (int i = 0; i < cuNum; i++) {
+            int cul = (idx * cuNum + i) % cultivars;
+            w.write(String.format("%1$2s %2$-2s %3$-6s %4$s\r\n", i + 1, "MZ", getCulId(cul), "SYNTHETIC " + (cul + 1)));
+        }
+
+        // Fields
+        w.write("\r\n*FIELDS\r\n");
+        w.write("@L ID_FIELD WSTA....  FLSA  FLOB  FLDT  FLDD  FLDS  FLST SLTX  SLDP  ID_SOIL    FLNAME\r\n");
+        StringBuilder part2 = new StringBuilder();
+        part2.append("@L ...........XCRD ...........YCRD .....ELEV .............AREA .SLEN .FLWR .SLAS FLHST FHDUR\r\n");
+        for (int i = 0; i < flNum; i++) {
+            int fl = (idx * flNum + i) % fields;
+            int station = fl % stations;
+            w.write(String.format("%1$2s %2$-8s %3$-8s %4$5s %5$5s %6$-5s %7$5s %8$5s %9$-5s %10$-5s%11$5s  %12$-10s %13$s\r\n",
+                    i + 1, getStationId(station) + String.format("%04d", (fl + 1) % 10000), getStationId(station),
+                    "-99", 0, "DR000", 0, 0, "00000", "-99", 180, getSoilId(fl % soilProfiles), "FIELD " + (fl + 1)));
+            part2.append(String.format("%1$2s %2$15s %3$15s %4$9s %5$17s %6$5s %7$5s %8$5s %9$5s %10$5s\r\n",
+                    i + 1, format(3, getLat(station)), format(3, getLong(station)), 40, 0, 0, 0, 0, "-99", "-99"));
+        }
+        w.write(part2.toString());
+
+        // Initial conditions
+        w.write("\r\n*INITIAL CONDITIONS\r\n");
+        w.write("@C   PCR ICDAT  ICRT  ICND  ICRN  ICRE  ICWD ICRES ICREN ICREP ICRIP ICRID ICNAME\r\n");
+        w.write(String.format("%1$2s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$5s %10$5s %11$5s %12$5s %13$5s %14$s\r\n",
+                1, "MZ", getDate(startYear, pdoy - 1), 100, 0, 1, 1, "-99", 1000, format(1, 0.8), 0, 100, 15, "-99"));
+        w.write("@C  ICBL  SH2O  SNH4  SNO3\r\n");
+        for (int i = 0; i < LAYERS.length; i++) {
+            w.write(String.format("%1$2s %2$5s %3$5s %4$5s %5$5s\r\n",
+                    1, LAYERS[i], format(3, 0.07 + rand.nextDouble() * 0.2), format(1, rand.nextDouble()), format(1, rand.nextDouble())));
+        }
+
+        // Planting
+        w.write("\r\n*PLANTING DETAILS\r\n");
+        w.write("@P PDATE EDATE  PPOP  PPOE  PLME  PLDS  PLRS  PLRD  PLDP  PLWT  PAGE  PENV  PLPH  SPRL                        PLNAME\r\n");
+        w.write(String.format("%1$2s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$5s %10$5s %11$5s %12$5s %13$5s %14$5s %15$5s                        %16$s\r\n",
+                1, pdate, "-99", format(1, 6 + rand.nextDouble() * 2), format(1, 6 + rand.nextDouble() * 2),
+                "S", "R", 61, 0, 7, "-99", "-99", "-99", "-99", 0, "-99"));
+
+        // Irrigation, level 1 and 2
+        w.write("\r\n*IRRIGATION AND WATER MANAGEMENT\r\n");
+        for (int lv = 1; lv <= 2; lv++) {
+            w.write("@I  EFIR  IDEP  ITHR  IEPT  IOFF  IAME  IAMT IRNAME\r\n");
+            w.write(String.format("%1$2s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$s\r\n",
+                    lv, 1, "-99", "-99", "-99", "-99", "-99", "-99", "-99"));
+            w.write("@I IDATE  IROP IRVAL\r\n");
+            int doy = pdoy;
+            for (int i = 0; i < lv * 5; i++) {
+                doy += 3 + rand.nextInt(10);
+                w.write(String.format("%1$2s %2$5s %3$-5s %4$5s\r\n", lv, getDate(startYear, doy), "IR001", 5 + rand.nextInt(25)));
+            }
+        }
+
+        // Fertilizers, level 1 and 2
+        w.write("\r\n*FERTILIZERS (INORGANIC)\r\n");
+        w.write("@F FDATE  FMCD  FACD  FDEP  FAMN  FAMP  FAMK  FAMC  FAMO  FOCD FERNAME\r\n");
+        for (int lv = 1; lv <= 2; lv++) {
+            int doy = pdoy;
+            for (int i = 0; i < lv * 3; i++) {
+                doy += 5 + rand.nextInt(20);
+                w.write(String.format("%1$2s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$5s %10$5s %11$5s %12$s\r\n",
+                        lv, getDate(startYear, doy), "FE001", "AP001", 10, 20 + rand.nextInt(100), 0, 0, 0, 0, "-99", "-99"));
+            }
+        }
+
+        // Simulation controls
+        String sdate = getDate(startYear, pdoy - 1);
+        w.write("\r\n*SIMULATION CONTROLS\r\n");
+        w.write("@N GENERAL     NYERS NREPS START SDATE RSEED SNAME....................\r\n");
+        w.write(" 1 GE              1     1     S " + sdate + "  2150 SYNTHETIC SIMULATION CONTROL\r\n");
+        w.write("@N OPTIONS     WATER NITRO SYMBI PHOSP POTAS DISES  CHEM  TILL   CO2\r\n");
+        w.write(" 1 OP              Y     Y     N     N     N     N     N     Y     M\r\n");
+        w.write("@N METHODS     WTHER INCON LIGHT EVAPO INFIL PHOTO HYDRO NSWIT MESOM MESEV MESOL\r\n");
+        w.write(" 1 ME              M     M     E     R     S     L     R     1     P     S     2\r\n");
+        w.write("@N MANAGEMENT  PLANT IRRIG FERTI RESID HARVS\r\n");
+        w.write(" 1 MA              R     R     R     N     M\r\n");
+        w.write("@N OUTPUTS     FNAME OVVEW SUMRY FROPT GROUT CAOUT WAOUT NIOUT MIOUT DIOUT VBOSE CHOUT OPOUT\r\n");
+        w.write(" 1 OU              N     Y     Y     1     Y     N     Y     Y     N     N     Y     N     N\r\n\r\n");
+        w.write("@  AUTOMATIC MANAGEMENT\r\n");
+        w.write("@N PLANTING    PFRST PLAST PH2OL PH2OU PH2OD PSTMX PSTMN\r\n");
+        w.write(" 1 PL          " + getDate(startYear, pdoy - 7) + " " + getDate(startYear, pdoy + 7) + "    40   100    30    40    10\r\n");
+        w.write("@N IRRIGATION  IMDEP ITHRL ITHRU IROFF IMETH IRAMT IREFF\r\n");
+        w.write(" 1 IR             30    50   100 GS000 IR001    10     1\r\n");
+        w.write("@N NITROGEN    NMDEP NMTHR NAMNT NCODE NAOFF\r\n");
+        w.write(" 1 NI             30    50    25 FE001 GS000\r\n");
+        w.write("@N RESIDUES    RIPCN RTIME RIDEP\r\n");
+        w.write(" 1 RE            100     1    20\r\n");
+        w.write("@N HARVEST     HFRST HLAST HPCNP HPCNR\r\n");
+        w.write(" 1 HA              0 " + yy + "365   100     0\r\n");
+        target.close(w);
+    }
+
+    /**
+     * Write the observed summary data file (A file)
+     *
+     * @param target the output target
+     * @param idx the index of experiment file
+     * @throws IOException
+     */
+    private void writeAFile(Target target, int idx) throws IOException {
+        Random rand = getRandom(2, idx);
+        String exname = getExname(idx);
+        Writer w = target.open(exname.substring(0, 8) + ".MZA");
+        w.write("*EXP. DATA (A): " + exname + " SYNTHETIC DATASET " + (idx + 1) + "\r\n\r\n");
+        w.write("@TRNO   HWAM  HWUM  H#AM  LAIX  CWAM  ADAT  MDAT\r\n");
+        for (int i = 0; i < getTrtNum(idx); i++) {
+            int adoy = 180 + rand.nextInt(30);
+            w.write(String.format("%1$6s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s\r\n",
+                    i + 1, 2000 + rand.nextInt(10000), format(3, 0.2 + rand.nextDouble() * 0.1), 500 + rand.nextInt(3000),
+                    format(2, 2 + rand.nextDouble() * 2), 5000 + rand.nextInt(17000),
+                    getDate(startYear, adoy), getDate(startYear, adoy + 40 + rand.nextInt(20))));
+        }
+        target.close(w);
+    }
+
+    /**
+     * Write the observed time-series data file (T file)
+     *
+     * @param target the output target
+     * @param idx the index of experiment file
+     * @throws IOException
+     */
+    private void writeTFile(Target target, int idx) throws IOException {
+        Random rand = getRandom(3, idx);
+        String exname = getExname(idx);
+        Writer w = target.open(exname.substring(0, 8) + ".MZT");
+        w.write("*EXP. DATA (T): " + exname + " SYNTHETIC DATASET " + (idx + 1) + "\r\n\r\n");
+        w.write("@TRNO   DATE  CWAD  LAID  GWAD\r\n");
+        for (int i = 0; i < getTrtNum(idx); i++) {
+            int cwad = 0;
+            for (int j = 0; j < observations; j++) {
+                cwad += rand.nextInt(2000);
+                w.write(String.format("%1$6s %2$5s %3$5s %4$5s %5$5s\r\n",
+                        i + 1, getDate(startYear, 120 + j * 14), cwad, format(2, rand.nextDouble() * 4), cwad / 3));
+            }
+        }
+        target.close(w);
+    }
+
+    /**
+     * Write the weather file for one station, which covers all the years
+     *
+     * @param target the output target
+     * @param idx the index of weather station
+     * @throws IOException
+     */
+    private void writeWthFile(Target target, int idx) throws IOException {
+        Random rand = getRandom(4, idx);
+        String stationId = getStationId(idx);
+        double tav = 15 + rand.nextDouble() * 10;
+        double amp = 5 + rand.nextDouble() * 5;
+        Writer w = target.open(stationId + String.format("%02d01", startYear % 100) + ".WTH");
+        w.write(String.format("*WEATHER DATA : %1$s\r\n\r\n", "SYNTHETIC STATION " + stationId));
+        w.write("@ INSI      LAT     LONG  ELEV   TAV   AMP REFHT WNDHT\r\n");
+        w.write(String.format("  %1$-4s %2$8s %3$8s %4$5s %5$5s %6$5s %7$5s %8$5s\r\n",
+                stationId, format(3, getLat(idx)), format(3, getLong(idx)), 40, format(1, tav), format(1, amp), format(2, 2), format(2, 3)));
+        w.write("@DATE  SRAD  TMAX  TMIN  RAIN\r\n");
+        for (int year = startYear; year < startYear + years; year++) {
+            int days = year % 4 == 0 ? 366 : 365;
+            for (int doy = 1; doy <= days; doy++) {
+                double season = Math.cos((doy - 200) * 2 * Math.PI / days);
+                double t = tav + amp * season + rand.nextGaussian();
+                double range = 6 + rand.nextDouble() * 6;
+                double rain = rand.nextDouble() < 0.3 ? -Math.log(1 - rand.nextDouble()) * 8 : 0;
+                w.write(String.format("%1$5s %2$5s %3$5s %4$5s %5$5s\r\n",
+                        getDate(year, doy), format(1, 14 + 8 * season + rand.nextDouble() * 6),
+                        format(1, t + range / 2), format(1, t - range / 2), format(1, rain)));
+            }
+        }
+        target.close(w);
+    }
+
+    /**
+     * Write the soil file which holds all the soil profiles
+     *
+     * @param target the output target
+     * @throws IOException
+     */
+    private void writeSoilFile(Target target) throws IOException {
+        Writer w = target.open("SY.SOL");
+        w.write("*SOILS: SYNTHETIC SOIL LIBRARY\r\n\r\n");
+        for (int i = 0; i < soilProfiles; i++) {
+            Random rand = getRandom(5, i);
+            int station = i % stations;
+            w.write(String.format("*%1$-10s  %2$-11s %3$-5s %4$5s %5$s\r\n", getSoilId(i), "SYNTHETIC", "SL", 180, "SYNTHETIC SOIL " + (i + 1)));
+            w.write("@SITE        COUNTRY          LAT     LONG SCS FAMILY\r\n");
+            w.write(String.format(" %1$-11s %2$-11s %3$9s%4$8s %5$s\r\n",
+                    "SYNTHETIC", "USA", format(3, getLat(station)), format(3, getLong(station)), "SYNTHETIC FAMILY"));
+            w.write("@ SCOM  SALB  SLU1  SLDR  SLRO  SLNF  SLPF  SMHB  SMPX  SMKE\r\n");
+            w.write(String.format(" %1$5s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$-5s %9$-5s %10$-5s\r\n",
+                    "-99", format(2, 0.1 + rand.nextDouble() * 0.1), 2 + rand.nextInt(8), format(2, 0.2 + rand.nextDouble() * 0.6),
+                    60 + rand.nextInt(30), 1, format(2, 0.92), "IB001", "IB001", "IB001"));
+            w.write("@  SLB  SLMH  SLLL  SDUL  SSAT  SRGF  SSKS  SBDM  SLOC  SLCL  SLSI  SLCF  SLNI  SLHW  SLHB  SCEC  SADC\r\n");
+            for (int j = 0; j < LAYERS.length; j++) {
+                double slll = 0.02 + rand.nextDouble() * 0.1;
+                double sdul = slll + 0.05 + rand.nextDouble() * 0.1;
+                w.write(String.format(" %1$5s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$5s %10$5s %11$5s %12$5s %13$5s %14$5s %15$5s %16$5s %17$5s\r\n",
+                        LAYERS[j], "-99", format(3, slll), format(3, sdul), format(3, sdul + 0.1 + rand.nextDouble() * 0.1),
+                        format(3, Math.exp(-j * 0.5)), format(1, rand.nextDouble() * 30), format(2, 1.3 + rand.nextDouble() * 0.4),
+                        format(2, rand.nextDouble() * 1.5 / (j + 1)), format(1, 1 + rand.nextDouble() * 20), format(1, 1 + rand.nextDouble() * 20),
+                        "-99", "-99", format(1, 5 + rand.nextDouble() * 2), "-99", "-99", "-99"));
+            }
+            w.write("\r\n");
+        }
+        target.close(w);
+    }
+
+    /**
+     * Write the cultivar file
+     *
+     * @param target the output target
+     * @throws IOException
+     */
+    private void writeCulFile(Target target) throws IOException {
+        Random rand = getRandom(6, 0);
+        Writer w = target.open("MZCER045.CUL");
+        w.write("*MAIZE CULTIVAR COEFFICIENTS: MZCER045 MODEL\r\n");
+        w.write("@VAR#  VRNAME.......... EXPNO   ECO#    P1    P2    P5    G2    G3 PHINT\r\n");
+        for (int i = 0; i < cultivars; i++) {
+            w.write(String.format("%1$-6s %2$-16s %3$5s %4$-6s %5$5s %6$5s %7$5s %8$5s %9$5s %10$5s\r\n",
+                    getCulId(i), "SYNTHETIC " + (i + 1), ".", "IB0001",
+                    format(1, 150 + rand.nextDouble() * 200), format(3, rand.nextDouble()), format(1, 600 + rand.nextDouble() * 300),
+                    format(1, 600 + rand.nextDouble() * 300), format(2, 6 + rand.nextDouble() * 4), format(2, 38 + rand.nextDouble() * 12)));
+        }
+        target.close(w);
+    }
+
+    /**
+     * Write the summary output file, one run for each treatment
+     *
+     * @param target the output target
+     * @throws IOException
+     */
+    private void writeSummary(Target target) throws IOException {
+        Writer w = target.open("SUMMARY.OUT");
+        w.write(String.format("*SUMMARY : %1$-10s%2$-62s%3$-28s%4$-19s%5$s\r\n\r\n",
+                getExname(0), " SYNTHETIC DATASET", "DSSAT Cropping System Model", "Ver. 4.5.1.002", "JAN 01, 2013; 00:00:00"));
+        w.write("@   RUNNO   TRNO R# O# C# CR MODEL    TNAM                      FNAM     WSTA.... SOIL_ID...    SDAT    PDAT    EDAT    ADAT    MDAT    HDAT  DWAP    CWAM    HWAM    HWAH    BWAH  PWAM    HWUM  H#AM    H#UM  HIAM  LAIX  IR#M  IRCM  PRCM  ETCM  EPCM  ESCM  ROCM  DRCM  SWXM  NI#M  NICM  NFXM  NUCM  NLCM  NIAM  CNAM  GNAM\r\n");
+        int run = 0;
+        for (int idx = 0; idx < getExperimentFileCount(); idx++) {
+            Random rand = getRandom(7, idx);
+            int flNum = Math.min(Math.min(fields, MAX_TRT_PER_FILE), getTrtNum(idx));
+            for (int i = 0; i < getTrtNum(idx); i++) {
+                run++;
+                int fl = (idx * flNum + i % flNum) % fields;
+                int pdoy = 60 + rand.nextInt(120);
+                int hwam = 2000 + rand.nextInt(10000);
+                int cwam = hwam * 2 + rand.nextInt(5000);
+                StringBuilder sb = new StringBuilder();
+                sb.append(String.format("%1$9s%2$7s%3$3s%4$3s%5$3s %6$-2s %7$-8s %8$-25s %9$-8s %10$-8s %11$-10s",
+                        run, i + 1, 1, 0, 0, "MZ", "MZCER045", "SYNTHETIC TRT " + (idx * MAX_TRT_PER_FILE + i + 1),
+                        getStationId(fl % stations) + String.format("%04d", (fl + 1) % 10000), getExname(idx).substring(0, 8), getSoilId(fl % soilProfiles)));
+                int[] doys = {pdoy - 1, pdoy, pdoy + 10, pdoy + 70, pdoy + 120, pdoy + 120};
+                for (int doy : doys) {
+                    sb.append(String.format("%1$8s", startYear * 1000 + doy));
+                }
+                sb.append(String.format("%1$6s%2$8s%3$8s%4$8s%5$8s%6$6s%7$8s%8$6s%9$8s%10$6s%11$6s",
+                        "-99", cwam, hwam, hwam, 0, hwam * 9 / 8, format(4, 0.2 + rand.nextDouble() * 0.2),
+                        500 + rand.nextInt(3000), format(1, 20 + rand.nextDouble() * 80), format(3, (double) hwam / cwam),
+                        format(1, 2 + rand.nextDouble() * 2)));
+                for (int j = 0; j < 18; j++) {
+                    sb.append(String.format("%1$6s", rand.nextInt(700)));
+                }
+                w.write(sb.append("\r\n").toString());
+            }
+        }
+        target.close(w);
+    }
+
+    /**
+     * Write the output file which is organized by runs, the overview and soil
+     * organic matter files share the same run headers
+     *
+     * @param target the output target
+     * @param fileName the output file name
+     * @throws IOException
+     */
+    private void writeRunInfo(Target target, String fileName) throws IOException {
+        boolean soilOrgFlg = fileName.equals("SOILORG.OUT");
+        Writer w = target.open(fileName);
+        w.write(soilOrgFlg ? "*Soil Organic Matter daily output file\r\n" : "*SIMULATION OVERVIEW FILE\r\n");
+        w.write("\r\n*DSSAT Cropping System Model Ver. 4.5.1.002               JAN 01, 2013; 00:00:00\r\n");
+        int run = 0;
+        for (int idx = 0; idx < getExperimentFileCount(); idx++) {
+            Random rand = getRandom(soilOrgFlg ? 9 : 8, idx);
+            String exname = getExname(idx);
+            for (int i = 0; i < getTrtNum(idx); i++) {
+                run++;
+                String tname = String.format("%1$-25s", "SYNTHETIC TRT " + (idx * MAX_TRT_PER_FILE + i + 1));
+                w.write(String.format("\r\n*RUN %1$4s        : %2$s MZCER045 %3$-8s %4$4s\r\n", run, tname, exname.substring(0, 8), i + 1));
+                w.write(" MODEL          : MZCER045 - Maize\r\n");
+                w.write(String.format(" EXPERIMENT     : %1$-8s %2$-2s %3$s\r\n", exname.substring(0, 8), "MZ", "SYNTHETIC DATASET " + (idx + 1)));
+                w.write(String.format(" DATA PATH      : %1$s\\\r\n", exname));
+                w.write(String.format(" TREATMENT%1$3s   : %2$s MZCER045\r\n\r\n", i + 1, tname));
+                if (soilOrgFlg) {
+                    w.write("@YEAR DOY   DAS    OMAC    SCDD    SOCD    SC0D    SCTD   SOMCT    LCTD    ONAC    SNDD    SOND    SN0D    SNTD   SOMNT    LNTD\r\n");
+                    int sctd = 60000 + rand.nextInt(30000);
+                    for (int das = 0; das < observations; das++) {
+                        sctd -= rand.nextInt(200);
+                        w.write(String.format("%1$5s%2$4s%3$6s%4$8s%5$8s%6$8s%7$8s%8$8s%9$8s%10$8s%11$8s%12$8s%13$8s%14$8s%15$8s%16$8s%17$8s\r\n",
+                                startYear, 100 + das, das, 0, 6000, sctd, rand.nextInt(1000), sctd, sctd - 3000, format(1, 3000.0), format(2, 0.0),
+                                format(1, 600.0), format(1, 7900.0), format(2, 0.0), format(1, 7900.0), format(1, 7800.0), format(2, 80.0)));
+                    }
+                } else {
+                    w.write("*SIMULATED CROP AND SOIL STATUS AT MAIN DEVELOPMENT STAGES\r\n\r\n");
+                }
+            }
+        }
+        target.close(w);
+    }
+
+    /**
+     * Write the ACMO meta data for each treatment
+     *
+     * @param target the output target
+     * @throws IOException
+     */
+    private void writeAcmoJson(Target target) throws IOException {
+        ArrayList<HashMap> metaArr = new ArrayList<HashMap>();
+        for (int idx = 0; idx < getExperimentFileCount(); idx++) {
+            Random rand = getRandom(10, idx);
+            String exname = getExname(idx);
+            int flNum = Math.min(Math.min(fields, MAX_TRT_PER_FILE), getTrtNum(idx));
+            int cuNum = Math.min(Math.min(cultivars, MAX_TRT_PER_FILE), getTrtNum(idx));
+            for (int i = 0; i < getTrtNum(idx); i++) {
+                int fl = (idx * flNum + i % flNum) % fields;
+                HashMap meta = new HashMap();
+                meta.put("eid", String.format("%010x", rand.nextLong() & 0xFFFFFFFFFFL));
+                meta.put("clim_id", "0XXX");
+                meta.put("clim_rep", "1");
+                meta.put("rap_id", "1");
+                meta.put("region", "NA");
+                meta.put("institution", "SY");
+                meta.put("wsta_id", getStationId(fl % stations));
+                meta.put("soil_id", getSoilId(fl % soilProfiles));
+                meta.put("fl_lat", format(3, getLat(fl % stations)));
+                meta.put("fl_long", format(3, getLong(fl % stations)));
+                meta.put("crid", "MAZ");
+                meta.put("cul_id", getCulId((idx * cuNum + i % cuNum) % cultivars));
+                meta.put("irop", i % 3 == 0 ? "" : "IR001");
+                meta.put("ti_#", "0");
+                meta.put("tiimp", "");
+                meta.put("exname", exname + "_" + (i + 1));
+                metaArr.add(meta);
+            }
+        }
+        HashMap data = new HashMap();
+        data.put("data", metaArr);
+        Writer w = target.open("ACMO.json");
+        w.write(JSONAdapter.toJSON(data));
+        target.close(w);
+    }
+
+    /**
+     * Get the random generator for one file, so the content of file does not
+     * depend on the other files
+     *
+     * @param type the file type
+     * @param idx the file index
+     * @return the random generator
+     */
+    private Random getRandom(int type, int idx) {
+        // P.S. mix the bits, since the first values of Random with adjacent seeds are close
+        long mixed = seed * 0x9E3779B97F4A7C15L + type * 0xBF58476D1CE4E5B9L + idx * 0x94D049BB133111EBL;
+        mixed = (mixed ^ (mixed >>> 30)) * 0xBF58476D1CE4E5B9L;
+        mixed = (mixed ^ (mixed >>> 27)) * 0x94D049BB133111EBL;
+        return new Random(mixed ^ (mixed >>> 31));
+    }
+
+    /**
+     * Get the number of treatments in the experiment file
+     *
+     * @param idx the index of experiment file
+     * @return the number of treatments
+     */
+    private int getTrtNum(int idx) {
+        return Math.min(MAX_TRT_PER_FILE, treatments - idx * MAX_TRT_PER_FILE);
+    }
+
+    /**
+     * Get the experiment name, the site code and experiment number are
+     * generated from the index
+     *
+     * @param idx the index of experiment file
+     * @return the experiment name
+     */
+    private String getExname(int idx) {
+        return "SY" + getCode(idx / 99) + String.format("%02d%02d", startYear % 100, idx % 99 + 1) + "MZ";
+    }
+
+    /**
+     * Get the weather station id
+     *
+     * @param idx the index of weather station
+     * @return the 4 characters station id
+     */
+    private String getStationId(int idx) {
+        return "W" + CODES.charAt(idx / CODES.length() % CODES.length()) + CODES.charAt(idx % CODES.length()) + "S";
+    }
+
+    /**
+     * Get the soil id
+     *
+     * @param idx the index of soil profile
+     * @return the 10 characters soil id
+     */
+    private String getSoilId(int idx) {
+        return "SY" + String.format("%08d", idx + 1);
+    }
+
+    /**
+     * Get the cultivar id
+     *
+     * @param idx the index of cultivar
+     * @return the 6 characters cultivar id
+     */
+    private String getCulId(int idx) {
+        return "SY" + String.format("%04d", idx + 1);
+    }
+
+    /**
+     * Get the latitude of weather station
+     *
+     * @param idx the index of weather station
+     * @return the latitude
+     */
+    private double getLat(int idx) {
+        return -60 + getRandom(11, idx).nextDouble() * 120;
+    }
+
+    /**
+     * Get the longitude of weather station
+     *
+     * @param idx the index of weather station
+     * @return the longitude
+     */
+    private double getLong(int idx) {
+        return -180 + getRandom(12, idx).nextDouble() * 360;
+    }
+
+    /**
+     * Get 2 letters code
+     *
+     * @param num the number
+     * @return the 2 letters code
+     */
+    private static String getCode(int num) {
+        return "" + CODES.charAt(num / CODES.length() % CODES.length()) + CODES.charAt(num % CODES.length());
+    }
+
+    /**
+     * Get the date string with format of "yyddd", the day of year could be
+     * out of the year
+     *
+     * @param year the year
+     * @param doy the day of year
+     * @return the date string
+     */
+    private static String getDate(int year, int doy) {
+        while (doy > (year % 4 == 0 ? 366 : 365)) {
+            doy -= year % 4 == 0 ? 366 : 365;
+            year++;
+        }
+        while (doy < 1) {
+            year--;
+            doy += year % 4 == 0 ? 366 : 365;
+        }
+        return String.format("%02d%03d", year % 100, doy);
+    }
+
+    /**
+     * Format the number with fixed decimal places, independent of the default
+     * locale
+     *
+     * @param bits the decimal places
+     * @param val the number
+     * @return the number string
+     */
+    private static String format(int bits, double val) {
+        return String.format(Locale.US, "%." + bits + "f", val);
+    }
+
+    /**
+     * Check the setting value
+     *
+     * @param val the setting value
+     * @param name the setting name
+     * @return the setting value
+     */
+    private static int checkPositive(int val, String name) {
+        if (val <= 0) {
+            throw new IllegalArgumentException("The number of " + name + " must be positive: " + val);
+        }
+        return val;
+    }
+
+    /**
+     * The destination of generated files
+     */
+    private static abstract class Target {
+
+        /**
+         * Start a new file
+         *
+         * @param name the file name
+         * @return the Writer for the file
+         * @throws IOException
+         */
+        abstract Writer open(String name) throws IOException;
+
+        /**
+         * Finish the file
+         *
+         * @param w the Writer for the file
+         * @throws IOException
+         */
+        abstract void close(Writer w) throws IOException;
+    }
+
+    /**
+     * Put the generated files into folder
+     */
+    private static class DirTarget extends Target {
+
+        private File dir;
+        private ArrayList<File> files = new ArrayList<File>();
+
+        DirTarget(File dir) {
+            this.dir = dir;
+            dir.mkdirs();
+        }
+
+        @Override
+        Writer open(String name) throws IOException {
+            File f = new File(dir, name);
+            files.add(f);
+            return new BufferedWriter(new FileWriter(f));
+        }
+
+        @Override
+        void close(Writer w) throws IOException {
+            w.close();
+        }
+    }
+
+    /**
+     * Put the generated files into ZIP package
+     */
+    private static class ZipTarget extends Target {
+
+        private ZipOutputStream out;
+        private Writer writer;
+
+        ZipTarget(File zipFile) throws IOException {
+            out = new ZipOutputStream(new FileOutputStream(zipFile));
+            writer = new BufferedWriter(new OutputStreamWriter(out));
+        }
+
+        @Override
+        Writer open(String name) throws IOException {
+            ZipEntry entry = new ZipEntry(name);
+            entry.setTime(ENTRY_TIME);
+            out.putNextEntry(entry);
+            return writer;
+        }
+
+        @Override
+        void close(Writer w) throws IOException {
+            w.flush();
+            out.closeEntry();
+        }
+
+        void close() throws IOException {
+            writer.close();
+        }
+    }
+}
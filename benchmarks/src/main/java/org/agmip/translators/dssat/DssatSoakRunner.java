@@ -0,0 +1,126 @@
+package org.agmip.translators.dssat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * Throughput and memory soak test for the synthetic dataset, read the DSSAT
+ * package, write it back and translate the model output into ACMO CSV file
+ * repeatedly, and print the time and the heap usage of each round. A steady
+ * heap usage after the warm up rounds shows there is no leak.
+ *
+ * Usage: java -cp target/benchmarks.jar org.agmip.translators.dssat.DssatSoakRunner
+ * [name=value ...], the settings are seed, treatments, fields, stations,
+ * years, startYear, soils, cultivars, rounds and minutes.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+public class DssatSoakRunner {
+
+    private static final long MB = 1024 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        HashMap<String, String> settings = new HashMap<String, String>();
+        for (String arg : args) {
+            int idx = arg.indexOf("=");
+            if (idx > 0) {
+                settings.put(arg.substring(0, idx), arg.substring(idx + 1));
+            } else {
+                System.out.println("Unknown setting [" + arg + "] is ignored");
+            }
+        }
+        int years = getInt(settings, "years", 1);
+        int rounds = getInt(settings, "rounds", 10);
+        long endTime = System.currentTimeMillis() + getInt(settings, "minutes", 0) * 60000L;
+        DssatDatasetGenerator generator = new DssatDatasetGenerator(getInt(settings, "seed", 20130101))
+                .setTreatments(getInt(settings, "treatments", 990))
+                .setFields(getInt(settings, "fields", 20))
+                .setWeatherStations(getInt(settings, "stations", 10))
+                .setWeatherYears(years)
+                .setStartYear(getInt(settings, "startYear", years > 34 ? 1916 : 1982))
+                .setSoilProfiles(getInt(settings, "soils", 1000))
+                .setCultivars(getInt(settings, "cultivars", 50));
+
+        File dir = BenchmarkData.createWorkDir();
+        File dssatZip = generator.writeDssatZip(new File(dir, "SYNTHETIC_DSSAT.zip"));
+        File outputZip = generator.writeModelOutputZip(new File(dir, "SYNTHETIC_OUTPUT.zip"));
+        System.out.println("Input: " + dssatZip.length() / 1024 + " KB DSSAT package, " + outputZip.length() / 1024 + " KB model output package");
+        System.out.println("round  read(ms)  write(ms)  acmo(ms)  heap(MB)");
+
+        long total = 0;
+        long maxHeap = 0;
+        int round = 0;
+        try {
+            while (round < rounds || System.currentTimeMillis() < endTime) {
+                round++;
+                long start = System.currentTimeMillis();
+                HashMap data = new DssatControllerInput().readFile(dssatZip.getPath());
+                long readTime = System.currentTimeMillis();
+
+                DssatControllerOutput output = new DssatControllerOutput();
+                output.writeFile(dir.getPath() + File.separator, data);
+                if (output.getOutputZipFile() != null) {
+                    output.getOutputZipFile().delete();
+                }
+                long writeTime = System.currentTimeMillis();
+
+                DssatAcmoCsvTranslator translator = new DssatAcmoCsvTranslator();
+                translator.writeCsvFile(dir.getPath(), outputZip.getPath());
+                if (translator.getOutputFile() != null) {
+                    translator.getOutputFile().delete();
+                }
+                long acmoTime = System.currentTimeMillis();
+
+                data = null;
+                output = null;
+                long heap = getUsedHeap();
+                maxHeap = Math.max(maxHeap, heap);
+                total += acmoTime - start;
+                System.out.println(String.format("%1$5d %2$9d %3$10d %4$9d %5$9d",
+                        round, readTime - start, writeTime - readTime, acmoTime - writeTime, heap / MB));
+            }
+        } finally {
+            dssatZip.delete();
+            outputZip.delete();
+            dir.delete();
+        }
+        System.out.println(String.format("Finished %1$d rounds, %2$.2f rounds/min, max heap after GC %3$d MB",
+                round, round * 60000.0 / Math.max(total, 1), maxHeap / MB));
+    }
+
+    /**
+     * Get the heap usage after GC
+     *
+     * @return the used heap in bytes
+     */
+    private static long getUsedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * Get the integer setting
+     *
+     * @param settings the settings
+     * @param name the setting name
+     * @param defVal the default value
+     * @return the setting value
+     */
+    private static int getInt(HashMap<String, String> settings, String name, int defVal) {
+        String val = settings.get(name);
+        if (val == null) {
+            return defVal;
+        }
+        try {
+            return Integer.parseInt(val.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid setting [" + name + "=" + val + "], use " + defVal + " instead");
+            return defVal;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.agmip.translators.dssat;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the date and number formatting helpers, which are called
+ * for every value in the input and output files. The inputs are generated with
+ * a fixed seed and each operation takes the next one in turn.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+
+    private static final int SIZE = 1024;
+    private static final String DAILY_PATTERN = "%1$5s %2$5s %3$5s %4$5s %5$5s\r\n";
+    private static final DssatLineTemplate dailyTemplate = new DssatLineTemplate(DAILY_PATTERN);
+    private final DssatCommonOutput output = new DssatXFileOutput();
+    private final DssatCommonInput input = new DssatXFileInput();
+    private final String[] numbers = new String[SIZE];
+    private final String[] dates = new String[SIZE];
+    private final String[] yyddds = new String[SIZE];
+    private final String[] days = new String[SIZE];
+    private final StringBuilder sb = new StringBuilder();
+    private int idx;
+
+    @Setup
+    public void setUp() {
+        Random rand = new Random(20130101L);
+        for (int i = 0; i < SIZE; i++) {
+            switch (i % 4) {
+                case 0:
+                    numbers[i] = Integer.toString(rand.nextInt(2000) - 1000);
+                    break;
+                case 1:
+                    numbers[i] = String.format(Locale.US, "%.1f", rand.nextDouble() * 100);
+                    break;
+                case 2:
+                    numbers[i] = String.format(Locale.US, "%.3f", rand.nextDouble() * 10);
+                    break;
+                default:
+                    numbers[i] = String.format(Locale.US, "%.2f", rand.nextDouble() * 100000);
+            }
+            int year = 1950 + rand.nextInt(100);
+            int doy = 1 + rand.nextInt(365);
+            dates[i] = String.format(Locale.US, "%04d%02d%02d", year, 1 + rand.nextInt(12), 1 + rand.nextInt(28));
+            yyddds[i] = String.format(Locale.US, "%02d%03d", year % 100, doy);
+            days[i] = Integer.toString(rand.nextInt(400));
+        }
+    }
+
+    /**
+     * Get the index of next input
+     *
+     * @return the index
+     */
+    private int next() {
+        idx = (idx + 1) & (SIZE - 1);
+        return idx;
+    }
+
+    @Benchmark
+    public String formatNumStr() {
+        return output.formatNumStr(5, numbers[next()], "bench", "-99");
+    }
+
+    @Benchmark
+    public int appendNumStr() {
+        sb.setLength(0);
+        output.appendNumStr(sb, 5, numbers[next()], "bench", "-99");
+        return sb.length();
+    }
+
+    @Benchmark
+    public int dailyLineFormat() {
+        int i = next();
+        sb.setLength(0);
+        sb.append(String.format(DAILY_PATTERN, yyddds[i], numbers[i], numbers[(i + 1) & (SIZE - 1)], numbers[(i + 2) & (SIZE - 1)], days[i]));
+        return sb.length();
+    }
+
+    @Benchmark
+    public int dailyLineTemplate() {
+        int i = next();
+        sb.setLength(0);
+        dailyTemplate.append(sb, yyddds[i], numbers[i], numbers[(i + 1) & (SIZE - 1)], numbers[(i + 2) & (SIZE - 1)], days[i]);
+        return sb.length();
+    }
+
+    @Benchmark
+    public String formatDateStr() {
+        return output.formatDateStr(dates[next()]);
+    }
+
+    @Benchmark
+    public String formatDateStr2() {
+        return output.formatDateStr2(dates[next()]);
+    }
+
+    @Benchmark
+    public String formatDateStrWithDays() {
+        int i = next();
+        return output.formatDateStr(dates[i], days[i]);
+    }
+
+    @Benchmark
+    public String translateDateStr() {
+        return input.translateDateStr(yyddds[next()]);
+    }
+
+    @Benchmark
+    public String translateDateStrWithDays() {
+        int i = next();
+        return input.translateDateStr(yyddds[i], days[i]);
+    }
+
+    @Benchmark
+    public String toYyyymmdd() {
+        int i = next();
+        return DssatDateHelper.toYyyymmdd(yyddds[i], days[i]);
+    }
+
+    @Benchmark
+    public String toYyddd() {
+        int i = next();
+        return DssatDateHelper.toYyddd(dates[i], days[i]);
+    }
+}
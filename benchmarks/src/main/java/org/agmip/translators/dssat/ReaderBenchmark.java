@@ -0,0 +1,111 @@
+package org.agmip.translators.dssat;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the DSSAT readers, each reader parses the bundled DSSAT
+ * package from the beginning in every operation.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReaderBenchmark {
+
+    @Param({"UFGA8201_MZX.zip", "UFGA8401_CPX.zip"})
+    public String fixture;
+    private String path;
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() throws IOException {
+        path = BenchmarkData.extract(fixture, BenchmarkData.createWorkDir()).getPath();
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public HashMap controller() {
+        return new DssatControllerInput().readFile(path);
+    }
+
+    @Benchmark
+    public HashMap controllerConcurrent() {
+        DssatControllerInput reader = new DssatControllerInput();
+        reader.setExecutor(executor);
+        return reader.readFile(path);
+    }
+
+    @Benchmark
+    public int controllerStreaming() {
+        DssatExperimentIterator it = new DssatControllerInput().readExperiments(path);
+        int cnt = 0;
+        while (it.hasNext()) {
+            cnt += it.next().size();
+        }
+        return cnt;
+    }
+
+    @Benchmark
+    public HashMap xFile() {
+        return new DssatXFileInput().readFile(path);
+    }
+
+    @Benchmark
+    public HashMap soil() {
+        return new DssatSoilInput().readFile(path);
+    }
+
+    @Benchmark
+    public HashMap weather() {
+        return new DssatWeatherInput().readFile(path);
+    }
+
+    @Benchmark
+    public HashMap weatherAsciiFastPath() {
+        DssatWeatherInput reader = new DssatWeatherInput();
+        reader.columnarDaily = true;
+        reader.asciiFastPath = true;
+        return reader.readFile(path);
+    }
+
+    @Benchmark
+    public HashMap aFile() {
+        return new DssatAFileInput().readFile(path);
+    }
+
+    @Benchmark
+    public HashMap tFile() {
+        return new DssatTFileInput().readFile(path);
+    }
+
+    @Benchmark
+    public HashMap culFile() {
+        return new DssatCulFileInput().readFile(path);
+    }
+}
@@ -0,0 +1,97 @@
+package org.agmip.translators.dssat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the scaled inputs, the experiments in fixture are replicated
+ * to show how the translation time grows with the size of batch.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ScaledBenchmark {
+
+    @Param({"UFGA8201_MZX.zip"})
+    public String fixture;
+    @Param({"1", "10", "100"})
+    public int scale;
+    private File dir;
+    private String outputPath;
+    private HashMap data;
+    private String zipPath;
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkData.createWorkDir();
+        outputPath = dir.getPath() + File.separator;
+        data = BenchmarkData.scale(BenchmarkData.load(fixture, dir), scale);
+
+        // Prepare the scaled DSSAT package for reading
+        DssatControllerOutput output = new DssatControllerOutput();
+        output.writeFile(outputPath, BenchmarkData.scale(data, 1));
+        File zip = output.getOutputZipFile();
+        if (zip == null || !zip.exists()) {
+            throw new IOException("Failed to create the scaled input");
+        }
+        zip.deleteOnExit();
+        zipPath = zip.getPath();
+
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public HashMap read() {
+        return new DssatControllerInput().readFile(zipPath);
+    }
+
+    @Benchmark
+    public File write() {
+        DssatControllerOutput output = new DssatControllerOutput();
+        output.writeFile(outputPath, BenchmarkData.scale(data, 1));
+        File zip = output.getOutputZipFile();
+        if (zip != null) {
+            zip.delete();
+        }
+        return zip;
+    }
+
+    @Benchmark
+    public File writeParallel() throws InterruptedException {
+        DssatOutputJob job = new DssatParallelOutput(executor).execDssatTranslator(outputPath, BenchmarkData.scale(data, 1));
+        job.await();
+        File zip = job.getOutputZipFile();
+        if (zip != null) {
+            zip.delete();
+        }
+        return zip;
+    }
+}
@@ -0,0 +1,93 @@
+package org.agmip.translators.dssat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the synthetic datasets in production sizes, the inputs are
+ * created by the generator with a fixed seed in setup.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 20)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class SyntheticBenchmark {
+
+    @Param({"99", "990"})
+    public int treatments;
+    @Param({"1", "100"})
+    public int weatherYears;
+    @Param({"100", "10000"})
+    public int soilProfiles;
+    private File dir;
+    private String outputPath;
+    private String dssatZipPath;
+    private String outputZipPath;
+    private HashMap data;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkData.createWorkDir();
+        outputPath = dir.getPath() + File.separator;
+        DssatDatasetGenerator generator = new DssatDatasetGenerator(20130101L)
+                .setTreatments(treatments)
+                .setFields(20)
+                .setWeatherStations(10)
+                .setWeatherYears(weatherYears)
+                .setStartYear(weatherYears > 1 ? 1916 : 1982)
+                .setSoilProfiles(soilProfiles)
+                .setCultivars(50);
+        File dssatZip = generator.writeDssatZip(new File(dir, "SYNTHETIC_DSSAT.zip"));
+        dssatZip.deleteOnExit();
+        dssatZipPath = dssatZip.getPath();
+        File outputZip = generator.writeModelOutputZip(new File(dir, "SYNTHETIC_OUTPUT.zip"));
+        outputZip.deleteOnExit();
+        outputZipPath = outputZip.getPath();
+        data = new DssatControllerInput().readFile(dssatZipPath);
+    }
+
+    @Benchmark
+    public HashMap read() {
+        return new DssatControllerInput().readFile(dssatZipPath);
+    }
+
+    @Benchmark
+    public File write() {
+        DssatControllerOutput output = new DssatControllerOutput();
+        output.writeFile(outputPath, BenchmarkData.scale(data, 1));
+        File zip = output.getOutputZipFile();
+        if (zip != null) {
+            zip.delete();
+        }
+        return zip;
+    }
+
+    @Benchmark
+    public File acmoCsv() throws IOException {
+        DssatAcmoCsvTranslator translator = new DssatAcmoCsvTranslator();
+        translator.writeCsvFile(dir.getPath(), outputZipPath);
+        File file = translator.getOutputFile();
+        if (file != null) {
+            file.delete();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,124 @@
+package org.agmip.translators.dssat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the DSSAT writers, each writer formats all the experiments in
+ * the fixture in every operation. The content is dropped by the discarding
+ * sink, so the result only shows the formatting cost; the controller benchmark
+ * writes the real ZIP package.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriterBenchmark {
+
+    @Param({"UFGA8201_MZX.zip", "UFGA8401_CPX.zip", "Machakos_1Exp-1Yr.json"})
+    public String fixture;
+    private File dir;
+    private String outputPath;
+    private HashMap data;
+    private ArrayList<HashMap> expDataArr;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkData.createWorkDir();
+        outputPath = dir.getPath() + File.separator;
+        data = BenchmarkData.load(fixture, dir);
+        expDataArr = BenchmarkData.getExpDataArr(data);
+    }
+
+    /**
+     * Write all the experiments with the writer
+     *
+     * @param output the DSSAT writer
+     * @param bh the black hole for output file
+     * @throws IOException
+     */
+    private void write(DssatCommonOutput output, Blackhole bh) throws IOException {
+        output.setSink(BenchmarkData.DISCARD_SINK);
+        for (int i = 0; i < expDataArr.size(); i++) {
+            // P.S. writers might put the generated ids into data, use the copy of top level
+            output.writeFile(outputPath, new HashMap(expDataArr.get(i)));
+            bh.consume(output.getOutputFile());
+        }
+    }
+
+    @Benchmark
+    public void xFile(Blackhole bh) throws IOException {
+        write(new DssatXFileOutput(), bh);
+    }
+
+    @Benchmark
+    public void soil(Blackhole bh) throws IOException {
+        write(new DssatSoilOutput(), bh);
+    }
+
+    @Benchmark
+    public void weather(Blackhole bh) throws IOException {
+        write(new DssatWeatherOutput(), bh);
+    }
+
+    @Benchmark
+    public void aFile(Blackhole bh) throws IOException {
+        write(new DssatAFileOutput(), bh);
+    }
+
+    @Benchmark
+    public void tFile(Blackhole bh) throws IOException {
+        write(new DssatTFileOutput(), bh);
+    }
+
+    @Benchmark
+    public void culFile(Blackhole bh) throws IOException {
+        write(new DssatCulFileOutput(), bh);
+    }
+
+    @Benchmark
+    public void batchFile(Blackhole bh) throws IOException {
+        write(new DssatBatchFileOutput(), bh);
+    }
+
+    @Benchmark
+    public void runFile(Blackhole bh) throws IOException {
+        write(new DssatRunFileOutput(), bh);
+    }
+
+    @Benchmark
+    public void acmoJson(Blackhole bh) throws IOException {
+        write(new DssatACMOJsonOutput(), bh);
+    }
+
+    @Benchmark
+    public File controller() {
+        DssatControllerOutput output = new DssatControllerOutput();
+        output.writeFile(outputPath, BenchmarkData.scale(data, 1));
+        File zip = output.getOutputZipFile();
+        if (zip != null) {
+            zip.delete();
+        }
+        return zip;
+    }
+}
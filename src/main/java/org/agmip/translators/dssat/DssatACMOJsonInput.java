@@ -1,7 +1,6 @@
 package org.agmip.translators.dssat;
 
 import java.io.BufferedReader;
-import java.io.CharArrayReader;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashMap;
@@ -60,11 +59,7 @@ public class DssatACMOJsonInput extends DssatCommonInput {
         if (buf == null) {
             return file;
         } else {
-            if (buf instanceof char[]) {
-                brJ = new BufferedReader(new CharArrayReader((char[]) buf));
-            } else {
-                brJ = (BufferedReader) buf;
-            }
+            brJ = getBufferedReader(buf);
         }
 
         while ((line = brJ.readLine()) != null) {
@@ -83,12 +78,13 @@ public class DssatACMOJsonInput extends DssatCommonInput {
     /**
      * Set reading flags for title lines (marked with *)
      *
+     * @param ctx the parsing context which holds the flgs
      * @param line the string of reading line
      */
     @Override
-    protected void setTitleFlgs(String line) {
-        flg[0] = "meta";
-        flg[1] = "";
-        flg[2] = "data";
+    protected void setTitleFlgs(DssatParseContext ctx, String line) {
+        ctx.flg[0] = "meta";
+        ctx.flg[1] = "";
+        ctx.flg[2] = "data";
     }
 }
@@ -2,7 +2,6 @@ package org.agmip.translators.dssat;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
@@ -45,7 +44,7 @@ public class DssatACMOJsonOutput extends DssatCommonOutput {
             String fileName = "ACMO.json";
             arg0 = revisePath(arg0);
             outputFile = new File(arg0 + fileName);
-            bwJ = new BufferedWriter(new FileWriter(outputFile));
+            bwJ = openWriter(outputFile);
 
             // Output finish
             bwJ.write(JSONAdapter.toJSON(record));
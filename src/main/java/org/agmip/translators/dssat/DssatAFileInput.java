@@ -1,11 +1,9 @@
 package org.agmip.translators.dssat;
 
 import java.io.BufferedReader;
-import java.io.CharArrayReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 
 /**
  * DSSAT AFile Data I/O API Class
@@ -18,6 +16,12 @@ public class DssatAFileInput extends DssatCommonInput {
     public String obvFileKey = "summary";  // P.S. the key name might change
     public String obvDataKey = "data";     // P.S. the key name might change
 
+    // Precompiled formats of data lines
+    private static final DssatRecordSchema metaFormats = new DssatRecordSchema.Builder()
+            .add("null", 10)   // P.S. Since exname in top line is not reliable, read from file name
+            .addRest("local_name")
+            .build();
+
     /**
      * Constructor with no parameters Set jsonKey as "observed"
      *
@@ -78,10 +82,12 @@ public class DssatAFileInput extends DssatCommonInput {
         HashMap mapA;
         BufferedReader brA = null;
         Object buf;
-        LinkedHashMap formats = new LinkedHashMap();
         ArrayList titles = new ArrayList();
+        DssatRecordSchema dataFormats = new DssatRecordSchema.Builder().build();
         ArrayList obvData = new ArrayList();
+        DssatRecordMerger obvDataMerger = new DssatRecordMerger(obvData, "trno_a");
         DssatObservedData obvDataList = new DssatObservedData();    // Varibale list definition
+        DssatParseContext ctx = new DssatParseContext();
         String pdate;
 
         mapA = (HashMap) brMap.get("A");
@@ -96,94 +102,87 @@ public class DssatAFileInput extends DssatCommonInput {
             buf = mapA.get(keyA);
             String fileName = (String) keyA;
             String exname = fileName.replaceAll("\\.", "").replaceAll("A$", "");
-            if (buf instanceof char[]) {
-                brA = new BufferedReader(new CharArrayReader((char[]) buf));
-            } else {
-                brA = (BufferedReader) buf;
-            }
+            brA = getBufferedReader(buf);
 
             file = new HashMap();
 
-            while ((line = brA.readLine()) != null) {
-
-                // Get content type of line
-                judgeContentType(line);
-
-                // Read Observed data
-                if (flg[2].equals("data")) {
-
-                    // Read meta info
-                    if (flg[0].equals("meta") && flg[1].equals("")) {
-
-                        // Set variables' formats
-                        line = line.replaceAll(".*:", "").trim();
-                        formats.clear();
-                        formats.put("null", 10);  // P.S. Since exname in top line is not reliable, read from file name
-                        formats.put("local_name", line.length());
-                        // Read line and save into return holder
-                        file.putAll(readLine(line, formats));
-                        file.put("exname", exname);
-
-                    } // Read data info 
-                    else {
-                        // Set variables' formats
-                        formats.clear();
-                        for (int i = 0; i < titles.size(); i++) {
-                            formats.put(titles.get(i), 6);
-                        }
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats, "");
-                        pdate = getPdate(brMap, (String) tmp.get("trno_a"), fileName.replaceAll("A$", "X"));
-                        for (int i = 0; i < titles.size(); i++) {
-                            String title = (String) titles.get(i);
-                            if (obvDataList.isDateType(title)) {
-                                translateDateStrForDOY(tmp, (String) title, pdate);
-//                            String val = (String) tmp.get(title);
-//                            if (val != null && val.length() > 3) {
-//                                tmp.put(title, val.substring(val.length() - 3, val.length()));
-//                            }
+            try {
+                while ((line = brA.readLine()) != null) {
+
+                    // Get content type of line
+                    judgeContentType(ctx, line);
+
+                    // Read Observed data
+                    if (ctx.flg[2].equals("data")) {
+
+                        // Read meta info
+                        if (ctx.flg[0].equals("meta") && ctx.flg[1].equals("")) {
+
+                            // Set variables' formats
+                            line = line.replaceAll(".*:", "").trim();
+                            // Read line and save into return holder
+                            file.putAll(readLine(line, metaFormats));
+                            file.put("exname", exname);
+
+                        } // Read data info 
+                        else {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, dataFormats, "");
+                            pdate = getPdate(brMap, (String) tmp.get("trno_a"), fileName.replaceAll("A$", "X"));
+                            for (int i = 0; i < titles.size(); i++) {
+                                String title = (String) titles.get(i);
+                                if (obvDataList.isDateType(title)) {
+                                    translateDateStrForDOY(tmp, (String) title, pdate);
+    //                            String val = (String) tmp.get(title);
+    //                            if (val != null && val.length() > 3) {
+    //                                tmp.put(title, val.substring(val.length() - 3, val.length()));
+    //                            }
+                                }
                             }
+                            obvDataMerger.add(tmp);
                         }
-                        addToArray(obvData, tmp, "trno_a");
-                    }
 
-                } // Read Observed title
-                else if (flg[2].equals("title")) {
-
-                    titles = new ArrayList();
-                    line = line.replaceFirst("@", " ");
-                    for (int i = 0; i < line.length(); i += 6) {
-                        String titleStr = line.substring(i, Math.min(i + 6, line.length())).trim().toLowerCase();
-                        if (titleStr.equals("")) {
-                            titles.add("null" + i);
-                        } else if (titleStr.equals("trno")) {
-                            titles.add(titleStr + "_a");
-                        } else {
-                            titles.add(titleStr);
+                    } // Read Observed title
+                    else if (ctx.flg[2].equals("title")) {
+
+                        titles = new ArrayList();
+                        line = line.replaceFirst("@", " ");
+                        for (int i = 0; i < line.length(); i += 6) {
+                            String titleStr = line.substring(i, Math.min(i + 6, line.length())).trim().toLowerCase();
+                            if (titleStr.equals("")) {
+                                titles.add("null" + i);
+                            } else if (titleStr.equals("trno")) {
+                                titles.add(titleStr + "_a");
+                            } else {
+                                titles.add(titleStr);
+                            }
                         }
-                    }
+                        // Set variables' formats
+                        dataFormats = new DssatRecordSchema.Builder().addAll(titles, 6).build();
 
-                } else {
+                    } else {
+                    }
                 }
+            } finally {
+                brA.close();
             }
             file.put(obvDataKey, obvData);
             files.put(exname, file);
         }
 
-        brA.close();
-
         return files;
     }
 
     /**
      * Set reading flags for title lines (marked with *)
      *
+     * @param ctx the parsing context which holds the flgs
      * @param line the string of reading line
      */
     @Override
-    protected void setTitleFlgs(String line) {
-        flg[0] = "meta";
-        flg[1] = "";
-        flg[2] = "data";
+    protected void setTitleFlgs(DssatParseContext ctx, String line) {
+        ctx.flg[0] = "meta";
+        ctx.flg[1] = "";
+        ctx.flg[2] = "data";
     }
 }
@@ -2,7 +2,6 @@ package org.agmip.translators.dssat;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashMap;
@@ -60,7 +59,7 @@ public class DssatAFileOutput extends DssatCommonOutput {
             String fileName = getFileName(result, "A");
             arg0 = revisePath(arg0);
             outputFile = new File(arg0 + fileName);
-            bwA = new BufferedWriter(new FileWriter(outputFile));
+            bwA = openWriter(outputFile);
 
             // Output Observation File
             // Titel Section
@@ -2,7 +2,6 @@ package org.agmip.translators.dssat;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -45,7 +44,7 @@ public class DssatBatchFileOutput extends DssatCommonOutput {
 
             arg0 = revisePath(arg0);
             outputFile = new File(arg0 + "DSSBatch.v45");
-            bwB = new BufferedWriter(new FileWriter(outputFile));
+            bwB = openWriter(outputFile);
 
             // Output Batch File
             // Titel Section
@@ -136,7 +135,7 @@ public class DssatBatchFileOutput extends DssatCommonOutput {
             // Initial BufferedWriter
             arg0 = revisePath(arg0);
             outputFile = new File(arg0 + "DSSBatch.v45");
-            bwB = new BufferedWriter(new FileWriter(outputFile));
+            bwB = openWriter(outputFile);
 
             // Output Batch File
             // Titel Section
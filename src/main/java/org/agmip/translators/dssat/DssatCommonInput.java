@@ -1,6 +1,7 @@
 package org.agmip.translators.dssat;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.CharArrayReader;
 import java.io.File;
 import java.io.FileInputStream;
@@ -8,12 +9,17 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 import org.agmip.core.types.TranslatorInput;
 
 import org.slf4j.Logger;
@@ -27,13 +33,26 @@ import org.slf4j.LoggerFactory;
  */
 public abstract class DssatCommonInput implements TranslatorInput {
     private static final Logger log = LoggerFactory.getLogger(DssatCommonInput.class);
-    protected String[] flg = {"", "", ""};
-    protected int flg4 = 0;
     protected String defValR = "-99.0";
     protected String defValC = "";
     protected String defValI = "-99";
     protected String defValD = "20110101";
     protected String jsonKey = "unknown";
+    protected static final String pdateIdxKey = "PDATE_INDEX";  // P.S. the key for holding planting date index in the files content holder
+    public boolean asciiFastPath = false;   // P.S. set true to scan the ASCII files by bytes instead of decoding them with Reader, only used by weather reader now
+    public boolean memoryMapped = false;    // P.S. set true to read the plain files (not in ZIP package) through memory mapped region
+
+    // Precompiled formats of data lines
+    private static final DssatRecordSchema pdateTrFormats = new DssatRecordSchema.Builder()
+            .add("trno", 2)
+            .add("", 44)
+            .add("pl", 3)
+            .build();
+
+    private static final DssatRecordSchema pdatePlFormats = new DssatRecordSchema.Builder()
+            .add("pl", 2)
+            .add("pdate", 6)
+            .build();
 
     /**
      * DSSAT Data Output method for Controller using
@@ -54,10 +73,12 @@ public abstract class DssatCommonInput implements TranslatorInput {
 
         HashMap ret = new HashMap();
         String filePath = arg0;
+        HashMap brMap = null;
 
         try {
             // read file by file
-            ret = readFile(getBufferReader(filePath));
+            brMap = getBufferReader(filePath);
+            ret = readFile(brMap);
 
         } catch (FileNotFoundException fe) {
             System.out.println("File not found under following path : [" + filePath + "]!");
@@ -65,6 +86,8 @@ public abstract class DssatCommonInput implements TranslatorInput {
         } catch (Exception e) {
             //System.out.println(e.getMessage());
             e.printStackTrace();
+        } finally {
+            closeBufferReader(brMap);
         }
 
         return ret;
@@ -127,54 +150,75 @@ public abstract class DssatCommonInput implements TranslatorInput {
     /**
      * Set reading flgs for reading lines
      *
+     * @param ctx the parsing context which holds the flgs
      * @param line the string of reading line
      */
-    protected void judgeContentType(String line) {
+    protected void judgeContentType(DssatParseContext ctx, String line) {
         // Section Title line
         if (line.startsWith("*")) {
 
-            setTitleFlgs(line);
-            flg4 = 0;
+            setTitleFlgs(ctx, line);
+            ctx.flg4 = 0;
 
         } // Data title line
         else if (line.startsWith("@")) {
 
-            flg[1] = line.substring(1).trim().toLowerCase();
-            flg[2] = "title";
-            flg4++;
+            ctx.flg[1] = line.substring(1).trim().toLowerCase();
+            ctx.flg[2] = "title";
+            ctx.flg4++;
 
         } // Comment line
         else if (line.startsWith("!")) {
 
-            flg[2] = "comment";
+            ctx.flg[2] = "comment";
 
         } // Data line
         else if (!line.trim().equals("")) {
 
-            flg[2] = "data";
+            ctx.flg[2] = "data";
 
         } // Continued blank line
-        else if (flg[2].equals("blank")) {
+        else if (ctx.flg[2].equals("blank")) {
 
-            flg[0] = "";
-            flg[1] = "";
-            flg[2] = "blank";
-            flg4 = 0;
+            ctx.flg[0] = "";
+            ctx.flg[1] = "";
+            ctx.flg[2] = "blank";
+            ctx.flg4 = 0;
 
         } else {
 
 //            flg[0] = "";
-            flg[1] = "";
-            flg[2] = "blank";
+            ctx.flg[1] = "";
+            ctx.flg[2] = "blank";
+        }
+    }
+
+    /**
+     * Set reading flgs for reading lines which is scanned by bytes, only the
+     * section title, data title and comment lines will be decoded
+     *
+     * @param ctx the parsing context which holds the flgs
+     * @param line the scanner located at the reading line
+     */
+    protected void judgeContentType(DssatParseContext ctx, DssatLineScanner line) {
+        if (line.length() > 0 && (line.charAt(0) == '*' || line.charAt(0) == '@' || line.charAt(0) == '!')) {
+            judgeContentType(ctx, line.getLine());
+        } // Blank line
+        else if (line.isBlank()) {
+            judgeContentType(ctx, "");
+        } // Data line
+        else {
+            ctx.flg[2] = "data";
         }
     }
 
     /**
      * Set reading flgs for title lines (the line marked with *)
      *
+     * @param ctx the parsing context which holds the flgs
      * @param line the string of reading line
      */
-    protected abstract void setTitleFlgs(String line);
+    protected abstract void setTitleFlgs(DssatParseContext ctx, String line);
 
     /**
      * Take the data str from input map and translate it from "yyddd" to
@@ -227,11 +271,18 @@ public abstract class DssatCommonInput implements TranslatorInput {
 
         if (str != null && str.length() <= 3) {
             if (!pdate.equals("") && pdate.length() >= 2) {
+                int doy;
                 try {
-                    str = String.format("%1$2s%2$03d", pdate.substring(0, 2), Integer.parseInt(str));
+                    doy = Integer.parseInt(str);
                 } catch (NumberFormatException e) {
                     return "";
                 }
+                if (doy < 0) {
+                    return "";
+                }
+                // Combine the year of planting date with DOY, as "yyddd"
+                char[] buf = {pdate.charAt(0), pdate.charAt(1), (char) ('0' + doy / 100), (char) ('0' + doy / 10 % 10), (char) ('0' + doy % 10)};
+                str = new String(buf);
             }
         }
 
@@ -247,31 +298,7 @@ public abstract class DssatCommonInput implements TranslatorInput {
      */
     protected String translateDateStr(String startDate, String strDays) {
 
-        // Initial Calendar object
-        Calendar cal = Calendar.getInstance();
-        int days;
-        int year;
-        if (startDate == null || startDate.length() > 5 || startDate.length() < 4) {
-            //throw new Exception("");
-            return ""; //defValD; // P.S. use blank string instead of -99
-        }
-        try {
-            startDate = String.format("%05d", Integer.parseInt(startDate));
-            days = Double.valueOf(strDays).intValue();
-            // Set date with input value
-            year = Integer.parseInt(startDate.substring(0, 2));
-            year += year <= 15 ? 2000 : 1900; // P.S. 2015 is the cross year for the current version 
-            cal.set(Calendar.YEAR, year);
-            cal.set(Calendar.DAY_OF_YEAR, Integer.parseInt(startDate.substring(2)));
-            cal.add(Calendar.DATE, days);
-            // translatet to yyddd format
-            return String.format("%1$04d%2$02d%3$02d", cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH));
-        } catch (Exception e) {
-            // if tranlate failed, then use default value for date
-            // sbError.append("! Waring: There is a invalid date [").append(startDate).append("]");
-            return ""; //formatDateStr(defValD); // P.S. use blank string instead of -99
-        }
-
+        return DssatDateHelper.toYyyymmdd(startDate, strDays);
     }
 
     /**
@@ -300,25 +327,77 @@ public abstract class DssatCommonInput implements TranslatorInput {
      */
     protected HashMap readLine(String line, LinkedHashMap<String, Integer> formats, String invalidValue) {
 
+        return readLine(line, new DssatRecordSchema(formats), invalidValue);
+    }
+
+    /**
+     * Divide the data in the line into a map by precompiled schema (Default
+     * invalid value is null, which means not to be sore in the json)
+     *
+     * @param line The string of line read from data file
+     * @param schema The precompiled definition of columns
+     * @return the map contains divided data with keys from original string
+     */
+    protected HashMap readLine(String line, DssatRecordSchema schema) {
+
+        return readLine(line, schema, null);
+    }
+
+    /**
+     * Divide the data in the line into a map by precompiled schema
+     *
+     * @param line The string of line read from data file
+     * @param schema The precompiled definition of columns
+     * @param invalidValue The text will replace the original reading when its
+     * value is invalid
+     * @return the map contains divided data with keys from original string
+     */
+    protected HashMap readLine(String line, DssatRecordSchema schema, String invalidValue) {
+
         HashMap ret = new HashMap();
-        int length;
         String tmp;
 
-        for (String key : formats.keySet()) {
-            // To avoid to be over limit of string lenght
-            length = Math.min((Integer) formats.get(key), line.length());
-            if (!((String) key).equals("") && !((String) key).startsWith("null")) {
-                tmp = line.substring(0, length).trim();
+        for (int i = 0; i < schema.size(); i++) {
+            if (schema.isReadable(i)) {
+                tmp = schema.getValue(line, i);
                 // if the value is in valid keep blank string in it
                 if (checkValidValue(tmp)) {
-                    ret.put(key, tmp);
+                    ret.put(schema.getKey(i), tmp);
+                } else {
+                    if (invalidValue != null) {
+                        ret.put(schema.getKey(i), invalidValue);   // P.S. "" means missing or invalid value
+                    }
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Divide the data in the line which is scanned by bytes into a map, only
+     * the valid values are decoded
+     *
+     * @param line The scanner located at the line read from data file
+     * @param schema The precompiled definition of columns
+     * @param invalidValue The text will replace the original reading when its
+     * value is invalid
+     * @return the map contains divided data with keys from original string
+     */
+    protected HashMap readLine(DssatLineScanner line, DssatRecordSchema schema, String invalidValue) {
+
+        HashMap ret = new HashMap();
+
+        for (int i = 0; i < schema.size(); i++) {
+            if (schema.isReadable(i)) {
+                if (checkValidValue(line, schema, i)) {
+                    ret.put(schema.getKey(i), line.getValue(schema, i));
                 } else {
                     if (invalidValue != null) {
-                        ret.put(key, invalidValue);   // P.S. "" means missing or invalid value
+                        ret.put(schema.getKey(i), invalidValue);   // P.S. "" means missing or invalid value
                     }
                 }
             }
-            line = line.substring(length);
         }
 
         return ret;
@@ -337,6 +416,18 @@ public abstract class DssatCommonInput implements TranslatorInput {
         }
     }
 
+    /**
+     * Check if the column of line which is scanned by bytes is a valid value
+     *
+     * @param line The scanner located at the line read from data file
+     * @param schema The precompiled definition of columns
+     * @param i the index of column
+     * @return check result
+     */
+    protected boolean checkValidValue(DssatLineScanner line, DssatRecordSchema schema, int i) {
+        return !line.valueEquals(schema, i, defValC) && !line.valueEquals(schema, i, defValI) && !line.valueEquals(schema, i, defValR);
+    }
+
     /**
      * Get BufferReader for each type of file
      *
@@ -360,72 +451,79 @@ public abstract class DssatCommonInput implements TranslatorInput {
         // If input File is ZIP file
         if (filePath.toUpperCase().endsWith(".ZIP")) {
 
-            // Get experiment name
-            ZipEntry entry;
+            // Catalog entries from the central directory, the content will be decompressed when reader asks for it
+            // P.S. the handle opened for cataloging is kept by the catalog and shared by the entries, until the reader closes it
+            DssatZipCatalog catalog = new DssatZipCatalog(new File(filePath));
+            ZipFile zf = catalog.getZipFile();
+            ArrayList<String> entryNames = new ArrayList();
             ArrayList<String> exnames = new ArrayList();
-            String exname = "";
-            in = new ZipInputStream(new FileInputStream(filePath));
-            while ((entry = ((ZipInputStream) in).getNextEntry()) != null) {
-                if (!entry.isDirectory()) {
-                    if (entry.getName().matches(".+\\.\\w{2}[Xx]")) {
-                        exname = entry.getName().replaceAll("[Xx]$", "");
-                        exnames.add(exname);
-//                        break;
+            boolean cataloged = false;
+            try {
+                Enumeration<? extends ZipEntry> entries = zf.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory()) {
+                        entryNames.add(entry.getName());
+                        // Get experiment name
+                        if (entry.getName().matches(".+\\.\\w{2}[Xx]")) {
+                            exnames.add(entry.getName().replaceAll("[Xx]$", ""));
+                        }
                     }
                 }
+                cataloged = true;
+            } finally {
+                if (!cataloged) {
+                    catalog.close();
+                }
             }
-
-            // Read Files
-            in = new ZipInputStream(new FileInputStream(filePath));
-
-            while ((entry = ((ZipInputStream) in).getNextEntry()) != null) {
-                if (!entry.isDirectory()) {
-                    
-                    if (exnames.contains(entry.getName().replaceAll("[Xx]$", ""))) {
-//                        result.put("X", getBuf(in, (int) entry.getSize()));
-                        mapX.put(entry.getName().toUpperCase(), getBuf(in, (int) entry.getSize()));
-                    } else if (entry.getName().toUpperCase().endsWith(".WTH")) {
-                        mapW.put(entry.getName().toUpperCase(), getBuf(in, (int) entry.getSize()));
-                    } else if (entry.getName().toUpperCase().endsWith(".SOL")) {
-                        mapS.put(entry.getName().toUpperCase(), getBuf(in, (int) entry.getSize()));
-                    } else if (exnames.contains(entry.getName().replaceAll("[Aa]$", ""))) {
-//                        result.put("A", getBuf(in, (int) entry.getSize()));
-                        mapA.put(entry.getName().toUpperCase(), getBuf(in, (int) entry.getSize()));
-                    } else if (exnames.contains(entry.getName().replaceAll("[Tt]$", ""))) {
-//                        result.put("T", getBuf(in, (int) entry.getSize()));
-                        mapT.put(entry.getName().toUpperCase(), getBuf(in, (int) entry.getSize()));
-                    } else if (entry.getName().toUpperCase().endsWith(".OUT")) {
-                        result.put(entry.getName().toUpperCase(), getBuf(in, (int) entry.getSize()));
-                    } else if (entry.getName().toUpperCase().endsWith(".CUL")) {
-                        mapC.put(entry.getName().toUpperCase(), getBuf(in, (int) entry.getSize()));
-                    } else if (entry.getName().toUpperCase().endsWith(".JSON")) {
-                        result.put(entry.getName().toUpperCase(), getBuf(in, (int) entry.getSize()));
-                    }
+            result.put("ZIP", catalog);
+
+            for (String name : entryNames) {
+                String nameU = name.toUpperCase();
+                DssatZipEntryHelper entry = new DssatZipEntryHelper(catalog, name);
+                if (exnames.contains(name.replaceAll("[Xx]$", ""))) {
+                    mapX.put(nameU, entry);
+                } else if (nameU.endsWith(".WTH")) {
+                    mapW.put(nameU, entry);
+                } else if (nameU.endsWith(".SOL")) {
+                    mapS.put(nameU, entry);
+                } else if (exnames.contains(name.replaceAll("[Aa]$", ""))) {
+                    mapA.put(nameU, entry);
+                } else if (exnames.contains(name.replaceAll("[Tt]$", ""))) {
+                    mapT.put(nameU, entry);
+                } else if (nameU.endsWith(".OUT")) {
+                    result.put(nameU, entry);
+                } else if (nameU.endsWith(".CUL")) {
+                    mapC.put(nameU, entry);
+                } else if (nameU.endsWith(".JSON")) {
+                    result.put(nameU, entry);
                 }
             }
         } // If input File is not ZIP file
         else {
+            // Check if the file is readable, the file will be opened when reader asks for it
             in = new FileInputStream(filePath);
+            in.close();
             File f = new File(filePath);
             if (filePath.matches(".+\\.\\w{2}[Xx]")) {
-                mapX.put(f.getName().toUpperCase(), new BufferedReader(new InputStreamReader(in)));
+                mapX.put(f.getName().toUpperCase(), f);
 //                result.put("X", new BufferedReader(new InputStreamReader(in)));
             } else if (filePath.toUpperCase().endsWith(".WTH")) {
-                mapW.put(f.getName().toUpperCase(), new BufferedReader(new InputStreamReader(in)));
+                mapW.put(f.getName().toUpperCase(), f);
             } else if (filePath.toUpperCase().endsWith(".SOL")) {
-                mapS.put(f.getName().toUpperCase(), new BufferedReader(new InputStreamReader(in)));
+                mapS.put(f.getName().toUpperCase(), f);
             } else if (filePath.matches(".+\\.\\w{2}[Aa]")) {
-                mapA.put(f.getName().toUpperCase(), new BufferedReader(new InputStreamReader(in)));
+                mapA.put(f.getName().toUpperCase(), f);
 //                result.put("A", new BufferedReader(new InputStreamReader(in)));
             } else if (filePath.matches(".+\\.\\w{2}[Tt]")) {
-                mapT.put(f.getName().toUpperCase(), new BufferedReader(new InputStreamReader(in)));
+                mapT.put(f.getName().toUpperCase(), f);
 //                result.put("T", new BufferedReader(new InputStreamReader(in)));
             } else if (f.getName().toUpperCase().endsWith(".OUT")) {
-                result.put(f.getName().toUpperCase(), new BufferedReader(new InputStreamReader(in)));
+                result.put(f.getName().toUpperCase(), f);
             } else if (f.getName().toUpperCase().endsWith(".CUL")) {
-                mapC.put(f.getName().toUpperCase(), new BufferedReader(new InputStreamReader(in)));
+                mapC.put(f.getName().toUpperCase(), f);
             } else if (filePath.toUpperCase().endsWith(".JSON")) {
-                result.put(f.getName().toUpperCase(), new BufferedReader(new InputStreamReader(in)));
+                result.put(f.getName().toUpperCase(), f);
             }
         }
 
@@ -441,18 +539,215 @@ public abstract class DssatCommonInput implements TranslatorInput {
     }
 
     /**
-     * Get BufferReader object from Zip entry
+     * Close the input zip package shared by the files in the holder, it should
+     * be called after the last file is read
+     *
+     * @param brMap The holder for BufferReader objects for all files
+     */
+    protected static void closeBufferReader(HashMap brMap) {
+        if (brMap != null && brMap.get("ZIP") instanceof DssatZipCatalog) {
+            try {
+                ((DssatZipCatalog) brMap.get("ZIP")).close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Get BufferReader object from the holder of input file
+     *
+     * @param buf The holder of input file (zip entry, file, char array or
+     * BufferedReader)
+     * @return result The BufferedReader for current file
+     * @throws IOException
+     */
+    protected static BufferedReader getBufferedReader(Object buf) throws IOException {
+        if (buf instanceof DssatZipEntryHelper) {
+            return ((DssatZipEntryHelper) buf).getReader();
+        } else if (buf instanceof File) {
+            return new BufferedReader(new InputStreamReader(new FileInputStream((File) buf)));
+        } else if (buf instanceof char[]) {
+            return new BufferedReader(new CharArrayReader((char[]) buf));
+        } else {
+            return (BufferedReader) buf;
+        }
+    }
+
+    /**
+     * Get BufferReader object from the holder of input file, the plain file
+     * could be read from memory mapped region
+     *
+     * @param buf The holder of input file (zip entry, file, char array or
+     * BufferedReader)
+     * @param mapped true for mapping the plain file into memory
+     * @return result The BufferedReader for current file
+     * @throws IOException
+     */
+    protected static BufferedReader getBufferedReader(Object buf, boolean mapped) throws IOException {
+        if (mapped && buf instanceof File) {
+            ByteBuffer content = DssatMappedFile.map((File) buf);
+            if (content != null) {
+                return DssatMappedFile.getReader(content);
+            }
+        }
+        return getBufferedReader(buf);
+    }
+
+    /**
+     * Get byte scanner from the holder of input file, only the zip entry and
+     * file with ASCII content could be scanned
+     *
+     * @param buf The holder of input file
+     * @return result The scanner for current file, null if the file need to
+     * be read by BufferedReader
+     * @throws IOException
+     */
+    protected static DssatLineScanner getLineScanner(Object buf) throws IOException {
+        return getLineScanner(buf, false);
+    }
+
+    /**
+     * Get byte scanner from the holder of input file, only the zip entry and
+     * file with ASCII content could be scanned, the plain file could be
+     * scanned in memory mapped region
+     *
+     * @param buf The holder of input file
+     * @param mapped true for mapping the plain file into memory
+     * @return result The scanner for current file, null if the file need to
+     * be read by BufferedReader
+     * @throws IOException
+     */
+    protected static DssatLineScanner getLineScanner(Object buf, boolean mapped) throws IOException {
+        DssatLineScanner scanner;
+        ByteBuffer content;
+        byte[] bytes;
+        if (!DssatLineScanner.ASCII_COMPATIBLE) {
+            return null;
+        } else if (buf instanceof DssatZipEntryHelper) {
+            bytes = ((DssatZipEntryHelper) buf).getBytes();
+            scanner = new DssatLineScanner(bytes, 0, bytes.length);
+        } else if (buf instanceof File) {
+            if (mapped && (content = DssatMappedFile.map((File) buf)) != null) {
+                scanner = new DssatLineScanner(content);
+            } else {
+                bytes = readBytes(new FileInputStream((File) buf), ((File) buf).length());
+                scanner = new DssatLineScanner(bytes, 0, bytes.length);
+            }
+        } else {
+            return null;
+        }
+        if (scanner.isAscii()) {
+            return scanner;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Read all the bytes from the stream, the stream will be closed
+     *
+     * @param in the input stream
+     * @param size the expected size, -1 for unknown
+     * @return the content bytes
+     * @throws IOException
+     */
+    protected static byte[] readBytes(InputStream in, long size) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(size > 0 && size < Integer.MAX_VALUE ? (int) size + 1 : 8192);
+            byte[] buf = new byte[8192];
+            int len;
+            while ((len = in.read(buf)) >= 0) {
+                out.write(buf, 0, len);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Check if all the input files in the holder could be opened more than
+     * once (zip entry, file or char array)
      *
-     * @param in The input stream of zip file
-     * @param size The entry size
-     * @return result The char array for current entry
+     * @param files The holder of input files for one type
+     * @return true if the files could be read again
+     */
+    protected static boolean isReopenable(HashMap files) {
+        for (Object buf : files.values()) {
+            if (!(buf instanceof DssatZipEntryHelper) && !(buf instanceof File) && !(buf instanceof char[])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the first line of input file which is not blank or comment line,
+     * the reading of file does not depend on the flgs left by previous file
+     * if it is a title line (marked with *)
+     *
+     * @param buf The holder of input file
+     * @return the first line, null if there is no such line
      * @throws IOException
      */
-    private static char[] getBuf(InputStream in, int size) throws IOException {
-        BufferedReader br = new BufferedReader(new InputStreamReader(in));
-        char[] buf = new char[size];
-        br.read(buf);
-        return buf;
+    protected static String readFirstLine(Object buf) throws IOException {
+        BufferedReader br = getBufferedReader(buf);
+        try {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (!line.trim().equals("") && !line.startsWith("!")) {
+                    return line;
+                }
+            }
+            return null;
+        } finally {
+            br.close();
+        }
+    }
+
+    /**
+     * Get the holder which only contains one input file
+     *
+     * @param type the type of file ("W", "S", etc.)
+     * @param key the file name
+     * @param buf The holder of input file
+     * @return the holder of BufferReader objects for the file
+     */
+    protected static HashMap getEntryMap(String type, Object key, Object buf) {
+        HashMap ret = new HashMap();
+        HashMap files = new HashMap();
+        files.put(key, buf);
+        ret.put(type, files);
+        return ret;
+    }
+
+    /**
+     * Wait for the reading task and get its result, the exception thrown by
+     * the task is thrown again
+     *
+     * @param task the reading task
+     * @return the result of task
+     * @throws IOException
+     */
+    protected static <T> T getResult(Future<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading input files");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IOException("Failed to read input files", cause);
+            }
+        }
     }
 
     /**
@@ -559,6 +854,8 @@ public abstract class DssatCommonInput implements TranslatorInput {
                 ret.put(key, CopyList((HashMap) m.get(key)));
             } else if (m.get(key) instanceof ArrayList) {
                 ret.put(key, CopyList((ArrayList) m.get(key)));
+            } else if (m.get(key) instanceof DssatDailyWeather) {
+                ret.put(key, new DssatDailyWeather((DssatDailyWeather) m.get(key)));
             }
         }
 
@@ -594,140 +891,144 @@ public abstract class DssatCommonInput implements TranslatorInput {
      * @param key the primary key item's name
      */
     protected void addToArray(ArrayList arr, HashMap item, Object key) {
-        HashMap elem;
-        boolean unmatchFlg = true;
-
-        // Added logging (cv)
-        log.debug("Array: {}", arr.toString());
-        log.debug("Item: {}", item.toString());
-        log.debug("Key: {}", key);
-        
-        
-        for (int i = 0; i < arr.size(); i++) {
-            elem = (HashMap) arr.get(i);
-            if (!key.getClass().isArray()) {
-                if (elem.get(key).equals(item.get(key))) {
-                    elem.putAll(item);
-                    unmatchFlg = false;
-                    break;
-                }
-            } else {
-                Object[] keys = (Object[]) key;
-                boolean equalFlg = true;
-                for (int j = 0; j < keys.length; j++) {
-                    if (!elem.get(keys[j]).equals(item.get(keys[j]))) {
-                        equalFlg = false;
-                        break;
-                    }
-                }
-                if (equalFlg) {
-                    elem.putAll(item);
-                    unmatchFlg = false;
-                    break;
-                }
+        // P.S. for adding a series of items into same array, use DssatRecordMerger directly to reuse the index
+        new DssatRecordMerger(arr, key).add(item);
+    }
+
+    /**
+     * Get planting date value from XFile with related treatment number
+     *
+     * @param m the files content holder
+     * @param trno the treatment number
+     * @param fileName the XFile name
+     * @return the planting date, blank string if not found
+     */
+    protected String getPdate(HashMap m, String trno, String fileName) {
+
+        HashMap<String, String> pdates = getPdateIndex(m, fileName);
+        if (pdates.containsKey(trno)) {
+            return pdates.get(trno);
+        } else {
+            return "";
+        }
+    }
+
+    /**
+     * Get the index of planting date by treatment number for the XFile, the
+     * XFile will only be read once and the index will be saved in the files
+     * content holder for reusing by A and T file readers
+     *
+     * P.S. when the A and T file readers run at the same time,
+     * preparePdateIndex() should be called before, so the readers do not
+     * change the files content holder
+     *
+     * @param m the files content holder
+     * @param fileName the XFile name
+     * @return the map of treatment number to planting date
+     */
+    protected static HashMap<String, String> getPdateIndex(HashMap m, String fileName) {
+
+        ConcurrentHashMap<String, HashMap<String, String>> indexes = preparePdateIndex(m);
+        HashMap<String, String> pdates = indexes.get(fileName);
+        if (pdates == null) {
+            pdates = readPdateIndex(m, fileName);
+            HashMap<String, String> prev = indexes.putIfAbsent(fileName, pdates);
+            if (prev != null) {
+                pdates = prev;
             }
         }
-        if (unmatchFlg) {
-            arr.add(item);
+
+        return pdates;
+    }
+
+    /**
+     * Put the holder of planting date indexes into the files content holder
+     * if it is not there yet, the holder could be used by several threads
+     *
+     * @param m the files content holder
+     * @return the holder of planting date indexes by XFile name
+     */
+    protected static ConcurrentHashMap<String, HashMap<String, String>> preparePdateIndex(HashMap m) {
+
+        ConcurrentHashMap<String, HashMap<String, String>> indexes = (ConcurrentHashMap) m.get(pdateIdxKey);
+        if (indexes == null) {
+            indexes = new ConcurrentHashMap<String, HashMap<String, String>>();
+            m.put(pdateIdxKey, indexes);
         }
+
+        return indexes;
     }
 
     /**
-     * Get planting date value from XFile with related treatment number
+     * Read the planting date for each treatment from XFile
      *
      * @param m the files content holder
+     * @param fileName the XFile name
+     * @return the map of treatment number to planting date
      */
-    protected String getPdate(HashMap m, String trno, String fileName) {
+    private static HashMap<String, String> readPdateIndex(HashMap m, String fileName) {
 
-        BufferedReader br;
-        Object buf = null;
+        HashMap<String, String> pdates = new HashMap<String, String>();
+        HashMap<String, String> pls = new HashMap<String, String>();
+        HashMap<String, String> plDates = new HashMap<String, String>();
+        BufferedReader br = null;
+        Object buf;
         String line;
-        LinkedHashMap formats = new LinkedHashMap();
-        String pl = null;
-        String[] flgP = new String[3];
+        String[] flgP;
         DssatXFileInput xfile = new DssatXFileInput();
+        DssatParseContext ctx = new DssatParseContext();
 
-//        buf = (char[]) m.get("X");
         HashMap mapX = (HashMap) m.get("X");
-
         buf = mapX.get(fileName);
         if (buf == null) {
-            return "";
-        } else if (buf instanceof char[]) {
-            br = new BufferedReader(new CharArrayReader((char[]) buf));
-        } else {
-            br = (BufferedReader) buf;
+            return pdates;
         }
 
-//        if (buf == null) {
-//            return "";
-//        } else {
-//            br = new BufferedReader(new CharArrayReader(buf));
-//        }
-
         try {
+            br = getBufferedReader(buf);
             while ((line = br.readLine()) != null) {
 
                 // Get content type of line
-                xfile.judgeContentType(line);
-                flgP = xfile.flg;
-
-                // Read TREATMENTS Section
-                if (flgP[0].startsWith("treatments")) {
-
-                    if (pl != null) {
-                        continue;
-                    }
-
-                    // Read TREATMENTS data
-                    if (flgP[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("trno", 2);
-                        formats.put("", 44);
-                        formats.put("pl", 3);
-                        // Read line and get related planting info number
-                        HashMap tmp = readLine(line, formats);
-                        if (tmp.get("trno").equals(trno)) {
-                            pl = (String) tmp.get("pl");
-                        }
-                    } else {
-                    }
-
-
-                } // Read CULTIVARS Section
-                else if (flgP[0].startsWith("planting")) {
-
-                    if (pl == null) {
-                        return "";
+                xfile.judgeContentType(ctx, line);
+                flgP = ctx.flg;
+
+                // Read TREATMENTS data, get related planting info number
+                if (flgP[0].startsWith("treatments") && flgP[2].equals("data")) {
+                    HashMap tmp = xfile.readLine(line, pdateTrFormats);
+                    String trno = (String) tmp.get("trno");
+                    // P.S. only the first record of the treatment is used
+                    if (trno != null && !pls.containsKey(trno)) {
+                        pls.put(trno, (String) tmp.get("pl"));
                     }
-
-                    // Read PLANTING data
-                    if (flgP[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("pl", 2);
-                        formats.put("pdate", 6);
-                        // Read line and save into defValD
-                        HashMap tmp = readLine(line, formats);
-                        if (tmp.get("pl").equals(pl)) {
-                            return (String) tmp.get("pdate");
-                        }
-
-                    } else {
+                } // Read PLANTING data
+                else if (flgP[0].startsWith("planting") && flgP[2].equals("data")) {
+                    HashMap tmp = xfile.readLine(line, pdatePlFormats);
+                    String pl = (String) tmp.get("pl");
+                    if (pl != null && !plDates.containsKey(pl)) {
+                        plDates.put(pl, (String) tmp.get("pdate"));
                     }
-
-                } else {
                 }
             }
-
-            br.close();
         } catch (IOException ex) {
-            //            Logger.getLogger(DssatCommonInput.class.getName()).log(Level.SEVERE, null, ex);
             ex.printStackTrace();
+        } finally {
+            if (br != null) {
+                try {
+                    br.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+
+        for (String trno : pls.keySet()) {
+            String pl = pls.get(trno);
+            if (pl != null && plDates.containsKey(pl)) {
+                pdates.put(trno, plDates.get(pl));
+            }
         }
 
-        return "";
+        return pdates;
     }
 
     public static void setDataVersionInfo(HashMap m) {
@@ -1,8 +1,11 @@
 package org.agmip.translators.dssat;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.HashMap;
 import java.util.Map;
 import org.agmip.core.types.TranslatorOutput;
@@ -24,7 +27,25 @@ public abstract class DssatCommonOutput implements TranslatorOutput {
     protected String defValBlank = "";
     // construct the error message in the output
     protected StringBuilder sbError;
+    // The exact powers of ten used for rounding decimal part (same as Math.pow(10, n))
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
     protected File outputFile;
+    // the destination of output files, default is file system
+    protected DssatOutputSink sink = fileSink;
+    // the registry of weather file names, null for naming the weather file by its own
+    protected DssatWthFileHelper wthHelper;
+    private static final DssatOutputSink fileSink = new DssatOutputSink() {
+        @Override
+        public boolean exists(File file) {
+            return file.exists();
+        }
+
+        @Override
+        public Writer getWriter(File file, boolean append) throws IOException {
+            return new FileWriter(file, append);
+        }
+    };
 
     /**
      * Translate data str from "yyyymmdd" to "yyddd"
@@ -36,19 +57,13 @@ public abstract class DssatCommonOutput implements TranslatorOutput {
      */
     protected String formatDateStr2(String str) {
 
-        // Initial Calendar object
-        Calendar cal = Calendar.getInstance();
-        str = str.replaceAll("/", "");
-        try {
-            // Set date with input value
-            cal.set(Integer.parseInt(str.substring(0, 4)), Integer.parseInt(str.substring(4, 6)) - 1, Integer.parseInt(str.substring(6)));
-            // translatet to yyddd format
-            return String.format("%1$02d%2$03d", cal.get(Calendar.YEAR) % 100, cal.get(Calendar.DAY_OF_YEAR));
-        } catch (Exception e) {
+        String ret = DssatDateHelper.toYyddd(str, "0");
+        if (ret == null) {
             // if tranlate failed, then use default value for date
             //sbError.append("! Waring: There is a invalid date [").append(str).append("]\r\n");
             return formatDateStr2(defValD);
         }
+        return ret;
     }
 
     /**
@@ -60,43 +75,125 @@ public abstract class DssatCommonOutput implements TranslatorOutput {
      */
     protected String formatNumStr(int bits, HashMap m, Object key, String defVal) {
 
-        String ret = "";
-        String str = getObjectOr(m, key, defVal);
-        double decimalPower;
-        long decimalPart;
-        double input;
-        String[] inputStr = str.split("\\.");
-        if (str.trim().equals("")) {
-            return String.format("%" + bits + "s", defVal);
-        } else if (inputStr[0].length() > bits) {
-            //throw new Exception();
-            sbError.append("! Waring: There is a variable [").append(key).append("] with oversized number [").append(str).append("] (Limitation is ").append(bits).append("bits)\r\n");
-            return String.format("%" + bits + "s", defVal);
-        } else {
-            ret = inputStr[0];
+        return formatNumStr(bits, (String) getObjectOr(m, key, defVal), key, defVal);
+    }
 
-            if (inputStr.length > 1 && inputStr[0].length() < bits) {
+    /**
+     * Format the number with maximum length and type
+     *
+     * @param bits Maximum length of the output string
+     * @param str the value text
+     * @param key the key of field in the map, used for warning message
+     * @param defVal the default return value when error happens
+     * @return formated string of number
+     */
+    protected String formatNumStr(int bits, String str, Object key, String defVal) {
 
-                if (inputStr[1].length() <= bits - inputStr[0].length() - 1) {
-                    ret = ret + "." + inputStr[1];
-                } else {
-                    try {
-                        input = Math.abs(Double.valueOf(str));
-                    } catch (Exception e) {
-                        // TODO throw exception
-                        return str;
+        StringBuilder sb = new StringBuilder(bits);
+        appendNumStr(sb, bits, str, key, defVal);
+        return sb.toString();
+    }
+
+    /**
+     * Format the number with maximum length and type, and append it into the
+     * buffer. The text is right-aligned to the length, the decimal part is
+     * kept if it fits, otherwise it is rounded to the rest length (the
+     * leading zeros of rounded decimal part are dropped). If the integer part
+     * is oversized, the default value is used and the warning is added.
+     *
+     * @param sb the output buffer
+     * @param bits Maximum length of the output string
+     * @param str the value text
+     * @param key the key of field in the map, used for warning message
+     * @param defVal the default return value when error happens
+     */
+    protected void appendNumStr(StringBuilder sb, int bits, String str, Object key, String defVal) {
+
+        int length = str.length();
+        if (isBlank(str)) {
+            DssatLineTemplate.appendPadded(sb, defVal, bits, false);
+            return;
+        }
+
+        // Locate the integer part and the first decimal part (the text between the first and the second dot)
+        int intLen = str.indexOf('.');
+        int decStart = -1;
+        int decEnd = -1;
+        if (intLen < 0) {
+            intLen = length;
+        } else {
+            for (int i = intLen + 1; i < length; i++) {
+                // P.S. the dots at the end do not start a decimal part
+                if (str.charAt(i) != '.') {
+                    decStart = intLen + 1;
+                    decEnd = str.indexOf('.', decStart);
+                    if (decEnd < 0) {
+                        decEnd = length;
                     }
-                    //decimalPower = Math.pow(10, Math.min(bits - inputStr[0].length(), inputStr[1].length()) - 1);
-                    decimalPower = Math.pow(10, bits - inputStr[0].length() - 1);
-                    decimalPart = Double.valueOf(Math.round(input * decimalPower) % decimalPower).longValue();
-                    ret = ret + "." + (decimalPart == 0 && (bits - inputStr[0].length() < 2) ? "" : decimalPart);
+                    break;
                 }
             }
-            if (ret.length() < bits) {
-                ret = String.format("%1$" + bits + "s", ret);
+        }
+
+        if (intLen > bits) {
+            //throw new Exception();
+            sbError.append("! Waring: There is a variable [").append(key).append("] with oversized number [").append(str).append("] (Limitation is ").append(bits).append("bits)\r\n");
+            DssatLineTemplate.appendPadded(sb, defVal, bits, false);
+        } else if (decStart < 0 || intLen == bits) {
+            DssatLineTemplate.appendBlanks(sb, bits - intLen);
+            sb.append(str, 0, intLen);
+        } else if (decEnd - decStart <= bits - intLen - 1) {
+            DssatLineTemplate.appendBlanks(sb, bits - intLen - 1 - (decEnd - decStart));
+            sb.append(str, 0, intLen).append('.').append(str, decStart, decEnd);
+        } else {
+            double input;
+            try {
+                input = Math.abs(Double.parseDouble(str));
+            } catch (NumberFormatException e) {
+                // TODO throw exception
+                sb.append(str);
+                return;
+            }
+            int decLen = bits - intLen - 1;
+            double decimalPower = decLen < POWERS_OF_TEN.length ? POWERS_OF_TEN[decLen] : Math.pow(10, decLen);
+            long decimalPart = (long) (Math.round(input * decimalPower) % decimalPower);
+            if (decimalPart == 0 && decLen == 0) {
+                DssatLineTemplate.appendBlanks(sb, bits - intLen - 1);
+                sb.append(str, 0, intLen).append('.');
+            } else {
+                DssatLineTemplate.appendBlanks(sb, bits - intLen - 1 - countDigits(decimalPart));
+                sb.append(str, 0, intLen).append('.').append(decimalPart);
             }
         }
+    }
 
+    /**
+     * Check if the text only contains blank (same as trim() is empty)
+     *
+     * @param str the text
+     * @return true for blank text
+     */
+    private static boolean isBlank(String str) {
+        for (int i = 0; i < str.length(); i++) {
+            if (str.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Count the digits of the non-negative number
+     *
+     * @param num the number
+     * @return the number of digits
+     */
+    private static int countDigits(long num) {
+        int ret = 1;
+        while (num >= 10) {
+            num /= 10;
+            ret++;
+        }
         return ret;
     }
 
@@ -122,23 +219,13 @@ public abstract class DssatCommonOutput implements TranslatorOutput {
      */
     protected String formatDateStr(String startDate, String strDays) {
 
-        // Initial Calendar object
-        Calendar cal = Calendar.getInstance();
-        int days;
-        startDate = startDate.replaceAll("/", "");
-        try {
-            days = Double.valueOf(strDays).intValue();
-            // Set date with input value
-            cal.set(Integer.parseInt(startDate.substring(0, 4)), Integer.parseInt(startDate.substring(4, 6)) - 1, Integer.parseInt(startDate.substring(6)));
-            cal.add(Calendar.DATE, days);
-            // translatet to yyddd format
-            return String.format("%1$02d%2$03d", cal.get(Calendar.YEAR) % 100, cal.get(Calendar.DAY_OF_YEAR));
-        } catch (Exception e) {
+        String ret = DssatDateHelper.toYyddd(startDate, strDays);
+        if (ret == null) {
             // if tranlate failed, then use default value for date
             // sbError.append("! Waring: There is a invalid date [").append(startDate).append("]\r\n");
             return "-99"; //formatDateStr(defValD);
         }
-
+        return ret;
     }
 
     /**
@@ -240,6 +327,63 @@ public abstract class DssatCommonOutput implements TranslatorOutput {
         return path;
     }
 
+    /**
+     * Set the destination of output files
+     *
+     * @param sink the output sink, null for using file system
+     */
+    public void setSink(DssatOutputSink sink) {
+        if (sink == null) {
+            this.sink = fileSink;
+        } else {
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * Set the registry of weather file names, the writers which share the
+     * registry give the same name to the same weather station
+     *
+     * @param wthHelper the registry, null for using a new registry for each
+     * weather file
+     */
+    public void setWthFileHelper(DssatWthFileHelper wthHelper) {
+        this.wthHelper = wthHelper;
+    }
+
+    /**
+     * Get the BufferedWriter for output file from the output sink
+     *
+     * @param file the output file
+     * @return the BufferedWriter for output file
+     * @throws IOException
+     */
+    protected BufferedWriter openWriter(File file) throws IOException {
+        return openWriter(file, false);
+    }
+
+    /**
+     * Get the BufferedWriter for output file from the output sink
+     *
+     * @param file the output file
+     * @param append true for writing after the existing content
+     * @return the BufferedWriter for output file
+     * @throws IOException
+     */
+    protected BufferedWriter openWriter(File file, boolean append) throws IOException {
+        return new BufferedWriter(sink.getWriter(file, append));
+    }
+
+    /**
+     * Check if the output file has already been created in the output sink
+     *
+     * @param file the output file
+     * @return true if the file exists
+     */
+    protected boolean isOutputExist(File file) {
+        return sink.exists(file);
+    }
+
     /**
      * Get output file object
      */
@@ -339,8 +483,8 @@ public abstract class DssatCommonOutput implements TranslatorOutput {
 //        }
         String ret = getObjectOr(data, "wst_id", "").toString();
         if (ret.equals("") || ret.length() > 8) {
-            DssatWthFileHelper wthHelper = new DssatWthFileHelper();
-            ret = wthHelper.createWthFileName(getObjectOr(data, "weather", data));
+            DssatWthFileHelper helper = wthHelper == null ? new DssatWthFileHelper() : wthHelper;
+            ret = helper.createWthFileName(getObjectOr(data, "weather", data));
             if (ret.equals("")) {
                 ret = "AGMP";
             }
@@ -0,0 +1,188 @@
+package org.agmip.translators.dssat;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+
+/**
+ * DSSAT shared content registry Class, record the soil/weather content which
+ * has been written for one output run, keyed by both its id and the content
+ * hash (SHA-1) of the rendered text, so the same content is only written
+ * once even if it is carried by different ids.
+ *
+ * The hash does not include the blank lines, the comment lines and the file
+ * title lines (which are decided by the position in the file, not by the
+ * data), and the id itself is masked in the text, so the content of two ids
+ * could be compared.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+class DssatContentRegistry {
+
+    private String[] skipPrefixes;
+    private HashMap<String, String> sharedIds = new HashMap<String, String>();
+    private HashMap<String, String> digestIds = new HashMap<String, String>();
+    private HashMap<String, File> files = new HashMap<String, File>();
+    private HashMap<String, Integer> sizes = new HashMap<String, Integer>();
+
+    /**
+     * Constructor
+     *
+     * @param skipPrefixes the prefixes of the lines which are not counted in
+     * the content hash
+     */
+    public DssatContentRegistry(String... skipPrefixes) {
+        this.skipPrefixes = skipPrefixes;
+    }
+
+    /**
+     * Get the id whose content has been written for the id
+     *
+     * @param id the soil/weather id
+     * @return the id of written content, null if the id is not registered
+     */
+    public String getSharedId(String id) {
+        return sharedIds.get(id);
+    }
+
+    /**
+     * Get the id whose written content has the same hash
+     *
+     * @param digest the content hash from digest()
+     * @return the id of written content, null if the content is new
+     */
+    public String findByDigest(String digest) {
+        return digestIds.get(digest);
+    }
+
+    /**
+     * Get the output file which holds the written content of the id
+     *
+     * @param sharedId the id of written content
+     * @return the output file
+     */
+    public File getFile(String sharedId) {
+        return files.get(sharedId);
+    }
+
+    /**
+     * Get the length of the written content of the id
+     *
+     * @param sharedId the id of written content
+     * @return the length of content, 0 if not registered
+     */
+    public int getSize(String sharedId) {
+        Integer size = sizes.get(sharedId);
+        return size == null ? 0 : size;
+    }
+
+    /**
+     * Record the content which is written
+     *
+     * @param id the soil/weather id
+     * @param digest the content hash from digest()
+     * @param file the output file which holds the content
+     * @param size the length of content
+     */
+    public void register(String id, String digest, File file, int size) {
+        sharedIds.put(id, id);
+        digestIds.put(digest, id);
+        files.put(id, file);
+        sizes.put(id, size);
+    }
+
+    /**
+     * Record the id which uses the content written for another id
+     *
+     * @param id the soil/weather id
+     * @param sharedId the id of written content
+     */
+    public void addAlias(String id, String sharedId) {
+        sharedIds.put(id, sharedId);
+    }
+
+    /**
+     * Remove all the records
+     */
+    public void clear() {
+        sharedIds.clear();
+        digestIds.clear();
+        files.clear();
+        sizes.clear();
+    }
+
+    /**
+     * Get the content hash of the rendered text
+     *
+     * @param content the rendered soil/weather text
+     * @param id the soil/weather id which is masked in the text
+     * @return the hex string of hash
+     */
+    public String digest(String content, String id) {
+        MessageDigest md = newDigest();
+        int start = 0;
+        int len = content.length();
+        try {
+            while (start < len) {
+                int end = content.indexOf('\n', start);
+                if (end < 0) {
+                    end = len;
+                }
+                String line = content.substring(start, end);
+                start = end + 1;
+                if (line.trim().equals("") || isSkipped(line)) {
+                    continue;
+                }
+                if (!id.equals("")) {
+                    line = line.replace(id, "");
+                }
+                md.update(line.getBytes("UTF-8"));
+                md.update((byte) '\n');
+            }
+        } catch (UnsupportedEncodingException e) {
+            // P.S. UTF-8 is required for every Java platform
+            throw new IllegalStateException(e);
+        }
+        return toHex(md.digest());
+    }
+
+    /**
+     * Check if the line is not counted in the content hash
+     */
+    private boolean isSkipped(String line) {
+        for (int i = 0; i < skipPrefixes.length; i++) {
+            if (line.startsWith(skipPrefixes[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Create the digest for content hash
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // P.S. SHA-1 is required for every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get the hex string of the bytes
+     */
+    private static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] buf = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            buf[i * 2] = digits[(bytes[i] >> 4) & 0xF];
+            buf[i * 2 + 1] = digits[bytes[i] & 0xF];
+        }
+        return new String(buf);
+    }
+}
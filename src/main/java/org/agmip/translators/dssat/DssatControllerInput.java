@@ -5,6 +5,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.agmip.core.types.TranslatorInput;
 import static org.agmip.translators.dssat.DssatCommonInput.*;
 import static org.agmip.util.MapUtil.*;
@@ -21,6 +27,109 @@ public class DssatControllerInput implements TranslatorInput {
     private DssatAFileInput obvAReader = new DssatAFileInput();
     private DssatTFileInput obvTReader = new DssatTFileInput();
     private DssatCulFileInput culReader = new DssatCulFileInput();
+    private boolean fullWeatherHistory = true;
+    private int weatherMargin = 0;
+    private DssatParseCache parseCache = null;
+    private ExecutorService executor = null;
+
+    /**
+     * Set if the daily weather data will be held in primitive columns
+     * (DssatDailyWeather) instead of one map per day
+     *
+     * @param columnarDaily true for using column holder
+     */
+    public void setColumnarDaily(boolean columnarDaily) {
+        wthReader.columnarDaily = columnarDaily;
+    }
+
+    /**
+     * Set if the ASCII weather files will be scanned by bytes instead of being
+     * decoded by Reader, the non-ASCII weather files and the other input files
+     * are still read by Reader
+     *
+     * @param asciiFastPath true for scanning ASCII weather files by bytes
+     */
+    public void setAsciiFastPath(boolean asciiFastPath) {
+        wthReader.asciiFastPath = asciiFastPath;
+    }
+
+    /**
+     * Set if the plain soil and weather files (not in ZIP package) will be
+     * read through memory mapped region instead of being copied into heap
+     *
+     * @param memoryMapped true for mapping the files into memory
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        soilReader.memoryMapped = memoryMapped;
+        wthReader.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * Set if only the soil profiles referred by the treatments will be
+     * parsed, by using the soil index which maps soil_id to the location of
+     * profile (the index of plain soil file is saved next to it)
+     *
+     * @param indexedSoil true for using soil index
+     */
+    public void setIndexedSoil(boolean indexedSoil) {
+        soilReader.indexedSoil = indexedSoil;
+    }
+
+    /**
+     * Set if the full history of weather data will be read, otherwise only
+     * the days in the simulation window of the treatments (from the earliest
+     * start/initial/event date to the latest event date or the end of
+     * simulation years) will be read for each weather station
+     *
+     * @param fullWeatherHistory true for reading all the days (default)
+     */
+    public void setFullWeatherHistory(boolean fullWeatherHistory) {
+        this.fullWeatherHistory = fullWeatherHistory;
+    }
+
+    /**
+     * Set the number of days which will be added on both sides of the
+     * simulation window when the full history of weather data is not read
+     * (e.g. for spin-up)
+     *
+     * @param weatherMargin the number of days
+     */
+    public void setWeatherMargin(int weatherMargin) {
+        this.weatherMargin = weatherMargin;
+    }
+
+    /**
+     * Set the parse cache, the parsed result of soil, weather, treatment and
+     * observed files will be saved into it, and the unchanged files (by
+     * content hash) will not be parsed again
+     *
+     * @param parseCache the parse cache, null for not using cache (default)
+     */
+    public void setParseCache(DssatParseCache parseCache) {
+        this.parseCache = parseCache;
+    }
+
+    /**
+     * Get the parse cache, which holds the hit and miss counters
+     *
+     * @return the parse cache, null if it is not used
+     */
+    public DssatParseCache getParseCache() {
+        return parseCache;
+    }
+
+    /**
+     * Set the executor for reading input files concurrently, the readers which
+     * do not depend on each other are run at the same time, and the soil and
+     * weather files are also read file by file at the same time. The result
+     * is same as reading them one after another
+     *
+     * @param executor the executor, null for reading one after another
+     * (default)
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
 
     /**
      * All DSSAT Data input method
@@ -30,28 +139,19 @@ public class DssatControllerInput implements TranslatorInput {
      */
     public HashMap readFile(String arg0) {
 
-        HashMap brMap;
+        HashMap brMap = null;
         HashMap ret = new HashMap();
         HashMap metaData = new HashMap();
         ArrayList<HashMap> expArr = new ArrayList<HashMap>();
         HashMap expData;
         ArrayList<HashMap> mgnArr;
         ArrayList<HashMap> soilArr;
-        HashMap soilData;
         HashMap soilTmpMap = new HashMap();
-        String soilId;
         ArrayList<HashMap> wthArr;
-        HashMap wthData;
         HashMap wthTmpMap = new HashMap();
-        String wthId;
         HashMap obvAFiles;
-        HashMap obvAFile;
-        ArrayList<HashMap> obvAArr;
         HashMap obvTFiles;
-        HashMap obvTFile;
-        ArrayList<HashMap> obvTArr;
-        ArrayList<HashMap> culArr;
-        HashMap culData;
+        DssatCultivarCatalog culCatalog;
 
         try {
             // Get buffered input file holder
@@ -60,23 +160,72 @@ public class DssatControllerInput implements TranslatorInput {
             // Set Data source and version info
             setDataVersionInfo(metaData);
 
-            // Try to read XFile (treatment; management)
-            mgnArr = mgnReader.readTreatments(brMap, metaData);
+            // Get the content hash of input files for parse cache
+            final HashMap<String, String> digests = parseCache == null ? null : parseCache.digestEntries(brMap);
 
-            // Try to read soil File
-            soilArr = soilReader.readSoilSites(brMap, metaData);
+            if (executor == null) {
+                // Try to read XFile (treatment; management)
+                mgnArr = readTreatments(brMap, metaData, digests);
 
-            // Try to read weather File
-            wthArr = wthReader.readDailyData(brMap, metaData);
+                // Try to read soil File
+                soilArr = readSoilSites(brMap, metaData, digests, getSoilIds(mgnArr, metaData));
 
-            // Try to read Observed AFile (summary data)
-            obvAFiles = obvAReader.readObvData(brMap);
+                // Try to read weather File
+                wthArr = readDailyData(brMap, metaData, digests, getWeatherWindows(mgnArr, metaData));
 
-            // Try to read Observed AFile (time-series data)
-            obvTFiles = obvTReader.readObvData(brMap);
+                // Try to read Observed AFile (summary data)
+                obvAFiles = readSummaryData(brMap, digests);
 
-            // Try to read cultivar File
-            culArr = culReader.readCultivarData(brMap, metaData);
+                // Try to read Observed AFile (time-series data)
+                obvTFiles = readTimeSeriesData(brMap, digests);
+
+                // Try to read cultivar File
+                culCatalog = culReader.readCultivarCatalog(brMap);
+            } else {
+                // P.S. the readers which do not depend on the treatments are run at the same time, and they only read the files content holder
+                DssatCommonInput.preparePdateIndex(brMap);
+                final HashMap brMapF = brMap;
+                final HashMap metaDataF = metaData;
+                Future<ArrayList<HashMap>> mgnTask = executor.submit(new Callable<ArrayList<HashMap>>() {
+                    @Override
+                    public ArrayList<HashMap> call() throws Exception {
+                        return readTreatments(brMapF, metaDataF, digests);
+                    }
+                });
+                Future<HashMap> obvATask = executor.submit(new Callable<HashMap>() {
+                    @Override
+                    public HashMap call() throws Exception {
+                        return readSummaryData(brMapF, digests);
+                    }
+                });
+                Future<HashMap> obvTTask = executor.submit(new Callable<HashMap>() {
+                    @Override
+                    public HashMap call() throws Exception {
+                        return readTimeSeriesData(brMapF, digests);
+                    }
+                });
+                Future<DssatCultivarCatalog> culTask = executor.submit(new Callable<DssatCultivarCatalog>() {
+                    @Override
+                    public DssatCultivarCatalog call() throws Exception {
+                        return culReader.readCultivarCatalog(brMapF);
+                    }
+                });
+
+                // P.S. soil and weather files are divided into the tasks of each file by current thread
+                soilArr = soilReader.indexedSoil ? null : readSoilSites(brMap, metaData, digests, null);
+                wthArr = !fullWeatherHistory ? null : readDailyData(brMap, metaData, digests, null);
+
+                mgnArr = getResult(mgnTask);
+                if (soilArr == null) {
+                    soilArr = readSoilSites(brMap, metaData, digests, getSoilIds(mgnArr, metaData));
+                }
+                if (wthArr == null) {
+                    wthArr = readDailyData(brMap, metaData, digests, getWeatherWindows(mgnArr, metaData));
+                }
+                obvAFiles = getResult(obvATask);
+                obvTFiles = getResult(obvTTask);
+                culCatalog = getResult(culTask);
+            }
 
         } catch (FileNotFoundException fe) {
             System.out.println("File not found under following path : [" + arg0 + "]!");
@@ -84,6 +233,9 @@ public class DssatControllerInput implements TranslatorInput {
         } catch (IOException e) {
             e.printStackTrace();
             return ret;
+        } finally {
+            // P.S. all the input files have been read at this point
+            closeBufferReader(brMap);
         }
 
         // Combine the each part of data
@@ -92,130 +244,606 @@ public class DssatControllerInput implements TranslatorInput {
             // Set meta data block for this treatment
             expData = mgnReader.setupMetaData(metaData, i);
 
-            // Set soil data for this treatment
-            wthId = getValueOr(expData, "wst_id", "0");
-            if (!wthId.equals("0")) {
-                wthData = getSectionData(wthArr, "wst_id", wthId);
-                if (wthData != null && wthData.size() != 0) {
-//                    expData.put(wthReader.jsonKey, wthData);
-                    wthTmpMap.put(wthId, wthData);
-                }
+            // Add to output array
+            expArr.add(setupExperiment(expData, mgnArr.get(i), i, soilArr, wthArr, obvAFiles, obvTFiles, culCatalog, soilTmpMap, wthTmpMap));
+        }
+
+        if (!expArr.isEmpty()) {
+            ret.put("experiments", expArr);
+        
+            if (!soilTmpMap.isEmpty()) {
+                ret.put("soils", new ArrayList(soilTmpMap.values()));
+            }
+            if (!wthTmpMap.isEmpty()) {
+                ret.put("weathers", new ArrayList(wthTmpMap.values()));
+            }
+        } else {
+            // If only weather data or soil data
+            if (!soilArr.isEmpty()) {
+                ret.put("soils", soilArr);
             }
+            if (!wthArr.isEmpty()) {
+                ret.put("weathers", wthArr);
+            }
+        }
 
-            // Set weather data for this treatment
-            soilId = getValueOr(expData, "soil_id", "0");
-            if (!soilId.equals("0") && !soilTmpMap.containsKey(soilId)) {
-                soilData = getSectionData(soilArr, "soil_id", soilId);
-                // if there is soil analysis data, create new soil block by using soil analysis info
-                if (expData.get("soil_analysis") != null) {
-                    if (soilData == null) {
-                        soilData = new HashMap();
-                    } else {
-                        soilData = CopyList(soilData);
+        return ret;
+    }
+
+    /**
+     * DSSAT Data input method which combines the experiments one by one, the
+     * treatment is not combined until it is asked for by the iterator, and
+     * the section data of XFiles is shared by the treatments, so the memory
+     * is bounded by one treatment plus the section tables (besides the soil,
+     * weather, observed and cultivar data). The treatments are not saved into
+     * parse cache
+     *
+     * @param arg0 file name
+     * @return the iterator of experiments, empty one if the file could not be
+     * read
+     */
+    public DssatExperimentIterator readExperiments(String arg0) {
+
+        HashMap brMap = null;
+        HashMap metaData = new HashMap();
+        DssatExperimentIterator ret;
+
+        try {
+            // Get buffered input file holder
+            brMap = getBufferReader(arg0);
+
+            // Set Data source and version info
+            setDataVersionInfo(metaData);
+
+            // Get the content hash of input files for parse cache
+            HashMap<String, String> digests = parseCache == null ? null : parseCache.digestEntries(brMap);
+
+            // Try to read XFile (section tables only)
+            ret = new DssatExperimentIterator(this, mgnReader, metaData, mgnReader.readTreatmentTables(brMap, metaData));
+
+            // P.S. the treatments are combined and dropped one by one to get the referred soil_ids and weather windows
+            TreeSet<String> soilIds = null;
+            HashMap<String, int[]> windows = null;
+            if (ret.hasNext() && (soilReader.indexedSoil || !fullWeatherHistory)) {
+                HashSet<String> fullIds = new HashSet<String>();
+                if (soilReader.indexedSoil) {
+                    soilIds = new TreeSet<String>();
+                }
+                if (!fullWeatherHistory) {
+                    windows = new HashMap<String, int[]>();
+                }
+                while (ret.readNextTreatment()) {
+                    if (soilIds != null) {
+                        soilIds.add(getValueOr(ret.getTreatmentMeta(), "soil_id", "0"));
+                    }
+                    if (windows != null) {
+                        addWeatherWindow(windows, fullIds, ret.getTreatmentMeta(), ret.getTreatment());
                     }
-                    HashMap saTmp = (HashMap) expData.remove("soil_analysis");
-
-                    // Update soil site data
-                    copyItem(soilData, saTmp, "sadat");
-                    copyItem(soilData, saTmp, "smhb");
-                    copyItem(soilData, saTmp, "smpx");
-                    copyItem(soilData, saTmp, "smke");
-                    soilId += "_" + (i + 1);
-                    soilData.put("soil_id", soilId);
-                    expData.put("soil_id", soilId);
-
-                    // Update soil layer data
-                    ArrayList<HashMap> soilLyrs = getObjectOr(soilData, soilReader.layerKey, new ArrayList());
-                    ArrayList<HashMap> saLyrs = getObjectOr(saTmp, mgnReader.icEventKey, new ArrayList());
-                    String[] copyKeys = {"sllb", "slbdm", "sloc", "slni", "slphw", "slphb", "slpx", "slke", "slsc"};
-                    soilData.put(soilReader.layerKey, combinLayers(soilLyrs, saLyrs, "sllb", "sllb", copyKeys));
                 }
-
-                if (soilData != null && soilData.size() != 0) {
-//                    expData.put(soilReader.jsonKey, soilData);
-                    soilTmpMap.put(soilId, soilData);
+                if (windows != null) {
+                    addWeatherMargin(windows);
                 }
+                ret.rewind();
             }
 
-            // Get exname
-            String exname = (String) expData.remove("exname_o");
-            if (exname == null) {
-                exname = "";
-            }
-            // observed data (summary)
-            obvAFile = getObjectOr(obvAFiles, exname, new HashMap());
-            obvAArr = getObjectOr(obvAFile, obvAReader.obvDataKey, new ArrayList<HashMap>());
-            HashMap obv = new HashMap();
-            expData.put(obvAReader.jsonKey, obv);
-            if (!getValueOr(expData, "trno", "0").equals("0")) {
-                HashMap tmp = getSectionData(obvAArr, "trno_a", expData.get("trno").toString());
-                if (tmp != null) {
-                    obv.putAll(tmp);
-                }
+            // Try to read soil File
+            ret.soilArr = readSoilSites(brMap, metaData, digests, soilIds);
+
+            // Try to read weather File
+            ret.wthArr = readDailyData(brMap, metaData, digests, windows);
+
+            // Try to read Observed AFile (summary data)
+            ret.obvAFiles = readSummaryData(brMap, digests);
+
+            // Try to read Observed AFile (time-series data)
+            ret.obvTFiles = readTimeSeriesData(brMap, digests);
+
+            // Try to read cultivar File
+            ret.culCatalog = culReader.readCultivarCatalog(brMap);
+
+        } catch (FileNotFoundException fe) {
+            System.out.println("File not found under following path : [" + arg0 + "]!");
+            return new DssatExperimentIterator(this, mgnReader, new HashMap(), new ArrayList<DssatTreatmentTables>());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new DssatExperimentIterator(this, mgnReader, new HashMap(), new ArrayList<DssatTreatmentTables>());
+        } finally {
+            // P.S. the iterator only combines the data already read, the input files are not used any more
+            closeBufferReader(brMap);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Combine the each part of data into the experiment for the treatment,
+     * the soil and weather data used by the experiment are put into the soil
+     * and weather holders
+     *
+     * @param expData the experiment data holder with meta data
+     * @param mgnData the treatment data
+     * @param trId the index of treatment
+     * @param soilArr the array of soil site data
+     * @param wthArr the array of weather station data
+     * @param obvAFiles the summary observed data of each experiment
+     * @param obvTFiles the time series observed data of each experiment
+     * @param culCatalog the cultivar catalog
+     * @param soilTmpMap the holder of used soil data by soil_id
+     * @param wthTmpMap the holder of used weather data by wst_id
+     * @return the experiment data
+     */
+    HashMap setupExperiment(HashMap expData, HashMap mgnData, int trId, ArrayList<HashMap> soilArr, ArrayList<HashMap> wthArr, HashMap obvAFiles, HashMap obvTFiles, DssatCultivarCatalog culCatalog, HashMap soilTmpMap, HashMap wthTmpMap) {
+
+        HashMap soilData;
+        String soilId;
+        HashMap wthData;
+        String wthId;
+        HashMap obvAFile;
+        ArrayList<HashMap> obvAArr;
+        HashMap obvTFile;
+        ArrayList<HashMap> obvTArr;
+        HashMap culData;
+
+        // Set soil data for this treatment
+        wthId = getValueOr(expData, "wst_id", "0");
+        if (!wthId.equals("0")) {
+            wthData = getSectionData(wthArr, "wst_id", wthId);
+            if (wthData != null && wthData.size() != 0) {
+//                expData.put(wthReader.jsonKey, wthData);
+                wthTmpMap.put(wthId, wthData);
             }
+        }
 
-            // observed data (time-series)
-            obvTFile = getObjectOr(obvTFiles, exname, new HashMap());
-            obvTArr = getObjectOr(obvTFile, obvTReader.obvDataKey, new ArrayList<HashMap>());
-            if (!getValueOr(expData, "trno", "0").equals("0")) {
-                HashMap tmp = getSectionData(obvTArr, "trno_t", expData.get("trno").toString());
-                if (tmp != null) {
-                    obv.put("timeSeries", tmp.get(obvTReader.obvDataKey));
+        // Set weather data for this treatment
+        soilId = getValueOr(expData, "soil_id", "0");
+        if (!soilId.equals("0") && !soilTmpMap.containsKey(soilId)) {
+            soilData = getSectionData(soilArr, "soil_id", soilId);
+            // if there is soil analysis data, create new soil block by using soil analysis info
+            if (expData.get("soil_analysis") != null) {
+                if (soilData == null) {
+                    soilData = new HashMap();
+                } else {
+                    soilData = CopyList(soilData);
                 }
+                HashMap saTmp = (HashMap) expData.remove("soil_analysis");
+
+                // Update soil site data
+                copyItem(soilData, saTmp, "sadat");
+                copyItem(soilData, saTmp, "smhb");
+                copyItem(soilData, saTmp, "smpx");
+                copyItem(soilData, saTmp, "smke");
+                soilId += "_" + (trId + 1);
+                soilData.put("soil_id", soilId);
+                expData.put("soil_id", soilId);
+
+                // Update soil layer data
+                ArrayList<HashMap> soilLyrs = getObjectOr(soilData, soilReader.layerKey, new ArrayList());
+                ArrayList<HashMap> saLyrs = getObjectOr(saTmp, mgnReader.icEventKey, new ArrayList());
+                String[] copyKeys = {"sllb", "slbdm", "sloc", "slni", "slphw", "slphb", "slpx", "slke", "slsc"};
+                soilData.put(soilReader.layerKey, combinLayers(soilLyrs, saLyrs, "sllb", "sllb", copyKeys));
+            }
+
+            if (soilData != null && soilData.size() != 0) {
+//                expData.put(soilReader.jsonKey, soilData);
+                soilTmpMap.put(soilId, soilData);
+            }
+        }
+
+        // Get exname
+        String exname = (String) expData.remove("exname_o");
+        if (exname == null) {
+            exname = "";
+        }
+        // observed data (summary)
+        obvAFile = getObjectOr(obvAFiles, exname, new HashMap());
+        obvAArr = getObjectOr(obvAFile, obvAReader.obvDataKey, new ArrayList<HashMap>());
+        HashMap obv = new HashMap();
+        expData.put(obvAReader.jsonKey, obv);
+        if (!getValueOr(expData, "trno", "0").equals("0")) {
+            HashMap tmp = getSectionData(obvAArr, "trno_a", expData.get("trno").toString());
+            if (tmp != null) {
+                obv.putAll(tmp);
             }
+        }
 
-            // there is no observed data, remove the key from experiment object
-            if (obv.isEmpty()) {
-                expData.remove(obvAReader.jsonKey);
+        // observed data (time-series)
+        obvTFile = getObjectOr(obvTFiles, exname, new HashMap());
+        obvTArr = getObjectOr(obvTFile, obvTReader.obvDataKey, new ArrayList<HashMap>());
+        if (!getValueOr(expData, "trno", "0").equals("0")) {
+            HashMap tmp = getSectionData(obvTArr, "trno_t", expData.get("trno").toString());
+            if (tmp != null) {
+                obv.put("timeSeries", tmp.get(obvTReader.obvDataKey));
             }
+        }
+
+        // there is no observed data, remove the key from experiment object
+        if (obv.isEmpty()) {
+            expData.remove(obvAReader.jsonKey);
+        }
 
-            // Set experiment data include management, Initial Condition and DSSAT specific data blocks for this treatment
-            mgnReader.setupTrnData(expData, mgnArr.get(i), obvAFiles, obvTFiles);
+        // Set experiment data include management, Initial Condition and DSSAT specific data blocks for this treatment
+        mgnReader.setupTrnData(expData, mgnData, obvAFiles, obvTFiles);
 
-            // Set dssat cultivar info block
-            if (!culArr.isEmpty()) {
-                HashMap mgnData = getObjectOr(expData, mgnReader.jsonKey, new HashMap());
-                ArrayList<HashMap> eventArr = getObjectOr(mgnData, "events", new ArrayList());
-                ArrayList<HashMap> culTmpArr = new ArrayList<HashMap>();
-                for (int j = 0; j < eventArr.size(); j++) {
-                    if (getObjectOr(eventArr.get(j), "event", "").equals("planting")) {
-                        culData = getSectionData(culArr, "cul_id", (String) eventArr.get(j).get("cul_id"));
-                        if (culData != null) {
-                            culTmpArr.add(culData);
-                        }
+        // Set dssat cultivar info block
+        if (!culCatalog.isEmpty()) {
+            HashMap mgnTmp = getObjectOr(expData, mgnReader.jsonKey, new HashMap());
+            ArrayList<HashMap> eventArr = getObjectOr(mgnTmp, "events", new ArrayList());
+            ArrayList<HashMap> culTmpArr = new ArrayList<HashMap>();
+            for (int j = 0; j < eventArr.size(); j++) {
+                if (getObjectOr(eventArr.get(j), "event", "").equals("planting")) {
+                    culData = culCatalog.get((String) eventArr.get(j).get("cul_id"));
+                    if (culData != null) {
+                        culTmpArr.add(culData);
                     }
                 }
+            }
 
-                if (!culTmpArr.isEmpty()) {
-                    HashMap tmp = new HashMap();
-                    tmp.put(culReader.dataKey, culTmpArr);
-                    expData.put(culReader.jsonKey, tmp);
-                }
+            if (!culTmpArr.isEmpty()) {
+                HashMap tmp = new HashMap();
+                tmp.put(culReader.dataKey, culTmpArr);
+                expData.put(culReader.jsonKey, tmp);
             }
+        }
 
-            // Add to output array
-            expArr.add(expData);
+        return expData;
+    }
+
+    /**
+     * Read the treatments from XFile, the meta data of treatments is set into
+     * the meta data holder
+     *
+     * @param brMap The holder for BufferReader objects for all files
+     * @param metaData The meta data holder
+     * @param digests the content hash of input files, null if cache is not
+     * used
+     * @return the array of treatment data
+     * @throws IOException
+     */
+    private ArrayList<HashMap> readTreatments(HashMap brMap, HashMap metaData, HashMap<String, String> digests) throws IOException {
+
+        ArrayList<HashMap> mgnArr;
+        // P.S. the weather files are also read for the treatments
+        String key = getCacheKey(digests, "treatments", new String[]{"X", "W"}, "");
+        HashMap cached = (HashMap) getCached(key);
+        if (cached != null) {
+            mgnArr = (ArrayList<HashMap>) cached.get("treatments");
+            metaData.putAll((HashMap) cached.get("meta"));
+        } else {
+            mgnArr = mgnReader.readTreatments(brMap, metaData);
+            cached = new HashMap();
+            cached.put("treatments", mgnArr);
+            cached.put("meta", metaData);
+            putCached(key, cached);
         }
+        return mgnArr;
+    }
 
-        if (!expArr.isEmpty()) {
-            ret.put("experiments", expArr);
-        
-            if (!soilTmpMap.isEmpty()) {
-                ret.put("soils", new ArrayList(soilTmpMap.values()));
-            }
-            if (!wthTmpMap.isEmpty()) {
-                ret.put("weathers", new ArrayList(wthTmpMap.values()));
+    /**
+     * Read the soil sites from soil files
+     *
+     * @param brMap The holder for BufferReader objects for all files
+     * @param metaData The meta data holder
+     * @param digests the content hash of input files, null if cache is not
+     * used
+     * @param soilIds the soil_ids of profiles which will be parsed, null for
+     * parsing all the profiles
+     * @return the array of soil site data
+     * @throws IOException
+     */
+    private ArrayList<HashMap> readSoilSites(HashMap brMap, HashMap metaData, HashMap<String, String> digests, TreeSet<String> soilIds) throws IOException {
+
+        String key = getCacheKey(digests, "soils", new String[]{"S"}, soilIds == null ? "" : soilIds.toString());
+        ArrayList<HashMap> soilArr = (ArrayList<HashMap>) getCached(key);
+        if (soilArr == null) {
+            soilArr = soilReader.readSoilSites(brMap, metaData, soilIds, executor);
+            putCached(key, soilArr);
+        }
+        return soilArr;
+    }
+
+    /**
+     * Get the soil_ids referred by the treatments, when only the referred
+     * profiles will be parsed
+     *
+     * @param mgnArr The array of treatment data
+     * @param metaData The meta data of treatments
+     * @return the soil_ids, null if all the profiles will be parsed
+     */
+    private TreeSet<String> getSoilIds(ArrayList<HashMap> mgnArr, HashMap metaData) {
+        if (!soilReader.indexedSoil || mgnArr.isEmpty()) {
+            return null;
+        }
+        TreeSet<String> soilIds = new TreeSet<String>();
+        for (int i = 0; i < mgnArr.size(); i++) {
+            soilIds.add(getValueOr(mgnReader.setupMetaData(metaData, i), "soil_id", "0"));
+        }
+        return soilIds;
+    }
+
+    /**
+     * Read the daily data from weather files
+     *
+     * @param brMap The holder for BufferReader objects for all files
+     * @param metaData The meta data holder
+     * @param digests the content hash of input files, null if cache is not
+     * used
+     * @param windows the date window of each weather station, null for
+     * reading the full history
+     * @return the array of weather station data
+     * @throws IOException
+     */
+    private ArrayList<HashMap> readDailyData(HashMap brMap, HashMap metaData, HashMap<String, String> digests, HashMap<String, int[]> windows) throws IOException {
+
+        String key;
+        if (windows != null) {
+            // P.S. only the days in the simulation window of treatments are read
+            TreeMap<String, String> windowTexts = new TreeMap<String, String>();
+            for (String id : windows.keySet()) {
+                windowTexts.put(id, windows.get(id)[0] + "-" + windows.get(id)[1]);
             }
+            key = getCacheKey(digests, "weathers", new String[]{"W"}, wthReader.columnarDaily + " " + windowTexts);
         } else {
-            // If only weather data or soil data
-            if (!soilArr.isEmpty()) {
-                ret.put("soils", soilArr);
+            key = getCacheKey(digests, "weathers", new String[]{"W"}, wthReader.columnarDaily + "");
+        }
+        ArrayList<HashMap> wthArr = (ArrayList<HashMap>) getCached(key);
+        if (wthArr == null) {
+            wthArr = wthReader.readDailyData(brMap, metaData, windows, executor);
+            putCached(key, wthArr);
+        }
+        return wthArr;
+    }
+
+    /**
+     * Read the summary observed data from AFiles
+     *
+     * @param brMap The holder for BufferReader objects for all files
+     * @param digests the content hash of input files, null if cache is not
+     * used
+     * @return the observed data of each experiment
+     * @throws IOException
+     */
+    private HashMap readSummaryData(HashMap brMap, HashMap<String, String> digests) throws IOException {
+
+        // P.S. the DOY dates are converted with the planting date in XFile, so XFile is also in the key
+        String key = getCacheKey(digests, "summary", new String[]{"X", "A"}, "");
+        HashMap obvAFiles = (HashMap) getCached(key);
+        if (obvAFiles == null) {
+            obvAFiles = obvAReader.readObvData(brMap);
+            putCached(key, obvAFiles);
+        }
+        return obvAFiles;
+    }
+
+    /**
+     * Read the time-series observed data from TFiles
+     *
+     * @param brMap The holder for BufferReader objects for all files
+     * @param digests the content hash of input files, null if cache is not
+     * used
+     * @return the observed data of each experiment
+     * @throws IOException
+     */
+    private HashMap readTimeSeriesData(HashMap brMap, HashMap<String, String> digests) throws IOException {
+
+        // P.S. the DOY dates are converted with the planting date in XFile, so XFile is also in the key
+        String key = getCacheKey(digests, "timeSeries", new String[]{"X", "T"}, "");
+        HashMap obvTFiles = (HashMap) getCached(key);
+        if (obvTFiles == null) {
+            obvTFiles = obvTReader.readObvData(brMap);
+            putCached(key, obvTFiles);
+        }
+        return obvTFiles;
+    }
+
+    /**
+     * Get the parse cache key for the parsing step
+     *
+     * @param digests the content hash of input files, null if cache is not
+     * used
+     * @param stage the name of parsing step
+     * @param types the types of files which the parsing reads
+     * @param options the reading options which change the result
+     * @return the cache key, null if cache is not used
+     */
+    private String getCacheKey(HashMap<String, String> digests, String stage, String[] types, String options) {
+        if (digests == null) {
+            return null;
+        }
+        return parseCache.getKey(stage, digests, types, options);
+    }
+
+    /**
+     * Get the parsed result from parse cache
+     *
+     * @param key the cache key, null if cache is not used
+     * @return the parsed result, null if it is not in the cache
+     */
+    private Object getCached(String key) {
+        if (key == null) {
+            return null;
+        }
+        return parseCache.get(key);
+    }
+
+    /**
+     * Save the parsed result into parse cache
+     *
+     * @param key the cache key, null if cache is not used
+     * @param value the parsed result
+     */
+    private void putCached(String key, Object value) {
+        if (key != null) {
+            parseCache.put(key, value);
+        }
+    }
+
+    /**
+     * Get the date window of weather data needed by the treatments for each
+     * weather station, the station with any treatment whose window could not
+     * be decided will not be in the result (read with full history)
+     *
+     * @param mgnArr The array of treatment data
+     * @param metaData The meta data of treatments
+     * @return the first and last date in number of yyyymmdd for each wst_id
+     */
+    private HashMap<String, int[]> getWeatherWindows(ArrayList<HashMap> mgnArr, HashMap metaData) {
+
+        if (fullWeatherHistory || mgnArr.isEmpty()) {
+            return null;
+        }
+
+        HashMap<String, int[]> windows = new HashMap<String, int[]>();
+        HashSet<String> fullIds = new HashSet<String>();
+
+        for (int i = 0; i < mgnArr.size(); i++) {
+            addWeatherWindow(windows, fullIds, mgnReader.setupMetaData(metaData, i), mgnArr.get(i));
+        }
+        addWeatherMargin(windows);
+
+        return windows;
+    }
+
+    /**
+     * Extend the date window of the weather station used by the treatment to
+     * cover the simulation window of the treatment
+     *
+     * @param windows the date window of each weather station
+     * @param fullIds the weather stations which will be read with full
+     * history
+     * @param expData the meta data of the treatment
+     * @param mgnData the treatment data
+     */
+    void addWeatherWindow(HashMap<String, int[]> windows, HashSet<String> fullIds, HashMap expData, HashMap mgnData) {
+
+        String wthId = getValueOr(expData, "wst_id", "0");
+        if (wthId.equals("0") || fullIds.contains(wthId)) {
+            return;
+        }
+        int[] window = getSimulationWindow(mgnData);
+        int[] cur = windows.get(wthId);
+        if (window == null) {
+            fullIds.add(wthId);
+            windows.remove(wthId);
+        } else if (cur == null) {
+            windows.put(wthId, window);
+        } else {
+            cur[0] = Math.min(cur[0], window[0]);
+            cur[1] = Math.max(cur[1], window[1]);
+        }
+    }
+
+    /**
+     * Add the weather margin on both sides of the date windows
+     *
+     * @param windows the date window of each weather station
+     */
+    void addWeatherMargin(HashMap<String, int[]> windows) {
+
+        for (int[] window : windows.values()) {
+            window[0] = DssatDateHelper.addDays(window[0], -weatherMargin);
+            window[1] = DssatDateHelper.addDays(window[1], weatherMargin);
+            // P.S. the date out of the table range means no limit on that side
+            if (window[1] <= 0) {
+                window[1] = Integer.MAX_VALUE;
             }
-            if (!wthArr.isEmpty()) {
-                ret.put("weathers", wthArr);
+        }
+    }
+
+    /**
+     * Get the simulation window of the treatment, which starts from the
+     * earliest date of simulation start, initial condition and events, and
+     * ends at the latest date of events and automatic management, but no
+     * earlier than the number of simulation years after the start
+     *
+     * @param trData The treatment data
+     * @return the first and last date in number of yyyymmdd, null if there is
+     * no date to decide the window
+     */
+    private int[] getSimulationWindow(HashMap trData) {
+
+        int[] window = {Integer.MAX_VALUE, 0};
+        int sdate = 0;
+        int nyers = 1;
+
+        ArrayList<HashMap> events = getObjectOr(trData, "events", new ArrayList());
+        for (int i = 0; i < events.size(); i++) {
+            updateWindow(window, toDateNum((String) events.get(i).get("date")));
+        }
+        HashMap icData = getObjectOr(trData, "initial_conditions", new HashMap());
+        updateWindow(window, toDateNum((String) icData.get("icdat")));
+
+        HashMap smData = getObjectOr(trData, "dssat_simulation_control", new HashMap());
+        ArrayList<HashMap> smArr = getObjectOr(smData, "data", new ArrayList());
+        for (int i = 0; i < smArr.size(); i++) {
+            // P.S. the simulation controls are kept as text, read the dates by the order of fields
+            String[] general = getValueOr(smArr.get(i), "sm_general", "").trim().split("\\s+");
+            if (general.length > 4) {
+                int date = DssatDateHelper.toYyyymmdd(toYydddNum(general[4]));
+                if (date > 0) {
+                    sdate = sdate == 0 ? date : Math.min(sdate, date);
+                    updateWindow(window, date);
+                }
+                if (general[1].matches("\\d{1,3}")) {
+                    nyers = Math.max(nyers, Integer.parseInt(general[1]));
+                }
+            }
+            String[] planting = getValueOr(smArr.get(i), "sm_planting", "").trim().split("\\s+");
+            for (int j = 1; j < 3 && j < planting.length; j++) {
+                updateWindow(window, DssatDateHelper.toYyyymmdd(toYydddNum(planting[j])));
+            }
+            String[] harvests = getValueOr(smArr.get(i), "sm_harvests", "").trim().split("\\s+");
+            if (harvests.length > 2) {
+                updateWindow(window, DssatDateHelper.toYyyymmdd(toYydddNum(harvests[2])));
             }
         }
 
-        return ret;
+        if (window[1] == 0) {
+            return null;
+        }
+        // P.S. the crop could grow after the last event (e.g. harvest at maturity), keep the whole simulation years
+        int end = DssatDateHelper.addDays(sdate > 0 ? sdate : window[0], nyers * 366);
+        window[1] = end > 0 ? Math.max(window[1], end) : Integer.MAX_VALUE;
+        return window;
+    }
+
+    /**
+     * Extend the window to cover the date
+     *
+     * @param window the first and last date in number of yyyymmdd
+     * @param date the date in number of yyyymmdd, 0 for invalid date
+     */
+    private static void updateWindow(int[] window, int date) {
+        if (date > 0) {
+            window[0] = Math.min(window[0], date);
+            window[1] = Math.max(window[1], date);
+        }
+    }
+
+    /**
+     * Get the date number of the date string with format of "yyyymmdd"
+     *
+     * @param date the date string
+     * @return the date number, 0 for invalid date
+     */
+    private static int toDateNum(String date) {
+        if (date != null && date.matches("\\d{8}")) {
+            return Integer.parseInt(date);
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * Get the date number of the date string with format of "yyddd"
+     *
+     * @param date the date string
+     * @return the date number, -1 for invalid date
+     */
+    private static int toYydddNum(String date) {
+        if (date.matches("\\d{4,5}")) {
+            return Integer.parseInt(date);
+        } else {
+            return -1;
+        }
     }
 }
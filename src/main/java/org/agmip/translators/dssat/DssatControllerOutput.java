@@ -1,20 +1,23 @@
 package org.agmip.translators.dssat;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
-import static org.agmip.translators.dssat.DssatCommonInput.getSectionData;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import static org.agmip.translators.dssat.DssatCommonOutput.revisePath;
 import static org.agmip.util.MapUtil.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  *
@@ -22,107 +25,210 @@ import static org.agmip.util.MapUtil.*;
  */
 public class DssatControllerOutput extends DssatCommonOutput {
 
+    private static final Logger log = LoggerFactory.getLogger(DssatControllerOutput.class);
     private File zipFile;
+    private DssatZipSink zipSink;
     private HashMap<String, File> files = new HashMap();
-    private HashMap<String, File> soilFiles = new HashMap();
-    private HashMap<String, File> wthFiles = new HashMap();
-    private DssatWthFileHelper wthHelper = new DssatWthFileHelper();
+    // P.S. the soil file title is only written with the first site in the file, so it is not part of the site content
+    private DssatContentRegistry soilContents = new DssatContentRegistry("!", "*SOILS:");
+    private DssatContentRegistry wthContents = new DssatContentRegistry("!");
+    private DssatDedupStats dedupStats;
+    private ExecutorService executor = null;
+    private int maxInFlight = Runtime.getRuntime().availableProcessors() * 2;
 
     /**
-     * ALL DSSAT Data Output method
+     * Constructor, the weather file names are kept in memory by default
+     */
+    public DssatControllerOutput() {
+        wthHelper = new DssatWthFileHelper();
+    }
+
+    /**
+     * ALL DSSAT Data Output method for multiple experiments, each experiment
+     * is written by the executor, and the zip file is finished by the thread
+     * which completes the last experiment
      *
      * @param arg0 file output path
      * @param result data holder object
+     * @param executor the executor for writing experiments, null for writing
+     * in current thread
+     * @param maxInFlight the maximum number of experiments which are
+     * submitted but not put into zip file yet, 0 for no limit
+     * @return the completion handle of output
      *
      * @throws FileNotFoundException
      * @throws IOException
      */
-    private void writeMultipleExp(String arg0, Map result) throws FileNotFoundException, IOException {
+    DssatOutputJob writeMultipleExp(String arg0, Map result, Executor executor, int maxInFlight) throws FileNotFoundException, IOException {
 
         arg0 = revisePath(arg0);
+        final String outputPath = arg0;
         String exname;
-        ArrayList<String> subDirs = new ArrayList();
-        ArrayList<HashMap> expArr = getObjectOr(result, "experiments", new ArrayList());
+        final ArrayList<String> subDirs = new ArrayList();
+        final ArrayList<HashMap> expArr = getObjectOr(result, "experiments", new ArrayList());
         HashMap expData;
-        ArrayList<HashMap> soilArr = getObjectOr(result, "soils", new ArrayList());
-        ArrayList<HashMap> wthArr = getObjectOr(result, "weathers", new ArrayList());
-        DssatCommonOutput[] outputs = {
-            new DssatXFileOutput(),
-            new DssatAFileOutput(),
-            new DssatTFileOutput(),
-            new DssatCulFileOutput(),
-            //            new DssatBatchFileOutput(),
-            //            new DssatRunFileOutput(),
-            new DssatACMOJsonOutput() // TODO ACMO data also need to be combined?
-        };
+        final ArrayList<HashMap> soilArr = getObjectOr(result, "soils", new ArrayList());
+        final ArrayList<HashMap> wthArr = getObjectOr(result, "weathers", new ArrayList());
+        DssatSectionIndex soilIdx = new DssatSectionIndex(soilArr, "soil_id");
+        DssatSectionIndex wthIdx = new DssatSectionIndex(wthArr, "wst_id");
+        final Semaphore permits = maxInFlight > 0 ? new Semaphore(maxInFlight) : null;
 
-        // Write files
-        String soil_id;
-        String wth_id;
-        HashMap<String, File> swFiles = new HashMap();
-        boolean wsSubDirFlg = false;
-        HashMap<String, String> expNameMap = checkMultiTrn(expArr);
-        for (int i = 0; i < expArr.size(); i++) {
-            expData = expArr.get(i);
-            soil_id = getObjectOr(expData, "soil_id", "");
-            wth_id = getObjectOr(expData, "wst_id", "");
-            expData.put("soil", getSectionData(soilArr, "soil_id", soil_id));
-            expData.put("weather", getSectionData(wthArr, "wst_id", wth_id));
-            exname = getValueOr(expData, "exname", "Experiment_" + i);
-            File soilFile = writeSWFile(arg0, expData, new DssatSoilOutput());
-            File wthFile = writeSWFile(arg0, expData, new DssatWeatherOutput());
-            writeSingleExp(arg0 + expNameMap.get(exname), expData, outputs);
-            if (!expNameMap.get(exname).equals("")) {
-                subDirs.add(expNameMap.get(exname));
-                swFiles.put(exname + "_S", soilFile);
-                swFiles.put(exname + "_W", wthFile);
-                wsSubDirFlg = true;
+        // Write files into one zip file directly
+        Calendar cal = Calendar.getInstance();
+        zipFile = new File(arg0 + "AGMIP_DSSAT_" + cal.getTimeInMillis() + ".zip");
+        final DssatZipSink sink = new DssatZipSink(zipFile);
+        zipSink = sink;
+        final DssatOutputJob job = new DssatOutputJob(zipFile);
+        dedupStats = job.getDedupStats();
+        final HashMap<String, String> expNameMap = checkMultiTrn(expArr);
+        job.setFinisher(new Runnable() {
+            @Override
+            public void run() {
+                finishMultipleExp(outputPath, expArr, soilArr, wthArr, expNameMap, subDirs, sink, job);
             }
-        }
-        if (wsSubDirFlg) {
-            subDirs.add("SOIL");
-            subDirs.add("WEATHER");
-        }
+        });
 
-        // If experiment data is included
-        if (!expArr.isEmpty()) {
-            // Write all batch files
-            DssatBatchFileOutput batchTran = new DssatBatchFileOutput();
-            batchTran.writeFile(arg0, expArr, expNameMap);
-            if (batchTran.getOutputFile() != null) {
-//                files.add(batchTran.getOutputFile());
-                files.put(batchTran.getOutputFile().getPath(), batchTran.getOutputFile());
-            }
-            DssatRunFileOutput runTran = new DssatRunFileOutput();
-            runTran.writeFile(arg0, expArr);
-            if (runTran.getOutputFile() != null) {
-//                files.add(runTran.getOutputFile());
-                files.put(runTran.getOutputFile().getPath(), runTran.getOutputFile());
-            }
-        } // If only weather or soil data is included
-        else {
-            for (int i = 0; i < soilArr.size(); i++) {
-                HashMap tmp = new HashMap();
-                tmp.put("soil", soilArr.get(i));
-                writeSingleExp(arg0, tmp, new DssatSoilOutput());
+        try {
+            String soil_id;
+            String wth_id;
+            boolean wsSubDirFlg = false;
+            for (int i = 0; i < expArr.size(); i++) {
+                expData = expArr.get(i);
+                soil_id = getObjectOr(expData, "soil_id", "");
+                wth_id = getObjectOr(expData, "wst_id", "");
+                expData.put("soil", soilIdx.getSharedView(soil_id));
+                expData.put("weather", wthIdx.getSharedView(wth_id));
+                exname = getValueOr(expData, "exname", "Experiment_" + i);
+                // P.S. soil/weather files are written in submitting order, so the shared file content and name are stable
+                File soilFile = writeSWFile(arg0, expData, new DssatSoilOutput(), job, exname);
+                File wthFile = writeSWFile(arg0, expData, new DssatWeatherOutput(), job, exname);
+                job.addResult(exname, soilFile);
+                job.addResult(exname, wthFile);
+                boolean subDirFlg = !expNameMap.get(exname).equals("");
+                if (subDirFlg) {
+                    subDirs.add(expNameMap.get(exname));
+                    wsSubDirFlg = true;
+                }
+
+                // Write experiment files
+                if (permits != null) {
+                    try {
+                        permits.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        job.addFailure("", e);
+                        break;
+                    }
+                }
+                // P.S. the batch is created in the submitting order, so the entries are put into zip file in that order
+                // P.S. the permit is held by the batch until it is put into zip file, so the waiting batches are also bounded
+                DssatZipSink.Batch batch = sink.newBatch(permits);
+                Runnable task = new ExpWriteTask(arg0 + expNameMap.get(exname), expData, exname, subDirFlg, soilFile, wthFile, batch, job);
+                job.taskSubmitted();
+                if (executor == null) {
+                    task.run();
+                } else {
+                    try {
+                        executor.execute(task);
+                    } catch (RejectedExecutionException e) {
+                        job.addFailure(exname, e);
+                        try {
+                            batch.commit();
+                        } catch (IOException ex) {
+                            job.addFailure(exname, ex);
+                        }
+                        job.taskDone();
+                    }
+                }
             }
-            for (int i = 0; i < wthArr.size(); i++) {
-                HashMap tmp = new HashMap();
-                tmp.put("weather", wthArr.get(i));
-                writeSingleExp(arg0, tmp, new DssatWeatherOutput());
+            if (wsSubDirFlg) {
+                subDirs.add("SOIL");
+                subDirs.add("WEATHER");
             }
+        } catch (RuntimeException e) {
+            job.addFailure("", e);
+            throw e;
+        } finally {
+            job.allSubmitted();
         }
 
-        // compress all output files into one zip file
-        Calendar cal = Calendar.getInstance();
-        zipFile = new File(arg0 + "AGMIP_DSSAT_" + cal.getTimeInMillis() + ".zip");
-        createZip(swFiles);
+        return job;
+    }
+
+    /**
+     * Write the batch files (or soil/weather files if no experiment) and
+     * finish the zip file after all experiments are written
+     *
+     * @param arg0 file output path
+     * @param expArr experiment data array
+     * @param soilArr soil data array
+     * @param wthArr weather data array
+     * @param expNameMap the relationship between experiment and its folder
+     * @param subDirs the created folders
+     * @param sink the zip file sink
+     * @param job the completion handle of output
+     */
+    private void finishMultipleExp(String arg0, ArrayList<HashMap> expArr, ArrayList<HashMap> soilArr, ArrayList<HashMap> wthArr,
+            HashMap<String, String> expNameMap, ArrayList<String> subDirs, DssatZipSink sink, DssatOutputJob job) {
 
-        // Delete the remained folders
-        File dir;
-        for (int i = 0; i < subDirs.size(); i++) {
-            dir = new File(arg0 + subDirs.get(i));
-            dir.delete();
+        boolean finished = false;
+        try {
+            // P.S. the zip file will be removed if the experiments are not all submitted
+            if (job.getFailures().containsKey("")) {
+                return;
+            }
+
+            // If experiment data is included
+            if (!expArr.isEmpty()) {
+                // Write all batch files
+                DssatBatchFileOutput batchTran = new DssatBatchFileOutput();
+                batchTran.setSink(sink);
+                batchTran.writeFile(arg0, expArr, expNameMap);
+                addOutputFile(batchTran.getOutputFile());
+                job.addResult("", batchTran.getOutputFile());
+                DssatRunFileOutput runTran = new DssatRunFileOutput();
+                runTran.setSink(sink);
+                runTran.writeFile(arg0, expArr);
+                addOutputFile(runTran.getOutputFile());
+                job.addResult("", runTran.getOutputFile());
+            } // If only weather or soil data is included
+            else {
+                for (int i = 0; i < soilArr.size(); i++) {
+                    HashMap tmp = new HashMap();
+                    tmp.put("soil", soilArr.get(i));
+                    writeSingleExp(arg0, tmp, job, "", null, new DssatSoilOutput());
+                }
+                for (int i = 0; i < wthArr.size(); i++) {
+                    HashMap tmp = new HashMap();
+                    tmp.put("weather", wthArr.get(i));
+                    writeSingleExp(arg0, tmp, job, "", null, new DssatWeatherOutput());
+                }
+            }
+
+            // Finish the zip file with soil/weather files
+            sink.close();
+            finished = true;
+            log.info("Shared soil/weather files of {}: {}", zipFile.getName(), job.getDedupStats());
+            saveWthNames();
+        } catch (IOException e) {
+            job.addFailure("", e);
+        } finally {
+            if (!finished) {
+                sink.abort();
+            }
+            zipSink = null;
+            synchronized (files) {
+                files.clear();
+            }
+            soilContents.clear();
+            wthContents.clear();
+
+            // Delete the remained folders
+            File dir;
+            for (int i = 0; i < subDirs.size(); i++) {
+                dir = new File(arg0 + subDirs.get(i));
+                dir.delete();
+            }
         }
     }
 
@@ -136,30 +242,25 @@ public class DssatControllerOutput extends DssatCommonOutput {
     public void writeFile(String arg0, Map result) {
 
         try {
+            DssatOutputJob job;
             if (getObjectOr(result, "experiments", new ArrayList()).isEmpty()
                     && getObjectOr(result, "soils", new ArrayList()).isEmpty()
                     && getObjectOr(result, "weathers", new ArrayList()).isEmpty()) {
-                // Write files
-                DssatCommonOutput[] outputs = {
-                    new DssatXFileOutput(),
-                    new DssatSoilOutput(),
-                    new DssatWeatherOutput(),
-                    new DssatAFileOutput(),
-                    new DssatTFileOutput(),
-                    new DssatCulFileOutput(),
-                    new DssatBatchFileOutput(),
-                    new DssatRunFileOutput(),
-                    new DssatACMOJsonOutput()
-                };
-                writeSingleExp(arg0, result, outputs);
-
-                // compress all output files into one zip file
-                zipFile = new File(revisePath(arg0) + getZipFileName(outputs));
-
-                createZip();
+                job = writeOneExp(arg0, result);
 
             } else {
-                writeMultipleExp(arg0, result);
+                job = writeMultipleExp(arg0, result, executor, executor == null ? 0 : maxInFlight);
+                try {
+                    job.await();
+                } catch (InterruptedException e) {
+                    // P.S. the zip file is still finished by the thread which completes the last experiment
+                    Thread.currentThread().interrupt();
+                }
+            }
+            for (List<Throwable> errors : job.getFailures().values()) {
+                for (Throwable error : errors) {
+                    error.printStackTrace();
+                }
             }
 
         } catch (Exception e) {
@@ -167,208 +268,288 @@ public class DssatControllerOutput extends DssatCommonOutput {
         }
     }
 
+    /**
+     * DSSAT Data Output method for single experiment, the files are written
+     * in current thread into one zip file, which is named by the experiment
+     * file name at last
+     *
+     * @param arg0 file output path
+     * @param result data holder object
+     * @return the completion handle of output, which is already finished
+     */
+    DssatOutputJob writeOneExp(String arg0, Map result) {
+
+        // Write files
+        DssatCommonOutput[] outputs = {
+            new DssatXFileOutput(),
+            new DssatSoilOutput(),
+            new DssatWeatherOutput(),
+            new DssatAFileOutput(),
+            new DssatTFileOutput(),
+            new DssatCulFileOutput(),
+            new DssatBatchFileOutput(),
+            new DssatRunFileOutput(),
+            new DssatACMOJsonOutput()
+        };
+        // Write files into one zip file directly, and rename it by experiment file name at last
+        Calendar cal = Calendar.getInstance();
+        File tmpZipFile = new File(revisePath(arg0) + "AGMIP_DSSAT_" + cal.getTimeInMillis() + ".zip");
+        DssatOutputJob job = new DssatOutputJob(tmpZipFile);
+        try {
+            zipFile = tmpZipFile;
+            zipSink = new DssatZipSink(tmpZipFile);
+            boolean finished = false;
+            try {
+                writeSingleExp(arg0, result, job, "", null, outputs);
+                zipSink.close();
+                finished = true;
+                saveWthNames();
+            } finally {
+                if (!finished) {
+                    zipSink.abort();
+                }
+                zipSink = null;
+            }
+            zipFile = new File(revisePath(arg0) + getZipFileName(outputs));
+            zipFile.delete();
+            if (!tmpZipFile.renameTo(zipFile)) {
+                zipFile = tmpZipFile;
+            }
+            job.setOutputZipFile(zipFile);
+        } catch (IOException e) {
+            job.addFailure("", e);
+        } finally {
+            job.allSubmitted();
+        }
+        return job;
+    }
+
     /**
      * Write files and add file objects in the array
      *
      * @param arg0 file output path
      * @param result data holder object
+     * @param job the completion handle of output, which records the errors
+     * @param name the experiment name used in the completion handle
+     * @param sink the output sink for the writers, null for using the default
+     * sink of each writer
      * @param outputs DSSAT Output objects
      */
-    private void writeSingleExp(String arg0, Map result, DssatCommonOutput... outputs) {
+    private void writeSingleExp(String arg0, Map result, DssatOutputJob job, String name, DssatOutputSink sink, DssatCommonOutput... outputs) {
         for (int i = 0; i < outputs.length; i++) {
             try {
+                outputs[i].setSink(sink == null ? getSink(outputs[i]) : sink);
+                outputs[i].setWthFileHelper(wthHelper);
                 outputs[i].writeFile(arg0, result);
-                if (outputs[i].getOutputFile() != null) {
-    //                files.add(outputs[i].getOutputFile());
-                    files.put(outputs[i].getOutputFile().getPath(), outputs[i].getOutputFile());
-                }
+                addOutputFile(outputs[i].getOutputFile());
+                job.addResult(name, outputs[i].getOutputFile());
             } catch (Exception e) {
-                e.printStackTrace();
-            }    
+                job.addFailure(name, e);
+            }
+        }
+    }
+
+    /**
+     * Record the output file
+     *
+     * @param file the output file
+     */
+    private void addOutputFile(File file) {
+        if (file != null) {
+            synchronized (files) {
+                files.put(file.getPath(), file);
+            }
         }
     }
 
     /**
-     * write soil/weather files
+     * write soil/weather files, the content which has been written (by the
+     * same id or by a different id with the same content) is not written
+     * again, and the experiment will refer to the written one
      *
      * @param arg0 The output path
      * @param expData The holder for experiment data include soil/weather data
      * @param output The DSSAT Writer object
+     * @param job The completion handle of output, which records the errors and
+     * the statistics of shared files
+     * @param name The experiment name used in the completion handle
      * @return The created soil/weather file object
      */
-    private File writeSWFile(String arg0, Map expData, DssatCommonOutput output) {
+    private File writeSWFile(String arg0, Map expData, DssatCommonOutput output, DssatOutputJob job, String name) {
+        DssatDedupStats stats = job.getDedupStats();
         String id = "";
+        String idKey;
+        String dataKey;
+        String type;
 //        String fileName;
-        HashMap<String, File> swfiles = null;
+        DssatContentRegistry registry;
         try {
             if (output instanceof DssatSoilOutput) {
                 id = getObjectOr(expData, "soil_id", "");
 //                id = id.substring(0, 2);
-                swfiles = soilFiles;
+                idKey = "soil_id";
+                dataKey = "soil";
+                type = DssatDedupStats.SOIL;
+                registry = soilContents;
             } else {
     //            id = getObjectOr(expData, "wst_id", "");
     //            id = getWthFileName(getObjectOr(expData, "weather", new HashMap()));
     
                 id = wthHelper.createWthFileName(getObjectOr(expData, "weather", new HashMap()));
-                swfiles = wthFiles;
+                idKey = "wst_id";
+                dataKey = "weather";
+                type = DssatDedupStats.WEATHER;
+                registry = wthContents;
                 expData.put("wst_id", id);
-                getObjectOr(expData, "weather", new HashMap()).put("wst_id", id);
+                setSectionId(expData, "weather", "wst_id", id);
             }
-            if (!id.equals("") && !swfiles.containsKey(id)) {
+            if (id.equals("")) {
+                return null;
+            }
+
+            String sharedId = registry.getSharedId(id);
+            if (sharedId == null) {
+                // Render the content first, and only put it into the output when it is new
+                output.setSink(getSink(output));
+                output.setWthFileHelper(wthHelper);
+                CaptureSink capture = new CaptureSink(output.sink);
+                output.setSink(capture);
                 output.writeFile(arg0, expData);
-                if (output.getOutputFile() != null) {
-                    swfiles.put(id, output.getOutputFile());
+                if (output.getOutputFile() == null || capture.getContent() == null) {
+                    return null;
+                }
+                String content = capture.getContent();
+                String digest = registry.digest(content, id);
+                sharedId = registry.findByDigest(digest);
+                if (sharedId == null) {
+                    capture.commit();
+                    registry.register(id, digest, output.getOutputFile(), content.length());
+                    stats.recordWritten(type);
     //            files.add(output.getOutputFile());
-                    files.put(output.getOutputFile().getPath(), output.getOutputFile());
+                    addOutputFile(output.getOutputFile());
+                    return output.getOutputFile();
                 }
+                registry.addAlias(id, sharedId);
             }
+
+            stats.recordHit(type, registry.getSize(sharedId), !sharedId.equals(id));
+            if (!sharedId.equals(id)) {
+                // P.S. refer to the written content by its id
+                expData.put(idKey, sharedId);
+                setSectionId(expData, dataKey, idKey, sharedId);
+            }
+            return registry.getFile(sharedId);
         } catch (Exception e) {
-            e.printStackTrace();
+            job.addFailure(name, e);
         }
-        return swfiles.get(id);
+        return null;
     }
 
     /**
-     * Compress the files in one zip
+     * Set the id into the soil/weather data of experiment, the data is
+     * replaced by a copy since the shared view of section data is read-only
      *
-     * @throws FileNotFoundException
-     * @throws IOException
+     * @param expData The holder for experiment data include soil/weather data
+     * @param dataKey The key of soil/weather data
+     * @param idKey The id variable name
+     * @param id The id value
      */
-    private void createZip() throws FileNotFoundException, IOException {
-
-        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zipFile));
-        ZipEntry entry;
-        BufferedInputStream bis;
-        byte[] data = new byte[1024];
-//        File file;
-
-        for (File file : files.values()) {
-//            file = files.get(i);
-            if (file == null) {
-                continue;
-            }
-
-            if (zipFile.getParent() != null) {
-                entry = new ZipEntry(file.getPath().substring(zipFile.getParent().length() + 1));
-            } else {
-                entry = new ZipEntry(file.getPath());
-            }
-            out.putNextEntry(entry);
-            bis = new BufferedInputStream(new FileInputStream(file));
-
-            int count;
-            while ((count = bis.read(data)) != -1) {
-                out.write(data, 0, count);
-            }
-            bis.close();
-            file.delete();
+    private void setSectionId(Map expData, String dataKey, String idKey, String id) {
+        Object data = expData.get(dataKey);
+        if (data instanceof Map) {
+            HashMap copy = new HashMap((Map) data);
+            copy.put(idKey, id);
+            expData.put(dataKey, copy);
         }
-
-        out.close();
     }
 
     /**
-     * Compress the files in one zip
+     * Get the output sink for the writer, soil/weather files are shared by
+     * experiments and will be kept until zip file is closed
      *
-     * @param swFiles The map contain the relationship between experiments and
-     * soil/weather files
-     * @throws FileNotFoundException
-     * @throws IOException
+     * @param output The DSSAT Writer object
+     * @return The output sink, null if not writing into zip file
      */
-    private void createZip(HashMap<String, File> swFiles) throws FileNotFoundException, IOException {
-
-        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zipFile));
-//        File file;
-        String zipPath;
-
-        for (File file : files.values()) {
-//            file = files.get(i);
-            if (file == null) {
-                continue;
-            }
-
-            if (zipFile.getParent() != null) {
-                zipPath = file.getPath().substring(zipFile.getParent().length() + 1);
-            } else {
-                zipPath = file.getPath();
-            }
-            addToZip(out, zipPath, file);
-
-            if (file.getName().matches(".+\\.\\w{2}[Xx]")) {
-                zipPath = zipPath.substring(0, zipPath.length() - file.getName().length());
-                if (!zipPath.equals("")) {
-                    String exname = zipPath.substring(0, zipPath.length() - 1);
-                    addToZip(out, zipPath, swFiles.get(exname + "_S"));
-                    addToZip(out, zipPath, swFiles.get(exname + "_W"));
-                }
-            }
-//            file.delete();
+    private DssatOutputSink getSink(DssatCommonOutput output) {
+        if (zipSink == null) {
+            return null;
+        } else if (output instanceof DssatSoilOutput || output instanceof DssatWeatherOutput) {
+            return zipSink.getSharedSink();
+        } else {
+            return zipSink;
         }
+    }
 
-        // Delete files
-        for (File file : files.values()) {
-            if (file != null) {
-                file.delete();
-            }
-        }
-        files.clear();
-        soilFiles.clear();
-        wthFiles.clear();
-
-        // Delete Soil files
-//        for (String id : soilFiles.keySet()) {
-//            if (soilFiles.get(id) != null) {
-//                soilFiles.get(id).delete();
-//            }
-//        }
-//        soilFiles.clear();
-//
-//        // Delete Weather files
-//        for (String id : wthFiles.keySet()) {
-//            if (wthFiles.get(id) != null) {
-//                wthFiles.get(id).delete();
-//            }
-//        }
-//        wthFiles.clear();
-
-        out.close();
+    /**
+     * Set the executor for writing the experiments concurrently, the soil and
+     * weather files are still written in current thread in the order of
+     * experiments, and the entries of zip file are kept in the same order, so
+     * the output is same as writing them one after another
+     *
+     * @param executor the executor, null for writing one after another
+     * (default)
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
     }
 
     /**
-     * Add current file into zip package
+     * Set the registry of weather file names, the registry could be shared by
+     * several controllers, and the registry with a file is saved after each
+     * output, so the later translations reuse the same names
      *
-     * @param out The ZipOutputStream object
-     * @param zipPath The inside file path of zip package
-     * @param file The file which will be zipped
-     * @throws FileNotFoundException
-     * @throws IOException
+     * @param wthHelper the registry, null for a new registry in memory
      */
-    private void addToZip(ZipOutputStream out, String zipPath, File file) throws FileNotFoundException, IOException {
+    public void setWthFileHelper(DssatWthFileHelper wthHelper) {
+        this.wthHelper = wthHelper == null ? new DssatWthFileHelper() : wthHelper;
+    }
 
-        if (file == null || !file.exists()) {
-            return;
-        } else if (zipPath.endsWith(File.separator)) {
-            zipPath += file.getName();
+    /**
+     * Save the weather file names when the registry has a file
+     */
+    private void saveWthNames() {
+        try {
+            wthHelper.save();
+        } catch (IOException e) {
+            log.warn("Failed to save weather names {}", wthHelper.getRegistryFile().getPath());
         }
+    }
 
-        ZipEntry entry = new ZipEntry(zipPath);
-        BufferedInputStream bis = new BufferedInputStream(new FileInputStream(file));
-        int count;
-        byte[] data = new byte[1024];
-
-        out.putNextEntry(entry);
-        while ((count = bis.read(data)) != -1) {
-            out.write(data, 0, count);
+    /**
+     * Set the maximum number of experiments which are submitted to the
+     * executor but not put into zip file yet (including the finished ones
+     * which wait for the earlier experiments), default is twice of the
+     * available processors
+     *
+     * @param maxInFlight the maximum number of in-flight experiments
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("The maximum number of in-flight experiments should be positive: " + maxInFlight);
         }
-        bis.close();
+        this.maxInFlight = maxInFlight;
     }
 
     /**
-     * Get all output files
+     * Get the statistics of the soil/weather files which are shared by the
+     * experiments in the last output
+     *
+     * @return the deduplication statistics, null if no multiple experiment
+     * output has been done
+     */
+    public DssatDedupStats getDedupStats() {
+        return dedupStats;
+    }
+
+    /**
+     * Get all output files (the files are written into zip file directly,
+     * they are not created on the disk)
      */
     public ArrayList<File> getOutputFiles() {
 //        return files;
-        return new ArrayList(files.values());
+        synchronized (files) {
+            return new ArrayList(files.values());
+        }
     }
 
     /**
@@ -432,4 +613,120 @@ public class DssatControllerOutput extends DssatCommonOutput {
 
         return ret;
     }
+
+    /**
+     * The sink which keeps the rendered content in memory, and puts it into
+     * the target sink only when it is committed
+     */
+    private static class CaptureSink implements DssatOutputSink {
+
+        private DssatOutputSink target;
+        private File file;
+        private boolean append;
+        private String content;
+
+        public CaptureSink(DssatOutputSink target) {
+            this.target = target;
+        }
+
+        @Override
+        public boolean exists(File file) {
+            return target.exists(file);
+        }
+
+        @Override
+        public Writer getWriter(File file, boolean append) throws IOException {
+            this.file = file;
+            this.append = append;
+            this.content = null;
+            return new StringWriter() {
+                @Override
+                public void close() throws IOException {
+                    content = toString();
+                }
+            };
+        }
+
+        /**
+         * Get the rendered content
+         *
+         * @return the content, null if the writer is not closed
+         */
+        public String getContent() {
+            return content;
+        }
+
+        /**
+         * Put the rendered content into the target sink
+         *
+         * @throws IOException
+         */
+        public void commit() throws IOException {
+            Writer writer = target.getWriter(file, append);
+            try {
+                writer.write(content);
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * The task for writing the files of one experiment
+     */
+    private class ExpWriteTask implements Runnable {
+
+        private String arg0;
+        private HashMap expData;
+        private String exname;
+        private boolean subDirFlg;
+        private File soilFile;
+        private File wthFile;
+        private DssatZipSink.Batch batch;
+        private DssatOutputJob job;
+
+        public ExpWriteTask(String arg0, HashMap expData, String exname, boolean subDirFlg, File soilFile, File wthFile,
+                DssatZipSink.Batch batch, DssatOutputJob job) {
+            this.arg0 = arg0;
+            this.expData = expData;
+            this.exname = exname;
+            this.subDirFlg = subDirFlg;
+            this.soilFile = soilFile;
+            this.wthFile = wthFile;
+            this.batch = batch;
+            this.job = job;
+        }
+
+        @Override
+        public void run() {
+            try {
+                // P.S. writers hold the state of current file, so each experiment uses its own writers
+                DssatXFileOutput xOutput = new DssatXFileOutput();
+                DssatCommonOutput[] outputs = {
+                    xOutput,
+                    new DssatAFileOutput(),
+                    new DssatTFileOutput(),
+                    new DssatCulFileOutput(),
+                    //            new DssatBatchFileOutput(),
+                    //            new DssatRunFileOutput(),
+                    new DssatACMOJsonOutput() // TODO ACMO data also need to be combined?
+                };
+                writeSingleExp(arg0, expData, job, exname, batch, outputs);
+                // P.S. soil/weather files are written once, and put into each experiment folder when zip is closed
+                if (subDirFlg && xOutput.getOutputFile() != null) {
+                    batch.addSharedCopy(soilFile, xOutput.getOutputFile().getParentFile());
+                    batch.addSharedCopy(wthFile, xOutput.getOutputFile().getParentFile());
+                }
+            } catch (RuntimeException e) {
+                job.addFailure(exname, e);
+            } finally {
+                try {
+                    batch.commit();
+                } catch (IOException e) {
+                    job.addFailure(exname, e);
+                }
+                job.taskDone();
+            }
+        }
+    }
 }
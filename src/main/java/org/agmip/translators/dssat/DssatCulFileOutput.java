@@ -2,7 +2,6 @@ package org.agmip.translators.dssat;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -29,20 +28,109 @@ public class DssatCulFileOutput extends DssatCommonOutput {
         // Initial variables
         HashMap culData;              // Data holder for one site of cultivar data
         ArrayList<HashMap> culArr;    // Data holder for one site of cultivar data
-        BufferedWriter bwC;                             // output object
         StringBuilder sbData = new StringBuilder();     // construct the data info in the output
 
-        try {
+        // Set default value for missing data
+        setDefVal();
+
+        culData = getObjectOr(result, "dssat_cultivar_info", new HashMap());
+        culArr = getObjectOr(culData, "data", new ArrayList());
+        if (culArr.isEmpty()) {
+            return;
+        }
+//            decompressData(culArr);
+
+        // Output Cultivar File
+        String[] lastBlocks = {"", ""};
+        for (int i = 0; i < culArr.size(); i++) {
+            appendCultivar(sbData, lastBlocks,
+                    getObjectOr(culArr.get(i), "header_info", ""),
+                    getObjectOr(culArr.get(i), "cul_titles", ""),
+                    getObjectOr(culArr.get(i), "cul_info", ""));
+        }
 
-            // Set default value for missing data
-            setDefVal();
+        writeCulFile(arg0, result, sbData);
+    }
 
-            culData = getObjectOr(result, "dssat_cultivar_info", new HashMap());
-            culArr = getObjectOr(culData, "data", new ArrayList());
-            if (culArr.isEmpty()) {
-                return;
+    /**
+     * DSSAT Cultivar Data Output method, the cultivars of planting events are
+     * written from the catalog directly, the result need not to contain the
+     * cultivar data
+     *
+     * @param arg0 file output path
+     * @param result data holder object
+     * @param catalog the catalog of cultivar data
+     */
+    public void writeFile(String arg0, Map result, DssatCultivarCatalog catalog) {
+
+        // Initial variables
+        StringBuilder sbData = new StringBuilder();     // construct the data info in the output
+
+        // Set default value for missing data
+        setDefVal();
+
+        HashMap mgnData = getObjectOr(result, "management", new HashMap());
+        ArrayList<HashMap> events = getObjectOr(mgnData, "events", new ArrayList());
+
+        // Output Cultivar File
+        String[] lastBlocks = {"", ""};
+        for (int i = 0; i < events.size(); i++) {
+            if (getObjectOr(events.get(i), "event", "").equals("planting")) {
+                String culId = (String) events.get(i).get("cul_id");
+                if (catalog.contains(culId)) {
+                    appendCultivar(sbData, lastBlocks,
+                            catalog.getHeaderInfo(culId),
+                            catalog.getTitles(culId),
+                            catalog.getInfo(culId));
+                }
             }
-//            decompressData(culArr);
+        }
+        if (sbData.length() == 0) {
+            return;
+        }
+
+        writeCulFile(arg0, result, sbData);
+    }
+
+    /**
+     * Append the data line of cultivar, the header line and title line are
+     * added when they are different from the last ones
+     *
+     * @param sbData the output holder
+     * @param lastBlocks the last header line [0] and title line [1]
+     * @param headerInfo the header line of cultivar
+     * @param titles the title line of cultivar
+     * @param culInfo the data line of cultivar
+     */
+    private void appendCultivar(StringBuilder sbData, String[] lastBlocks, String headerInfo, String titles, String culInfo) {
+        // If come to new header, add header line and title line
+        if (!headerInfo.equals(lastBlocks[0])) {
+            lastBlocks[0] = headerInfo;
+            sbData.append(lastBlocks[0]).append("\r\n");
+            lastBlocks[1] = titles;
+            sbData.append(lastBlocks[1]).append("\r\n");
+        }
+        // If come to new title line, add title line
+        if (!titles.equals(lastBlocks[1])) {
+            lastBlocks[1] = titles;
+            sbData.append(lastBlocks[1]).append("\r\n");
+        }
+        // Write data line
+        sbData.append(culInfo).append("\r\n");
+    }
+
+    /**
+     * Write the cultivar data into the output file
+     *
+     * @param arg0 file output path
+     * @param result data holder object
+     * @param sbData the cultivar data in the output
+     */
+    private void writeCulFile(String arg0, Map result, StringBuilder sbData) {
+
+        BufferedWriter bwC;                             // output object
+
+        try {
 
             // Initial BufferedWriter
             // Get File name
@@ -58,28 +146,7 @@ public class DssatCulFileOutput extends DssatCommonOutput {
             }
             arg0 = revisePath(arg0);
             outputFile = new File(arg0 + fileName);
-            bwC = new BufferedWriter(new FileWriter(outputFile));
-
-            // Output Cultivar File
-            String lastHeaderInfo = "";
-            String lastTitles = "";
-            for (int i = 0; i < culArr.size(); i++) {
-                // If come to new header, add header line and title line
-                if (!getObjectOr(culArr.get(i), "header_info", "").equals(lastHeaderInfo)) {
-                    lastHeaderInfo = getObjectOr(culArr.get(i), "header_info", "");
-                    sbData.append(lastHeaderInfo).append("\r\n");
-                    lastTitles = getObjectOr(culArr.get(i), "cul_titles", "");
-                    sbData.append(lastTitles).append("\r\n");
-                }
-                // If come to new title line, add title line
-                if (!getObjectOr(culArr.get(i), "cul_titles", "").equals(lastTitles)) {
-                    lastTitles = getObjectOr(culArr.get(i), "cul_titles", "");
-                    sbData.append(lastTitles).append("\r\n");
-                }
-                // Write data line
-                sbData.append(getObjectOr(culArr.get(i), "cul_info", "")).append("\r\n");
-                
-            }
+            bwC = openWriter(outputFile);
 
             // Output finish
             bwC.write(sbError.toString());
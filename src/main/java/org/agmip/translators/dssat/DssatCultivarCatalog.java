@@ -0,0 +1,160 @@
+package org.agmip.translators.dssat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * DSSAT cultivar catalog Class, hold the data lines of cultivar files with
+ * the header and title blocks shared by the lines under them, and index the
+ * lines by cul_id, so the cultivar map is only built for the cultivar which is
+ * looked up.
+ *
+ * The map of cultivar is same as the one built by readCultivarData() (cul_id,
+ * header_info, cul_titles and cul_info), and the lookup returns the first
+ * line with the cul_id (same as getSectionData).
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+public class DssatCultivarCatalog {
+
+    private ArrayList<String> culIds = new ArrayList<String>();
+    private ArrayList<String> culInfos = new ArrayList<String>();
+    private ArrayList<String> headers = new ArrayList<String>();
+    private ArrayList<String> titles = new ArrayList<String>();
+    private HashMap<String, Integer> lineIdx = new HashMap<String, Integer>();
+
+    /**
+     * Add the data line into catalog, the header and title should be the same
+     * String object for the lines under the same block
+     *
+     * @param culId the cul_id of line, null if it is invalid
+     * @param culInfo the data line
+     * @param header the header_info, null if there is no header before
+     * @param title the cul_titles, null if there is no title before
+     */
+    void addLine(String culId, String culInfo, String header, String title) {
+        if (culId != null && !lineIdx.containsKey(culId)) {
+            lineIdx.put(culId, culInfos.size());
+        }
+        culIds.add(culId);
+        culInfos.add(culInfo);
+        headers.add(header);
+        titles.add(title);
+    }
+
+    /**
+     * Check if the cul_id is in the catalog
+     *
+     * @param culId the cul_id
+     * @return true if there is data line for the cultivar
+     */
+    public boolean contains(String culId) {
+        return culId != null && lineIdx.containsKey(culId);
+    }
+
+    /**
+     * Get the number of data lines in the catalog
+     *
+     * @return the number of lines
+     */
+    public int size() {
+        return culInfos.size();
+    }
+
+    /**
+     * Check if there is no data line in the catalog
+     *
+     * @return true for empty catalog
+     */
+    public boolean isEmpty() {
+        return culInfos.isEmpty();
+    }
+
+    /**
+     * Get the new built map of the cultivar
+     *
+     * @param culId the cul_id
+     * @return the cultivar data, null if the cul_id is not in the catalog
+     */
+    public HashMap get(String culId) {
+        Integer i = culId == null ? null : lineIdx.get(culId);
+        if (i == null) {
+            return null;
+        }
+        return getLine(i);
+    }
+
+    /**
+     * Get the header_info of the cultivar
+     *
+     * @param culId the cul_id
+     * @return the header_info, blank string if there is no header
+     */
+    public String getHeaderInfo(String culId) {
+        return getBlock(headers, culId);
+    }
+
+    /**
+     * Get the cul_titles of the cultivar
+     *
+     * @param culId the cul_id
+     * @return the cul_titles, blank string if there is no title
+     */
+    public String getTitles(String culId) {
+        return getBlock(titles, culId);
+    }
+
+    /**
+     * Get the cul_info (the data line) of the cultivar
+     *
+     * @param culId the cul_id
+     * @return the cul_info, blank string if the cul_id is not in the catalog
+     */
+    public String getInfo(String culId) {
+        return getBlock(culInfos, culId);
+    }
+
+    /**
+     * Build the maps of all the data lines in the original order, same as the
+     * result of readCultivarData()
+     *
+     * @return the list of cultivar data
+     */
+    public ArrayList<HashMap> getAll() {
+        ArrayList<HashMap> ret = new ArrayList<HashMap>();
+        for (int i = 0; i < culInfos.size(); i++) {
+            ret.add(getLine(i));
+        }
+        return ret;
+    }
+
+    /**
+     * Build the map of data line
+     */
+    private HashMap getLine(int i) {
+        HashMap ret = new HashMap();
+        if (culIds.get(i) != null) {
+            ret.put("cul_id", culIds.get(i));
+        }
+        if (headers.get(i) != null) {
+            ret.put("header_info", headers.get(i));
+        }
+        if (titles.get(i) != null) {
+            ret.put("cul_titles", titles.get(i));
+        }
+        ret.put("cul_info", culInfos.get(i));
+        return ret;
+    }
+
+    /**
+     * Get the text of the cultivar from the list of blocks
+     */
+    private String getBlock(ArrayList<String> blocks, String culId) {
+        Integer i = culId == null ? null : lineIdx.get(culId);
+        if (i == null || blocks.get(i) == null) {
+            return "";
+        }
+        return blocks.get(i);
+    }
+}
@@ -0,0 +1,608 @@
+package org.agmip.translators.dssat;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DSSAT daily weather data holder Class, store the daily records in columns
+ * of primitive arrays (an int date array plus a fixed-point value array for
+ * each variable) instead of one HashMap per day.
+ *
+ * The holder is also a List of daily records, each record is a new HashMap
+ * created from the columns when it is asked for (read-only snapshot), so the
+ * callers which use the map-shaped daily data could still work with it.
+ *
+ * P.S. the number text is kept as unscaled integer plus its decimal places,
+ * so the original text could be rebuilt exactly; the text which could not be
+ * kept in that way (like ".5" or "1E3") is kept as it is in a sparse map
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+public class DssatDailyWeather extends AbstractList<HashMap<String, String>> {
+
+    public static final String DATE_KEY = "w_date";
+    private static final byte BLANK = -1;      // the cell is blank or invalid, which is "" in the map
+    private static final byte ABSENT = -2;     // the cell is not in the record
+    private static final byte TEXT = -3;       // the cell is kept as text
+    private static final int MAX_DIGITS = 9;   // P.S. the maximum number of digits which could fit in int
+    private static final double[] POWERS = {1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000, 1000000000};
+    private int size = 0;
+    private int[] dates;
+    private ArrayList<String> vars = new ArrayList<String>();
+    private HashMap<String, Integer> varIdx = new HashMap<String, Integer>();
+    private ArrayList<int[]> values = new ArrayList<int[]>();
+    private ArrayList<byte[]> scales = new ArrayList<byte[]>();
+    private ArrayList<HashMap<Integer, String>> texts = new ArrayList<HashMap<Integer, String>>();
+
+    /**
+     * Constructor with default capacity of one year
+     */
+    public DssatDailyWeather() {
+        this(366);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param capacity the initial number of days
+     */
+    public DssatDailyWeather(int capacity) {
+        dates = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Constructor, copy the columns from another holder
+     *
+     * @param src the source column holder
+     */
+    public DssatDailyWeather(DssatDailyWeather src) {
+        this(src.size());
+        addAll(src);
+    }
+
+    /**
+     * Get the number of days
+     *
+     * @return the number of days
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the daily record as a map, the map is a snapshot which is created
+     * from the columns, the change on it will not be saved back
+     *
+     * @param i the index of day
+     * @return the daily record
+     */
+    @Override
+    public HashMap<String, String> get(int i) {
+        checkIndex(i, size);
+        HashMap<String, String> ret = new HashMap<String, String>();
+        ret.put(DATE_KEY, getDateStr(i));
+        for (int j = 0; j < vars.size(); j++) {
+            String val = getValueStr(j, i);
+            if (val != null) {
+                ret.put(vars.get(j), val);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Insert the daily record into the given index
+     *
+     * @param i the index of day
+     * @param record the daily record
+     */
+    @Override
+    public void add(int i, HashMap<String, String> record) {
+        checkIndex(i, size + 1);
+        insertDays(i, 1);
+        setRecord(i, record);
+    }
+
+    /**
+     * Insert the daily records into the given index, the columns will be
+     * copied directly if the records are held by another column holder
+     *
+     * @param i the index of the first inserted day
+     * @param records the daily records
+     * @return true if the list is changed
+     */
+    @Override
+    public boolean addAll(int i, Collection<? extends HashMap<String, String>> records) {
+        checkIndex(i, size + 1);
+        int count = records.size();
+        if (count == 0) {
+            return false;
+        }
+        insertDays(i, count);
+        if (records instanceof DssatDailyWeather) {
+            DssatDailyWeather src = (DssatDailyWeather) records;
+            System.arraycopy(src.dates, 0, dates, i, count);
+            for (int j = 0; j < src.vars.size(); j++) {
+                int k = getVarIndex(src.vars.get(j), true);
+                System.arraycopy(src.values.get(j), 0, values.get(k), i, count);
+                System.arraycopy(src.scales.get(j), 0, scales.get(k), i, count);
+                for (Map.Entry<Integer, String> text : src.texts.get(j).entrySet()) {
+                    texts.get(k).put(text.getKey() + i, text.getValue());
+                }
+            }
+        } else {
+            for (HashMap<String, String> record : records) {
+                setRecord(i++, record);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Append a new day with the date only, the variables of this day are
+     * absent until they are set
+     *
+     * @param date the date string with format of "yyyymmdd", blank string for
+     * missing date
+     * @return the index of the new day
+     */
+    public int addDay(String date) {
+        insertDays(size, 1);
+        setDate(size - 1, date);
+        return size - 1;
+    }
+
+    /**
+     * Get the date of the day
+     *
+     * @param i the index of day
+     * @return the date in number of yyyymmdd, 0 for missing date
+     */
+    public int getDate(int i) {
+        checkIndex(i, size);
+        return dates[i];
+    }
+
+    /**
+     * Get the date of the day
+     *
+     * @param i the index of day
+     * @return the date string with format of "yyyymmdd", blank string for
+     * missing date
+     */
+    public String getDateStr(int i) {
+        checkIndex(i, size);
+        if (dates[i] <= 0) {
+            return "";
+        } else {
+            char[] buf = new char[8];
+            int date = dates[i];
+            for (int j = 7; j >= 0; j--) {
+                buf[j] = (char) ('0' + date % 10);
+                date /= 10;
+            }
+            return new String(buf);
+        }
+    }
+
+    /**
+     * Set the date of the day
+     *
+     * @param i the index of day
+     * @param date the date string with format of "yyyymmdd", blank string for
+     * missing date
+     */
+    public void setDate(int i, String date) {
+        checkIndex(i, size);
+        if (date != null && date.length() == 8 && isDigits(date, 0, 8)) {
+            dates[i] = Integer.parseInt(date);
+        } else {
+            dates[i] = 0;
+        }
+    }
+
+    /**
+     * Set the date of the day
+     *
+     * @param i the index of day
+     * @param date the date in number of yyyymmdd, 0 for missing date
+     */
+    public void setDate(int i, int date) {
+        checkIndex(i, size);
+        dates[i] = date >= 10000000 && date <= 99999999 ? date : 0;
+    }
+
+    /**
+     * Get the list of variable names (date is not included)
+     *
+     * @return the read-only list of variable names
+     */
+    public List<String> getVariables() {
+        return Collections.unmodifiableList(vars);
+    }
+
+    /**
+     * Check if the variable is held
+     *
+     * @param var the variable name
+     * @return true if the variable is held
+     */
+    public boolean hasVariable(String var) {
+        return varIdx.containsKey(var);
+    }
+
+    /**
+     * Check if the value of variable is missing (absent, blank or not a
+     * number) for the day
+     *
+     * @param var the variable name
+     * @param i the index of day
+     * @return true for missing value
+     */
+    public boolean isMissing(String var, int i) {
+        checkIndex(i, size);
+        int j = getVarIndex(var, false);
+        return j < 0 || scales.get(j)[i] < 0;
+    }
+
+    /**
+     * Get the number value of variable for the day
+     *
+     * @param var the variable name
+     * @param i the index of day
+     * @return the value, NaN for missing value
+     */
+    public double getValue(String var, int i) {
+        checkIndex(i, size);
+        int j = getVarIndex(var, false);
+        if (j < 0) {
+            return Double.NaN;
+        }
+        byte scale = scales.get(j)[i];
+        if (scale < 0) {
+            return Double.NaN;
+        } else {
+            return values.get(j)[i] / POWERS[scale];
+        }
+    }
+
+    /**
+     * Get the value text of variable (or date) for the day, which is same as
+     * the text in the map-shaped daily record
+     *
+     * @param var the variable name
+     * @param i the index of day
+     * @return the value text, null if the variable is not in the record
+     */
+    public String getValueStr(String var, int i) {
+        checkIndex(i, size);
+        if (var.equals(DATE_KEY)) {
+            return getDateStr(i);
+        }
+        int j = getVarIndex(var, false);
+        if (j < 0) {
+            return null;
+        } else {
+            return getValueStr(j, i);
+        }
+    }
+
+    /**
+     * Set the value text of variable for the day
+     *
+     * @param var the variable name
+     * @param i the index of day
+     * @param val the value text, null for removing the variable from the
+     * record, blank string for missing value
+     */
+    public void setValue(String var, int i, String val) {
+        checkIndex(i, size);
+        if (var.equals(DATE_KEY)) {
+            setDate(i, val);
+            return;
+        }
+        int j = getVarIndex(var, val != null);
+        if (j < 0) {
+            return;
+        }
+        int[] vals = values.get(j);
+        byte[] scls = scales.get(j);
+        HashMap<Integer, String> txts = texts.get(j);
+        if (scls[i] == TEXT) {
+            txts.remove(i);
+        }
+        vals[i] = 0;
+        if (val == null) {
+            scls[i] = ABSENT;
+        } else if (val.equals("")) {
+            scls[i] = BLANK;
+        } else {
+            int len = val.length();
+            int start = val.charAt(0) == '-' ? 1 : 0;
+            int dot = val.indexOf('.');
+            int intEnd = dot < 0 ? len : dot;
+            int digits = len - start - (dot < 0 ? 0 : 1);
+            // P.S. only the plain number text without redundant zero and sign could be rebuilt exactly
+            if (intEnd > start && dot != len - 1 && digits <= MAX_DIGITS
+                    && isDigits(val, start, intEnd) && (dot < 0 || isDigits(val, dot + 1, len))
+                    && (val.charAt(start) != '0' || intEnd == start + 1)) {
+                int num = 0;
+                for (int k = start; k < len; k++) {
+                    if (k != dot) {
+                        num = num * 10 + (val.charAt(k) - '0');
+                    }
+                }
+                if (num != 0 || start == 0) {
+                    vals[i] = start == 1 ? -num : num;
+                    scls[i] = (byte) (dot < 0 ? 0 : len - dot - 1);
+                    return;
+                }
+            }
+            scls[i] = TEXT;
+            txts.put(i, val);
+        }
+    }
+
+    /**
+     * Set the number value of variable for the day, the value is the unscaled
+     * integer divided by 10 to the power of scale, and its text is the plain
+     * number with the given decimal places
+     *
+     * @param var the variable name
+     * @param i the index of day
+     * @param num the unscaled integer
+     * @param scale the number of decimal places
+     */
+    public void setValue(String var, int i, int num, int scale) {
+        checkIndex(i, size);
+        if (scale < 0 || scale > MAX_DIGITS) {
+            throw new IllegalArgumentException("Scale: " + scale);
+        }
+        if (var.equals(DATE_KEY)) {
+            setDate(i, scale == 0 ? num : 0);
+            return;
+        }
+        int j = getVarIndex(var, true);
+        byte[] scls = scales.get(j);
+        if (scls[i] == TEXT) {
+            texts.get(j).remove(i);
+        }
+        values.get(j)[i] = num;
+        scls[i] = (byte) scale;
+    }
+
+    /**
+     * Trim the capacity of columns to the number of days
+     */
+    public void trimToSize() {
+        if (dates.length > size) {
+            resize(Math.max(size, 1));
+        }
+    }
+
+    /**
+     * Write the columns into the binary output, which could be read back by
+     * readFrom()
+     *
+     * @param out the binary output
+     * @throws IOException
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(dates[i]);
+        }
+        out.writeInt(vars.size());
+        for (int j = 0; j < vars.size(); j++) {
+            out.writeUTF(vars.get(j));
+            int[] vals = values.get(j);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(vals[i]);
+            }
+            out.write(scales.get(j), 0, size);
+            out.writeInt(texts.get(j).size());
+            for (Map.Entry<Integer, String> text : texts.get(j).entrySet()) {
+                out.writeInt(text.getKey());
+                out.writeUTF(text.getValue());
+            }
+        }
+    }
+
+    /**
+     * Read the columns which are written by writeTo()
+     *
+     * @param in the binary input
+     * @return the column holder
+     * @throws IOException
+     */
+    static DssatDailyWeather readFrom(DataInput in) throws IOException {
+        int days = in.readInt();
+        DssatDailyWeather ret = new DssatDailyWeather(days);
+        ret.insertDays(0, days);
+        for (int i = 0; i < days; i++) {
+            ret.dates[i] = in.readInt();
+        }
+        int varNum = in.readInt();
+        for (int n = 0; n < varNum; n++) {
+            int j = ret.getVarIndex(in.readUTF(), true);
+            int[] vals = ret.values.get(j);
+            for (int i = 0; i < days; i++) {
+                vals[i] = in.readInt();
+            }
+            in.readFully(ret.scales.get(j), 0, days);
+            int textNum = in.readInt();
+            for (int k = 0; k < textNum; k++) {
+                int i = in.readInt();
+                ret.texts.get(j).put(i, in.readUTF());
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Set the values of daily record into the day
+     *
+     * @param i the index of day
+     * @param record the daily record
+     */
+    private void setRecord(int i, Map<String, String> record) {
+        setDate(i, record.get(DATE_KEY));
+        for (Map.Entry<String, String> entry : record.entrySet()) {
+            if (!entry.getKey().equals(DATE_KEY)) {
+                setValue(entry.getKey(), i, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Get the value text of variable for the day
+     *
+     * @param j the index of variable
+     * @param i the index of day
+     * @return the value text, null if the variable is not in the record
+     */
+    private String getValueStr(int j, int i) {
+        byte scale = scales.get(j)[i];
+        if (scale == ABSENT) {
+            return null;
+        } else if (scale == BLANK) {
+            return "";
+        } else if (scale == TEXT) {
+            return texts.get(j).get(i);
+        }
+        int num = values.get(j)[i];
+        StringBuilder sb = new StringBuilder(12);
+        if (num < 0) {
+            sb.append('-');
+            num = -num;
+        }
+        String digits = Integer.toString(num);
+        int intLen = digits.length() - scale;
+        if (intLen <= 0) {
+            sb.append('0');
+            if (scale > 0) {
+                sb.append('.');
+            }
+            for (int k = intLen; k < 0; k++) {
+                sb.append('0');
+            }
+            sb.append(digits);
+        } else {
+            sb.append(digits, 0, intLen);
+            if (scale > 0) {
+                sb.append('.').append(digits, intLen, digits.length());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Get the index of variable
+     *
+     * @param var the variable name
+     * @param create true for adding the variable if it is not held yet
+     * @return the index of variable, -1 if not found
+     */
+    private int getVarIndex(String var, boolean create) {
+        Integer j = varIdx.get(var);
+        if (j != null) {
+            return j;
+        } else if (!create) {
+            return -1;
+        }
+        int[] vals = new int[dates.length];
+        byte[] scls = new byte[dates.length];
+        Arrays.fill(scls, ABSENT);
+        vars.add(var);
+        values.add(vals);
+        scales.add(scls);
+        texts.add(new HashMap<Integer, String>());
+        varIdx.put(var, vars.size() - 1);
+        return vars.size() - 1;
+    }
+
+    /**
+     * Insert the empty days into columns, the variables of new days are
+     * absent
+     *
+     * @param i the index of the first inserted day
+     * @param count the number of days
+     */
+    private void insertDays(int i, int count) {
+        if (size + count > dates.length) {
+            resize(Math.max(size + count, dates.length * 2));
+        }
+        int moved = size - i;
+        System.arraycopy(dates, i, dates, i + count, moved);
+        Arrays.fill(dates, i, i + count, 0);
+        for (int j = 0; j < vars.size(); j++) {
+            System.arraycopy(values.get(j), i, values.get(j), i + count, moved);
+            Arrays.fill(values.get(j), i, i + count, 0);
+            System.arraycopy(scales.get(j), i, scales.get(j), i + count, moved);
+            Arrays.fill(scales.get(j), i, i + count, ABSENT);
+            if (moved > 0 && !texts.get(j).isEmpty()) {
+                HashMap<Integer, String> shifted = new HashMap<Integer, String>();
+                for (Map.Entry<Integer, String> text : texts.get(j).entrySet()) {
+                    int k = text.getKey();
+                    shifted.put(k < i ? k : k + count, text.getValue());
+                }
+                texts.set(j, shifted);
+            }
+        }
+        size += count;
+        modCount++;
+    }
+
+    /**
+     * Change the capacity of columns
+     *
+     * @param capacity the new capacity
+     */
+    private void resize(int capacity) {
+        dates = Arrays.copyOf(dates, capacity);
+        for (int j = 0; j < vars.size(); j++) {
+            values.set(j, Arrays.copyOf(values.get(j), capacity));
+            byte[] scls = Arrays.copyOf(scales.get(j), capacity);
+            if (capacity > size) {
+                Arrays.fill(scls, size, capacity, ABSENT);
+            }
+            scales.set(j, scls);
+        }
+    }
+
+    /**
+     * Check if the index is in the range
+     *
+     * @param i the index
+     * @param limit the upper limit (exclusive)
+     */
+    private void checkIndex(int i, int limit) {
+        if (i < 0 || i >= limit) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Check if the chars in the range are all digits
+     */
+    private static boolean isDigits(String str, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = str.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
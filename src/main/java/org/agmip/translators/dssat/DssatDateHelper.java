@@ -0,0 +1,295 @@
+package org.agmip.translators.dssat;
+
+import java.util.Calendar;
+
+/**
+ * DSSAT date translation helper Class, translate date between "yyddd" and
+ * "yyyymmdd" by using precomputed calendar tables, Calendar object is only
+ * used for the date out of the table range
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+class DssatDateHelper {
+
+    private static final int MIN_YEAR = 1600;
+    private static final int MAX_YEAR = 2400;
+    private static final int CROSS_YEAR = 15;    // P.S. 2015 is the cross year for the current version
+    // the day number of Jan 1st for each year (counted from Jan 1st of MIN_YEAR), the last one is for MAX_YEAR + 1
+    private static final int[] yearStarts = new int[MAX_YEAR - MIN_YEAR + 2];
+    // the day number of 1st day for each month in the year (counted from Jan 1st), [0] for common year, [1] for leap year
+    private static final int[][] monthStarts = new int[2][13];
+
+    static {
+        int[] monthDays = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+        for (int i = 0; i < 2; i++) {
+            for (int j = 0; j < 12; j++) {
+                monthStarts[i][j + 1] = monthStarts[i][j] + monthDays[j] + (i == 1 && j == 1 ? 1 : 0);
+            }
+        }
+        for (int i = 1; i < yearStarts.length; i++) {
+            yearStarts[i] = yearStarts[i - 1] + monthStarts[isLeap(MIN_YEAR + i - 1) ? 1 : 0][12];
+        }
+    }
+
+    private DssatDateHelper() {
+    }
+
+    /**
+     * Check if the year is leap year (Gregorian)
+     *
+     * @param year the year
+     * @return true for leap year
+     */
+    private static boolean isLeap(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    /**
+     * Get the year of the day number
+     *
+     * @param dayNum the day number counted from Jan 1st of MIN_YEAR
+     * @return the year, or -1 if the day is out of table range
+     */
+    private static int getYear(int dayNum) {
+        if (dayNum < 0 || dayNum >= yearStarts[yearStarts.length - 1]) {
+            return -1;
+        }
+        int i = Math.min(dayNum / 366, yearStarts.length - 2);
+        while (yearStarts[i + 1] <= dayNum) {
+            i++;
+        }
+        return MIN_YEAR + i;
+    }
+
+    /**
+     * Parse the number of days, only integer part will be used
+     *
+     * @param strDays the number of days
+     * @return the integer number of days
+     */
+    private static int parseDays(String strDays) {
+        int len = strDays.length();
+        int start = len > 0 && strDays.charAt(0) == '-' ? 1 : 0;
+        if (len > start && len - start < 10 && isDigits(strDays, start, len)) {
+            int ret = parseDigits(strDays, start, len);
+            return start == 1 ? -ret : ret;
+        } else {
+            return Double.valueOf(strDays).intValue();
+        }
+    }
+
+    /**
+     * Check if the chars in the range are all digits
+     */
+    private static boolean isDigits(String str, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = str.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse the digits in the range (the range need to be checked by isDigits)
+     */
+    private static int parseDigits(String str, int start, int end) {
+        int ret = 0;
+        for (int i = start; i < end; i++) {
+            ret = ret * 10 + (str.charAt(i) - '0');
+        }
+        return ret;
+    }
+
+    /**
+     * Put the number into char array with fixed length, fill with 0 on the
+     * left side
+     */
+    private static void putDigits(char[] buf, int offset, int length, int num) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            buf[i] = (char) ('0' + num % 10);
+            num /= 10;
+        }
+    }
+
+    /**
+     * Translate data str from "yyddd" to "yyyymmdd" plus days you want
+     *
+     * @param startDate date string with format of "yyddd"
+     * @param strDays the number of days need to be added on
+     * @return result date string with format of "yyyymmdd", blank string if
+     * translate failed
+     */
+    public static String toYyyymmdd(String startDate, String strDays) {
+
+        if (startDate == null || startDate.length() > 5 || startDate.length() < 4) {
+            return ""; // P.S. use blank string instead of -99
+        }
+        if (!isDigits(startDate, 0, startDate.length())) {
+            return toYyyymmddByCalendar(startDate, strDays);
+        }
+        try {
+            int date = parseDigits(startDate, 0, startDate.length());
+            int year = date / 1000;
+            year += year <= CROSS_YEAR ? 2000 : 1900;
+            int dayNum = yearStarts[year - MIN_YEAR] + date % 1000 - 1 + parseDays(strDays);
+            year = getYear(dayNum);
+            if (year < 0) {
+                return toYyyymmddByCalendar(startDate, strDays);
+            }
+            int[] months = monthStarts[isLeap(year) ? 1 : 0];
+            int doy = dayNum - yearStarts[year - MIN_YEAR];
+            int month = doy / 31;
+            while (months[month + 1] <= doy) {
+                month++;
+            }
+            char[] buf = new char[8];
+            putDigits(buf, 0, 4, year);
+            putDigits(buf, 4, 2, month + 1);
+            putDigits(buf, 6, 2, doy - months[month] + 1);
+            return new String(buf);
+        } catch (Exception e) {
+            return ""; // P.S. use blank string instead of -99
+        }
+    }
+
+    /**
+     * Translate date number from "yyddd" to "yyyymmdd", same as
+     * toYyyymmdd(startDate, "0") for the date text of 4 or 5 digits
+     *
+     * @param date date number with format of "yyddd"
+     * @return result date number with format of "yyyymmdd", 0 if translate
+     * failed
+     */
+    public static int toYyyymmdd(int date) {
+
+        if (date < 0 || date > 99999) {
+            return 0;
+        }
+        int year = date / 1000;
+        year += year <= CROSS_YEAR ? 2000 : 1900;
+        return toDateNum(yearStarts[year - MIN_YEAR] + date % 1000 - 1);
+    }
+
+    /**
+     * Add days on the date number with format of "yyyymmdd"
+     *
+     * @param date date number with format of "yyyymmdd"
+     * @param days the number of days need to be added on
+     * @return result date number with format of "yyyymmdd", 0 if the date is
+     * invalid or out of the table range
+     */
+    public static int addDays(int date, int days) {
+
+        int year = date / 10000;
+        int month = date / 100 % 100;
+        if (year < MIN_YEAR || year > MAX_YEAR || month < 1 || month > 12) {
+            return 0;
+        }
+        return toDateNum(yearStarts[year - MIN_YEAR] + monthStarts[isLeap(year) ? 1 : 0][month - 1] + date % 100 - 1 + days);
+    }
+
+    /**
+     * Get the date number with format of "yyyymmdd" for the day number
+     *
+     * @param dayNum the day number counted from Jan 1st of MIN_YEAR
+     * @return the date number, 0 if the day is out of table range
+     */
+    private static int toDateNum(int dayNum) {
+        int year = getYear(dayNum);
+        if (year < 0) {
+            return 0;
+        }
+        int[] months = monthStarts[isLeap(year) ? 1 : 0];
+        int doy = dayNum - yearStarts[year - MIN_YEAR];
+        int month = doy / 31;
+        while (months[month + 1] <= doy) {
+            month++;
+        }
+        return year * 10000 + (month + 1) * 100 + doy - months[month] + 1;
+    }
+
+    /**
+     * Translate data str from "yyyymmdd" to "yyddd" plus days you want
+     *
+     * @param startDate date string with format of "yyyymmdd"
+     * @param strDays the number of days need to be added on
+     * @return result date string with format of "yyddd", null if translate
+     * failed
+     */
+    public static String toYyddd(String startDate, String strDays) {
+
+        if (startDate.length() != 8 || !isDigits(startDate, 0, 8)) {
+            return toYydddByCalendar(startDate, strDays);
+        }
+        try {
+            int year = parseDigits(startDate, 0, 4);
+            int month = parseDigits(startDate, 4, 6);
+            if (year < MIN_YEAR || year > MAX_YEAR || month < 1 || month > 12) {
+                return toYydddByCalendar(startDate, strDays);
+            }
+            int dayNum = yearStarts[year - MIN_YEAR] + monthStarts[isLeap(year) ? 1 : 0][month - 1]
+                    + parseDigits(startDate, 6, 8) - 1 + parseDays(strDays);
+            year = getYear(dayNum);
+            if (year < 0) {
+                return toYydddByCalendar(startDate, strDays);
+            }
+            char[] buf = new char[5];
+            putDigits(buf, 0, 2, year % 100);
+            putDigits(buf, 2, 3, dayNum - yearStarts[year - MIN_YEAR] + 1);
+            return new String(buf);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Translate data str from "yyddd" to "yyyymmdd" by Calendar, for the
+     * input which is not a plain date number
+     */
+    private static String toYyyymmddByCalendar(String startDate, String strDays) {
+
+        // Initial Calendar object
+        Calendar cal = Calendar.getInstance();
+        int days;
+        int year;
+        try {
+            startDate = String.format("%05d", Integer.parseInt(startDate));
+            days = Double.valueOf(strDays).intValue();
+            // Set date with input value
+            year = Integer.parseInt(startDate.substring(0, 2));
+            year += year <= CROSS_YEAR ? 2000 : 1900;
+            cal.set(Calendar.YEAR, year);
+            cal.set(Calendar.DAY_OF_YEAR, Integer.parseInt(startDate.substring(2)));
+            cal.add(Calendar.DATE, days);
+            // translatet to yyddd format
+            return String.format("%1$04d%2$02d%3$02d", cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH));
+        } catch (Exception e) {
+            return ""; // P.S. use blank string instead of -99
+        }
+    }
+
+    /**
+     * Translate data str from "yyyymmdd" to "yyddd" by Calendar, for the
+     * input which is out of the table range
+     */
+    private static String toYydddByCalendar(String startDate, String strDays) {
+
+        // Initial Calendar object
+        Calendar cal = Calendar.getInstance();
+        int days;
+        startDate = startDate.replaceAll("/", "");
+        try {
+            days = Double.valueOf(strDays).intValue();
+            // Set date with input value
+            cal.set(Integer.parseInt(startDate.substring(0, 4)), Integer.parseInt(startDate.substring(4, 6)) - 1, Integer.parseInt(startDate.substring(6)));
+            cal.add(Calendar.DATE, days);
+            // translatet to yyddd format
+            return String.format("%1$02d%2$03d", cal.get(Calendar.YEAR) % 100, cal.get(Calendar.DAY_OF_YEAR));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
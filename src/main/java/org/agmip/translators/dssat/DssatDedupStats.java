@@ -0,0 +1,115 @@
+package org.agmip.translators.dssat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DSSAT shared file statistics Class, count the soil/weather content which is
+ * written and the content which is reused from the written files in one
+ * output run, so the saving of deduplication could be reported.
+ *
+ * A reuse is counted as content hit when the content is carried by a
+ * different id than the written one.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+public class DssatDedupStats {
+
+    public static final String SOIL = "SOL";
+    public static final String WEATHER = "WTH";
+    private LinkedHashMap<String, int[]> counts = new LinkedHashMap<String, int[]>();   // P.S. {written, hits, content hits}
+    private long savedSize = 0;
+
+    /**
+     * Record the content which is written
+     *
+     * @param type the file type (SOIL or WEATHER)
+     */
+    synchronized void recordWritten(String type) {
+        getCounts(type)[0]++;
+    }
+
+    /**
+     * Record the content which is reused from the written file
+     *
+     * @param type the file type (SOIL or WEATHER)
+     * @param size the length of the content which is not written again
+     * @param contentHit true if the content is carried by a different id
+     */
+    synchronized void recordHit(String type, int size, boolean contentHit) {
+        int[] cnts = getCounts(type);
+        cnts[1]++;
+        if (contentHit) {
+            cnts[2]++;
+        }
+        savedSize += size;
+    }
+
+    /**
+     * Get the number of the content which is written
+     *
+     * @param type the file type (SOIL or WEATHER)
+     * @return the number of written content
+     */
+    public synchronized int getWrittenCount(String type) {
+        int[] cnts = counts.get(type);
+        return cnts == null ? 0 : cnts[0];
+    }
+
+    /**
+     * Get the number of the content which is reused
+     *
+     * @param type the file type (SOIL or WEATHER)
+     * @return the number of reused content, include the content hits
+     */
+    public synchronized int getHitCount(String type) {
+        int[] cnts = counts.get(type);
+        return cnts == null ? 0 : cnts[1];
+    }
+
+    /**
+     * Get the number of the content which is reused for a different id
+     *
+     * @param type the file type (SOIL or WEATHER)
+     * @return the number of content hits
+     */
+    public synchronized int getContentHitCount(String type) {
+        int[] cnts = counts.get(type);
+        return cnts == null ? 0 : cnts[2];
+    }
+
+    /**
+     * Get the total length of the content which is not written again
+     *
+     * @return the length in characters
+     */
+    public synchronized long getSavedSize() {
+        return savedSize;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            int[] cnts = entry.getValue();
+            sb.append(entry.getKey()).append(": written ").append(cnts[0])
+                    .append(", reused ").append(cnts[1])
+                    .append(" (by content ").append(cnts[2]).append("); ");
+        }
+        sb.append("saved ").append(savedSize).append(" chars");
+        return sb.toString();
+    }
+
+    /**
+     * Get the counters of the file type
+     */
+    private int[] getCounts(String type) {
+        int[] cnts = counts.get(type);
+        if (cnts == null) {
+            cnts = new int[3];
+            counts.put(type, cnts);
+        }
+        return cnts;
+    }
+}
@@ -0,0 +1,176 @@
+package org.agmip.translators.dssat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+
+/**
+ * DSSAT experiment iterator Class, combine the experiment of each treatment
+ * only when it is asked for, so only the current treatment and the section
+ * tables of XFiles are held (besides the soil, weather, observed and cultivar
+ * data). The experiments are same as the ones returned by
+ * DssatControllerInput.readFile(), and in the same order.
+ *
+ * The soil and weather data used by the experiments could be got by
+ * getSoils() and getWeathers() after the iteration.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+public class DssatExperimentIterator implements Iterator<HashMap> {
+
+    private DssatControllerInput controller;
+    private DssatXFileInput mgnReader;
+    private HashMap metaData;
+    private ArrayList<DssatTreatmentTables> tablesArr;
+    private int tablesIdx = 0;
+    private int sqIdx = 0;
+    private int trCnt = 0;
+    private boolean hasTreatment = false;
+    // P.S. the meta data is paired with the treatment by index (same as readFile), the meta data of the rows after the first one of treatment is queued
+    private LinkedList<HashMap> trMetaQueue = new LinkedList<HashMap>();
+    private HashMap trMetaData;
+    private HashMap trData;
+    private HashMap soilTmpMap = new HashMap();
+    private HashMap wthTmpMap = new HashMap();
+    ArrayList<HashMap> soilArr = new ArrayList<HashMap>();
+    ArrayList<HashMap> wthArr = new ArrayList<HashMap>();
+    HashMap obvAFiles = new HashMap();
+    HashMap obvTFiles = new HashMap();
+    DssatCultivarCatalog culCatalog = new DssatCultivarCatalog();
+
+    /**
+     * Constructor, the other input data need to be set before the iteration
+     *
+     * @param controller the controller which combines the experiment
+     * @param mgnReader the XFile reader which combines the treatment
+     * @param metaData the meta data of XFiles
+     * @param tablesArr the section tables of XFiles
+     */
+    DssatExperimentIterator(DssatControllerInput controller, DssatXFileInput mgnReader, HashMap metaData, ArrayList<DssatTreatmentTables> tablesArr) {
+        this.controller = controller;
+        this.mgnReader = mgnReader;
+        this.metaData = metaData;
+        this.tablesArr = tablesArr;
+        for (int i = 0; i < tablesArr.size(); i++) {
+            if (!tablesArr.get(i).sqArr.isEmpty()) {
+                hasTreatment = true;
+            }
+        }
+    }
+
+    /**
+     * Check if there is more experiment
+     *
+     * @return true if there is more treatment in XFiles
+     */
+    @Override
+    public boolean hasNext() {
+        while (tablesIdx < tablesArr.size() && sqIdx >= tablesArr.get(tablesIdx).sqArr.size()) {
+            tablesIdx++;
+            sqIdx = 0;
+        }
+        return tablesIdx < tablesArr.size();
+    }
+
+    /**
+     * Combine the experiment of next treatment
+     *
+     * @return the experiment data
+     */
+    @Override
+    public HashMap next() {
+        if (!readNextTreatment()) {
+            throw new NoSuchElementException();
+        }
+        return controller.setupExperiment(trMetaData, trData, trCnt - 1, soilArr, wthArr, obvAFiles, obvTFiles, culCatalog, soilTmpMap, wthTmpMap);
+    }
+
+    /**
+     * The experiment could not be removed
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Get the soil sites used by the experiments which have been read, or all
+     * the soil sites if there is no treatment in XFiles
+     *
+     * @return the array of soil site data
+     */
+    public ArrayList<HashMap> getSoils() {
+        if (hasTreatment) {
+            return new ArrayList(soilTmpMap.values());
+        } else {
+            return soilArr;
+        }
+    }
+
+    /**
+     * Get the weather stations used by the experiments which have been read,
+     * or all the weather stations if there is no treatment in XFiles
+     *
+     * @return the array of weather station data
+     */
+    public ArrayList<HashMap> getWeathers() {
+        if (hasTreatment) {
+            return new ArrayList(wthTmpMap.values());
+        } else {
+            return wthArr;
+        }
+    }
+
+    /**
+     * Combine the next treatment, the treatment and its meta data could be
+     * got by getTreatment() and getTreatmentMeta()
+     *
+     * @return false if there is no more treatment
+     */
+    boolean readNextTreatment() {
+        if (!hasNext()) {
+            return false;
+        }
+        ArrayList<HashMap> trArr = new ArrayList<HashMap>();
+        ArrayList<HashMap> trMetaArr = new ArrayList<HashMap>();
+        sqIdx = mgnReader.readTreatment(tablesArr.get(tablesIdx), sqIdx, trArr, trMetaArr);
+        trMetaQueue.addAll(trMetaArr);
+        trData = trArr.get(0);
+        trMetaData = mgnReader.setupMetaData(metaData, trMetaQueue.removeFirst());
+        trCnt++;
+        return true;
+    }
+
+    /**
+     * Get the current treatment
+     *
+     * @return the treatment data
+     */
+    HashMap getTreatment() {
+        return trData;
+    }
+
+    /**
+     * Get the meta data of current treatment
+     *
+     * @return the experiment data holder with meta data
+     */
+    HashMap getTreatmentMeta() {
+        return trMetaData;
+    }
+
+    /**
+     * Move back to the first treatment
+     */
+    void rewind() {
+        tablesIdx = 0;
+        sqIdx = 0;
+        trCnt = 0;
+        trMetaQueue.clear();
+        trData = null;
+        trMetaData = null;
+    }
+}
@@ -0,0 +1,360 @@
+package org.agmip.translators.dssat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * DSSAT line scanner Class, walk through the lines of ASCII file content
+ * which is held in byte array or ByteBuffer, and read the fixed-width columns
+ * from the bytes directly, so the data line need not to be decoded into
+ * String before it is divided.
+ *
+ * The line breaks are same as BufferedReader.readLine() ("\n", "\r" or
+ * "\r\n"). The scanner only works for ASCII content, the caller need to check
+ * it by isAscii() and use the Reader for the other content.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+class DssatLineScanner {
+
+    private static final int MAX_DIGITS = 9;   // P.S. the maximum number of digits which could fit in int
+    // P.S. the ASCII bytes are decoded by hand, which is only same as the Reader when default charset is ASCII compatible
+    static final boolean ASCII_COMPATIBLE = checkDefaultCharset();
+    private byte[] bytes;
+    private ByteBuffer buffer;
+    private int start;
+    private int end;
+    private int pos;
+    private int lineStart;
+    private int lineEnd;
+    private int valStart;
+    private int valEnd;
+    private int number;
+    private int scale;
+
+    /**
+     * Constructor, scan the slice of byte array
+     *
+     * @param data the content bytes
+     * @param offset the start of content
+     * @param length the length of content
+     */
+    public DssatLineScanner(byte[] data, int offset, int length) {
+        bytes = data;
+        start = offset;
+        end = offset + length;
+        pos = start;
+    }
+
+    /**
+     * Constructor, scan the remaining bytes of buffer, the position of buffer
+     * will not be changed
+     *
+     * @param data the content buffer
+     */
+    public DssatLineScanner(ByteBuffer data) {
+        if (data.hasArray()) {
+            bytes = data.array();
+            start = data.arrayOffset() + data.position();
+            end = data.arrayOffset() + data.limit();
+        } else {
+            buffer = data;
+            start = data.position();
+            end = data.limit();
+        }
+        pos = start;
+    }
+
+    /**
+     * Check if all the bytes of content are ASCII
+     *
+     * @return true for ASCII content
+     */
+    public boolean isAscii() {
+        if (bytes != null) {
+            for (int i = start; i < end; i++) {
+                if (bytes[i] < 0) {
+                    return false;
+                }
+            }
+        } else {
+            for (int i = start; i < end; i++) {
+                if (buffer.get(i) < 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Move to the next line
+     *
+     * @return false if there is no more line
+     */
+    public boolean nextLine() {
+        if (pos >= end) {
+            return false;
+        }
+        lineStart = pos;
+        int i = pos;
+        byte b = 0;
+        while (i < end && (b = at(i)) != '\n' && b != '\r') {
+            i++;
+        }
+        lineEnd = i;
+        if (i < end) {
+            i++;
+            if (b == '\r' && i < end && at(i) == '\n') {
+                i++;
+            }
+        }
+        pos = i;
+        return true;
+    }
+
+    /**
+     * Get the offset of current line from the start of content
+     *
+     * @return the offset of line
+     */
+    public int getLineOffset() {
+        return lineStart - start;
+    }
+
+    /**
+     * Get the number of bytes of content
+     *
+     * @return the length of content
+     */
+    public int getContentLength() {
+        return end - start;
+    }
+
+    /**
+     * Get the length of current line
+     *
+     * @return the number of chars in the line
+     */
+    public int length() {
+        return lineEnd - lineStart;
+    }
+
+    /**
+     * Get the char in current line
+     *
+     * @param i the index in the line
+     * @return the char
+     */
+    public char charAt(int i) {
+        return (char) at(lineStart + i);
+    }
+
+    /**
+     * Check if current line only contains white spaces
+     *
+     * @return true for blank line
+     */
+    public boolean isBlank() {
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (at(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decode current line into String
+     *
+     * @return the text of line
+     */
+    public String getLine() {
+        return decode(lineStart, lineEnd);
+    }
+
+    /**
+     * Get the trimmed text of column from current line, same as
+     * DssatRecordSchema.getValue()
+     *
+     * @param schema The precompiled definition of columns
+     * @param i the index of column
+     * @return the trimmed text
+     */
+    public String getValue(DssatRecordSchema schema, int i) {
+        if (trim(schema, i)) {
+            return decode(valStart, valEnd);
+        } else {
+            return "";
+        }
+    }
+
+    /**
+     * Check if the trimmed text of column is same as the given text
+     *
+     * @param schema The precompiled definition of columns
+     * @param i the index of column
+     * @param text the text to compare
+     * @return true if they are same
+     */
+    public boolean valueEquals(DssatRecordSchema schema, int i, String text) {
+        trim(schema, i);
+        if (valEnd - valStart != text.length()) {
+            return false;
+        }
+        for (int k = valStart; k < valEnd; k++) {
+            if (at(k) != text.charAt(k - valStart)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read the column which only contains digits as non-negative integer
+     *
+     * @param schema The precompiled definition of columns
+     * @param i the index of column
+     * @param minLength the minimum number of digits
+     * @param maxLength the maximum number of digits (no more than 9)
+     * @return the integer, -1 if the trimmed text is not such digits
+     */
+    public int readDigits(DssatRecordSchema schema, int i, int minLength, int maxLength) {
+        trim(schema, i);
+        int len = valEnd - valStart;
+        if (len < minLength || len > Math.min(maxLength, MAX_DIGITS)) {
+            return -1;
+        }
+        int ret = 0;
+        for (int k = valStart; k < valEnd; k++) {
+            int c = at(k) - '0';
+            if (c < 0 || c > 9) {
+                return -1;
+            }
+            ret = ret * 10 + c;
+        }
+        return ret;
+    }
+
+    /**
+     * Read the column as decimal number, the result is held as unscaled
+     * integer and its decimal places, which could be got by getNumber() and
+     * getScale(). Only the plain number text without redundant zero and sign
+     * is accepted, so the original text could be rebuilt from the result
+     *
+     * @param schema The precompiled definition of columns
+     * @param i the index of column
+     * @return true if the column is read as number
+     */
+    public boolean readNumber(DssatRecordSchema schema, int i) {
+        if (!trim(schema, i)) {
+            return false;
+        }
+        boolean negative = at(valStart) == '-';
+        int intStart = negative ? valStart + 1 : valStart;
+        int dot = -1;
+        int digits = 0;
+        int num = 0;
+        for (int k = intStart; k < valEnd; k++) {
+            byte b = at(k);
+            if (b == '.' && dot < 0) {
+                dot = k;
+            } else if (b >= '0' && b <= '9' && ++digits <= MAX_DIGITS) {
+                num = num * 10 + (b - '0');
+            } else {
+                return false;
+            }
+        }
+        int intEnd = dot < 0 ? valEnd : dot;
+        if (intEnd == intStart || dot == valEnd - 1
+                || (at(intStart) == '0' && intEnd != intStart + 1)
+                || (num == 0 && negative)) {
+            return false;
+        }
+        number = negative ? -num : num;
+        scale = dot < 0 ? 0 : valEnd - dot - 1;
+        return true;
+    }
+
+    /**
+     * Get the unscaled integer of last number read by readNumber()
+     *
+     * @return the unscaled integer
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * Get the decimal places of last number read by readNumber()
+     *
+     * @return the number of decimal places
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * Locate the trimmed text of column in current line, the column will be
+     * cut if the line is shorter than the column definition
+     *
+     * @return false if the column is blank
+     */
+    private boolean trim(DssatRecordSchema schema, int i) {
+        int length = lineEnd - lineStart;
+        int s = lineStart + Math.min(schema.getStart(i), length);
+        int e = lineStart + Math.min(schema.getEnd(i), length);
+        while (s < e && at(s) <= ' ') {
+            s++;
+        }
+        while (e > s && at(e - 1) <= ' ') {
+            e--;
+        }
+        valStart = s;
+        valEnd = e;
+        return s < e;
+    }
+
+    /**
+     * Get the byte of content
+     */
+    private byte at(int i) {
+        return bytes != null ? bytes[i] : buffer.get(i);
+    }
+
+    /**
+     * Decode the ASCII bytes in the range
+     */
+    private String decode(int from, int to) {
+        char[] buf = new char[to - from];
+        for (int k = from; k < to; k++) {
+            buf[k - from] = (char) at(k);
+        }
+        return new String(buf);
+    }
+
+    /**
+     * Check if the default charset decodes the ASCII bytes as they are
+     */
+    private static boolean checkDefaultCharset() {
+        try {
+            byte[] ascii = new byte[128];
+            for (int i = 0; i < ascii.length; i++) {
+                ascii[i] = (byte) i;
+            }
+            String text = new String(ascii, Charset.defaultCharset().name());
+            if (text.length() != ascii.length) {
+                return false;
+            }
+            for (int i = 0; i < ascii.length; i++) {
+                if (text.charAt(i) != i) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
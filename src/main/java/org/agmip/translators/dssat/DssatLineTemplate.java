@@ -0,0 +1,241 @@
+package org.agmip.translators.dssat;
+
+import java.util.ArrayList;
+
+/**
+ * DSSAT fixed-width line template Class, hold the precompiled layout of one
+ * type of output line, so the format pattern is only parsed once and the
+ * columns are padded directly into the output buffer.
+ *
+ * The pattern uses the same syntax as String.format(), but only supports the
+ * conversions used by DSSAT files: "%s" and "%d" with optional argument index
+ * ("%2$s"), left-justify flag ("%-5s") and width ("%5s"), plus "%%". The
+ * result is same as String.format() with the same pattern.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+class DssatLineTemplate {
+
+    private final String pattern;
+    private final String[] literals;
+    private final int[] argIdxs;
+    private final int[] widths;
+    private final boolean[] leftFlgs;
+
+    /**
+     * Constructor, compile the format pattern
+     *
+     * @param pattern the format pattern of line
+     * @throws IllegalArgumentException if the pattern contains unsupported
+     * format specifier
+     */
+    public DssatLineTemplate(String pattern) {
+        this.pattern = pattern;
+        ArrayList<String> lits = new ArrayList<String>();
+        ArrayList<int[]> cols = new ArrayList<int[]>();
+        StringBuilder lit = new StringBuilder();
+        int ordinary = 0;
+        int i = 0;
+        int n = pattern.length();
+        while (i < n) {
+            char c = pattern.charAt(i++);
+            if (c != '%') {
+                lit.append(c);
+                continue;
+            }
+            if (i < n && pattern.charAt(i) == '%') {
+                lit.append('%');
+                i++;
+                continue;
+            }
+
+            // Read specifier [argument_index$][-][width]conversion
+            int argIdx = -1;
+            int width = -1;
+            boolean left = false;
+            int start = i;
+            while (i < n && Character.isDigit(pattern.charAt(i))) {
+                i++;
+            }
+            if (i > start && i < n && pattern.charAt(i) == '$') {
+                argIdx = Integer.parseInt(pattern.substring(start, i)) - 1;
+                if (argIdx < 0) {
+                    throw new IllegalArgumentException("Illegal argument index in [" + pattern + "]");
+                }
+                start = ++i;
+            } else {
+                i = start;
+            }
+            if (i < n && pattern.charAt(i) == '-') {
+                left = true;
+                start = ++i;
+            }
+            while (i < n && Character.isDigit(pattern.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                // P.S. leading zero is the zero-padding flag, which is not supported
+                if (pattern.charAt(start) == '0') {
+                    throw new IllegalArgumentException("Unsupported format specifier in [" + pattern + "]");
+                }
+                width = Integer.parseInt(pattern.substring(start, i));
+            }
+            if (i >= n || (pattern.charAt(i) != 's' && pattern.charAt(i) != 'd') || (left && width < 0)) {
+                throw new IllegalArgumentException("Unsupported format specifier in [" + pattern + "]");
+            }
+            i++;
+            if (argIdx < 0) {
+                argIdx = ordinary++;
+            }
+
+            lits.add(lit.toString());
+            lit.setLength(0);
+            cols.add(new int[]{argIdx, width, left ? 1 : 0});
+        }
+        lits.add(lit.toString());
+
+        literals = lits.toArray(new String[lits.size()]);
+        argIdxs = new int[cols.size()];
+        widths = new int[cols.size()];
+        leftFlgs = new boolean[cols.size()];
+        for (int j = 0; j < cols.size(); j++) {
+            int[] col = cols.get(j);
+            argIdxs[j] = col[0];
+            widths[j] = col[1];
+            leftFlgs[j] = col[2] == 1;
+        }
+    }
+
+    /**
+     * Get the number of columns
+     *
+     * @return the number of columns
+     */
+    public int size() {
+        return widths.length;
+    }
+
+    /**
+     * Get the original format pattern
+     *
+     * @return the format pattern
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Render the line with the arguments into the buffer, same as appending
+     * the result of String.format(pattern, args)
+     *
+     * @param sb the output buffer
+     * @param args the arguments referenced by the format specifiers
+     */
+    public void append(StringBuilder sb, Object... args) {
+        for (int i = 0; i < widths.length; i++) {
+            appendColumn(sb, i, String.valueOf(args[argIdxs[i]]));
+        }
+        appendEnd(sb);
+    }
+
+    /**
+     * Render the line with the arguments into a new String, same as
+     * String.format(pattern, args)
+     *
+     * @param args the arguments referenced by the format specifiers
+     * @return the line text
+     */
+    public String format(Object... args) {
+        StringBuilder sb = new StringBuilder();
+        append(sb, args);
+        return sb.toString();
+    }
+
+    /**
+     * Render the text before the column and the column itself into the
+     * buffer. The columns should be rendered in the order of pattern (the
+     * argument index is ignored), and appendEnd() should be called after the
+     * last column.
+     *
+     * @param sb the output buffer
+     * @param i the index of column in the pattern
+     * @param value the text of column
+     */
+    public void appendColumn(StringBuilder sb, int i, String value) {
+        appendLiteral(sb, i);
+        appendPadded(sb, value, widths[i], leftFlgs[i]);
+    }
+
+    /**
+     * Render only the text before the column into the buffer, the column
+     * itself should be rendered by caller with at least the width of column
+     * (e.g. the number rendered by DssatCommonOutput.appendNumStr())
+     *
+     * @param sb the output buffer
+     * @param i the index of column in the pattern
+     */
+    public void appendLiteral(StringBuilder sb, int i) {
+        sb.append(literals[i]);
+    }
+
+    /**
+     * Render the text after the last column into the buffer
+     *
+     * @param sb the output buffer
+     */
+    public void appendEnd(StringBuilder sb) {
+        sb.append(literals[widths.length]);
+    }
+
+    /**
+     * Pad the text with blanks into the buffer, the text longer than the width
+     * will not be cut
+     *
+     * @param sb the output buffer
+     * @param value the text
+     * @param width the minimum width, -1 for no padding
+     * @param left true for left-justified text
+     */
+    public static void appendPadded(StringBuilder sb, String value, int width, boolean left) {
+        int pad = width - value.length();
+        if (!left) {
+            appendBlanks(sb, pad);
+        }
+        sb.append(value);
+        if (left) {
+            appendBlanks(sb, pad);
+        }
+    }
+
+    /**
+     * Pad the text with blanks to the width, same as String.format() with
+     * "%[-]{width}s"
+     *
+     * @param value the text
+     * @param width the minimum width
+     * @param left true for left-justified text
+     * @return the padded text, or the text itself if it is not shorter than
+     * the width
+     */
+    public static String pad(String value, int width, boolean left) {
+        if (value.length() >= width) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(width);
+        appendPadded(sb, value, width, left);
+        return sb.toString();
+    }
+
+    /**
+     * Append the blanks into the buffer
+     *
+     * @param sb the output buffer
+     * @param n the number of blanks, nothing is appended if it is not positive
+     */
+    static void appendBlanks(StringBuilder sb, int n) {
+        for (int i = 0; i < n; i++) {
+            sb.append(' ');
+        }
+    }
+}
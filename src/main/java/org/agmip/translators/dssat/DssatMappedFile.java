@@ -0,0 +1,102 @@
+package org.agmip.translators.dssat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * DSSAT memory mapped file helper Class, map the plain input file into memory
+ * with read-only mode, so the content is read from the page cache (which is
+ * shared by the processes on the same host) instead of being copied into heap
+ * for each run.
+ *
+ * P.S. the mapped region is released when the buffer is garbage collected,
+ * the file could be locked until then on some platforms (Windows)
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+class DssatMappedFile {
+
+    private DssatMappedFile() {
+    }
+
+    /**
+     * Map the whole file into memory, the channel is closed after mapping
+     *
+     * @param file the input file
+     * @return the read-only buffer of file content, null if the file is too
+     * large to be mapped in one region
+     * @throws IOException
+     */
+    public static ByteBuffer map(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return null;
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Open a new BufferedReader for the mapped content, the content is decoded
+     * with default charset
+     *
+     * @param buf the mapped content, its position will not be changed
+     * @return the BufferedReader for the content
+     */
+    public static BufferedReader getReader(ByteBuffer buf) {
+        return new BufferedReader(new InputStreamReader(new BufferInputStream(buf.duplicate())));
+    }
+
+    /**
+     * The InputStream over the remaining bytes of buffer
+     */
+    private static class BufferInputStream extends InputStream {
+
+        private ByteBuffer buf;
+
+        public BufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            } else if (!buf.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buf.remaining());
+            buf.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            int len = (int) Math.max(0, Math.min(n, buf.remaining()));
+            buf.position(buf.position() + len);
+            return len;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return buf.remaining();
+        }
+    }
+}
@@ -1,11 +1,9 @@
 package org.agmip.translators.dssat;
 
 import java.io.BufferedReader;
-import java.io.CharArrayReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import static org.agmip.util.MapUtil.*;
 
 /**
@@ -18,6 +16,127 @@ public class DssatOutputFileInput extends DssatCommonInput {
 
     public String outDataKey = "data";          // P.S. the key name might change
 
+    // Precompiled formats of data lines
+    private static final DssatRecordSchema summaryMetaFormats = new DssatRecordSchema.Builder()
+            .add("null_1", 11)
+            .add("exname", 10)
+            .add("local_name", 62)
+            .add("null_2", 28)
+            .add("vevsion", 19)
+            .addRest("date")
+            .build();
+
+    private static final DssatRecordSchema summaryFormats = new DssatRecordSchema.Builder()
+            .add("runno", 9)
+            .add("trno", 7)
+            .add("r#", 3)
+            .add("o#", 3)
+            .add("c#", 3)
+            .add("cr", 3)
+            .add("model", 9)
+            .add("tnam", 26)
+            .add("fnam", 9)
+            .add("wsta", 9)
+            .add("soil_id", 11)
+            .add("sdat", 8)
+            .add("pdat", 8)
+            .add("edat", 8)
+            .add("adat", 8)
+            .add("mdat", 8)
+            .add("hdat", 8)
+            .add("dwap", 6)
+            .add("cwam", 8)
+            .add("hwam", 8)
+            .add("hwah", 8)
+            .add("bwah", 8)
+            .add("pwam", 6)
+            .add("hwum", 8)
+            .add("h#am", 6)
+            .add("h#um", 8)
+            .add("hiam", 6)
+            .add("laix", 6)
+            .add("ir#m", 6)
+            .add("ircm", 6)
+            .add("prcm", 6)
+            .add("etcm", 6)
+            .add("epcm", 6)
+            .add("escm", 6)
+            .add("rocm", 6)
+            .add("drcm", 6)
+            .add("swxm", 6)
+            .add("ni#m", 6)
+            .add("nicm", 6)
+            .add("nfxm", 6)
+            .add("nucm", 6)
+            .add("nlcm", 6)
+            .add("niam", 6)
+            .add("cnam", 6)
+            .add("gnam", 6)
+            .add("pi#m", 6)
+            .add("picm", 6)
+            .add("pupc", 6)
+            .add("spam", 6)
+            .add("ki#m", 6)
+            .add("kicm", 6)
+            .add("kupc", 6)
+            .add("skam", 6)
+            .add("recm", 6)
+            .add("ontam", 7)
+            .add("onam", 7)
+            .add("optam", 7)
+            .add("opam", 7)
+            .add("octam", 8)
+            .add("ocam", 8)
+            .add("dmppm", 9)
+            .add("dmpem", 9)
+            .add("dmptm", 9)
+            .add("dmpim", 9)
+            .add("yppm", 9)
+            .add("ypem", 9)
+            .add("yptm", 9)
+            .add("ypim", 9)
+            .add("dpnam", 9)
+            .add("dpnum", 9)
+            .add("ypnam", 9)
+            .add("ypnum", 9)
+            .build();
+
+    private static final DssatRecordSchema runFormats = new DssatRecordSchema.Builder()
+            .add("null", 4)
+            .add("runno", 5)
+            .build();
+
+    private static final DssatRecordSchema experimentFormats = new DssatRecordSchema.Builder()
+            .add("null", 17)
+            .add("exp_id", 9)
+            .add("cr", 3)
+            .build();
+
+    private static final DssatRecordSchema treatmentFormats = new DssatRecordSchema.Builder()
+            .add("null", 10)
+            .add("trno", 3)
+            .build();
+
+    private static final DssatRecordSchema soilOrgFormats = new DssatRecordSchema.Builder()
+            .add("year", 5)
+            .add("doy", 4)
+            .add("das", 6)
+            .add("omac", 8)
+            .add("scdd", 8)
+            .add("socd", 8)
+            .add("sc0d", 8)
+            .add("sctd", 8)
+            .add("somct", 8)
+            .add("lctd", 8)
+            .add("onac", 8)
+            .add("sndd", 8)
+            .add("sond", 8)
+            .add("sn0d", 8)
+            .add("sntd", 8)
+            .add("somnt", 8)
+            .add("lntd", 8)
+            .build();
+
     /**
      * Constructor with no parameters Set jsonKey as "observed"
      *
@@ -37,9 +156,10 @@ public class DssatOutputFileInput extends DssatCommonInput {
     protected HashMap readFile(HashMap brMap) throws IOException {
 
         HashMap ret = new HashMap();
-        ret.put("summary", readSummary(brMap));
-        ret.put("overview", readOverview(brMap));
-        ret.put("soilorg", readSoilOrg(brMap));
+        DssatParseContext ctx = new DssatParseContext();
+        ret.put("summary", readSummary(brMap, ctx));
+        ret.put("overview", readOverview(brMap, ctx));
+        ret.put("soilorg", readSoilOrg(brMap, ctx));
         return ret;
     }
 
@@ -47,15 +167,15 @@ public class DssatOutputFileInput extends DssatCommonInput {
      * DSSAT Output File Data input method (Summary.out)
      *
      * @param brMap The holder for BufferReader objects for all files
+     * @param ctx the parsing context which holds the flgs
      * @return result data holder object
      */
-    protected HashMap readSummary(HashMap brMap) throws IOException {
+    protected HashMap readSummary(HashMap brMap, DssatParseContext ctx) throws IOException {
 
         HashMap file = new HashMap();
         String line;
         BufferedReader brOut;
         Object buf;
-        LinkedHashMap formats = new LinkedHashMap();
 //        String[] titles = new String[0];
         ArrayList<HashMap> sumArr = new ArrayList();
 
@@ -65,34 +185,22 @@ public class DssatOutputFileInput extends DssatCommonInput {
         if (buf == null) {
             return file;
         } else {
-            if (buf instanceof char[]) {
-                brOut = new BufferedReader(new CharArrayReader((char[]) buf));
-            } else {
-                brOut = (BufferedReader) buf;
-            }
+            brOut = getBufferedReader(buf);
         }
 
         while ((line = brOut.readLine()) != null) {
 
             // Get content type of line
-            judgeContentType(line);
+            judgeContentType(ctx, line);
 
             // Read summary data
-            if (flg[2].equals("data")) {
+            if (ctx.flg[2].equals("data")) {
 
                 // Read meta info
-                if (flg[0].equals("meta") && flg[1].equals("meta info")) {
-
-                    // Set variables' formats
-                    formats.clear();
-                    formats.put("null_1", 11);
-                    formats.put("exname", 10);
-                    formats.put("local_name", 62);
-                    formats.put("null_2", 28);
-                    formats.put("vevsion", 19);
-                    formats.put("date", line.length());
+                if (ctx.flg[0].equals("meta") && ctx.flg[1].equals("meta info")) {
+
                     // Read line and save into return holder
-                    HashMap tmp = readLine(line, formats);
+                    HashMap tmp = readLine(line, summaryMetaFormats);
                     String date = getObjectOr(tmp, "date", "");
                     String version = getObjectOr(tmp, "version", "");
                     if (date.length() > 22) {
@@ -103,82 +211,8 @@ public class DssatOutputFileInput extends DssatCommonInput {
 
                 } // Read data info 
                 else {
-                    // Set variables' formats
-                    formats.clear();
-                    formats.put("runno", 9);
-                    formats.put("trno", 7);
-                    formats.put("r#", 3);
-                    formats.put("o#", 3);
-                    formats.put("c#", 3);
-                    formats.put("cr", 3);
-                    formats.put("model", 9);
-                    formats.put("tnam", 26);
-                    formats.put("fnam", 9);
-                    formats.put("wsta", 9);
-                    formats.put("soil_id", 11);
-                    formats.put("sdat", 8);
-                    formats.put("pdat", 8);
-                    formats.put("edat", 8);
-                    formats.put("adat", 8);
-                    formats.put("mdat", 8);
-                    formats.put("hdat", 8);
-                    formats.put("dwap", 6);
-                    formats.put("cwam", 8);
-                    formats.put("hwam", 8);
-                    formats.put("hwah", 8);
-                    formats.put("bwah", 8);
-                    formats.put("pwam", 6);
-                    formats.put("hwum", 8);
-                    formats.put("h#am", 6);
-                    formats.put("h#um", 8);
-                    formats.put("hiam", 6);
-                    formats.put("laix", 6);
-                    formats.put("ir#m", 6);
-                    formats.put("ircm", 6);
-                    formats.put("prcm", 6);
-                    formats.put("etcm", 6);
-                    formats.put("epcm", 6);
-                    formats.put("escm", 6);
-                    formats.put("rocm", 6);
-                    formats.put("drcm", 6);
-                    formats.put("swxm", 6);
-                    formats.put("ni#m", 6);
-                    formats.put("nicm", 6);
-                    formats.put("nfxm", 6);
-                    formats.put("nucm", 6);
-                    formats.put("nlcm", 6);
-                    formats.put("niam", 6);
-                    formats.put("cnam", 6);
-                    formats.put("gnam", 6);
-                    formats.put("pi#m", 6);
-                    formats.put("picm", 6);
-                    formats.put("pupc", 6);
-                    formats.put("spam", 6);
-                    formats.put("ki#m", 6);
-                    formats.put("kicm", 6);
-                    formats.put("kupc", 6);
-                    formats.put("skam", 6);
-                    formats.put("recm", 6);
-                    formats.put("ontam", 7);
-                    formats.put("onam", 7);
-                    formats.put("optam", 7);
-                    formats.put("opam", 7);
-                    formats.put("octam", 8);
-                    formats.put("ocam", 8);
-                    formats.put("dmppm", 9);
-                    formats.put("dmpem", 9);
-                    formats.put("dmptm", 9);
-                    formats.put("dmpim", 9);
-                    formats.put("yppm", 9);
-                    formats.put("ypem", 9);
-                    formats.put("yptm", 9);
-                    formats.put("ypim", 9);
-                    formats.put("dpnam", 9);
-                    formats.put("dpnum", 9);
-                    formats.put("ypnam", 9);
-                    formats.put("ypnum", 9);
                     // Read line and save into return holder
-                    sumArr.add(readLine(line, formats));
+                    sumArr.add(readLine(line, summaryFormats));
                 }
 
 //            } // Read Summary Info titles
@@ -201,9 +235,10 @@ public class DssatOutputFileInput extends DssatCommonInput {
      * DSSAT Output File Data input method (SoilOrg.out)
      *
      * @param brMap The holder for BufferReader objects for all files
+     * @param ctx the parsing context which holds the flgs
      * @return the array of result data holder object
      */
-    protected ArrayList<HashMap> readSoilOrg(HashMap brMap) throws IOException {
+    protected ArrayList<HashMap> readSoilOrg(HashMap brMap, DssatParseContext ctx) throws IOException {
 
         ArrayList<HashMap> file = new ArrayList<HashMap>();
         HashMap data = new HashMap();
@@ -211,7 +246,6 @@ public class DssatOutputFileInput extends DssatCommonInput {
         String line;
         BufferedReader brOut;
         Object buf;
-        LinkedHashMap formats = new LinkedHashMap();
 
         buf = brMap.get("SOILORG.OUT");
 
@@ -219,72 +253,36 @@ public class DssatOutputFileInput extends DssatCommonInput {
         if (buf == null) {
             return file;
         } else {
-            if (buf instanceof char[]) {
-                brOut = new BufferedReader(new CharArrayReader((char[]) buf));
-            } else {
-                brOut = (BufferedReader) buf;
-            }
+            brOut = getBufferedReader(buf);
         }
 
         while ((line = brOut.readLine()) != null) {
 
             // Get content type of line
-            judgeContentType(line);
+            judgeContentType(ctx, line);
 
             // Read soil organic data
-            if (flg[2].equals("data")) {
+            if (ctx.flg[2].equals("data")) {
                 
-                if (flg[1].equals("meta info")) {
+                if (ctx.flg[1].equals("meta info")) {
                     if (line.trim().toUpperCase().startsWith("*RUN")) {
                         // Set new data object
                         data = new HashMap();
                         subArr = new ArrayList<HashMap>();
                         data.put(outDataKey, subArr);
                         file.add(data);
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("null", 4);
-                        formats.put("runno", 5);
                         // Get reading result
-                        data.putAll(readLine(line, formats));
+                        data.putAll(readLine(line, runFormats));
                     } else if (line.trim().toUpperCase().startsWith("EXPERIMENT")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("null", 17);
-                        formats.put("exp_id", 9);
-                        formats.put("cr", 3);
                         // Get reading result
-                        data.putAll(readLine(line, formats));
+                        data.putAll(readLine(line, experimentFormats));
                     } else if (line.trim().toUpperCase().startsWith("TREATMENT")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("null", 10);
-                        formats.put("trno", 3);
                         // Get reading result
-                        data.putAll(readLine(line, formats));
+                        data.putAll(readLine(line, treatmentFormats));
                     }
                 } else {
-                    // Set variables' formats
-                    formats.clear();
-                    formats.put("year", 5);
-                    formats.put("doy", 4);
-                    formats.put("das", 6);
-                    formats.put("omac", 8);
-                    formats.put("scdd", 8);
-                    formats.put("socd", 8);
-                    formats.put("sc0d", 8);
-                    formats.put("sctd", 8);
-                    formats.put("somct", 8);
-                    formats.put("lctd", 8);
-                    formats.put("onac", 8);
-                    formats.put("sndd", 8);
-                    formats.put("sond", 8);
-                    formats.put("sn0d", 8);
-                    formats.put("sntd", 8);
-                    formats.put("somnt", 8);
-                    formats.put("lntd", 8);
                     // Read line and save into return holder
-                    subArr.add(readLine(line, formats));
+                    subArr.add(readLine(line, soilOrgFormats));
                 }
             }
         }
@@ -310,9 +308,10 @@ public class DssatOutputFileInput extends DssatCommonInput {
      * DSSAT Output File Data input method (Overview.out)
      *
      * @param brMap The holder for BufferReader objects for all files
+     * @param ctx the parsing context which holds the flgs
      * @return the array of result data holder object
      */
-    protected ArrayList<HashMap> readOverview(HashMap brMap) throws IOException {
+    protected ArrayList<HashMap> readOverview(HashMap brMap, DssatParseContext ctx) throws IOException {
 
         ArrayList<HashMap> file = new ArrayList<HashMap>();
         HashMap data = new HashMap();
@@ -320,7 +319,6 @@ public class DssatOutputFileInput extends DssatCommonInput {
         String line;
         BufferedReader brOut;
         Object buf;
-        LinkedHashMap formats = new LinkedHashMap();
 
         buf = brMap.get("OVERVIEW.OUT");
 
@@ -328,49 +326,32 @@ public class DssatOutputFileInput extends DssatCommonInput {
         if (buf == null) {
             return file;
         } else {
-            if (buf instanceof char[]) {
-                brOut = new BufferedReader(new CharArrayReader((char[]) buf));
-            } else {
-                brOut = (BufferedReader) buf;
-            }
+            brOut = getBufferedReader(buf);
         }
 
         while ((line = brOut.readLine()) != null) {
 
             // Get content type of line
-            judgeContentType(line);
+            judgeContentType(ctx, line);
 
             // Read soil organic data
-            if (flg[2].equals("data")) {
+            if (ctx.flg[2].equals("data")) {
                 
-                if (flg[1].equals("meta info")) {
+                if (ctx.flg[1].equals("meta info")) {
                     if (line.trim().toUpperCase().startsWith("*RUN")) {
                         // Set new data object
                         data = new HashMap();
                         subArr = new ArrayList<HashMap>();
                         data.put(outDataKey, subArr);
                         file.add(data);
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("null", 4);
-                        formats.put("runno", 5);
                         // Get reading result
-                        data.putAll(readLine(line, formats));
+                        data.putAll(readLine(line, runFormats));
                     } else if (line.trim().toUpperCase().startsWith("EXPERIMENT")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("null", 17);
-                        formats.put("exp_id", 9);
-                        formats.put("cr", 3);
                         // Get reading result
-                        data.putAll(readLine(line, formats));
+                        data.putAll(readLine(line, experimentFormats));
                     } else if (line.trim().toUpperCase().startsWith("TREATMENT")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("null", 10);
-                        formats.put("trno", 3);
                         // Get reading result
-                        data.putAll(readLine(line, formats));
+                        data.putAll(readLine(line, treatmentFormats));
                     }
                 }
             }
@@ -383,12 +364,13 @@ public class DssatOutputFileInput extends DssatCommonInput {
     /**
      * Set reading flags for title lines (marked with *)
      *
+     * @param ctx the parsing context which holds the flgs
      * @param line the string of reading line
      */
     @Override
-    protected void setTitleFlgs(String line) {
-        flg[0] = "meta";
-        flg[1] = "meta info";
-        flg[2] = "data";
+    protected void setTitleFlgs(DssatParseContext ctx, String line) {
+        ctx.flg[0] = "meta";
+        ctx.flg[1] = "meta info";
+        ctx.flg[2] = "data";
     }
 }
@@ -0,0 +1,243 @@
+package org.agmip.translators.dssat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DSSAT output job Class, the completion handle of one translation output
+ * run, hold the output files and failures of each experiment, and finish the
+ * output package after the last experiment is done.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+public class DssatOutputJob {
+
+    private volatile File zipFile;
+    private Runnable finisher;
+    private CountDownLatch doneSignal = new CountDownLatch(1);
+    private AtomicInteger pending = new AtomicInteger(1);   // P.S. the extra one is released when all experiments are submitted
+    private AtomicInteger submitted = new AtomicInteger(0);
+    private AtomicInteger completed = new AtomicInteger(0);
+    private LinkedHashMap<String, ArrayList<File>> results = new LinkedHashMap<String, ArrayList<File>>();
+    private LinkedHashMap<String, ArrayList<Throwable>> failures = new LinkedHashMap<String, ArrayList<Throwable>>();
+    private DssatDedupStats dedupStats = new DssatDedupStats();
+
+    /**
+     * Constructor
+     *
+     * @param zipFile the output package
+     */
+    DssatOutputJob(File zipFile) {
+        this.zipFile = zipFile;
+    }
+
+    /**
+     * Set the output package, when it is renamed after writing
+     *
+     * @param zipFile the output package
+     */
+    void setOutputZipFile(File zipFile) {
+        this.zipFile = zipFile;
+    }
+
+    /**
+     * Set the task which finishes the output package, it will be run by the
+     * thread which completes the last experiment
+     *
+     * @param finisher the finish task
+     */
+    void setFinisher(Runnable finisher) {
+        this.finisher = finisher;
+    }
+
+    /**
+     * Record that one experiment is submitted
+     */
+    void taskSubmitted() {
+        pending.incrementAndGet();
+        submitted.incrementAndGet();
+    }
+
+    /**
+     * Record that one experiment is done, and finish the job if it is the last
+     * one
+     */
+    void taskDone() {
+        completed.incrementAndGet();
+        release();
+    }
+
+    /**
+     * Record that all the experiments are submitted, and finish the job if
+     * they are all done
+     */
+    void allSubmitted() {
+        release();
+    }
+
+    /**
+     * Record the output file of experiment
+     *
+     * @param name the experiment name
+     * @param file the output file
+     */
+    synchronized void addResult(String name, File file) {
+        if (file == null) {
+            return;
+        }
+        ArrayList<File> files = results.get(name);
+        if (files == null) {
+            files = new ArrayList<File>();
+            results.put(name, files);
+        }
+        if (!files.contains(file)) {
+            files.add(file);
+        }
+    }
+
+    /**
+     * Record the failure of experiment
+     *
+     * @param name the experiment name, blank for the failure of whole job
+     * @param e the exception
+     */
+    synchronized void addFailure(String name, Throwable e) {
+        ArrayList<Throwable> errors = failures.get(name);
+        if (errors == null) {
+            errors = new ArrayList<Throwable>();
+            failures.put(name, errors);
+        }
+        errors.add(e);
+    }
+
+    /**
+     * Wait until the job is finished
+     *
+     * @throws InterruptedException
+     */
+    public void await() throws InterruptedException {
+        doneSignal.await();
+    }
+
+    /**
+     * Wait until the job is finished or time out
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit
+     * @return true if the job is finished
+     * @throws InterruptedException
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return doneSignal.await(timeout, unit);
+    }
+
+    /**
+     * Check if the job is finished
+     *
+     * @return true if the job is finished
+     */
+    public boolean isDone() {
+        return doneSignal.getCount() == 0;
+    }
+
+    /**
+     * Get the number of submitted experiments
+     *
+     * @return the number of submitted experiments
+     */
+    public int getSubmittedCount() {
+        return submitted.get();
+    }
+
+    /**
+     * Get the number of experiments which are done (include the failed ones)
+     *
+     * @return the number of experiments which are done
+     */
+    public int getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     * Get the output files of each experiment, the files are the entries in
+     * the output package
+     *
+     * @return the map of experiment name and its output files
+     */
+    public synchronized Map<String, List<File>> getResults() {
+        LinkedHashMap<String, List<File>> ret = new LinkedHashMap<String, List<File>>();
+        for (Map.Entry<String, ArrayList<File>> entry : results.entrySet()) {
+            ret.put(entry.getKey(), new ArrayList<File>(entry.getValue()));
+        }
+        return ret;
+    }
+
+    /**
+     * Get the failures of each experiment, the failures which does not belong
+     * to any experiment are under blank name
+     *
+     * @return the map of experiment name and its failures
+     */
+    public synchronized Map<String, List<Throwable>> getFailures() {
+        LinkedHashMap<String, List<Throwable>> ret = new LinkedHashMap<String, List<Throwable>>();
+        for (Map.Entry<String, ArrayList<Throwable>> entry : failures.entrySet()) {
+            ret.put(entry.getKey(), new ArrayList<Throwable>(entry.getValue()));
+        }
+        return ret;
+    }
+
+    /**
+     * Check if there is any failure in the job
+     *
+     * @return true if any failure happened
+     */
+    public synchronized boolean hasFailure() {
+        return !failures.isEmpty();
+    }
+
+    /**
+     * Get the statistics of the soil/weather files which are shared by the
+     * experiments
+     *
+     * @return the deduplication statistics
+     */
+    public DssatDedupStats getDedupStats() {
+        return dedupStats;
+    }
+
+    /**
+     * Get output zip file, it is only complete after the job is finished
+     *
+     * @return the output package, null if the package is removed for failure
+     */
+    public File getOutputZipFile() {
+        if (zipFile != null && isDone() && !zipFile.exists()) {
+            return null;
+        }
+        return zipFile;
+    }
+
+    /**
+     * Run the finish task when nothing is pending
+     */
+    private void release() {
+        if (pending.decrementAndGet() == 0) {
+            try {
+                if (finisher != null) {
+                    finisher.run();
+                }
+            } catch (RuntimeException e) {
+                addFailure("", e);
+            } finally {
+                doneSignal.countDown();
+            }
+        }
+    }
+}
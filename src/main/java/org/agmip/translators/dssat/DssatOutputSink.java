@@ -0,0 +1,35 @@
+package org.agmip.translators.dssat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * DSSAT output sink interface, decide where the content of output file goes,
+ * the writers still use File object to describe the output location, and the
+ * sink could write it into file system, ZIP package, etc.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+public interface DssatOutputSink {
+
+    /**
+     * Check if the output file has already been created in this sink
+     *
+     * @param file the output file
+     * @return true if the file exists
+     */
+    public boolean exists(File file);
+
+    /**
+     * Get the Writer for the output file, the content will be committed into
+     * the sink when the Writer is closed
+     *
+     * @param file the output file
+     * @param append true for writing after the existing content
+     * @return the Writer for the output file
+     * @throws IOException
+     */
+    public Writer getWriter(File file, boolean append) throws IOException;
+}
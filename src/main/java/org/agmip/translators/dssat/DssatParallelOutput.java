@@ -0,0 +1,98 @@
+package org.agmip.translators.dssat;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import static org.agmip.util.MapUtil.getObjectOr;
+
+/**
+ * DSSAT parallel output Class, write the experiments with the given executor
+ * into one consolidated zip file, and return a completion handle which holds
+ * the output files and failures of each experiment.
+ *
+ * The number of experiments which are submitted but not finished yet is
+ * bounded, the submitting thread will wait when the limit is reached, so the
+ * memory used by the pending experiments is capped. Soil and weather files
+ * (including the weather file naming) are handled in the submitting thread
+ * in the order of experiments, so the output is stable with any number of
+ * threads. The errors of each experiment (and of the single experiment
+ * output) are recorded in the handle instead of being printed.
+ *
+ * The weather file names are given by a new registry for each output by
+ * default, set a shared registry so the concurrent outputs use the same
+ * names for the same weather station.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+public class DssatParallelOutput {
+
+    private Executor executor;
+    private int maxInFlight;
+    private DssatWthFileHelper wthHelper = null;
+
+    /**
+     * Constructor, the maximum number of in-flight experiments is twice of
+     * the available processors
+     *
+     * @param executor the executor for writing experiments
+     */
+    public DssatParallelOutput(Executor executor) {
+        this(executor, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param executor the executor for writing experiments
+     * @param maxInFlight the maximum number of experiments which are submitted
+     * but not finished yet
+     */
+    public DssatParallelOutput(Executor executor, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("The maximum number of in-flight experiments should be positive: " + maxInFlight);
+        }
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Set the registry of weather file names which is shared by the outputs
+     *
+     * @param wthHelper the registry, null for a new registry in memory for
+     * each output (default)
+     */
+    public void setWthFileHelper(DssatWthFileHelper wthHelper) {
+        this.wthHelper = wthHelper;
+    }
+
+    /**
+     * Write all DSSAT data into one zip file, the method returns when all the
+     * experiments are submitted, use the returned handle to wait for the
+     * finish of output
+     *
+     * @param arg0 file output path
+     * @param result data holder object
+     * @return the completion handle of output
+     */
+    public DssatOutputJob execDssatTranslator(String arg0, Map result) {
+
+        DssatControllerOutput output = new DssatControllerOutput();
+        output.setWthFileHelper(wthHelper);
+        try {
+            if (getObjectOr(result, "experiments", new ArrayList()).isEmpty()
+                    && getObjectOr(result, "soils", new ArrayList()).isEmpty()
+                    && getObjectOr(result, "weathers", new ArrayList()).isEmpty()) {
+                // P.S. single experiment data is written in current thread
+                return output.writeOneExp(arg0, result);
+            } else {
+                return output.writeMultipleExp(arg0, result, executor, maxInFlight);
+            }
+        } catch (Exception e) {
+            DssatOutputJob job = new DssatOutputJob(null);
+            job.addFailure("", e);
+            job.allSubmitted();
+            return job;
+        }
+    }
+}
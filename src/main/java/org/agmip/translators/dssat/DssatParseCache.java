@@ -0,0 +1,506 @@
+package org.agmip.translators.dssat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DSSAT parse cache Class, keep the parsed result of input files on the local
+ * disk, keyed by the content hash (SHA-1) of the files, so the unchanged
+ * input could skip the parsing when it is translated again.
+ *
+ * The result is saved in a compact binary form (gzipped tags for map, list,
+ * text and the daily weather columns), the objects which are shared in the
+ * result are saved once, so the loaded result has the same structure. The
+ * total size of cache files is bounded, the least recently used ones are
+ * deleted first when the bound is exceeded.
+ *
+ * P.S. the cache could be shared by the controllers in the same process, the
+ * cache directory should not be shared by different versions of translator
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+public class DssatParseCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DssatParseCache.class);
+    public static final String CACHE_SUFFIX = ".bin";
+    private static final String HEADER = "*DSSAT PARSE CACHE V1";
+    private static final byte NULL = 0;
+    private static final byte TEXT = 1;
+    private static final byte MAP = 2;
+    private static final byte ORDERED_MAP = 3;
+    private static final byte LIST = 4;
+    private static final byte DAILY = 5;
+    private static final byte REF = 6;
+    private static final int MAX_CAPACITY = 1 << 16;
+    private File cacheDir;
+    private long maxBytes;
+    private long totalBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    // P.S. the files in access order, the eldest one is the least recently used
+    private LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+
+    /**
+     * Constructor, the existing cache files in the directory are loaded into
+     * the index by their last modified time
+     *
+     * @param cacheDir the directory for cache files
+     * @param maxBytes the maximum total size of cache files
+     */
+    public DssatParseCache(File cacheDir, long maxBytes) {
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+        cacheDir.mkdirs();
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            Arrays.sort(files, new Comparator<File>() {
+                @Override
+                public int compare(File f1, File f2) {
+                    long diff = f1.lastModified() - f2.lastModified();
+                    return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+                }
+            });
+            for (File file : files) {
+                String name = file.getName();
+                if (file.isFile() && name.endsWith(CACHE_SUFFIX)) {
+                    entries.put(name.substring(0, name.length() - CACHE_SUFFIX.length()), file.length());
+                    totalBytes += file.length();
+                }
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Get the number of lookups which are answered by the cache
+     *
+     * @return the number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of lookups which are not in the cache
+     *
+     * @return the number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get the total size of cache files
+     *
+     * @return the number of bytes
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Calculate the content hash for each input file in the holder
+     *
+     * @param brMap The holder for BufferReader objects for all files
+     * @return the hash of each file (key is "type/name"), null if any file
+     * could not be read
+     */
+    HashMap<String, String> digestEntries(HashMap brMap) {
+        HashMap<String, String> ret = new HashMap<String, String>();
+        String[] types = {"X", "W", "S", "A", "T", "C"};
+        try {
+            for (String type : types) {
+                Map files = (Map) brMap.get(type);
+                if (files == null) {
+                    continue;
+                }
+                for (Object name : files.keySet()) {
+                    ret.put(type + "/" + name, toHex(digest(files.get(name))));
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read the input for parse cache: {}", e.getMessage());
+            return null;
+        }
+        return ret;
+    }
+
+    /**
+     * Get the cache key for the parsing of the files in the given types
+     *
+     * @param stage the name of parsing step
+     * @param digests the hash of input files from digestEntries()
+     * @param types the types of files which the parsing reads
+     * @param options the reading options which change the result
+     * @return the cache key
+     */
+    String getKey(String stage, HashMap<String, String> digests, String[] types, String options) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(HEADER).append('\n').append(stage).append('\n').append(options).append('\n');
+        // P.S. sort the files, so the key does not depend on the order in the holder
+        TreeMap<String, String> files = new TreeMap<String, String>();
+        for (Map.Entry<String, String> entry : digests.entrySet()) {
+            for (String type : types) {
+                if (entry.getKey().startsWith(type + "/")) {
+                    files.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        for (Map.Entry<String, String> entry : files.entrySet()) {
+            sb.append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
+        }
+        try {
+            return toHex(newDigest().digest(sb.toString().getBytes("UTF-8")));
+        } catch (IOException e) {
+            // P.S. UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get the parsed result from cache
+     *
+     * @param key the cache key
+     * @return the parsed result, null if it is not in the cache
+     */
+    public Object get(String key) {
+        File file;
+        synchronized (this) {
+            // P.S. get() moves the entry to the most recently used end
+            if (entries.get(key) == null) {
+                misses++;
+                return null;
+            }
+            file = getFile(key);
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+            if (!HEADER.equals(in.readUTF())) {
+                throw new IOException("Unknown cache format");
+            }
+            Object ret = read(in, new ArrayList());
+            file.setLastModified(System.currentTimeMillis());
+            synchronized (this) {
+                hits++;
+            }
+            return ret;
+        } catch (IOException e) {
+            log.warn("Failed to load parse cache {}, it will be rebuilt", file.getPath());
+            synchronized (this) {
+                remove(key);
+                misses++;
+            }
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Save the parsed result into cache, the result is written into a
+     * temporary file first, so the other processes never see a partial file
+     *
+     * @param key the cache key
+     * @param value the parsed result
+     */
+    public void put(String key, Object value) {
+        File file = getFile(key);
+        File tmpFile = null;
+        DataOutputStream out = null;
+        try {
+            tmpFile = File.createTempFile(key, CACHE_SUFFIX + ".tmp", cacheDir);
+            out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmpFile))));
+            out.writeUTF(HEADER);
+            write(out, value, new IdentityHashMap<Object, Integer>());
+            out.close();
+            out = null;
+            if (tmpFile.length() > maxBytes) {
+                tmpFile.delete();
+                return;
+            }
+            synchronized (this) {
+                remove(key);
+                if (!tmpFile.renameTo(file)) {
+                    tmpFile.delete();
+                    return;
+                }
+                entries.put(key, file.length());
+                totalBytes += file.length();
+                evict();
+            }
+        } catch (IOException e) {
+            // P.S. the result which has unsupported type of object is not cached
+            log.warn("Failed to save parse cache: {}", e.getMessage());
+            close(out);
+            if (tmpFile != null) {
+                tmpFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Delete the least recently used files until the total size is in bound
+     */
+    private synchronized void evict() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            totalBytes -= entry.getValue();
+            getFile(entry.getKey()).delete();
+            it.remove();
+        }
+    }
+
+    /**
+     * Delete the cache file of the key
+     */
+    private void remove(String key) {
+        Long size = entries.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+            getFile(key).delete();
+        }
+    }
+
+    /**
+     * Get the cache file of the key
+     */
+    private File getFile(String key) {
+        return new File(cacheDir, key + CACHE_SUFFIX);
+    }
+
+    /**
+     * Write the object with its type tag, the object which has been written
+     * is only written as a reference
+     */
+    private static void write(DataOutputStream out, Object o, IdentityHashMap<Object, Integer> written) throws IOException {
+        if (o == null) {
+            out.writeByte(NULL);
+            return;
+        } else if (o instanceof String) {
+            out.writeByte(TEXT);
+            writeText(out, (String) o);
+            return;
+        }
+        Integer ref = written.get(o);
+        if (ref != null) {
+            out.writeByte(REF);
+            out.writeInt(ref);
+            return;
+        }
+        written.put(o, written.size());
+        if (o.getClass() == HashMap.class || o.getClass() == LinkedHashMap.class) {
+            out.writeByte(o.getClass() == HashMap.class ? MAP : ORDERED_MAP);
+            Map m = (Map) o;
+            out.writeInt(m.size());
+            for (Object entry : m.entrySet()) {
+                write(out, ((Map.Entry) entry).getKey(), written);
+                write(out, ((Map.Entry) entry).getValue(), written);
+            }
+        } else if (o.getClass() == ArrayList.class) {
+            out.writeByte(LIST);
+            List l = (List) o;
+            out.writeInt(l.size());
+            for (int i = 0; i < l.size(); i++) {
+                write(out, l.get(i), written);
+            }
+        } else if (o.getClass() == DssatDailyWeather.class) {
+            out.writeByte(DAILY);
+            ((DssatDailyWeather) o).writeTo(out);
+        } else {
+            throw new IOException("Unsupported type " + o.getClass().getName());
+        }
+    }
+
+    /**
+     * Read the object which is written by write()
+     */
+    private static Object read(DataInputStream in, ArrayList read) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case TEXT:
+                return readText(in);
+            case REF:
+                return read.get(in.readInt());
+            case MAP:
+            case ORDERED_MAP: {
+                // P.S. the map is built after its items are read, the result has no cycle
+                int idx = read.size();
+                read.add(null);
+                int size = in.readInt();
+                Object[] keys = new Object[size];
+                Object[] values = new Object[size];
+                for (int i = 0; i < size; i++) {
+                    keys[i] = read(in, read);
+                    values[i] = read(in, read);
+                }
+                Map m = tag == MAP ? toHashMap(keys, values) : new LinkedHashMap();
+                if (tag == ORDERED_MAP) {
+                    for (int i = 0; i < size; i++) {
+                        m.put(keys[i], values[i]);
+                    }
+                }
+                read.set(idx, m);
+                return m;
+            }
+            case LIST: {
+                int size = in.readInt();
+                ArrayList l = new ArrayList(size);
+                read.add(l);
+                for (int i = 0; i < size; i++) {
+                    l.add(read(in, read));
+                }
+                return l;
+            }
+            case DAILY: {
+                DssatDailyWeather daily = DssatDailyWeather.readFrom(in);
+                read.add(daily);
+                return daily;
+            }
+            default:
+                throw new IOException("Unknown type tag " + tag);
+        }
+    }
+
+    /**
+     * Build the HashMap with the same iteration order as the written one. The
+     * order depends on the capacity of the original map, so the capacity is
+     * doubled until the order matches
+     */
+    private static HashMap toHashMap(Object[] keys, Object[] values) {
+        for (int capacity = 16;; capacity *= 2) {
+            HashMap m = new HashMap(capacity);
+            for (int i = 0; i < keys.length; i++) {
+                m.put(keys[i], values[i]);
+            }
+            if (capacity >= MAX_CAPACITY || isSameOrder(m, keys)) {
+                return m;
+            }
+        }
+    }
+
+    /**
+     * Check if the keys of map are iterated in the given order
+     */
+    private static boolean isSameOrder(HashMap m, Object[] keys) {
+        int i = 0;
+        for (Object key : m.keySet()) {
+            if (key == null ? keys[i] != null : !key.equals(keys[i])) {
+                return false;
+            }
+            i++;
+        }
+        return true;
+    }
+
+    /**
+     * Write the text as length plus UTF-8 bytes (no 64KB limit of writeUTF)
+     */
+    private static void writeText(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read the text which is written by writeText()
+     */
+    private static String readText(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Calculate the content hash of the input file
+     */
+    private static byte[] digest(Object buf) throws IOException {
+        MessageDigest md = newDigest();
+        if (buf instanceof DssatZipEntryHelper) {
+            md.update(((DssatZipEntryHelper) buf).getBytes());
+        } else if (buf instanceof File) {
+            InputStream in = new FileInputStream((File) buf);
+            try {
+                byte[] b = new byte[8192];
+                int len;
+                while ((len = in.read(b)) >= 0) {
+                    md.update(b, 0, len);
+                }
+            } finally {
+                in.close();
+            }
+        } else if (buf instanceof byte[]) {
+            md.update((byte[]) buf);
+        } else if (buf instanceof char[]) {
+            md.update(new String((char[]) buf).getBytes("UTF-8"));
+        } else {
+            throw new IOException("Unsupported input " + (buf == null ? null : buf.getClass().getName()));
+        }
+        return md.digest();
+    }
+
+    /**
+     * Create the digest for content hash
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // P.S. SHA-1 is required for every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get the hex string of the bytes
+     */
+    private static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] buf = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            buf[i * 2] = digits[(bytes[i] >> 4) & 0xF];
+            buf[i * 2 + 1] = digits[bytes[i] & 0xF];
+        }
+        return new String(buf);
+    }
+
+    /**
+     * Close the stream quietly
+     */
+    private static void close(Closeable c) {
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.agmip.translators.dssat;
+
+/**
+ * DSSAT parsing context Class, hold the reading flgs of lines for one parsing
+ * call, so the readers do not keep any state between the calls and could be
+ * used by several threads at the same time.
+ *
+ * flg[0] is the section title, flg[1] is the data title and flg[2] is the line
+ * type (title, data, comment or blank). flg4 is the count of data titles in
+ * current section.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+class DssatParseContext {
+
+    String[] flg = {"", "", ""};
+    int flg4 = 0;
+}
@@ -0,0 +1,94 @@
+package org.agmip.translators.dssat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DSSAT record merging helper Class, add records into array and combine the
+ * records which have same primary key value by using hash index, the order of
+ * records in the array is kept as the order of first arriving
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+class DssatRecordMerger {
+
+    private static final Logger log = LoggerFactory.getLogger(DssatRecordMerger.class);
+    private ArrayList arr;
+    private Object key;
+    private HashMap<Object, HashMap> index = new HashMap<Object, HashMap>();
+
+    /**
+     * Constructor, build the index for the records already in the array
+     *
+     * @param arr the target array
+     * @param key the primary key item's name, or the array of names for
+     * composite key
+     */
+    public DssatRecordMerger(ArrayList arr, Object key) {
+        this.arr = arr;
+        this.key = key;
+        for (int i = 0; i < arr.size(); i++) {
+            HashMap elem = (HashMap) arr.get(i);
+            Object keyVal = getKeyValue(elem);
+            if (!index.containsKey(keyVal)) {
+                index.put(keyVal, elem);
+            }
+        }
+    }
+
+    /**
+     * Add the new item into array, if there is a record with same key value,
+     * then combine the item into that record
+     *
+     * @param item the input item which will be added into array
+     */
+    public void add(HashMap item) {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Array: {}", arr);
+            log.debug("Item: {}", item);
+            log.debug("Key: {}", key instanceof Object[] ? Arrays.toString((Object[]) key) : key);
+        }
+
+        Object keyVal = getKeyValue(item);
+        HashMap elem = index.get(keyVal);
+        if (elem != null) {
+            elem.putAll(item);
+        } else {
+            index.put(keyVal, item);
+            arr.add(item);
+        }
+    }
+
+    /**
+     * Get the target array
+     *
+     * @return the target array
+     */
+    public ArrayList getArray() {
+        return arr;
+    }
+
+    /**
+     * Get the value of primary key from record
+     *
+     * @param m the record
+     * @return the key value, or the list of values for composite key
+     */
+    private Object getKeyValue(HashMap m) {
+        if (key instanceof Object[]) {
+            Object[] keys = (Object[]) key;
+            Object[] vals = new Object[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                vals[i] = m.get(keys[i]);
+            }
+            return Arrays.asList(vals);
+        } else {
+            return m.get(key);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.agmip.translators.dssat;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DSSAT fixed-width record schema Class, hold the precompiled column offsets
+ * of one type of data line, which could be reused for all the lines under the
+ * same section header
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+class DssatRecordSchema {
+
+    private final String[] keys;
+    private final int[] starts;
+    private final int[] ends;
+    private final boolean[] readFlgs;
+
+    /**
+     * Constructor, compile the definition of length for each data field
+     *
+     * @param formats The definition of length for each data field (String
+     * itemName : Integer length)
+     */
+    public DssatRecordSchema(LinkedHashMap<String, Integer> formats) {
+        int size = formats.size();
+        keys = new String[size];
+        starts = new int[size];
+        ends = new int[size];
+        readFlgs = new boolean[size];
+        int i = 0;
+        int start = 0;
+        for (Map.Entry<String, Integer> format : formats.entrySet()) {
+            String key = format.getKey();
+            keys[i] = key;
+            starts[i] = start;
+            int length = format.getValue();
+            // P.S. avoid overflow for the column which reads to the end of line
+            start = length > Integer.MAX_VALUE - start ? Integer.MAX_VALUE : start + length;
+            ends[i] = start;
+            // P.S. blank key and the key start with "null" are placeholders, will be skipped
+            readFlgs[i] = !key.equals("") && !key.startsWith("null");
+            i++;
+        }
+    }
+
+    /**
+     * Get the number of columns
+     *
+     * @return the number of columns
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Get the key of column
+     *
+     * @param i the index of column
+     * @return the key name
+     */
+    public String getKey(int i) {
+        return keys[i];
+    }
+
+    /**
+     * Check if the column is a placeholder which will not be read
+     *
+     * @param i the index of column
+     * @return true for the column need to be read
+     */
+    public boolean isReadable(int i) {
+        return readFlgs[i];
+    }
+
+    /**
+     * Get the start offset of column in the line
+     *
+     * @param i the index of column
+     * @return the start offset
+     */
+    public int getStart(int i) {
+        return starts[i];
+    }
+
+    /**
+     * Get the end offset (exclusive) of column in the line
+     *
+     * @param i the index of column
+     * @return the end offset
+     */
+    public int getEnd(int i) {
+        return ends[i];
+    }
+
+    /**
+     * Get the trimmed text of column from the line, the text will be cut if
+     * the line is shorter than the column definition
+     *
+     * @param line The string of line read from data file
+     * @param i the index of column
+     * @return the trimmed text
+     */
+    public String getValue(String line, int i) {
+        int length = line.length();
+        int start = Math.min(starts[i], length);
+        int end = Math.min(ends[i], length);
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return "";
+        } else {
+            return line.substring(start, end);
+        }
+    }
+
+    /**
+     * DSSAT fixed-width record schema builder, define the columns in order
+     */
+    public static class Builder {
+
+        private LinkedHashMap<String, Integer> formats = new LinkedHashMap<String, Integer>();
+
+        /**
+         * Add the definition of length for next data field
+         *
+         * @param key item name
+         * @param length the length of data field
+         * @return the builder itself
+         */
+        public Builder add(String key, int length) {
+            formats.put(key, length);
+            return this;
+        }
+
+        /**
+         * Add the definition of length for a list of data fields
+         *
+         * @param keys the list of item names
+         * @param length the length of each data field
+         * @return the builder itself
+         */
+        public Builder addAll(List keys, int length) {
+            for (int i = 0; i < keys.size(); i++) {
+                formats.put((String) keys.get(i), length);
+            }
+            return this;
+        }
+
+        /**
+         * Add the data field which will read the rest of the line
+         *
+         * @param key item name
+         * @return the builder itself
+         */
+        public Builder addRest(String key) {
+            formats.put(key, Integer.MAX_VALUE);
+            return this;
+        }
+
+        /**
+         * Compile the schema
+         *
+         * @return the schema for the defined columns
+         */
+        public DssatRecordSchema build() {
+            return new DssatRecordSchema(formats);
+        }
+    }
+}
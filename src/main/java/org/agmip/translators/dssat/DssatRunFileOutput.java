@@ -2,7 +2,6 @@ package org.agmip.translators.dssat;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -43,7 +42,7 @@ public class DssatRunFileOutput extends DssatCommonOutput {
             // Initial BufferedWriter
             arg0 = revisePath(arg0);
             outputFile = new File(arg0 + "Run.bat");
-            bwR = new BufferedWriter(new FileWriter(outputFile));
+            bwR = openWriter(outputFile);
 
             // Output Run File
             bwR.write("C:\\dssat45\\dscsm045 b dssbatch.v45\r\n");
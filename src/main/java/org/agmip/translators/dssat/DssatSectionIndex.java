@@ -0,0 +1,329 @@
+package org.agmip.translators.dssat;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * DSSAT section data index Class, index the soil/weather data by its id with
+ * hash map, and hand out the shared view of the data instead of the copy for
+ * each experiment.
+ *
+ * The view is read-only, include the nested maps and arrays (soil layers,
+ * daily weather), so it is safe to be shared by the experiments and the
+ * writers in different threads. It is copied from the original data once
+ * when it is asked for the first time, and the later changes on the original
+ * data are not seen by it. The caller who needs to change the data (like
+ * renaming the wst_id) should put the change into its own copy of the view.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+class DssatSectionIndex {
+
+    private HashMap<Object, HashMap> index = new HashMap<Object, HashMap>();
+    private HashMap<Object, HashMap> views = new HashMap<Object, HashMap>();
+
+    /**
+     * Constructor, build the index for the section array
+     *
+     * @param secArr the array of section data
+     * @param key the index variable name
+     */
+    public DssatSectionIndex(ArrayList secArr, Object key) {
+        for (int i = 0; i < secArr.size(); i++) {
+            HashMap sec = (HashMap) secArr.get(i);
+            Object value = sec.get(key);
+            // P.S. keep the first one for the duplicated id, same as getSectionData
+            if (value != null && !index.containsKey(value)) {
+                index.put(value, sec);
+            }
+        }
+    }
+
+    /**
+     * Get the shared read-only view of the section data, the same view is
+     * returned for the same id
+     *
+     * @param value index variable value
+     * @return the shared view, null if not found
+     */
+    public synchronized HashMap getSharedView(String value) {
+        if (value == null) {
+            return null;
+        }
+        HashMap view = views.get(value);
+        if (view == null) {
+            HashMap sec = index.get(value);
+            if (sec == null) {
+                return null;
+            }
+            view = new ReadOnlyMap(sec);
+            views.put(value, view);
+        }
+        return view;
+    }
+
+    /**
+     * Get the read-only copy of the value, the nested maps and arrays are
+     * copied as well
+     *
+     * @param value the value in section data
+     * @return the read-only copy, or the value itself if it is not map or
+     * array
+     */
+    private static Object toReadOnly(Object value) {
+        if (value instanceof ReadOnlyMap || value instanceof ReadOnlyList) {
+            return value;
+        } else if (value instanceof Map) {
+            return new ReadOnlyMap((Map) value);
+        } else if (value instanceof List) {
+            return new ReadOnlyList((List) value);
+        } else {
+            return value;
+        }
+    }
+
+    /**
+     * The read-only map, it is still a HashMap for the readers casting the
+     * data, and keeps the iteration order of the original one
+     */
+    static class ReadOnlyMap extends LinkedHashMap {
+
+        ReadOnlyMap(Map m) {
+            super(m.size() * 4 / 3 + 1);
+            for (Object e : m.entrySet()) {
+                Map.Entry entry = (Map.Entry) e;
+                super.put(entry.getKey(), toReadOnly(entry.getValue()));
+            }
+        }
+
+        @Override
+        public Object put(Object key, Object value) {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        public Object putIfAbsent(Object key, Object value) {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        public Object replace(Object key, Object value) {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        public boolean replace(Object key, Object oldValue, Object newValue) {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        public boolean remove(Object key, Object value) {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        @Override
+        public void putAll(Map m) {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        @Override
+        public Object remove(Object key) {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        @Override
+        public Set keySet() {
+            return Collections.unmodifiableSet(super.keySet());
+        }
+
+        @Override
+        public Collection values() {
+            return Collections.unmodifiableCollection(super.values());
+        }
+
+        @Override
+        public Set entrySet() {
+            // P.S. the entries are wrapped as well, so the value could not be set through them
+            final Set entries = super.entrySet();
+            return new AbstractSet() {
+                @Override
+                public Iterator iterator() {
+                    final Iterator it = entries.iterator();
+                    return new Iterator() {
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public Object next() {
+                            return new AbstractMap.SimpleImmutableEntry((Map.Entry) it.next());
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException("The shared section data is read-only");
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return entries.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * The read-only array, it is still an ArrayList for the readers casting
+     * the data
+     */
+    static class ReadOnlyList extends ArrayList {
+
+        ReadOnlyList(List list) {
+            super(list.size());
+            for (Object value : list) {
+                super.add(toReadOnly(value));
+            }
+        }
+
+        @Override
+        public boolean add(Object value) {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        @Override
+        public void add(int index, Object value) {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        @Override
+        public boolean addAll(Collection c) {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        @Override
+        public boolean addAll(int index, Collection c) {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        @Override
+        public Object set(int index, Object value) {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        @Override
+        public Object remove(int index) {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        @Override
+        public boolean remove(Object value) {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        @Override
+        public boolean removeAll(Collection c) {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        @Override
+        public boolean retainAll(Collection c) {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        @Override
+        protected void removeRange(int from, int to) {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        public void sort(Comparator c) {
+            throw new UnsupportedOperationException("The shared section data is read-only");
+        }
+
+        @Override
+        public Iterator iterator() {
+            return listIterator(0);
+        }
+
+        @Override
+        public ListIterator listIterator() {
+            return listIterator(0);
+        }
+
+        @Override
+        public ListIterator listIterator(int index) {
+            final ListIterator it = super.listIterator(index);
+            return new ListIterator() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Object next() {
+                    return it.next();
+                }
+
+                @Override
+                public boolean hasPrevious() {
+                    return it.hasPrevious();
+                }
+
+                @Override
+                public Object previous() {
+                    return it.previous();
+                }
+
+                @Override
+                public int nextIndex() {
+                    return it.nextIndex();
+                }
+
+                @Override
+                public int previousIndex() {
+                    return it.previousIndex();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("The shared section data is read-only");
+                }
+
+                @Override
+                public void set(Object value) {
+                    throw new UnsupportedOperationException("The shared section data is read-only");
+                }
+
+                @Override
+                public void add(Object value) {
+                    throw new UnsupportedOperationException("The shared section data is read-only");
+                }
+            };
+        }
+
+        @Override
+        public List subList(int from, int to) {
+            return Collections.unmodifiableList(super.subList(from, to));
+        }
+    }
+}
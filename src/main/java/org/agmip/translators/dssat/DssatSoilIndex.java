@@ -0,0 +1,309 @@
+package org.agmip.translators.dssat;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DSSAT soil library index Class, map each soil_id in the soil file to the
+ * byte range of its profile, so only the profiles which are asked for need to
+ * be parsed.
+ *
+ * For each profile, the range of the "*SOILS" section before it is also kept,
+ * since the notes in that section belong to the profile. The index of plain
+ * file is saved next to it (with ".idx" suffix), and it is only trusted when
+ * the size and last modified time (or the CRC32 of content) of the soil file
+ * still match. The loaded index is also kept in memory for the later reading
+ * in the same process, only for the most recently used soil files.
+ *
+ * The index is not changed once it is built or loaded, when the soil file is
+ * touched but still has the same content, a copy with the new file
+ * information is created, so the index shared by the other threads is never
+ * mutated.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+class DssatSoilIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(DssatSoilIndex.class);
+    public static final String INDEX_SUFFIX = ".idx";
+    private static final String HEADER = "*DSSAT SOIL INDEX V1";
+    static final int MAX_LOADED = 32;
+    private static final Map<String, DssatSoilIndex> loaded = Collections.synchronizedMap(new LinkedHashMap<String, DssatSoilIndex>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DssatSoilIndex> eldest) {
+            return size() > MAX_LOADED;
+        }
+    });
+    private final long fileSize;
+    private final long lastModified;
+    private final long checksum;
+    private final ArrayList<String> soilIds;
+    private final HashMap<String, long[]> ranges;
+
+    /**
+     * Constructor for the index which is not bound to a soil file yet
+     */
+    public DssatSoilIndex() {
+        this(-1, -1, -1);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param fileSize the size of soil file
+     * @param lastModified the last modified time of soil file
+     * @param checksum the CRC32 of soil file content
+     */
+    public DssatSoilIndex(long fileSize, long lastModified, long checksum) {
+        this(fileSize, lastModified, checksum, new ArrayList<String>(), new HashMap<String, long[]>());
+    }
+
+    /**
+     * Constructor which shares the profile ranges with another index
+     */
+    private DssatSoilIndex(long fileSize, long lastModified, long checksum, ArrayList<String> soilIds, HashMap<String, long[]> ranges) {
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.checksum = checksum;
+        this.soilIds = soilIds;
+        this.ranges = ranges;
+    }
+
+    /**
+     * Add the profile into index, the later one with duplicated soil_id is
+     * skipped (same as getSectionData)
+     *
+     * @param soilId the soil_id of profile
+     * @param start the start offset of profile
+     * @param end the end offset (exclusive) of profile
+     * @param sectionStart the start offset of the "*SOILS" section, -1 if
+     * there is no section before the profile
+     * @param sectionEnd the end offset (exclusive) of the "*SOILS" section
+     */
+    public void addProfile(String soilId, long start, long end, long sectionStart, long sectionEnd) {
+        if (!ranges.containsKey(soilId)) {
+            soilIds.add(soilId);
+            ranges.put(soilId, new long[]{start, end, sectionStart, sectionEnd});
+        }
+    }
+
+    /**
+     * Check if the soil_id is in the index
+     *
+     * @param soilId the soil_id
+     * @return true if the profile is indexed
+     */
+    public boolean contains(String soilId) {
+        return ranges.containsKey(soilId);
+    }
+
+    /**
+     * Get the number of indexed profiles
+     *
+     * @return the number of profiles
+     */
+    public int size() {
+        return soilIds.size();
+    }
+
+    /**
+     * Get a copy of the index for the soil file with the given information,
+     * the index itself is not changed
+     *
+     * @param fileSize the size of soil file
+     * @param lastModified the last modified time of soil file
+     * @param checksum the CRC32 of soil file content
+     * @return the index bound to the soil file
+     */
+    public DssatSoilIndex withFileInfo(long fileSize, long lastModified, long checksum) {
+        return new DssatSoilIndex(fileSize, lastModified, checksum, soilIds, ranges);
+    }
+
+    /**
+     * Check if the soil file has not been changed since the index is built,
+     * by its size and last modified time
+     *
+     * @param file the soil file
+     * @return true if the index is up to date
+     */
+    public boolean isUpToDate(File file) {
+        return file.length() == fileSize && file.lastModified() == lastModified;
+    }
+
+    /**
+     * Check if the soil file content is same as the one the index is built
+     * for, by its size and CRC32
+     *
+     * @param content the soil file content
+     * @return true if the index could be used for the content
+     */
+    public boolean isSameContent(byte[] content) {
+        return content.length == fileSize && getChecksum(content) == checksum;
+    }
+
+    /**
+     * Open a Reader over the profiles which are asked for, the profiles are in
+     * the original order, and each of them is led by its "*SOILS" section
+     * when the section is different from the previous one
+     *
+     * @param content the soil file content (byte array or RandomAccessFile)
+     * @param soilIds the soil_ids to read
+     * @return the BufferedReader for the selected profiles
+     * @throws IOException
+     */
+    public BufferedReader getReader(Object content, Set<String> soilIds) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long lastSection = -1;
+        for (String soilId : this.soilIds) {
+            if (soilIds.contains(soilId)) {
+                long[] range = ranges.get(soilId);
+                if (range[2] >= 0 && range[2] != lastSection) {
+                    copy(content, range[2], range[3], out);
+                    lastSection = range[2];
+                }
+                copy(content, range[0], range[1], out);
+            }
+        }
+        return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    /**
+     * Save the index next to the soil file, the index is written into a
+     * temporary file first, so the other processes never see a partial index
+     *
+     * @param file the soil file
+     * @throws IOException
+     */
+    public void save(File file) throws IOException {
+        File idxFile = getIndexFile(file);
+        File tmpFile = File.createTempFile(file.getName(), INDEX_SUFFIX, idxFile.getAbsoluteFile().getParentFile());
+        BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8"));
+        try {
+            bw.write(HEADER);
+            bw.write("\n");
+            bw.write(fileSize + "\t" + lastModified + "\t" + checksum + "\n");
+            for (String soilId : soilIds) {
+                long[] range = ranges.get(soilId);
+                bw.write(soilId + "\t" + range[0] + "\t" + range[1] + "\t" + range[2] + "\t" + range[3] + "\n");
+            }
+        } finally {
+            bw.close();
+        }
+        if (!tmpFile.renameTo(idxFile)) {
+            idxFile.delete();
+            if (!tmpFile.renameTo(idxFile)) {
+                tmpFile.delete();
+                throw new IOException("Failed to save soil index " + idxFile.getPath());
+            }
+        }
+        loaded.put(file.getAbsolutePath(), this);
+    }
+
+    /**
+     * Load the saved index of the soil file
+     *
+     * @param file the soil file
+     * @return the index, null if there is no readable index
+     */
+    public static DssatSoilIndex load(File file) {
+        DssatSoilIndex cached = loaded.get(file.getAbsolutePath());
+        if (cached != null && cached.isUpToDate(file)) {
+            return cached;
+        }
+        File idxFile = getIndexFile(file);
+        if (!idxFile.isFile()) {
+            return null;
+        }
+        BufferedReader br = null;
+        try {
+            br = new BufferedReader(new InputStreamReader(new FileInputStream(idxFile), "UTF-8"));
+            if (!HEADER.equals(br.readLine())) {
+                return null;
+            }
+            String[] info = br.readLine().split("\t");
+            DssatSoilIndex index = new DssatSoilIndex(Long.parseLong(info[0]), Long.parseLong(info[1]), Long.parseLong(info[2]));
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] items = line.split("\t");
+                index.addProfile(items[0], Long.parseLong(items[1]), Long.parseLong(items[2]), Long.parseLong(items[3]), Long.parseLong(items[4]));
+            }
+            loaded.put(file.getAbsolutePath(), index);
+            return index;
+        } catch (Exception e) {
+            log.warn("Failed to load soil index {}, it will be rebuilt", idxFile.getPath());
+            return null;
+        } finally {
+            if (br != null) {
+                try {
+                    br.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of the indexes kept in memory
+     *
+     * @return the number of loaded indexes
+     */
+    static int getLoadedCount() {
+        return loaded.size();
+    }
+
+    /**
+     * Get the index file of the soil file
+     *
+     * @param file the soil file
+     * @return the index file
+     */
+    public static File getIndexFile(File file) {
+        return new File(file.getPath() + INDEX_SUFFIX);
+    }
+
+    /**
+     * Get the CRC32 of the content
+     *
+     * @param content the file content
+     * @return the CRC32 value
+     */
+    public static long getChecksum(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        return crc.getValue();
+    }
+
+    /**
+     * Copy the range of content into output
+     */
+    private static void copy(Object content, long start, long end, ByteArrayOutputStream out) throws IOException {
+        if (content instanceof byte[]) {
+            out.write((byte[]) content, (int) start, (int) (end - start));
+        } else {
+            RandomAccessFile raf = (RandomAccessFile) content;
+            byte[] buf = new byte[(int) (end - start)];
+            raf.seek(start);
+            raf.readFully(buf);
+            out.write(buf, 0, buf.length);
+        }
+    }
+}
@@ -1,11 +1,19 @@
 package org.agmip.translators.dssat;
 
 import java.io.BufferedReader;
-import java.io.CharArrayReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * DSSAT Soil Data I/O API Class
@@ -15,7 +23,98 @@ import java.util.LinkedHashMap;
  */
 public class DssatSoilInput extends DssatCommonInput {
 
+    private static final Logger log = LoggerFactory.getLogger(DssatSoilInput.class);
     public String layerKey = "soilLayer";  // P.S. the key name might change
+    public boolean indexedSoil = false;    // P.S. set true to parse only the asked profiles by using soil index
+
+    // Precompiled formats of data lines
+    private static final DssatRecordSchema siteFormats = new DssatRecordSchema.Builder()
+            .add("soil_id", 10)
+            .add("sl_source", 13)   // P.S. sl_system is always "SCS" for DSSAT
+            .add("sltx", 6)
+            .add("sldp", 6)
+            .add("soil_name", 51)
+            .build();
+
+    private static final DssatRecordSchema siteDetailFormats = new DssatRecordSchema.Builder()
+            .add("sl_loc_3", 12)
+            .add("sl_loc_1", 12)   // P.S. old key name ("scount")
+            .add("soil_lat", 10)  // P.S. Definition changed 9 -> 10 (06/24)
+            .add("soil_long", 8)  // P.S. Definition changed 9 -> 8  (06/24)
+            .add("classification", 51)     // P.S. "fd_name" for query using, not this time
+            .build();
+
+    private static final DssatRecordSchema scomFormats = new DssatRecordSchema.Builder()
+            .add("scom", 6)
+            .add("salb", 6)
+            .add("slu1", 6)
+            .add("sldr", 6)
+            .add("slro", 6)
+            .add("slnf", 6)
+            .add("slpf", 6)
+            .add("smhb", 6)
+            .add("smpx", 6)
+            .add("smke", 6)
+            .build();
+
+    private static final DssatRecordSchema layerFormats = new DssatRecordSchema.Builder()
+            .add("sllb", 6)
+            .add("slmh", 6)
+            .add("slll", 6)
+            .add("sldul", 6)
+            .add("slsat", 6)
+            .add("slrgf", 6)
+            .add("sksat", 6)
+            .add("slbdm", 6)
+            .add("sloc", 6)
+            .add("slcly", 6)
+            .add("slsil", 6)
+            .add("slcf", 6)
+            .add("slni", 6)
+            .add("slphw", 6)
+            .add("slphb", 6)
+            .add("slcec", 6)
+            .add("sadc", 6)
+            .build();
+
+    private static final DssatRecordSchema layerPxFormats = new DssatRecordSchema.Builder()
+            .add("sllb", 6)
+            .add("slpx", 6)
+            .add("slpt", 6)
+            .add("slpo", 6)
+            .add("slca", 6)
+            .add("slal", 6)
+            .add("slfe", 6)
+            .add("slmn", 6)
+            .add("slbs", 6)
+            .add("slpa", 6)
+            .add("slpb", 6)
+            .add("slke", 6)
+            .add("slmg", 6)
+            .add("slna", 6)
+            .add("slsu", 6)
+            .add("slec", 6)
+            .build();
+
+    private static final DssatRecordSchema layerOldPxFormats = new DssatRecordSchema.Builder()
+            .add("sllb", 6)
+            .add("slpx", 6)
+            .add("slpt", 6)
+            .add("slpo", 6)
+            .add("caco3", 6)    // P.S. For old version of soil file
+            .add("slal", 6)
+            .add("slfe", 6)
+            .add("slmn", 6)
+            .add("slbs", 6)
+            .add("slpa", 6)
+            .add("slpb", 6)
+            .add("slke", 6)
+            .add("slmg", 6)
+            .add("slna", 6)
+            .add("slsu", 6)
+            .add("slec", 6)
+            .add("slca", 6)
+            .build();
 
     /**
      * Constructor with no parameters
@@ -43,6 +142,37 @@ public class DssatSoilInput extends DssatCommonInput {
         return ret;
     }
 
+    /**
+     * DSSAT Soil Data input method for reading only the asked profiles from
+     * soil library, the soil index will be used and saved next to the plain
+     * soil file, so the later reading could skip the other profiles directly
+     *
+     * @param arg0 file name
+     * @param soilIds the soil_ids to read
+     * @return result data holder object
+     */
+    public HashMap readFile(String arg0, Set<String> soilIds) {
+
+        HashMap ret = new HashMap();
+        String filePath = arg0;
+        HashMap brMap = null;
+
+        try {
+            brMap = getBufferReader(filePath);
+            ret.put("soils", readSoilSites(brMap, new HashMap(), soilIds));
+
+        } catch (FileNotFoundException fe) {
+            System.out.println("File not found under following path : [" + filePath + "]!");
+            return ret;
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            closeBufferReader(brMap);
+        }
+
+        return ret;
+    }
+
     /**
      * DSSAT Soil Data input method for Controller using (return map will not be compressed)
      * 
@@ -51,15 +181,29 @@ public class DssatSoilInput extends DssatCommonInput {
      */
     protected ArrayList<HashMap> readSoilSites(HashMap brMap, HashMap ret) throws IOException {
 
+        return readSoilSites(brMap, ret, null);
+    }
+
+    /**
+     * DSSAT Soil Data input method for Controller using, only read the
+     * profiles which are asked for (return map will not be compressed)
+     *
+     * @param brMap  The holder for BufferReader objects for all files
+     * @param soilIds the soil_ids to read, null for reading all the profiles
+     * @return result data holder object
+     */
+    protected ArrayList<HashMap> readSoilSites(HashMap brMap, HashMap ret, Set<String> soilIds) throws IOException {
+
         String slNotes = null;
         ArrayList<HashMap> sites = new ArrayList<HashMap>();
         HashMap site = new HashMap();
         ArrayList layers = new ArrayList();
+        DssatRecordMerger layerMerger = new DssatRecordMerger(layers, "sllb");
+        DssatParseContext ctx = new DssatParseContext();
         String line;
         BufferedReader brS = null;
         Object buf;
         HashMap mapS;
-        LinkedHashMap formats = new LinkedHashMap();
 
         mapS = (HashMap) brMap.get("S");
 
@@ -73,168 +217,272 @@ public class DssatSoilInput extends DssatCommonInput {
         for (Object key : mapS.keySet()) {
 
             buf = mapS.get(key);
-            if (buf instanceof char[]) {
-                brS = new BufferedReader(new CharArrayReader((char[]) buf));
-            } else {
-                brS = (BufferedReader) buf;
+            brS = soilIds != null ? getIndexedReader(buf, soilIds) : null;
+            if (brS == null) {
+                brS = getBufferedReader(buf, memoryMapped);
             }
 
-            while ((line = brS.readLine()) != null) {
+            try {
+                while ((line = brS.readLine()) != null) {
 
-                // Get content type of line
-                judgeContentType(line);
+                    // Get content type of line
+                    judgeContentType(ctx, line);
 
-                // Read SOILS Info
-                if (flg[0].equals("soil") && flg[2].equals("data")) {
+                    // Read SOILS Info
+                    if (ctx.flg[0].equals("soil") && ctx.flg[2].equals("data")) {
 
-                    slNotes = line.replaceFirst("\\*[Ss][Oo][Ii][Ll][Ss]?\\s*:?", "").trim();
+                        slNotes = line.replaceFirst("\\*[Ss][Oo][Ii][Ll][Ss]?\\s*:?", "").trim();
 
-                } // Read Site Info
-                else if (flg[0].equals("site")) {
+                    } // Read Site Info
+                    else if (ctx.flg[0].equals("site")) {
 
-                    // header info
-                    if (flg[1].equals("") && flg[2].equals("data")) {
+                        // header info
+                        if (ctx.flg[1].equals("") && ctx.flg[2].equals("data")) {
+
+                            // Read line and save into return holder
+    //                        sites.add(readLine(line.substring(1), siteFormats));
+                            site = readLine(line.substring(1), siteFormats);
+                            if (slNotes != null && !slNotes.equals("")) {
+                                site.put("sl_notes", slNotes);
+                            }
+                            sites.add(site);
+                            layers = new ArrayList();
+                            layerMerger = new DssatRecordMerger(layers, "sllb");
+    //                        ((HashMap) sites.get(sites.size() - 1)).put(layerKey, new ArrayList());
+
+                        } // Site detail info
+                        else if (ctx.flg[1].startsWith("site ") && ctx.flg[2].equals("data")) {
+
+                            // Read line and save into return holder
+    //                        ((HashMap) sites.get(sites.size() - 1)).putAll(readLine(line, siteDetailFormats));
+                            site.putAll(readLine(line, siteDetailFormats));
+
+                        } // soil info
+                        else if (ctx.flg[1].startsWith("scom ") && ctx.flg[2].equals("data")) {
+
+                            // Read line and save into return holder
+    //                        ((HashMap) sites.get(sites.size() - 1)).putAll(readLine(line, scomFormats));
+                            site.putAll(readLine(line, scomFormats));
+
+                        } // layer part one info
+                        else if (ctx.flg[1].startsWith("slb  slmh") && ctx.flg[2].equals("data")) {
+
+                            // Read line and save into return holder
+    //                        addToArray((ArrayList) ((HashMap) sites.get(sites.size() - 1)).get(layerKey),
+    //                                readLine(line, layerFormats),
+    //                                "sllb");
+                            layerMerger.add(readLine(line, layerFormats));
+                            site.put(layerKey, layers);
+
+                        } // layer part two info
+                        else if (ctx.flg[1].startsWith("slb  slpx ") && ctx.flg[2].equals("data")) {
+
+                            // Read line and save into return holder
+    //                        addToArray((ArrayList) ((HashMap) sites.get(sites.size() - 1)).get(layerKey),
+    //                                readLine(line, formats),
+    //                                "sllb");
+                            if (ctx.flg[1].contains("caco3")) {
+                                layerMerger.add(readLine(line, layerOldPxFormats));
+                            } else {
+                                layerMerger.add(readLine(line, layerPxFormats));
+                            }
 
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("soil_id", 10);
-                        formats.put("sl_source", 13);  // P.S. sl_system is always "SCS" for DSSAT
-                        formats.put("sltx", 6);
-                        formats.put("sldp", 6);
-                        formats.put("soil_name", 51);
-                        // Read line and save into return holder
-//                        sites.add(readLine(line.substring(1), formats));
-                        site = readLine(line.substring(1), formats);
-                        if (slNotes != null && !slNotes.equals("")) {
-                            site.put("sl_notes", slNotes);
-                        }
-                        sites.add(site);
-                        layers = new ArrayList();
-//                        ((HashMap) sites.get(sites.size() - 1)).put(layerKey, new ArrayList());
-
-                    } // Site detail info
-                    else if (flg[1].startsWith("site ") && flg[2].equals("data")) {
-
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("sl_loc_3", 12);
-                        formats.put("sl_loc_1", 12);  // P.S. old key name ("scount")
-                        formats.put("soil_lat", 10); // P.S. Definition changed 9 -> 10 (06/24)
-                        formats.put("soil_long", 8); // P.S. Definition changed 9 -> 8  (06/24)
-                        formats.put("classification", 51);    // P.S. "fd_name" for query using, not this time
-                        // Read line and save into return holder
-//                        ((HashMap) sites.get(sites.size() - 1)).putAll(readLine(line, formats));
-                        site.putAll(readLine(line, formats));
-
-                    } // soil info
-                    else if (flg[1].startsWith("scom ") && flg[2].equals("data")) {
-
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("scom", 6);
-                        formats.put("salb", 6);
-                        formats.put("slu1", 6);
-                        formats.put("sldr", 6);
-                        formats.put("slro", 6);
-                        formats.put("slnf", 6);
-                        formats.put("slpf", 6);
-                        formats.put("smhb", 6);
-                        formats.put("smpx", 6);
-                        formats.put("smke", 6);
-                        // Read line and save into return holder
-//                        ((HashMap) sites.get(sites.size() - 1)).putAll(readLine(line, formats));
-                        site.putAll(readLine(line, formats));
-
-                    } // layer part one info
-                    else if (flg[1].startsWith("slb  slmh") && flg[2].equals("data")) {
-
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("sllb", 6);
-                        formats.put("slmh", 6);
-                        formats.put("slll", 6);
-                        formats.put("sldul", 6);
-                        formats.put("slsat", 6);
-                        formats.put("slrgf", 6);
-                        formats.put("sksat", 6);
-                        formats.put("slbdm", 6);
-                        formats.put("sloc", 6);
-                        formats.put("slcly", 6);
-                        formats.put("slsil", 6);
-                        formats.put("slcf", 6);
-                        formats.put("slni", 6);
-                        formats.put("slphw", 6);
-                        formats.put("slphb", 6);
-                        formats.put("slcec", 6);
-                        formats.put("sadc", 6);
-                        // Read line and save into return holder
-//                        addToArray((ArrayList) ((HashMap) sites.get(sites.size() - 1)).get(layerKey),
-//                                readLine(line, formats),
-//                                "sllb");
-                        addToArray(layers, readLine(line, formats), "sllb");
-                        site.put(layerKey, layers);
-
-                    } // layer part two info
-                    else if (flg[1].startsWith("slb  slpx ") && flg[2].equals("data")) {
-
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("sllb", 6);
-                        formats.put("slpx", 6);
-                        formats.put("slpt", 6);
-                        formats.put("slpo", 6);
-                        if (flg[1].contains("caco3")) {
-                            formats.put("caco3", 6);    // P.S. For old version of soil file
                         } else {
-                            formats.put("slca", 6);
                         }
-                        formats.put("slal", 6);
-                        formats.put("slfe", 6);
-                        formats.put("slmn", 6);
-                        formats.put("slbs", 6);
-                        formats.put("slpa", 6);
-                        formats.put("slpb", 6);
-                        formats.put("slke", 6);
-                        formats.put("slmg", 6);
-                        formats.put("slna", 6);
-                        formats.put("slsu", 6);
-                        formats.put("slec", 6);
-                        if (flg[1].contains("caco3")) {
-                            formats.put("slca", 6);
-                        }
-                        // Read line and save into return holder
-//                        addToArray((ArrayList) ((HashMap) sites.get(sites.size() - 1)).get(layerKey),
-//                                readLine(line, formats),
-//                                "sllb");
-                        addToArray(layers, readLine(line, formats), "sllb");
-
                     } else {
                     }
-                } else {
                 }
+            } finally {
+                brS.close();
             }
         }
 
 //        compressData(sites);
 //        ret.put(jsonKey, sites);
-        brS.close();
 
         return sites;
     }
 
+    /**
+     * DSSAT Soil Data input method for Controller using, the soil files are
+     * read concurrently by the executor (return map will not be compressed).
+     * The result is same as reading them one after another, if any file
+     * depends on the previous one (not start with "*SOILS" section), all the
+     * files will be read one after another
+     *
+     * @param brMap  The holder for BufferReader objects for all files
+     * @param soilIds the soil_ids to read, null for reading all the profiles
+     * @param executor the executor for reading files, null for reading them
+     * one after another
+     * @return result data holder object
+     */
+    protected ArrayList<HashMap> readSoilSites(HashMap brMap, HashMap ret, final Set<String> soilIds, ExecutorService executor) throws IOException {
+
+        HashMap mapS = (HashMap) brMap.get("S");
+        if (executor == null || mapS.size() < 2 || !isReopenable(mapS)) {
+            return readSoilSites(brMap, ret, soilIds);
+        }
+
+        ArrayList<Future<ArrayList<HashMap>>> tasks = new ArrayList<Future<ArrayList<HashMap>>>();
+        for (Object key : mapS.keySet()) {
+            final Object buf = mapS.get(key);
+            final HashMap entryMap = getEntryMap("S", key, buf);
+            tasks.add(executor.submit(new Callable<ArrayList<HashMap>>() {
+                @Override
+                public ArrayList<HashMap> call() throws Exception {
+                    String line = readFirstLine(buf);
+                    if (line != null && !isSoilsTitle(line)) {
+                        return null;    // P.S. the profiles will use the notes left by previous file
+                    }
+                    return readSoilSites(entryMap, new HashMap(), soilIds);
+                }
+            }));
+        }
+
+        ArrayList<HashMap> sites = new ArrayList<HashMap>();
+        boolean independent = true;
+        for (Future<ArrayList<HashMap>> task : tasks) {
+            ArrayList<HashMap> fileSites = getResult(task);
+            if (fileSites == null) {
+                independent = false;
+            } else {
+                sites.addAll(fileSites);
+            }
+        }
+        if (!independent) {
+            return readSoilSites(brMap, ret, soilIds);
+        }
+
+        return sites;
+    }
+
+    /**
+     * Get the BufferedReader over the asked profiles of soil file by using
+     * soil index, the index of plain file will be loaded from (or saved into)
+     * the file next to it
+     *
+     * @param buf The holder of input file
+     * @param soilIds the soil_ids to read
+     * @return the BufferedReader for the asked profiles, null if the file
+     * could not be indexed
+     * @throws IOException
+     */
+    private BufferedReader getIndexedReader(Object buf, Set<String> soilIds) throws IOException {
+
+        DssatSoilIndex index;
+        if (buf instanceof File) {
+            File file = (File) buf;
+            index = DssatSoilIndex.load(file);
+            if (index == null || !index.isUpToDate(file)) {
+                long lastModified = file.lastModified();
+                byte[] content = readBytes(new FileInputStream(file), file.length());
+                long checksum = DssatSoilIndex.getChecksum(content);
+                if (index == null || !index.isSameContent(content)) {
+                    index = buildSoilIndex(new DssatLineScanner(content, 0, content.length));
+                    if (index == null) {
+                        return null;
+                    }
+                }
+                // P.S. the loaded index may be shared by the other readers, use a copy for the new file information
+                index = index.withFileInfo(content.length, lastModified, checksum);
+                try {
+                    index.save(file);
+                } catch (IOException e) {
+                    log.warn("Failed to save soil index for {}", file.getPath());
+                }
+            }
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                return index.getReader(raf, soilIds);
+            } finally {
+                raf.close();
+            }
+        } else if (buf instanceof DssatZipEntryHelper) {
+            // P.S. the index of zip entry is not saved, it is still cheaper than parsing all the profiles
+            byte[] content = ((DssatZipEntryHelper) buf).getBytes();
+            index = buildSoilIndex(new DssatLineScanner(content, 0, content.length));
+            if (index == null) {
+                return null;
+            }
+            return index.getReader(content, soilIds);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Build the soil index by scanning the title lines (marked with *), the
+     * profile ends at the next title line
+     *
+     * @param scanner the scanner of soil file content
+     * @return the soil index, null if the content could not be indexed
+     * (not ASCII or having unusual soil_id)
+     */
+    protected DssatSoilIndex buildSoilIndex(DssatLineScanner scanner) {
+
+        DssatSoilIndex index = new DssatSoilIndex();
+        String soilId = null;
+        long start = -1;
+        long sectionStart = -1;
+        long sectionEnd = -1;
+        String line;
+
+        if (!scanner.isAscii()) {
+            return null;
+        }
+        while (scanner.nextLine()) {
+            if (scanner.length() > 0 && scanner.charAt(0) == '*') {
+                long offset = scanner.getLineOffset();
+                if (soilId != null) {
+                    index.addProfile(soilId, start, offset, sectionStart, sectionEnd);
+                }
+                if (sectionEnd < sectionStart) {
+                    sectionEnd = offset;
+                }
+                line = scanner.getLine();
+                if (isSoilsTitle(line)) {
+                    sectionStart = offset;
+                    soilId = null;
+                } else {
+                    soilId = (String) readLine(line.substring(1), siteFormats).get("soil_id");
+                    start = offset;
+                    if (soilId != null && soilId.indexOf('\t') >= 0) {
+                        return null;
+                    }
+                }
+            }
+        }
+        if (soilId != null) {
+            index.addProfile(soilId, start, scanner.getContentLength(), sectionStart, sectionEnd);
+        }
+
+        return index;
+    }
+
+    /**
+     * Check if the title line is the start of "*SOILS" section
+     *
+     * @param line  the string of reading line
+     * @return true for "*SOILS" section
+     */
+    private static boolean isSoilsTitle(String line) {
+        return line.toLowerCase().indexOf("soil") == 1;
+    }
+
     /**
      * Set reading flgs for title lines (marked with *)
      * 
+     * @param ctx the parsing context which holds the flgs
      * @param line  the string of reading line
      */
     @Override
-    protected void setTitleFlgs(String line) {
-        if (line.toLowerCase().indexOf("soil") == 1) {
-            flg[0] = "soil";
+    protected void setTitleFlgs(DssatParseContext ctx, String line) {
+        if (isSoilsTitle(line)) {
+            ctx.flg[0] = "soil";
         } else {
-            flg[0] = "site";
+            ctx.flg[0] = "site";
         }
-        flg[1] = "";
-        flg[2] = "data";
+        ctx.flg[1] = "";
+        ctx.flg[2] = "data";
     }
 }
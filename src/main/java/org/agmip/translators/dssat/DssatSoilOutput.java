@@ -2,7 +2,6 @@ package org.agmip.translators.dssat;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -18,6 +17,12 @@ import static org.agmip.util.MapUtil.*;
  */
 public class DssatSoilOutput extends DssatCommonOutput {
 
+    // Precompiled layouts of data lines
+    private static final DssatLineTemplate siteTemplate = new DssatLineTemplate("*%1$-10s  %2$-11s %3$-5s %4$5s %5$s\r\n");
+    private static final DssatLineTemplate siteDetailTemplate = new DssatLineTemplate(" %1$-11s %2$-11s %3$9s%4$8s %5$s\r\n");
+    private static final DssatLineTemplate scomTemplate = new DssatLineTemplate(" %1$5s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$-5s %9$-5s %10$-5s\r\n");
+    private static final DssatLineTemplate layerTemplate = new DssatLineTemplate(" %1$5s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$5s %10$5s %11$5s %12$5s %13$5s %14$5s %15$5s %16$5s %17$5s\r\n");
+
     /**
      * DSSAT Soil Data Output method
      *
@@ -66,8 +71,8 @@ public class DssatSoilOutput extends DssatCommonOutput {
             }
             arg0 = revisePath(arg0);
             outputFile = new File(arg0 + fileName);
-            boolean existFlg = outputFile.exists();
-            bwS = new BufferedWriter(new FileWriter(outputFile, existFlg));
+            boolean existFlg = isOutputExist(outputFile);
+            bwS = openWriter(outputFile, existFlg);
 
             // Output Soil File
             // Description info for output by translator
@@ -83,19 +88,19 @@ public class DssatSoilOutput extends DssatCommonOutput {
             sbData.append("!This soil data is used for the experiment of ").append(getValueOr(result, "exname", "N/A")).append(".\r\n\r\n");
 
             // Site Info Section
-            sbData.append(String.format("*%1$-10s  %2$-11s %3$-5s %4$5s %5$s\r\n",
+            siteTemplate.append(sbData,
                     getObjectOr(soilSite, "soil_id", defValC).toString(),
                     getObjectOr(soilSite, "sl_source", defValC).toString(),
                     getObjectOr(soilSite, "sltx", defValC).toString(),
                     formatNumStr(5, soilSite, "sldp", defValR),
-                    getObjectOr(soilSite, "soil_name", defValC).toString()));
+                    getObjectOr(soilSite, "soil_name", defValC).toString());
             sbData.append("@SITE        COUNTRY          LAT     LONG SCS FAMILY\r\n");
-            sbData.append(String.format(" %1$-11s %2$-11s %3$9s%4$8s %5$s\r\n",
+            siteDetailTemplate.append(sbData,
                     getObjectOr(soilSite, "sl_loc_3", defValC).toString(),
                     getObjectOr(soilSite, "sl_loc_1", defValC).toString(),
                     formatNumStr(8, soilSite, "soil_lat", defValR), // P.S. Definition changed 9 -> 10 (06/24)
                     formatNumStr(8, soilSite, "soil_long", defValR), // P.S. Definition changed 9 -> 8  (06/24)
-                    getObjectOr(soilSite, "classification", defValC).toString()));
+                    getObjectOr(soilSite, "classification", defValC).toString());
             sbData.append("@ SCOM  SALB  SLU1  SLDR  SLRO  SLNF  SLPF  SMHB  SMPX  SMKE\r\n");
             if (getObjectOr(soilSite, "slnf", "").equals("")) {
                 sbError.append("! Warning: missing data : [slnf], and will automatically use default value '1'\r\n");
@@ -103,7 +108,7 @@ public class DssatSoilOutput extends DssatCommonOutput {
             if (getObjectOr(soilSite, "slpf", "").equals("")) {
                 sbError.append("! Warning: missing data : [slpf], and will automatically use default value '0.92'\r\n");
             }
-            sbData.append(String.format(" %1$5s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$-5s %9$-5s %10$-5s\r\n",
+            scomTemplate.append(sbData,
                     getObjectOr(soilSite, "scom", defValC).toString(),
                     formatNumStr(5, soilSite, "salb", defValR),
                     formatNumStr(5, soilSite, "slu1", defValR),
@@ -113,7 +118,7 @@ public class DssatSoilOutput extends DssatCommonOutput {
                     formatNumStr(5, soilSite, "slpf", "0.92"), // P.S. Set default value as '0.92'
                     getObjectOr(soilSite, "smhb", defValC).toString(),
                     getObjectOr(soilSite, "smpx", defValC).toString(),
-                    getObjectOr(soilSite, "smke", defValC).toString()));
+                    getObjectOr(soilSite, "smke", defValC).toString());
 
             // Soil Layer data section
             soilRecords = (ArrayList) getObjectOr(soilSite, layerKey, new ArrayList());
@@ -144,7 +149,7 @@ public class DssatSoilOutput extends DssatCommonOutput {
 
                 soilRecord = (HashMap) soilRecords.get(j);
                 // part one
-                sbData.append(String.format(" %1$5s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$5s %10$5s %11$5s %12$5s %13$5s %14$5s %15$5s %16$5s %17$5s\r\n",
+                layerTemplate.append(sbData,
                         formatNumStr(5, soilRecord, "sllb", defValR),
                         getObjectOr(soilRecord, "slmh", defValC).toString(),
                         formatNumStr(5, soilRecord, "slll", defValR),
@@ -161,11 +166,11 @@ public class DssatSoilOutput extends DssatCommonOutput {
                         formatNumStr(5, soilRecord, "slphw", defValR),
                         formatNumStr(5, soilRecord, "slphb", defValR),
                         formatNumStr(5, soilRecord, "slcec", defValR),
-                        formatNumStr(5, soilRecord, "sadc", defValR)));
+                        formatNumStr(5, soilRecord, "sadc", defValR));
 
                 // part two
                 if (p2Flg) {
-                    sbLyrP2.append(String.format(" %1$5s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$5s %10$5s %11$5s %12$5s %13$5s %14$5s %15$5s %16$5s %17$5s\r\n",
+                    layerTemplate.append(sbLyrP2,
                             formatNumStr(5, soilRecord, "sllb", defValR),
                             formatNumStr(5, soilRecord, "slpx", defValR),
                             formatNumStr(5, soilRecord, "slpt", defValR),
@@ -182,7 +187,7 @@ public class DssatSoilOutput extends DssatCommonOutput {
                             formatNumStr(5, soilRecord, "slna", defValR),
                             formatNumStr(5, soilRecord, "slsu", defValR),
                             formatNumStr(5, soilRecord, "slec", defValR),
-                            formatNumStr(5, soilRecord, "slca", defValR)));
+                            formatNumStr(5, soilRecord, "slca", defValR));
                 }
             }
 
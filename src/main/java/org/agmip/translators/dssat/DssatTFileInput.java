@@ -1,11 +1,9 @@
 package org.agmip.translators.dssat;
 
 import java.io.BufferedReader;
-import java.io.CharArrayReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import static org.agmip.util.MapUtil.*;
 
 /**
@@ -19,6 +17,12 @@ public class DssatTFileInput extends DssatCommonInput {
     public String obvFileKey = "timeSeries";  // P.S. the key name might change
     public String obvDataKey = "data";  // P.S. the key name might change
 
+    // Precompiled formats of data lines
+    private static final DssatRecordSchema metaFormats = new DssatRecordSchema.Builder()
+            .add("null", 10)   // P.S. Since exname in top line is not reliable, read from file name
+            .addRest("local_name")
+            .build();
+
     /**
      * Constructor with no parameters Set jsonKey as "observed"
      *
@@ -83,12 +87,14 @@ public class DssatTFileInput extends DssatCommonInput {
         BufferedReader brT = null;
         Object buf;
         HashMap mapT;
-        LinkedHashMap formats = new LinkedHashMap();
         ArrayList titles = new ArrayList();
+        DssatRecordSchema dataFormats = new DssatRecordSchema.Builder().build();
         ArrayList<HashMap> obvData = new ArrayList();
-        ArrayList obvDataSecByTrno = new ArrayList();
-        HashMap obvDataByTrno;
+        HashMap<String, DssatRecordMerger> obvDataSecByTrnos = new HashMap();
+        String[] keys = {"trno_t", "date"};
+        DssatRecordMerger obvDataSecByTrno = new DssatRecordMerger(new ArrayList(), keys);
         DssatObservedData obvDataList = new DssatObservedData();    // Varibale list definition
+        DssatParseContext ctx = new DssatParseContext();
         String pdate;
         String trno = "0";
 
@@ -104,120 +110,106 @@ public class DssatTFileInput extends DssatCommonInput {
             buf = mapT.get(keyT);
             String fileName = (String) keyT;
             String exname = fileName.replaceAll("\\.", "").replaceAll("T$", "");
-            if (buf instanceof char[]) {
-                brT = new BufferedReader(new CharArrayReader((char[]) buf));
-            } else {
-                brT = (BufferedReader) buf;
-            }
+            brT = getBufferedReader(buf);
 
             file = new HashMap();
 
-            while ((line = brT.readLine()) != null) {
-
-                // Get content type of line
-                judgeContentType(line);
-
-                // Read Observed data
-                if (flg[2].equals("data")) {
-
-                    // Read meta info
-                    if (flg[0].equals("meta") && flg[1].equals("")) {
-
-                        // Set variables' formats
-                        line = line.replaceAll(".*:", "").trim();
-                        formats.clear();
-                        formats.put("null", 10);  // P.S. Since exname in top line is not reliable, read from file name
-                        formats.put("local_name", line.length());
-                        // Read line and save into return holder
-                        file.putAll(readLine(line, formats));
-                        file.put("exname", exname);
-
-                    } // Read data info 
-                    else {
-                        // Set variables' formats
-                        formats.clear();
-                        for (int i = 0; i < titles.size(); i++) {
-                            formats.put(titles.get(i), 6);
-                        }
-
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);    // P.S. if missing data in TFile, no longer hold title name since the combination handling
-                        // translate date from yyddd format to yyyymmdd format
-                        tmp.put("date", translateDateStr((String) tmp.get("date")));
-                        pdate = getPdate(brMap, (String) tmp.get("trno_t"), fileName.replaceAll("T$", "X"));
-                        for (int i = 0; i < titles.size(); i++) {
-                            if (obvDataList.isDateType(titles.get(i))) {
-                                translateDateStrForDOY(tmp, (String) titles.get(i), pdate);
+            try {
+                while ((line = brT.readLine()) != null) {
+
+                    // Get content type of line
+                    judgeContentType(ctx, line);
+
+                    // Read Observed data
+                    if (ctx.flg[2].equals("data")) {
+
+                        // Read meta info
+                        if (ctx.flg[0].equals("meta") && ctx.flg[1].equals("")) {
+
+                            // Set variables' formats
+                            line = line.replaceAll(".*:", "").trim();
+                            // Read line and save into return holder
+                            file.putAll(readLine(line, metaFormats));
+                            file.put("exname", exname);
+
+                        } // Read data info 
+                        else {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, dataFormats);    // P.S. if missing data in TFile, no longer hold title name since the combination handling
+                            // translate date from yyddd format to yyyymmdd format
+                            tmp.put("date", translateDateStr((String) tmp.get("date")));
+                            pdate = getPdate(brMap, (String) tmp.get("trno_t"), fileName.replaceAll("T$", "X"));
+                            for (int i = 0; i < titles.size(); i++) {
+                                if (obvDataList.isDateType(titles.get(i))) {
+                                    translateDateStrForDOY(tmp, (String) titles.get(i), pdate);
+                                }
                             }
-                        }
 
-                        // Check if the record's trno becomes the next treatment's trno
-                        if (!trno.equals(tmp.get("trno_t"))) {
-                            trno = getValueOr(tmp, "trno_t", "");
-                            obvDataByTrno = null;
-
-                            // Try to get the reccord which matches with the given treatment number
-                            for (int i = 0; i < obvData.size(); i++) {
-                                if (trno.equals(obvData.get(i).get("trno_t"))) {
-                                    obvDataByTrno = obvData.get(i);
-                                    obvDataSecByTrno = (ArrayList) obvDataByTrno.get(obvDataKey);
-                                    break;
+                            // Check if the record's trno becomes the next treatment's trno
+                            if (!trno.equals(tmp.get("trno_t"))) {
+                                trno = getValueOr(tmp, "trno_t", "");
+
+                                // Try to get the reccord which matches with the given treatment number
+                                obvDataSecByTrno = obvDataSecByTrnos.get(trno);
+
+                                // If not found, create a new record and add into array
+                                if (obvDataSecByTrno == null) {
+                                    HashMap obvDataByTrno = new HashMap();
+                                    ArrayList obvDataSec = new ArrayList();
+                                    obvDataByTrno.put("trno_t", trno);
+                                    obvDataByTrno.put(obvDataKey, obvDataSec);
+                                    obvData.add(obvDataByTrno);
+                                    obvDataSecByTrno = new DssatRecordMerger(obvDataSec, keys);
+                                    obvDataSecByTrnos.put(trno, obvDataSecByTrno);
                                 }
                             }
 
-                            // If not found, create a new record and add into array
-                            if (obvDataByTrno == null) {
-                                obvDataByTrno = new HashMap();
-                                obvDataSecByTrno = new ArrayList();
-                                obvDataByTrno.put("trno_t", trno);
-                                obvDataByTrno.put(obvDataKey, obvDataSecByTrno);
-                                obvData.add(obvDataByTrno);
-                            }
+                            // Add data to the array
+                            obvDataSecByTrno.add(tmp);
                         }
 
-                        // Add data to the array
-                        String[] keys = {"trno_t", "date"};
-                        addToArray(obvDataSecByTrno, tmp, keys);
-                    }
-
-                } // Read Observed title
-                else if (flg[2].equals("title")) {
-
-                    titles = new ArrayList();
-                    trno = "0";
-                    line = line.replaceFirst("@", " ");
-                    for (int i = 0; i < line.length(); i += 6) {
-                        String titleStr = line.substring(i, Math.min(i + 6, line.length())).trim().toLowerCase();
-                        if (titleStr.equals("")) {
-                            titles.add("null" + i);
-                        } else if (titleStr.equals("trno")) {
-                            titles.add(titleStr + "_t");
-                        } else {
-                            titles.add(titleStr);
+                    } // Read Observed title
+                    else if (ctx.flg[2].equals("title")) {
+
+                        titles = new ArrayList();
+                        trno = "0";
+                        line = line.replaceFirst("@", " ");
+                        for (int i = 0; i < line.length(); i += 6) {
+                            String titleStr = line.substring(i, Math.min(i + 6, line.length())).trim().toLowerCase();
+                            if (titleStr.equals("")) {
+                                titles.add("null" + i);
+                            } else if (titleStr.equals("trno")) {
+                                titles.add(titleStr + "_t");
+                            } else {
+                                titles.add(titleStr);
+                            }
                         }
-                    }
+                        // Set variables' formats
+                        dataFormats = new DssatRecordSchema.Builder().addAll(titles, 6).build();
 
-                } else {
+                    } else {
+                    }
                 }
+            } finally {
+                brT.close();
             }
             file.put(obvDataKey, obvData);
             files.put(exname, file);
         }
 
-        brT.close();
-
         return files;
     }
 
     /**
      * Set reading flags for title lines (marked with *)
      *
+     * @param ctx the parsing context which holds the flgs
      * @param line the string of reading line
      */
     @Override
-    protected void setTitleFlgs(String line) {
-        flg[0] = "meta";
-        flg[1] = "";
-        flg[2] = "data";
+    protected void setTitleFlgs(DssatParseContext ctx, String line) {
+        ctx.flg[0] = "meta";
+        ctx.flg[1] = "";
+        ctx.flg[2] = "data";
     }
 }
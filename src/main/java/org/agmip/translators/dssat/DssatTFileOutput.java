@@ -2,7 +2,6 @@ package org.agmip.translators.dssat;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
 import static org.agmip.util.MapUtil.*;
@@ -15,6 +14,9 @@ import static org.agmip.util.MapUtil.*;
  */
 public class DssatTFileOutput extends DssatCommonOutput {
 
+    // Precompiled layout of the leading columns (TRNO and DATE) of data line
+    private static final DssatLineTemplate recordTemplate = new DssatLineTemplate(" %1$5s %2$5d");
+
     /**
      * DSSAT Observation Data Output method
      *
@@ -53,7 +55,7 @@ public class DssatTFileOutput extends DssatCommonOutput {
             String fileName = getFileName(result, "T");
             arg0 = revisePath(arg0);
             outputFile = new File(arg0 + fileName);
-            bwT = new BufferedWriter(new FileWriter(outputFile));
+            bwT = openWriter(outputFile);
 
             // Output Observation File
             // Titel Section
@@ -113,21 +115,20 @@ public class DssatTFileOutput extends DssatCommonOutput {
                 sbData.append("@TRNO   DATE");
                 int limit = Math.min(titleOutputId.length, (i + 1) * 39);
                 for (int j = i * 39; j < limit; j++) {
-                    sbData.append(String.format("%1$6s", titleOutput.get(titleOutputId[j]).toString().toUpperCase()));
+                    DssatLineTemplate.appendPadded(sbData, titleOutput.get(titleOutputId[j]).toString().toUpperCase(), 6, false);
                 }
                 sbData.append("\r\n");
 
                 for (int j = 0; j < observeRecords.size(); j++) {
 
                     record = (HashMap) observeRecords.get(j);
-                    sbData.append(String.format(" %1$5s", 1));
-                    sbData.append(String.format(" %1$5d", Integer.parseInt(formatDateStr(getObjectOr(record, "date", defValI).toString()))));
+                    recordTemplate.append(sbData, 1, Integer.parseInt(formatDateStr(getObjectOr(record, "date", defValI).toString())));
                     for (int k = i * 39; k < limit; k++) {
 
                         if (obvDataList.isDapDateType(titleOutputId[k], titleOutput.get(titleOutputId[k]))) {
-                            sbData.append(String.format("%1$6s", formatDateStr(pdate, getObjectOr(record, titleOutput.get(titleOutputId[k]).toString(), defValI).toString())));
+                            DssatLineTemplate.appendPadded(sbData, formatDateStr(pdate, getObjectOr(record, titleOutput.get(titleOutputId[k]).toString(), defValI).toString()), 6, false);
                         } else if (obvDataList.isDateType(titleOutputId[k])) {
-                            sbData.append(String.format("%1$6s", formatDateStr(getObjectOr(record, titleOutput.get(titleOutputId[k]).toString(), defValI).toString())));
+                            DssatLineTemplate.appendPadded(sbData, formatDateStr(getObjectOr(record, titleOutput.get(titleOutputId[k]).toString(), defValI).toString()), 6, false);
                         } else {
                             sbData.append(" ").append(formatNumStr(5, record, titleOutput.get(titleOutputId[k]), defValI));
                         }
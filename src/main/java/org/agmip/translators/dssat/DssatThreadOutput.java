@@ -5,26 +5,30 @@ import java.util.HashMap;
 import java.util.concurrent.ExecutorService;
 import org.agmip.core.types.TranslatorOutput;
 import org.agmip.translators.dssat.DssatControllerOutput;
-import static org.agmip.translators.dssat.DssatCommonInput.getSectionData;
 import static org.agmip.util.MapUtil.getObjectOr;
 
 /**
  *
  * @author Meng Zhang
+ * @deprecated each experiment is written into its own zip file without any
+ * completion notice, use {@link DssatParallelOutput} instead
  */
+@Deprecated
 public class DssatThreadOutput {
 
     public void execDssatTranslator(String arg0, HashMap result, ExecutorService executor) {
         ArrayList<HashMap> expArr = getObjectOr(result, "experiments", new ArrayList());
         ArrayList<HashMap> soilArr = getObjectOr(result, "soils", new ArrayList());
         ArrayList<HashMap> wthArr = getObjectOr(result, "weathers", new ArrayList());
+        DssatSectionIndex soilIdx = new DssatSectionIndex(soilArr, "soil_id");
+        DssatSectionIndex wthIdx = new DssatSectionIndex(wthArr, "wst_id");
         for (int i = 0; i < expArr.size(); i++) {
             HashMap expData = expArr.get(i);
-            HashMap soilData = getSectionData(soilArr, "soil_id", getObjectOr(expData, "soil_id", ""));
+            HashMap soilData = soilIdx.getSharedView(getObjectOr(expData, "soil_id", ""));
             if (soilData != null) {
                 expData.put("soil", soilData);
             }
-            HashMap wthData = getSectionData(wthArr, "wst_id", getObjectOr(expData, "wst_id", ""));
+            HashMap wthData = wthIdx.getSharedView(getObjectOr(expData, "wst_id", ""));
             if (wthData != null) {
                 expData.put("weather", wthData);
             }
@@ -0,0 +1,41 @@
+package org.agmip.translators.dssat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * DSSAT XFile section tables Class, hold the rows of treatments section and
+ * the factor levels of each section in one XFile, which are shared by all the
+ * treatments in the file. The treatment is combined from them by
+ * DssatXFileInput.readTreatment() when it is needed.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+class DssatTreatmentTables {
+
+    String exname;
+    ArrayList<HashMap> sqArr = new ArrayList<HashMap>();
+    ArrayList<HashMap> cuArr = new ArrayList<HashMap>();
+    ArrayList<HashMap> flArr = new ArrayList<HashMap>();
+    ArrayList<HashMap> saArr = new ArrayList<HashMap>();
+    ArrayList<HashMap> icArr = new ArrayList<HashMap>();
+    ArrayList<HashMap> plArr = new ArrayList<HashMap>();
+    ArrayList<HashMap> irArr = new ArrayList<HashMap>();
+    ArrayList<HashMap> feArr = new ArrayList<HashMap>();
+    ArrayList<HashMap> omArr = new ArrayList<HashMap>();
+    ArrayList<HashMap> chArr = new ArrayList<HashMap>();
+    ArrayList<HashMap> tiArr = new ArrayList<HashMap>();
+    ArrayList<HashMap> emArr = new ArrayList<HashMap>();
+    ArrayList<HashMap> haArr = new ArrayList<HashMap>();
+    ArrayList<HashMap> smArr = new ArrayList<HashMap>();
+
+    /**
+     * Constructor
+     *
+     * @param exname the experiment name of XFile
+     */
+    public DssatTreatmentTables(String exname) {
+        this.exname = exname;
+    }
+}
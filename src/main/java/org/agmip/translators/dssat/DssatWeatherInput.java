@@ -1,11 +1,14 @@
 package org.agmip.translators.dssat;
 
 import java.io.BufferedReader;
-import java.io.CharArrayReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * DSSAT Weather Data I/O API Class
@@ -16,6 +19,19 @@ import java.util.LinkedHashMap;
 public class DssatWeatherInput extends DssatCommonInput {
 
     public String dailyKey = "dailyWeather";  // P.S. the key name might change
+    public boolean columnarDaily = false;     // P.S. set true to hold daily data with DssatDailyWeather
+
+    // Precompiled formats of data lines
+    private static final DssatRecordSchema stationFormats = new DssatRecordSchema.Builder()
+            .add("wst_id", 6)
+            .add("wst_lat", 9)
+            .add("wst_long", 9)
+            .add("elev", 6)
+            .add("tav", 6)
+            .add("tamp", 6)
+            .add("refht", 6)
+            .add("wndht", 6)
+            .build();
 
     /**
      * Constructor with no parameters Set jsonKey as "weather"
@@ -51,16 +67,35 @@ public class DssatWeatherInput extends DssatCommonInput {
      */
     protected ArrayList<HashMap> readDailyData(HashMap brMap, HashMap ret) throws IOException {
 
+        return readDailyData(brMap, ret, null);
+    }
+
+    /**
+     * DSSAT Weather Data input method for Controller using, only read the
+     * days in the date window of each weather station (return value will not
+     * be compressed)
+     *
+     * @param brMap The holder for BufferReader objects for all files
+     * @param windows the date window (first and last date in number of
+     * yyyymmdd) for each wst_id, the station which is not in it will be read
+     * with full history, null for reading full history for all the stations
+     * @return result data holder object
+     */
+    protected ArrayList<HashMap> readDailyData(HashMap brMap, HashMap ret, Map<String, int[]> windows) throws IOException {
+
         ArrayList<HashMap> files = new ArrayList();
-        ArrayList<HashMap<String, String>> daily;
+        List<HashMap<String, String>> daily;
         ArrayList titles;
         HashMap file;
-        String line;
+        String line = null;
         BufferedReader brW = null;
+        DssatLineScanner scanner;
         Object buf;
         HashMap mapW;
-        LinkedHashMap formats = new LinkedHashMap();
-        HashMap<String, ArrayList<HashMap<String, String>>> dailyById = new HashMap();
+        DssatRecordSchema dailyFormats;
+        int[] window;
+        HashMap<String, List<HashMap<String, String>>> dailyById = new HashMap();
+        DssatParseContext ctx = new DssatParseContext();
 
         mapW = (HashMap) brMap.get("W");
 
@@ -72,90 +107,107 @@ public class DssatWeatherInput extends DssatCommonInput {
         for (Object key : mapW.keySet()) {
 
             buf = mapW.get(key);
-            if (buf instanceof char[]) {
-                brW = new BufferedReader(new CharArrayReader((char[]) buf));
+            scanner = asciiFastPath ? getLineScanner(buf, memoryMapped) : null;
+            brW = scanner == null ? getBufferedReader(buf, memoryMapped) : null;
+            file = new HashMap();
+            if (columnarDaily) {
+                daily = new DssatDailyWeather();
             } else {
-                brW = (BufferedReader) buf;
+                daily = new ArrayList();
             }
-            file = new HashMap();
-            daily = new ArrayList();
             titles = new ArrayList();
+            dailyFormats = new DssatRecordSchema.Builder().add("w_date", 5).build();
+            window = null;
 
-            while ((line = brW.readLine()) != null) {
-
-                // Get content type of line
-                judgeContentType(line);
-
-                // Read Weather File Info
-                if (flg[0].equals("weather") && flg[1].equals("") && flg[2].equals("data")) {
-
-                    // header info
-                    file.put("wst_name", line.replaceFirst("\\*[Ww][Ee][Aa][Tt][Hh][Ee][Rr]\\s*([Dd][Aa][Tt][Aa]\\s*)*:?", "").trim());
-
-                } // Read Weather Data
-                else if (flg[2].equals("data")) {
-
-                    // Weather station info
-                    if (flg[1].contains("insi ")) {
-
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("wst_id", 6);
-                        formats.put("wst_lat", 9);
-                        formats.put("wst_long", 9);
-                        formats.put("elev", 6);
-                        formats.put("tav", 6);
-                        formats.put("tamp", 6);
-                        formats.put("refht", 6);
-                        formats.put("wndht", 6);
-                        // Read line and save into return holder
-                        file.putAll(readLine(line, formats));
-                        String wst_id = (String) file.get("wst_id");
-                        String wst_name = (String) file.get("wst_name");
-                        if (wst_id != null) {
-                            if (wst_name != null) {
-                                file.put("wst_name", wst_id + " " + wst_name);
-                            } else {
-                                file.put("wst_name", wst_id);
+            try {
+                while (scanner != null ? scanner.nextLine() : (line = brW.readLine()) != null) {
+
+                    // Get content type of line
+                    if (scanner != null) {
+                        judgeContentType(ctx, scanner);
+                        // P.S. daily data line is divided from bytes directly, the other lines are decoded
+                        line = isDailyLine(ctx) ? null : scanner.getLine();
+                    } else {
+                        judgeContentType(ctx, line);
+                    }
+
+                    // Read Weather File Info
+                    if (ctx.flg[0].equals("weather") && ctx.flg[1].equals("") && ctx.flg[2].equals("data")) {
+
+                        // header info
+                        file.put("wst_name", line.replaceFirst("\\*[Ww][Ee][Aa][Tt][Hh][Ee][Rr]\\s*([Dd][Aa][Tt][Aa]\\s*)*:?", "").trim());
+
+                    } // Read Weather Data
+                    else if (ctx.flg[2].equals("data")) {
+
+                        // Weather station info
+                        if (ctx.flg[1].contains("insi ")) {
+
+                            // Read line and save into return holder
+                            file.putAll(readLine(line, stationFormats));
+                            String wst_id = (String) file.get("wst_id");
+                            String wst_name = (String) file.get("wst_name");
+                            if (wst_id != null) {
+                                if (wst_name != null) {
+                                    file.put("wst_name", wst_id + " " + wst_name);
+                                } else {
+                                    file.put("wst_name", wst_id);
+                                }
+                            }
+                            if (windows != null) {
+                                window = windows.get(wst_id);
                             }
-                        }
 
-                    } // Weather daily data
-                    else if (flg[1].startsWith("date ")) {
+                        } // Weather daily data
+                        else if (ctx.flg[1].startsWith("date ")) {
 
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("w_date", 5);
-                        for (int i = 0; i < titles.size(); i++) {
-                            formats.put(titles.get(i), 6);
-                        }
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats, "");
-                        // translate date from yyddd format to yyyymmdd format
-                        translateDateStr(tmp, "w_date");
-                        daily.add(tmp);
+                            // Skip the day out of the date window before dividing the line
+                            if (window != null && !isInWindow(line, scanner, dailyFormats, window)) {
+                                continue;
+                            }
 
-                    } else {
-                    }
-                } // Data Title Info
-                else if (flg[2].equals("title")) {
-                    // Dialy Data Title
-                    if (flg[1].startsWith("date ")) {
-                        for (int i = 6; i < line.length(); i += 6) {
-                            String title = line.substring(i, Math.min(i + 6, line.length())).trim();
-                            if (title.equalsIgnoreCase("DEWP")) {
-                                titles.add("tdew");
-                            } else if (title.equalsIgnoreCase("PAR")) {
-                                titles.add("pard");
-                            } else if (title.equals("")) {
-                                titles.add("null" + i);
+                            // Read line and save into return holder
+                            if (daily instanceof DssatDailyWeather) {
+                                if (line == null) {
+                                    readLine(scanner, dailyFormats, (DssatDailyWeather) daily);
+                                } else {
+                                    readLine(line, dailyFormats, (DssatDailyWeather) daily);
+                                }
                             } else {
-                                titles.add(title.toLowerCase());
+                                HashMap tmp = line == null ? readLine(scanner, dailyFormats, "") : readLine(line, dailyFormats, "");
+                                // translate date from yyddd format to yyyymmdd format
+                                translateDateStr(tmp, "w_date");
+                                daily.add(tmp);
                             }
+
+                        } else {
+                        }
+                    } // Data Title Info
+                    else if (ctx.flg[2].equals("title")) {
+                        // Dialy Data Title
+                        if (ctx.flg[1].startsWith("date ")) {
+                            for (int i = 6; i < line.length(); i += 6) {
+                                String title = line.substring(i, Math.min(i + 6, line.length())).trim();
+                                if (title.equalsIgnoreCase("DEWP")) {
+                                    titles.add("tdew");
+                                } else if (title.equalsIgnoreCase("PAR")) {
+                                    titles.add("pard");
+                                } else if (title.equals("")) {
+                                    titles.add("null" + i);
+                                } else {
+                                    titles.add(title.toLowerCase());
+                                }
+                            }
+                            // Set variables' formats
+                            dailyFormats = new DssatRecordSchema.Builder().add("w_date", 5).addAll(titles, 6).build();
+                        } else {
                         }
                     } else {
                     }
-                } else {
+                }
+            } finally {
+                if (brW != null) {
+                    brW.close();
                 }
             }
 
@@ -165,27 +217,203 @@ public class DssatWeatherInput extends DssatCommonInput {
                 file.put(dailyKey, daily);
                 files.add(file);
             } else {
-                ArrayList tmpArr = dailyById.get(file.get("wst_id"));
+                List tmpArr = dailyById.get(file.get("wst_id"));
 //                tmpArr.addAll(daily);
                 addDaily(tmpArr, daily);
             }
         }
 
-        brW.close();
+        for (List dailyArr : dailyById.values()) {
+            if (dailyArr instanceof DssatDailyWeather) {
+                ((DssatDailyWeather) dailyArr).trimToSize();
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * DSSAT Weather Data input method for Controller using, the weather files
+     * are read concurrently by the executor and the daily data of same
+     * station is combined in the original order of files (return value will
+     * not be compressed). If any file depends on the previous one (not start
+     * with title line), all the files will be read one after another
+     *
+     * @param brMap The holder for BufferReader objects for all files
+     * @param windows the date window for each wst_id, null for reading full
+     * history for all the stations
+     * @param executor the executor for reading files, null for reading them
+     * one after another
+     * @return result data holder object
+     */
+    protected ArrayList<HashMap> readDailyData(HashMap brMap, HashMap ret, final Map<String, int[]> windows, ExecutorService executor) throws IOException {
+
+        HashMap mapW = (HashMap) brMap.get("W");
+        if (executor == null || mapW.size() < 2 || !isReopenable(mapW)) {
+            return readDailyData(brMap, ret, windows);
+        }
+
+        ArrayList<Future<ArrayList<HashMap>>> tasks = new ArrayList<Future<ArrayList<HashMap>>>();
+        for (Object key : mapW.keySet()) {
+            final Object buf = mapW.get(key);
+            final HashMap entryMap = getEntryMap("W", key, buf);
+            tasks.add(executor.submit(new Callable<ArrayList<HashMap>>() {
+                @Override
+                public ArrayList<HashMap> call() throws Exception {
+                    String line = readFirstLine(buf);
+                    if (line != null && !line.startsWith("*")) {
+                        return null;    // P.S. the lines will be read with the flgs left by previous file
+                    }
+                    return readDailyData(entryMap, new HashMap(), windows);
+                }
+            }));
+        }
+
+        ArrayList<ArrayList<HashMap>> results = new ArrayList<ArrayList<HashMap>>();
+        boolean independent = true;
+        for (Future<ArrayList<HashMap>> task : tasks) {
+            ArrayList<HashMap> result = getResult(task);
+            if (result == null) {
+                independent = false;
+            }
+            results.add(result);
+        }
+        if (!independent) {
+            return readDailyData(brMap, ret, windows);
+        }
+
+        // Combine the daily data of same station
+        ArrayList<HashMap> files = new ArrayList();
+        HashMap<String, List<HashMap<String, String>>> dailyById = new HashMap();
+        for (ArrayList<HashMap> result : results) {
+            HashMap file = result.get(0);
+            if (!dailyById.containsKey(file.get("wst_id"))) {
+                dailyById.put((String) file.get("wst_id"), (List) file.get(dailyKey));
+                files.add(file);
+            } else {
+                addDaily(dailyById.get(file.get("wst_id")), (List) file.get(dailyKey));
+            }
+        }
+
+        for (List dailyArr : dailyById.values()) {
+            if (dailyArr instanceof DssatDailyWeather) {
+                ((DssatDailyWeather) dailyArr).trimToSize();
+            }
+        }
 
         return files;
     }
 
+    /**
+     * Divide the data in the daily line and append it into the column holder
+     * as a new day, date will be translated from yyddd format to yyyymmdd
+     * format, and invalid value will be saved as blank string
+     *
+     * @param line The string of line read from data file
+     * @param schema The precompiled definition of columns
+     * @param daily The column holder for daily data
+     */
+    private void readLine(String line, DssatRecordSchema schema, DssatDailyWeather daily) {
+
+        int day = daily.addDay("");
+        String tmp;
+
+        for (int i = 0; i < schema.size(); i++) {
+            if (schema.isReadable(i)) {
+                tmp = schema.getValue(line, i);
+                if (!checkValidValue(tmp)) {
+                    tmp = "";   // P.S. "" means missing or invalid value
+                }
+                if (schema.getKey(i).equals(DssatDailyWeather.DATE_KEY)) {
+                    daily.setDate(day, translateDateStr(tmp));
+                } else {
+                    daily.setValue(schema.getKey(i), day, tmp);
+                }
+            }
+        }
+    }
+
+    /**
+     * Divide the data in the daily line which is scanned by bytes and append
+     * it into the column holder as a new day, the number will be kept without
+     * creating String, and the other text will be read as readLine() does
+     *
+     * @param line The scanner located at the line read from data file
+     * @param schema The precompiled definition of columns
+     * @param daily The column holder for daily data
+     */
+    private void readLine(DssatLineScanner line, DssatRecordSchema schema, DssatDailyWeather daily) {
+
+        int day = daily.addDay("");
+        int date;
+
+        for (int i = 0; i < schema.size(); i++) {
+            if (schema.isReadable(i)) {
+                if (schema.getKey(i).equals(DssatDailyWeather.DATE_KEY)) {
+                    // translate date from yyddd format to yyyymmdd format
+                    date = line.readDigits(schema, i, 4, 5);
+                    if (date >= 0) {
+                        daily.setDate(day, DssatDateHelper.toYyyymmdd(date));
+                    } else if (checkValidValue(line, schema, i)) {
+                        daily.setDate(day, translateDateStr(line.getValue(schema, i)));
+                    }
+                } else if (!checkValidValue(line, schema, i)) {
+                    daily.setValue(schema.getKey(i), day, "");   // P.S. "" means missing or invalid value
+                } else if (line.readNumber(schema, i)) {
+                    daily.setValue(schema.getKey(i), day, line.getNumber(), line.getScale());
+                } else {
+                    daily.setValue(schema.getKey(i), day, line.getValue(schema, i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if the date of daily line is in the date window, the line with
+     * invalid date will be kept
+     *
+     * @param line The string of line read from data file, null if the line is
+     * scanned by bytes
+     * @param scanner The scanner located at the line
+     * @param schema The precompiled definition of columns (date is the first
+     * one)
+     * @param window the first and last date in number of yyyymmdd
+     * @return true if the line need to be read
+     */
+    private boolean isInWindow(String line, DssatLineScanner scanner, DssatRecordSchema schema, int[] window) {
+
+        int date;
+        if (line == null) {
+            date = scanner.readDigits(schema, 0, 4, 5);
+            date = date < 0 ? 0 : DssatDateHelper.toYyyymmdd(date);
+        } else {
+            String tmp = translateDateStr(schema.getValue(line, 0));
+            date = tmp.length() == 8 ? Integer.parseInt(tmp) : 0;
+        }
+        return date <= 0 || (date >= window[0] && date <= window[1]);
+    }
+
+    /**
+     * Check if current line is the daily data line by reading flgs
+     *
+     * @param ctx the parsing context which holds the flgs
+     * @return true for daily data line
+     */
+    private boolean isDailyLine(DssatParseContext ctx) {
+        return ctx.flg[2].equals("data") && ctx.flg[1].startsWith("date ") && !ctx.flg[1].contains("insi ");
+    }
+
     /**
      * Set reading flgs for title lines (marked with *)
      *
+     * @param ctx the parsing context which holds the flgs
      * @param line the string of reading line
      */
     @Override
-    protected void setTitleFlgs(String line) {
-        flg[0] = "weather";
-        flg[1] = "";
-        flg[2] = "data";
+    protected void setTitleFlgs(DssatParseContext ctx, String line) {
+        ctx.flg[0] = "weather";
+        ctx.flg[1] = "";
+        ctx.flg[2] = "data";
     }
 
     /**
@@ -194,7 +422,7 @@ public class DssatWeatherInput extends DssatCommonInput {
      * @param arr original array
      * @param cur new data for insert
      */
-    private void addDaily(ArrayList<HashMap<String, String>> arr, ArrayList<HashMap<String, String>> cur) {
+    private void addDaily(List<HashMap<String, String>> arr, List<HashMap<String, String>> cur) {
         if (arr.isEmpty()) {
             arr.addAll(cur);
         } else if (!cur.isEmpty()) {
@@ -204,11 +432,7 @@ public class DssatWeatherInput extends DssatCommonInput {
                 curDay = Integer.parseInt(cur.get(cur.size() - 1).get("w_date"));
                 arrDay = Integer.parseInt(arr.get(0).get("w_date"));
                 if (curDay <= arrDay) {
-                    ArrayList tmp = new ArrayList();
-                    tmp.addAll(arr);
-                    arr.clear();
-                    arr.addAll(cur);
-                    arr.addAll(tmp);
+                    arr.addAll(0, cur);
                     return;
                 }
                 curDay = Integer.parseInt(cur.get(0).get("w_date"));
@@ -217,14 +441,11 @@ public class DssatWeatherInput extends DssatCommonInput {
                     arr.addAll(cur);
                     return;
                 }
-                ArrayList before = new ArrayList();
-                ArrayList after = new ArrayList();
                 for (int i = 0; i < arr.size();) {
                     arrDay = Integer.parseInt(arr.get(i).get("w_date"));
                     if (arrDay > curDay) {
-                        before.addAll(arr.subList(0, i));
-                        after.addAll(arr.subList(i, arr.size()));
-                        break;
+                        arr.addAll(i, cur);
+                        return;
                     } else {
                         if ((arrDay / 10000) % 4 == 0) {
                             i += 366;
@@ -233,14 +454,7 @@ public class DssatWeatherInput extends DssatCommonInput {
                         }
                     }
                 }
-                if (after.isEmpty()) {
-                    arr.addAll(cur);
-                } else {
-                    arr.clear();
-                    arr.addAll(before);
-                    arr.addAll(cur);
-                    arr.addAll(after);
-                }
+                arr.addAll(cur);
             } catch (NumberFormatException e) {
                 arr.addAll(cur);
             }
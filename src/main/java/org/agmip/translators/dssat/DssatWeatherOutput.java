@@ -2,10 +2,10 @@ package org.agmip.translators.dssat;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import static org.agmip.util.MapUtil.*;
 
@@ -17,6 +17,10 @@ import static org.agmip.util.MapUtil.*;
  */
 public class DssatWeatherOutput extends DssatCommonOutput {
 
+    // Precompiled layouts of data lines
+    private static final DssatLineTemplate stationTemplate = new DssatLineTemplate("  %1$-4s %2$8s %3$8s %4$5s %5$5s %6$5s %7$5s %8$5s\r\n");
+    private static final DssatLineTemplate dailyTemplate = new DssatLineTemplate("%1$5s %2$5s %3$5s %4$5s %5$5s");
+
     /**
      * DSSAT Weather Data Output method
      *
@@ -28,7 +32,7 @@ public class DssatWeatherOutput extends DssatCommonOutput {
 
         // Initial variables
         HashMap wthFile;                  // Data holder for whole weather data
-        ArrayList wthRecords;                   // Daily data array
+        List wthRecords;                        // Daily data array
         HashMap wthRecord;                // Data holder for daily data
         BufferedWriter bwW;                     // output object
         StringBuilder sbData = new StringBuilder();     // construct the data info in the output
@@ -58,14 +62,14 @@ public class DssatWeatherOutput extends DssatCommonOutput {
 //            decompressData(wthFiles);
 
             // Output all weather files
-            wthRecords = (ArrayList) getObjectOr(wthFile, dailyKey, new ArrayList());
+            wthRecords = (List) getObjectOr(wthFile, dailyKey, new ArrayList());
 
             // Initial BufferedWriter
             // Get File name
             String fileName = getWthFileName(wthFile) + ".WTH";
             arg0 = revisePath(arg0);
             outputFile = new File(arg0 + fileName);
-            bwW = new BufferedWriter(new FileWriter(outputFile));
+            bwW = openWriter(outputFile);
 
             // Output Weather File
             // Titel Section
@@ -73,7 +77,7 @@ public class DssatWeatherOutput extends DssatCommonOutput {
 
             // Weather Station Section
             sbData.append("@ INSI      LAT     LONG  ELEV   TAV   AMP REFHT WNDHT\r\n");
-            sbData.append(String.format("  %1$-4s %2$8s %3$8s %4$5s %5$5s %6$5s %7$5s %8$5s\r\n",
+            stationTemplate.append(sbData,
                     getObjectOr(wthFile, "wst_id", defValC).toString(),
                     formatNumStr(8, wthFile, "wst_lat", defValR),
                     formatNumStr(8, wthFile, "wst_long", defValR),
@@ -81,7 +85,7 @@ public class DssatWeatherOutput extends DssatCommonOutput {
                     formatNumStr(5, wthFile, "tav", defValR),
                     formatNumStr(5, wthFile, "tamp", defValR),
                     formatNumStr(5, wthFile, "refht", defValR),
-                    formatNumStr(5, wthFile, "wndht", defValR)));
+                    formatNumStr(5, wthFile, "wndht", defValR));
 
             // Daily weather data section
             // Fixed Title
@@ -91,14 +95,15 @@ public class DssatWeatherOutput extends DssatCommonOutput {
             // Get First day record to find how many fields there are
             HashMap fstDayRecord = new HashMap();
             if (!wthFile.isEmpty()) {
-                fstDayRecord = (HashMap) wthRecords.get(0);
+                // P.S. copy into HashMap, so the order of additional fields does not depend on the type of shared record
+                fstDayRecord = new HashMap((Map) wthRecords.get(0));
             }
 
             // check if there are optional fields
             for (Object title : optDailyData.keySet()) {
                 if (!getObjectOr(fstDayRecord, title, "").equals("")) {
                     adtDaily.add(title);
-                    sbData.append(String.format("%1$6s", optDailyData.get(title).toString()));
+                    DssatLineTemplate.appendPadded(sbData, optDailyData.get(title).toString(), 6, false);
                 } else {
                     adtDaily.add("");
                     sbData.append("      ");
@@ -111,7 +116,7 @@ public class DssatWeatherOutput extends DssatCommonOutput {
                     // check title length is no more than 5
                     if (title.toString().length() <= 5) {
                         adtDaily.add(title);
-                        sbData.append(String.format("%1$6s", title.toString().toUpperCase()));
+                        DssatLineTemplate.appendPadded(sbData, title.toString().toUpperCase(), 6, false);
 
                     } // If it is too long for DSSAT, give a warning message
                     else {
@@ -122,26 +127,42 @@ public class DssatWeatherOutput extends DssatCommonOutput {
 
             sbData.append("\r\n");
 
+            // P.S. read the columns directly when daily data is held by DssatDailyWeather
+            DssatDailyWeather wthColumns = null;
+            if (wthRecords instanceof DssatDailyWeather) {
+                wthColumns = (DssatDailyWeather) wthRecords;
+            }
+
             for (int j = 0; j < wthRecords.size(); j++) {
 
-                wthRecord = (HashMap) wthRecords.get(j);
+                if (wthColumns == null) {
+                    wthRecord = (HashMap) wthRecords.get(j);
+                } else {
+                    wthRecord = null;
+                }
                 // if date is missing, jump the record
-                if (!getObjectOr(wthRecord, "w_date", "").toString().equals("")) {
+                if (!getDailyValue(wthColumns, wthRecord, j, "w_date", "").equals("")) {
                     // Fixed data part
-                    sbData.append(String.format("%1$5s %2$5s %3$5s %4$5s %5$5s",
-                            formatDateStr(getObjectOr(wthRecord, "w_date", defValD).toString()),
-                            formatNumStr(5, wthRecord, "srad", defValR),
-                            formatNumStr(5, wthRecord, "tmax", defValR),
-                            formatNumStr(5, wthRecord, "tmin", defValR),
-                            formatNumStr(5, wthRecord, "rain", defValR)));
+                    // P.S. render the columns one by one, the numbers are written into the buffer directly
+                    dailyTemplate.appendColumn(sbData, 0, formatDateStr(getDailyValue(wthColumns, wthRecord, j, "w_date", defValD)));
+                    dailyTemplate.appendLiteral(sbData, 1);
+                    appendNumStr(sbData, 5, getDailyValue(wthColumns, wthRecord, j, "srad", defValR), "srad", defValR);
+                    dailyTemplate.appendLiteral(sbData, 2);
+                    appendNumStr(sbData, 5, getDailyValue(wthColumns, wthRecord, j, "tmax", defValR), "tmax", defValR);
+                    dailyTemplate.appendLiteral(sbData, 3);
+                    appendNumStr(sbData, 5, getDailyValue(wthColumns, wthRecord, j, "tmin", defValR), "tmin", defValR);
+                    dailyTemplate.appendLiteral(sbData, 4);
+                    appendNumStr(sbData, 5, getDailyValue(wthColumns, wthRecord, j, "rain", defValR), "rain", defValR);
+                    dailyTemplate.appendEnd(sbData);
 
                     // Optional data part
                     for (int k = 0; k < adtDaily.size(); k++) {
                         if (adtDaily.get(k).equals("")) {
                             sbData.append("      ");
                         } else {
-                            sbData.append(String.format(" %1$5s",
-                                    formatNumStr(5, wthRecord, adtDaily.get(k).toString(), defValR)));
+                            String title = adtDaily.get(k).toString();
+                            sbData.append(" ");
+                            appendNumStr(sbData, 5, getDailyValue(wthColumns, wthRecord, j, title, defValR), title, defValR);
                         }
                     }
                     sbData.append("\r\n");
@@ -163,4 +184,26 @@ public class DssatWeatherOutput extends DssatCommonOutput {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Get the value of daily data from the column holder or the daily record
+     *
+     * @param wthColumns the column holder of daily data, null if not used
+     * @param wthRecord the daily record, used when column holder is null
+     * @param i the index of day
+     * @param key the variable name
+     * @param defVal the default value
+     * @return the value text
+     */
+    private String getDailyValue(DssatDailyWeather wthColumns, HashMap wthRecord, int i, String key, String defVal) {
+        if (wthColumns == null) {
+            return getObjectOr(wthRecord, key, defVal).toString();
+        }
+        String ret = wthColumns.getValueStr(key, i);
+        if (ret == null) {
+            return defVal;
+        } else {
+            return ret;
+        }
+    }
 }
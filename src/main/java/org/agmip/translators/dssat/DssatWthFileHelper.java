@@ -1,69 +1,211 @@
 package org.agmip.translators.dssat;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import static org.agmip.util.MapUtil.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
+ * DSSAT weather file naming registry, give each weather station and period
+ * its file name, and the same station and period always get the same name
+ * from the registry.
+ *
+ * The name is the 4-bit institute code plus the year and duration. Only the
+ * station whose id is the institute code itself uses it, the other stations
+ * (e.g. the long station id with the institute code in its name) use the
+ * code derived from the station id instead of a running counter. So the
+ * stations which share the institute code get the same names no matter which
+ * one is named first, or which thread names it. The registry could be shared
+ * by several threads, and could be saved into a file so the later
+ * translations reuse the same names.
+ *
+ * P.S. the derived code is a 16-bit hash, only when two derived codes are the
+ * same, the later station tries the next code.
  *
  * @author Meng Zhang
  */
 public class DssatWthFileHelper {
     
-    private HashSet<String> names = new HashSet();
-    private HashMap<String, String> hashToName = new HashMap();
-    private int defInsiName = 0xAAAA;
+    private static final Logger log = LoggerFactory.getLogger(DssatWthFileHelper.class);
+    private static final String HEADER = "*DSSAT WEATHER NAMES V1";
+    private ConcurrentHashMap<String, String> nameOwners = new ConcurrentHashMap<String, String>();
+    private ConcurrentHashMap<String, String> keyToName = new ConcurrentHashMap<String, String>();
+    private File registryFile;
+
+    /**
+     * Constructor, the names are only kept in memory
+     */
+    public DssatWthFileHelper() {
+    }
+
+    /**
+     * Constructor, load the names saved in the registry file, and save() will
+     * write the names back into it
+     *
+     * @param registryFile the registry file, it is fine if it does not exist
+     * yet
+     */
+    public DssatWthFileHelper(File registryFile) {
+        this.registryFile = registryFile;
+        if (registryFile != null && registryFile.isFile()) {
+            load(registryFile);
+        }
+    }
     
     /**
-     * Generate the weather file name for auto-generating (extend name not included)
+     * Generate the weather file name for auto-generating (extend name not included),
+     * the name given before to the same station and period is returned if
+     * there is one
      *
      * @param wthData weather data holder
-     * @return
+     * @return the file name, blank if there is no wst_id
      */
     public String createWthFileName(Map wthData) {
         
-        String hash = getObjectOr(wthData, "wst_id", "").toString();
-        if (hash.equals("")) {
+        String wstId = getObjectOr(wthData, "wst_id", "").toString();
+        if (wstId.equals("")) {
             return "";
         }
         
-        if (hashToName.containsKey(hash)) {
-            return hashToName.get(hash);
-        } else {
-            String insiName = getWthInsiCodeOr(wthData);
-            String yearDur = getWthYearDuration(wthData);
-            while (names.contains(insiName + yearDur)) {
-                insiName = getNextDefName();
+        String yearDur = getWthYearDuration(wthData);
+        String key = wstId + "\t" + yearDur;
+        String name = keyToName.get(key);
+        if (name != null) {
+            return name;
+        }
+
+        // P.S. the institute code borrowed from the station name could be shared by other stations, use the derived code instead
+        String insiName = getWthInsiCode(wthData);
+        if (!insiName.equals(wstId)) {
+            insiName = "";
+        }
+        for (int i = insiName.equals("") ? 1 : 0;; i++) {
+            String candidate = (i == 0 ? insiName : getDefInsiCode(wstId, i)) + yearDur;
+            String owner = nameOwners.putIfAbsent(candidate, key);
+            if (owner == null || owner.equals(key)) {
+                // P.S. another thread might have named the same station at the same time, use its name
+                String prev = keyToName.putIfAbsent(key, candidate);
+                if (prev != null && !prev.equals(candidate)) {
+                    nameOwners.remove(candidate, key);
+                    return prev;
+                }
+                return candidate;
             }
-            names.add(insiName + yearDur);
-            hashToName.put(hash, insiName + yearDur);
-            return insiName + yearDur;
         }
     }
-    
+
     /**
-     * Get the 4-bit institute code for weather file name, if not available from data holder, then use default code
-     * 
-     * @param wthData   Weather data holder
-     * @return 
+     * Get the number of registered names
+     *
+     * @return the number of names
      */
-    private String getWthInsiCodeOr(Map wthData) {
-        String insiName = getWthInsiCode(wthData);
-        if (insiName.equals("")) {
-            return getNextDefName();
-        } else {
-            return insiName;
+    public int size() {
+        return keyToName.size();
+    }
+
+    /**
+     * Get the registry file
+     *
+     * @return the registry file, null if the names are only kept in memory
+     */
+    public File getRegistryFile() {
+        return registryFile;
+    }
+
+    /**
+     * Save the names into the registry file, the names are written into a
+     * temporary file first, so the other processes never see a partial
+     * registry. Nothing is done if there is no registry file
+     *
+     * @throws IOException
+     */
+    public void save() throws IOException {
+        if (registryFile == null) {
+            return;
+        }
+        // P.S. sort the names, so the same names give the same file
+        TreeMap<String, String> sorted = new TreeMap<String, String>(keyToName);
+        File dir = registryFile.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        File tmpFile = File.createTempFile(registryFile.getName(), ".tmp", dir);
+        BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8"));
+        try {
+            bw.write(HEADER);
+            bw.write("\n");
+            for (Map.Entry<String, String> entry : sorted.entrySet()) {
+                bw.write(entry.getKey() + "\t" + entry.getValue() + "\n");
+            }
+        } finally {
+            bw.close();
+        }
+        if (!tmpFile.renameTo(registryFile)) {
+            registryFile.delete();
+            if (!tmpFile.renameTo(registryFile)) {
+                tmpFile.delete();
+                throw new IOException("Failed to save weather names " + registryFile.getPath());
+            }
         }
     }
+
     /**
-     * Generate the institute code
-     * 
-     * @return 
+     * Load the saved names, the unreadable registry is ignored
+     *
+     * @param file the registry file
      */
-    private String getNextDefName() {
-        return Integer.toHexString(defInsiName++).toUpperCase();
+    private void load(File file) {
+        BufferedReader br = null;
+        try {
+            br = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            if (!HEADER.equals(br.readLine())) {
+                log.warn("Unknown weather names file {}, it will be overwritten", file.getPath());
+                return;
+            }
+            String line;
+            while ((line = br.readLine()) != null) {
+                // P.S. the key is wst_id and year duration (might be blank)
+                String[] items = line.split("\t", -1);
+                if (items.length == 3 && nameOwners.putIfAbsent(items[2], items[0] + "\t" + items[1]) == null) {
+                    keyToName.put(items[0] + "\t" + items[1], items[2]);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to load weather names {}, it will be overwritten", file.getPath());
+        } finally {
+            if (br != null) {
+                try {
+                    br.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Generate the institute code from the station id, the code of each try
+     * is different, and it is same in every run
+     *
+     * @param wstId the station id
+     * @param tryNum the number of try, start from 1
+     * @return the 4-bit institute code
+     */
+    private static String getDefInsiCode(String wstId, int tryNum) {
+        int hash = (wstId + "#" + tryNum).hashCode();
+        hash = (hash ^ (hash >>> 16)) & 0xFFFF;
+        return Integer.toHexString(hash | 0x10000).substring(1).toUpperCase();
     }
     
     
@@ -96,11 +238,19 @@ public class DssatWthFileHelper {
      */
     public static String getWthYearDuration(Map wthData) {
         String yearDur = "";
-        ArrayList<Map> wthRecords = (ArrayList) getObjectOr(wthData, "dailyWeather", new ArrayList());
+        List wthRecords = (List) getObjectOr(wthData, "dailyWeather", new ArrayList());
         if (!wthRecords.isEmpty()) {
             // Get the year of starting date and end date
-            String startYear = getValueOr((wthRecords.get(0)), "w_date", "    ").substring(2, 4).trim();
-            String endYear = getValueOr((wthRecords.get(wthRecords.size() - 1)), "w_date", "    ").substring(2, 4).trim();
+            String startYear;
+            String endYear;
+            if (wthRecords instanceof DssatDailyWeather) {
+                DssatDailyWeather wthColumns = (DssatDailyWeather) wthRecords;
+                startYear = wthColumns.getDateStr(0).substring(2, 4).trim();
+                endYear = wthColumns.getDateStr(wthColumns.size() - 1).substring(2, 4).trim();
+            } else {
+                startYear = getValueOr((Map) wthRecords.get(0), "w_date", "    ").substring(2, 4).trim();
+                endYear = getValueOr((Map) wthRecords.get(wthRecords.size() - 1), "w_date", "    ").substring(2, 4).trim();
+            }
             // If not available, do not show year and duration in the file name
             if (!startYear.equals("") && !endYear.equals("")) {
                 yearDur += startYear;
@@ -1,12 +1,10 @@
 package org.agmip.translators.dssat;
 
 import java.io.BufferedReader;
-import java.io.CharArrayReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import static org.agmip.util.MapUtil.*;
 
 /**
@@ -20,6 +18,379 @@ public class DssatXFileInput extends DssatCommonInput {
     public String eventKey = "data";
     public String icEventKey = "soilLayer";
 
+    // Precompiled formats of data lines
+    private static final DssatRecordSchema expFormats = new DssatRecordSchema.Builder()
+            .add("null_1", 14)
+            .add("null_2", 11)   // P.S. Since exname in top line is not reliable, read from file name
+            .add("local_name", 61)
+            .build();
+
+    private static final DssatRecordSchema plotFormats = new DssatRecordSchema.Builder()
+            .add("plta", 7)
+            .add("pltr#", 6)
+            .add("pltln", 6)
+            .add("pldr", 6)
+            .add("pltsp", 6)
+            .add("plot_layout", 6)
+            .add("pltha", 6)
+            .add("plth#", 6)
+            .add("plthl", 6)
+            .add("plthm", 16)
+            .build();
+
+    private static final DssatRecordSchema treatmentFormats = new DssatRecordSchema.Builder()
+            .add("trno", 2)
+            .add("sq", 2)
+            .add("op", 2)
+            .add("co", 2)
+            .add("tr_name", 26)
+            .add("ge", 3)
+            .add("fl", 3)
+            .add("sa", 3)
+            .add("ic", 3)
+            .add("pl", 3)
+            .add("ir", 3)
+            .add("fe", 3)
+            .add("om", 3)
+            .add("ch", 3)
+            .add("ti", 3)
+            .add("em", 3)
+            .add("ha", 3)
+            .add("sm", 3)
+            .build();
+
+    private static final DssatRecordSchema cultivarFormats = new DssatRecordSchema.Builder()
+            .add("ge", 2)
+            .add("crid", 3)
+            .add("cul_id", 7)
+            .add("cul_name", 17)
+            .build();
+
+    private static final DssatRecordSchema fieldFormats = new DssatRecordSchema.Builder()
+            .add("fl", 2)
+            .add("id_field", 9)
+            .add("wst_id", 9)        // P.S. id do not match with the master list "wth_id"; might have another id name
+            .add("flsl", 6)
+            .add("flob", 6)
+            .add("fl_drntype", 6)
+            .add("fldrd", 6)
+            .add("fldrs", 6)
+            .add("flst", 6)
+            .add("sltx", 6)
+            .add("sldp", 6)
+            .add("soil_id", 11)
+            .addRest("fl_name")
+            .build();
+
+    private static final DssatRecordSchema fieldDetailFormats = new DssatRecordSchema.Builder()
+            .add("fl", 2)
+            .add("fl_lat", 16)
+            .add("fl_long", 16)
+            .add("flele", 10)
+            .add("farea", 18)
+            .add("", 6)              // P.S. id do not find in the master list (? it seems to be calculated by other fields)
+            .add("fllwr", 6)
+            .add("flsla", 6)
+            .add("flhst", 6)         // P.S. id do not find in the master list (field histoy code)
+            .add("fhdur", 6)         // P.S. id do not find in the master list (duration associated with field history code in years)
+            .build();
+
+    private static final DssatRecordSchema soilAnalysisFormats = new DssatRecordSchema.Builder()
+            .add("sa", 2)
+            .add("sadat", 6)
+            .add("smhb", 6)      // P.S. changed from samhb to smhb to match the soil variable name
+            .add("smpx", 6)      // P.S. changed from sampx to smpx to match the soil variable name
+            .add("smke", 6)      // P.S. changed from samke to smke to match the soil variable name
+            .build();
+
+    private static final DssatRecordSchema soilAnalysisLayerFormats = new DssatRecordSchema.Builder()
+            .add("", 2)          // P.S. ignore the data index "sa"
+            .add("sllb", 6)      // P.S. changed from sabl  to sllb to match the soil variable name
+            .add("slbdm", 6)     // P.S. changed from sabdm to slbdm to match the soil variable name
+            .add("sloc", 6)      // P.S. changed from saoc  to sloc to match the soil variable name
+            .add("slni", 6)      // P.S. changed from sani  to slni to match the soil variable name
+            .add("slphw", 6)     // P.S. changed from saphw to slphw to match the soil variable name
+            .add("slphb", 6)     // P.S. changed from saphb to slphb to match the soil variable name
+            .add("slpx", 6)      // P.S. changed from sapx  to slpx to match the soil variable name
+            .add("slke", 6)      // P.S. changed from sake  to slke to match the soil variable name
+            .add("slsc", 6)      // P.S. changed from sasc  to slsc to match the soil variable name
+            .build();
+
+    private static final DssatRecordSchema icFormats = new DssatRecordSchema.Builder()
+            .add("ic", 2)
+            .add("icpcr", 6)
+            .add("icdat", 6)
+            .add("icrt", 6)
+            .add("icnd", 6)
+            .add("icrz#", 6)
+            .add("icrze", 6)
+            .add("icwt", 6)
+            .add("icrag", 6)
+            .add("icrn", 6)
+            .add("icrp", 6)
+            .add("icrip", 6)
+            .add("icrdp", 6)
+            .addRest("ic_name")
+            .build();
+
+    private static final DssatRecordSchema icLayerFormats = new DssatRecordSchema.Builder()
+            .add("", 2)          // P.S. ignore the detail (event) data index "ic"
+            .add("icbl", 6)
+            .add("ich2o", 6)
+            .add("icnh4", 6)
+            .add("icno3", 6)
+            .build();
+
+    private static final DssatRecordSchema plantingFormats = new DssatRecordSchema.Builder()
+            .add("pl", 2)
+            .add("pdate", 6)
+            .add("pldae", 6)
+            .add("plpop", 6)
+            .add("plpoe", 6)
+            .add("plma", 6)      // P.S. 2012.07.13 changed from plme to plma
+            .add("plds", 6)
+            .add("plrs", 6)
+            .add("plrd", 6)
+            .add("pldp", 6)
+            .add("plmwt", 6)
+            .add("page", 6)
+            .add("penv", 6)
+            .add("plph", 6)
+            .add("plspl", 6)
+            .addRest("pl_name")
+            .build();
+
+    private static final DssatRecordSchema irrigationFormats = new DssatRecordSchema.Builder()
+            .add("ir", 2)
+            .add("ireff", 6)
+            .add("irmdp", 6)
+            .add("irthr", 6)
+            .add("irept", 6)
+            .add("irstg", 6)
+            .add("iame", 6)
+            .add("iamt", 6)
+            .addRest("ir_name")
+            .build();
+
+    private static final DssatRecordSchema irrigationEventFormats = new DssatRecordSchema.Builder()
+            .add("", 2)          // P.S. ignore the data index "ir"
+            .add("idate", 6)
+            .add("irop", 6)
+            .add("irval", 6)
+            .build();
+
+    private static final DssatRecordSchema fertilizerFormats = new DssatRecordSchema.Builder()
+            .add("fe", 2)
+            .add("fdate", 6)
+            .add("fecd", 6)
+            .add("feacd", 6)
+            .add("fedep", 6)
+            .add("feamn", 6)
+            .add("feamp", 6)
+            .add("feamk", 6)
+            .add("feamc", 6)
+            .add("feamo", 6)
+            .add("feocd", 6)
+            .addRest("fe_name")
+            .build();
+
+    private static final DssatRecordSchema residueFormats = new DssatRecordSchema.Builder()
+            .add("om", 2)
+            .add("omdat", 6)     // P.S. id do not match with the master list "omday"
+            .add("omcd", 6)
+            .add("omamt", 6)
+            .add("omn%", 6)
+            .add("omp%", 6)
+            .add("omk%", 6)
+            .add("ominp", 6)
+            .add("omdep", 6)
+            .add("omacd", 6)
+            .addRest("om_name")
+            .build();
+
+    private static final DssatRecordSchema chemicalFormats = new DssatRecordSchema.Builder()
+            .add("ch", 2)
+            .add("cdate", 6)
+            .add("chcd", 6)
+            .add("chamt", 6)
+            .add("chacd", 6)
+            .add("chdep", 6)
+            .add("ch_targets", 6)
+            .addRest("ch_name")
+            .build();
+
+    private static final DssatRecordSchema tillageFormats = new DssatRecordSchema.Builder()
+            .add("ti", 2)
+            .add("tdate", 6)
+            .add("tiimp", 6)
+            .add("tidep", 6)
+            .addRest("ti_name")
+            .build();
+
+    private static final DssatRecordSchema environmentFormats = new DssatRecordSchema.Builder()
+            .add("em", 2)
+//            .add("emday", 6)
+//            .add("ecdyl", 2)
+//            .add("emdyl", 4)
+//            .add("ecrad", 2)
+//            .add("emrad", 4)
+//            .add("ecmax", 2)
+//            .add("emmax", 4)
+//            .add("ecmin", 2)
+//            .add("emmin", 4)
+//            .add("ecrai", 2)
+//            .add("emrai", 4)
+//            .add("ecco2", 2)
+//            .add("emco2", 4)
+//            .add("ecdew", 2)
+//            .add("emdew", 4)
+//            .add("ecwnd", 2)
+//            .add("emwnd", 4)
+//            .addRest("em_name")
+            .build();
+
+    private static final DssatRecordSchema harvestFormats = new DssatRecordSchema.Builder()
+            .add("ha", 2)
+            .add("hdate", 6)
+            .add("hastg", 6)
+            .add("hacom", 6)
+            .add("hasiz", 6)
+            .add("hapc", 6)
+            .add("habpc", 6)
+            .addRest("ha_name")
+            .build();
+
+    private static final DssatRecordSchema smGeneralFormats = new DssatRecordSchema.Builder()
+            .add("sm", 2)
+            .addRest("sm_general")
+//            .add("general", 12)
+//            .add("nyers", 6)
+//            .add("nreps", 6)
+//            .add("start", 6)
+//            .add("sdate", 6)
+//            .add("rseed", 6)
+//            .add("sname", 26)
+//            .addRest("model")
+            .build();
+
+    private static final DssatRecordSchema smOptionsFormats = new DssatRecordSchema.Builder()
+            .add("sm", 2)
+            .addRest("sm_options")
+//            .add("options", 12)
+//            .add("water", 6)
+//            .add("nitro", 6)
+//            .add("symbi", 6)
+//            .add("phosp", 6)
+//            .add("potas", 6)
+//            .add("dises", 6)
+//            .add("chem", 6)
+//            .add("till", 6)
+//            .add("co2", 6)
+            .build();
+
+    private static final DssatRecordSchema smMethodsFormats = new DssatRecordSchema.Builder()
+            .add("sm", 2)
+            .addRest("sm_methods")
+//            .add("methods", 12)
+//            .add("wther", 6)
+//            .add("incon", 6)
+//            .add("light", 6)
+//            .add("evapo", 6)
+//            .add("infil", 6)
+//            .add("photo", 6)
+//            .add("hydro", 6)
+//            .add("nswit", 6)
+//            .add("mesom", 6)
+//            .add("mesev", 6)
+//            .add("mesol", 6)
+            .build();
+
+    private static final DssatRecordSchema smManagementFormats = new DssatRecordSchema.Builder()
+            .add("sm", 2)
+            .addRest("sm_management")
+//            .add("management", 12)
+//            .add("plant", 6)
+//            .add("irrig", 6)
+//            .add("ferti", 6)
+//            .add("resid", 6)
+//            .add("harvs", 6)
+            .build();
+
+    private static final DssatRecordSchema smOutputsFormats = new DssatRecordSchema.Builder()
+            .add("sm", 2)
+            .addRest("sm_outputs")
+//            .add("outputs", 12)
+//            .add("fname", 6)
+//            .add("ovvew", 6)
+//            .add("sumry", 6)
+//            .add("fropt", 6)
+//            .add("grout", 6)
+//            .add("caout", 6)
+//            .add("waout", 6)
+//            .add("niout", 6)
+//            .add("miout", 6)
+//            .add("diout", 6)
+//            .add("long", 6)
+//            .add("chout", 6)
+//            .add("opout", 6)
+            .build();
+
+    private static final DssatRecordSchema smPlantingFormats = new DssatRecordSchema.Builder()
+            .add("sm", 2)
+            .addRest("sm_planting")
+//            .add("planting", 12)
+//            .add("pfrst", 6)
+//            .add("plast", 6)
+//            .add("ph20l", 6)
+//            .add("ph2ou", 6)
+//            .add("ph20d", 6)
+//            .add("pstmx", 6)
+//            .add("pstmn", 6)
+            .build();
+
+    private static final DssatRecordSchema smIrrigationFormats = new DssatRecordSchema.Builder()
+            .add("sm", 2)
+            .addRest("sm_irrigation")
+//            .add("irrigation", 12)
+//            .add("imdep", 6)
+//            .add("ithrl", 6)
+//            .add("ithru", 6)
+//            .add("iroff", 6)
+//            .add("imeth", 6)
+//            .add("iramt", 6)
+//            .add("ireff", 6)
+            .build();
+
+    private static final DssatRecordSchema smNitrogenFormats = new DssatRecordSchema.Builder()
+            .add("sm", 2)
+            .addRest("sm_nitrogen")
+//            .add("nitrogen", 12)
+//            .add("nmdep", 6)
+//            .add("nmthr", 6)
+//            .add("namnt", 6)
+//            .add("ncode", 6)
+//            .add("naoff", 6)
+            .build();
+
+    private static final DssatRecordSchema smResiduesFormats = new DssatRecordSchema.Builder()
+            .add("sm", 2)
+            .addRest("sm_residues")
+//            .add("residues", 12)
+//            .add("ripcn", 6)
+//            .add("rtime", 6)
+//            .add("ridep", 6)
+            .build();
+
+    private static final DssatRecordSchema smHarvestFormats = new DssatRecordSchema.Builder()
+            .add("sm", 2)
+            .addRest("sm_harvests")
+//            .add("harvests", 12)
+//            .add("hfrst", 6)
+//            .add("hlast", 6)
+//            .add("hpcnp", 6)
+//            .add("hrcnr", 6)
+            .build();
+
     /**
      * Constructor with no parameters Set jsonKey as "experiment"
      *
@@ -84,41 +455,61 @@ public class DssatXFileInput extends DssatCommonInput {
      */
     protected ArrayList<HashMap> readTreatments(HashMap brMap, HashMap metaData) throws IOException {
 
+        ArrayList<HashMap> trArr = new ArrayList<HashMap>();
+
+        // Set meta data info for each treatment
+        ArrayList<HashMap> trMetaArr = new ArrayList<HashMap>();
+        metaData.put("tr_meta", trMetaArr);
+
+        // Combine all the sections data into the related treatment block
+        ArrayList<DssatTreatmentTables> tablesArr = readTreatmentTables(brMap, metaData);
+        for (int i = 0; i < tablesArr.size(); i++) {
+            DssatTreatmentTables tables = tablesArr.get(i);
+            for (int sqIdx = 0; sqIdx < tables.sqArr.size();) {
+                sqIdx = readTreatment(tables, sqIdx, trArr, trMetaArr);
+            }
+        }
+
+        return trArr;
+    }
+
+    /**
+     * Read the section tables of XFiles, the sections are kept as they are in
+     * the file (factor levels), and will be combined into treatment by
+     * readTreatment(). The experiment meta data of each file is set into the
+     * meta data holder
+     *
+     * @param brMap The holder for BufferReader objects for all files
+     * @param metaData The meta data holder
+     * @return the array of section tables for each XFile
+     * @throws IOException
+     */
+    protected ArrayList<DssatTreatmentTables> readTreatmentTables(HashMap brMap, HashMap metaData) throws IOException {
+
         String line;
         BufferedReader br;
         Object buf;
         BufferedReader brw = null;
-        char[] bufW = null;
+        Object bufW = null;
         HashMap mapX;
         HashMap mapW;
         String wid;
         String fileName;
-        LinkedHashMap formats = new LinkedHashMap();
-        ArrayList<HashMap> trArr = new ArrayList<HashMap>();
-        HashMap trData = new HashMap();
-        ArrayList<HashMap> evtArr = new ArrayList<HashMap>();
+        ArrayList<DssatTreatmentTables> ret = new ArrayList<DssatTreatmentTables>();
+        DssatParseContext ctx = new DssatParseContext();
         String ireff = "";    // P.S. special handling for EFIR in irrigation section
 
-        // Set meta data info for each treatment
-        ArrayList<HashMap> trMetaArr = new ArrayList<HashMap>();
-        HashMap trMetaData;
-        metaData.put("tr_meta", trMetaArr);
-
         mapX = (HashMap) brMap.get("X");
         mapW = (HashMap) brMap.get("W");
 
         // If XFile is no been found
         if (mapX.isEmpty()) {
-            return trArr;
+            return ret;
         }
 
         for (Object keyX : mapX.keySet()) {
             buf = mapX.get(keyX);
-            if (buf instanceof char[]) {
-                br = new BufferedReader(new CharArrayReader((char[]) buf));
-            } else {
-                br = (BufferedReader) buf;
-            }
+            br = getBufferedReader(buf);
 
 //        fileName = (String) brMap.get("Z");
             fileName = (String) keyX;
@@ -128,9 +519,9 @@ public class DssatXFileInput extends DssatCommonInput {
             metaData.put(exname, meta);
             
             ArrayList<HashMap> sqArr = new ArrayList<HashMap>();
-            HashMap sqData;
             ArrayList<HashMap> cuArr = new ArrayList<HashMap>();
             ArrayList<HashMap> flArr = new ArrayList<HashMap>();
+            DssatRecordMerger flMerger = new DssatRecordMerger(flArr, "fl");
             ArrayList<HashMap> saArr = new ArrayList<HashMap>();
             ArrayList<HashMap> sadArr = new ArrayList<HashMap>();
             ArrayList<HashMap> icArr = new ArrayList<HashMap>();
@@ -145,987 +536,664 @@ public class DssatXFileInput extends DssatCommonInput {
             ArrayList<HashMap> emArr = new ArrayList<HashMap>();
             ArrayList<HashMap> haArr = new ArrayList<HashMap>();
             ArrayList<HashMap> smArr = new ArrayList<HashMap>();
+            DssatRecordMerger smMerger = new DssatRecordMerger(smArr, "sm");
 
-            while ((line = br.readLine()) != null) {
-
-                // Get content type of line
-                judgeContentType(line);
-
-                // Read Exp title info
-                if (flg[0].startsWith("exp.details:") && flg[2].equals("")) {
-
-                    // Set variables' formats
-                    formats.clear();
-                    formats.put("null_1", 14);
-                    formats.put("null_2", 11);  // P.S. Since exname in top line is not reliable, read from file name
-                    formats.put("local_name", 61);
-                    // Read line and save into return holder
-                    meta.putAll(readLine(line, formats));
-                    meta.put("exname", exname);
-                    meta.put("in", getObjectOr(meta, "exname", "  ").substring(0, 2).trim());
-                } // Read General Section
-                else if (flg[0].startsWith("general")) {
-
-                    // People info
-                    if (flg[1].equals("people") && flg[2].equals("data")) {
-                        if (checkValidValue(line.trim())) {
-                            meta.put("people", line.trim());
-                        }
+            try {
+                while ((line = br.readLine()) != null) {
 
-                    } // Address info
-                    else if (flg[1].equals("address") && flg[2].equals("data")) {
-                        String[] addr;
-                        if (checkValidValue(line.trim())) {
-                            addr = line.split(",[ ]*");
-                            meta.put("institution", line.trim());
-                        } else {
-                            addr = new String[0];
-                        }
-                        //                    ret.put("address", line.trim());    // P.S. no longer to use this field
-
-                        switch (addr.length) {
-                            case 0:
-                                break;
-                            case 1:
-                                meta.put("fl_loc_1", addr[0]);
-                                break;
-                            case 2:
-                                meta.put("fl_loc_1", addr[1]);
-                                meta.put("fl_loc_2", addr[0]);
-                                break;
-                            case 3:
-                                meta.put("fl_loc_1", addr[2]);
-                                meta.put("fl_loc_2", addr[1]);
-                                meta.put("fl_loc_3", addr[0]);
-                                break;
-                            default:
-                                meta.put("fl_loc_1", addr[addr.length - 1]);
-                                meta.put("fl_loc_2", addr[addr.length - 2]);
-                                String loc3 = "";
-                                for (int i = 0; i < addr.length - 2; i++) {
-                                    loc3 += addr[i] + ", ";
-                                }
-                                meta.put("fl_loc_3", loc3.substring(0, loc3.length() - 2));
-                        }
+                    // Get content type of line
+                    judgeContentType(ctx, line);
 
-                    } // Site info
-                    else if ((flg[1].equals("site") || flg[1].equals("sites")) && flg[2].equals("data")) {
-                        // P.S. site is missing in the master variables list
-                        if (checkValidValue(line.trim())) {
-                            meta.put("site", line.trim());
-                        }
+                    // Read Exp title info
+                    if (ctx.flg[0].startsWith("exp.details:") && ctx.flg[2].equals("")) {
 
-                    } // Plot Info
-                    else if (flg[1].startsWith("parea") && flg[2].equals("data")) {
-
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("plta", 7);
-                        formats.put("pltr#", 6);
-                        formats.put("pltln", 6);
-                        formats.put("pldr", 6);
-                        formats.put("pltsp", 6);
-                        formats.put("plot_layout", 6);
-                        formats.put("pltha", 6);
-                        formats.put("plth#", 6);
-                        formats.put("plthl", 6);
-                        formats.put("plthm", 16);
                         // Read line and save into return holder
-                        meta.putAll(readLine(line, formats));
+                        meta.putAll(readLine(line, expFormats));
+                        meta.put("exname", exname);
+                        meta.put("in", getObjectOr(meta, "exname", "  ").substring(0, 2).trim());
+                    } // Read General Section
+                    else if (ctx.flg[0].startsWith("general")) {
+
+                        // People info
+                        if (ctx.flg[1].equals("people") && ctx.flg[2].equals("data")) {
+                            if (checkValidValue(line.trim())) {
+                                meta.put("people", line.trim());
+                            }
+
+                        } // Address info
+                        else if (ctx.flg[1].equals("address") && ctx.flg[2].equals("data")) {
+                            String[] addr;
+                            if (checkValidValue(line.trim())) {
+                                addr = line.split(",[ ]*");
+                                meta.put("institution", line.trim());
+                            } else {
+                                addr = new String[0];
+                            }
+                            //                    ret.put("address", line.trim());    // P.S. no longer to use this field
+
+                            switch (addr.length) {
+                                case 0:
+                                    break;
+                                case 1:
+                                    meta.put("fl_loc_1", addr[0]);
+                                    break;
+                                case 2:
+                                    meta.put("fl_loc_1", addr[1]);
+                                    meta.put("fl_loc_2", addr[0]);
+                                    break;
+                                case 3:
+                                    meta.put("fl_loc_1", addr[2]);
+                                    meta.put("fl_loc_2", addr[1]);
+                                    meta.put("fl_loc_3", addr[0]);
+                                    break;
+                                default:
+                                    meta.put("fl_loc_1", addr[addr.length - 1]);
+                                    meta.put("fl_loc_2", addr[addr.length - 2]);
+                                    String loc3 = "";
+                                    for (int i = 0; i < addr.length - 2; i++) {
+                                        loc3 += addr[i] + ", ";
+                                    }
+                                    meta.put("fl_loc_3", loc3.substring(0, loc3.length() - 2));
+                            }
 
-                    } // Notes field
-                    else if (flg[1].equals("notes") && flg[2].equals("data")) {
-                        if (!meta.containsKey("tr_notes")) {
-                            meta.put("tr_notes", line + "\r\n");
+                        } // Site info
+                        else if ((ctx.flg[1].equals("site") || ctx.flg[1].equals("sites")) && ctx.flg[2].equals("data")) {
+                            // P.S. site is missing in the master variables list
+                            if (checkValidValue(line.trim())) {
+                                meta.put("site", line.trim());
+                            }
+
+                        } // Plot Info
+                        else if (ctx.flg[1].startsWith("parea") && ctx.flg[2].equals("data")) {
+
+                            // Read line and save into return holder
+                            meta.putAll(readLine(line, plotFormats));
+
+                        } // Notes field
+                        else if (ctx.flg[1].equals("notes") && ctx.flg[2].equals("data")) {
+                            if (!meta.containsKey("tr_notes")) {
+                                meta.put("tr_notes", line + "\r\n");
+                            } else {
+                                String notes = (String) meta.get("tr_notes");
+                                notes += line + "\r\n";
+                                meta.put("tr_notes", notes);
+                            }
                         } else {
-                            String notes = (String) meta.get("tr_notes");
-                            notes += line + "\r\n";
-                            meta.put("tr_notes", notes);
                         }
-                    } else {
-                    }
 
-                } // Read TREATMENTS Section
-                else if (flg[0].startsWith("treatments")) {
-
-                    // Read TREATMENTS data / Rotation data
-                    if (flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("trno", 2);
-                        formats.put("sq", 2);
-                        formats.put("op", 2);
-                        formats.put("co", 2);
-                        formats.put("tr_name", 26);
-                        formats.put("ge", 3);
-                        formats.put("fl", 3);
-                        formats.put("sa", 3);
-                        formats.put("ic", 3);
-                        formats.put("pl", 3);
-                        formats.put("ir", 3);
-                        formats.put("fe", 3);
-                        formats.put("om", 3);
-                        formats.put("ch", 3);
-                        formats.put("ti", 3);
-                        formats.put("em", 3);
-                        formats.put("ha", 3);
-                        formats.put("sm", 3);
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        if (tmp.get("tr_name") == null) {
-                            tmp.put("tr_name", meta.get("exname"));
+                    } // Read TREATMENTS Section
+                    else if (ctx.flg[0].startsWith("treatments")) {
+
+                        // Read TREATMENTS data / Rotation data
+                        if (ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, treatmentFormats);
+                            if (tmp.get("tr_name") == null) {
+                                tmp.put("tr_name", meta.get("exname"));
+                            }
+                            sqArr.add(tmp);
+                        } else {
                         }
-                        sqArr.add(tmp);
-                    } else {
-                    }
 
 
-                } // Read CULTIVARS Section
-                else if (flg[0].startsWith("cultivars")) {
+                    } // Read CULTIVARS Section
+                    else if (ctx.flg[0].startsWith("cultivars")) {
 
-                    // Read CULTIVARS data
-                    if (flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("ge", 2);
-                        formats.put("crid", 3);
-                        formats.put("cul_id", 7);
-                        formats.put("cul_name", 17);
-                        // Read line and save into return holder
-                        cuArr.add(readLine(line, formats));
-                    } else {
-                    }
-                } // Read FIELDS Section
-                else if (flg[0].startsWith("fields")) {
-
-                    // Read field info 1st line
-                    if (flg[1].startsWith("l id_") && flg[2].equals("data")) {
-
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("fl", 2);
-                        formats.put("id_field", 9);
-                        formats.put("wst_id", 9);       // P.S. id do not match with the master list "wth_id"; might have another id name
-                        formats.put("flsl", 6);
-                        formats.put("flob", 6);
-                        formats.put("fl_drntype", 6);
-                        formats.put("fldrd", 6);
-                        formats.put("fldrs", 6);
-                        formats.put("flst", 6);
-                        formats.put("sltx", 6);
-                        formats.put("sldp", 6);
-                        formats.put("soil_id", 11);
-                        formats.put("fl_name", line.length());
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        addToArray(flArr, tmp, "fl");
-                        // Read weather station id
-                        wid = (String) tmp.get("wst_id");
-                        if (wid != null && wid.length() > 4) {
-                            wid = wid.substring(0, 4);
-                            tmp.put("wst_id", wid);
+                        // Read CULTIVARS data
+                        if (ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            cuArr.add(readLine(line, cultivarFormats));
+                        } else {
                         }
+                    } // Read FIELDS Section
+                    else if (ctx.flg[0].startsWith("fields")) {
+
+                        // Read field info 1st line
+                        if (ctx.flg[1].startsWith("l id_") && ctx.flg[2].equals("data")) {
+
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, fieldFormats);
+                            flMerger.add(tmp);
+                            // Read weather station id
+                            wid = (String) tmp.get("wst_id");
+                            if (wid != null && wid.length() > 4) {
+                                wid = wid.substring(0, 4);
+                                tmp.put("wst_id", wid);
+                            }
 
-                    }// // Read field info 2nd line
-                    else if (flg[1].startsWith("l ...") && flg[2].equals("data")) {
-
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("fl", 2);
-                        formats.put("fl_lat", 16);
-                        formats.put("fl_long", 16);
-                        formats.put("flele", 10);
-                        formats.put("farea", 18);
-                        formats.put("", 6);             // P.S. id do not find in the master list (? it seems to be calculated by other fields)
-                        formats.put("fllwr", 6);
-                        formats.put("flsla", 6);
-                        formats.put("flhst", 6);        // P.S. id do not find in the master list (field histoy code)
-                        formats.put("fhdur", 6);        // P.S. id do not find in the master list (duration associated with field history code in years)
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
+                        }// // Read field info 2nd line
+                        else if (ctx.flg[1].startsWith("l ...") && ctx.flg[2].equals("data")) {
 
-                        // Read lat and long
-                        String strLat = (String) tmp.get("fl_lat");
-                        String strLong = (String) tmp.get("fl_long");
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, fieldDetailFormats);
 
-                        // If lat or long is not valid data, read data from weather file
-                        if (!checkValidValue(strLat) || !checkValidValue(strLong) || (Double.parseDouble(strLat) == 0 && Double.parseDouble(strLong) == 0)) {
+                            // Read lat and long
+                            String strLat = (String) tmp.get("fl_lat");
+                            String strLong = (String) tmp.get("fl_long");
 
-                            // check if weather is validable
-                            for (Object key : mapW.keySet()) {
-                                if (((String) key).contains(wid)) {
-                                    bufW = (char[]) mapW.get(key);
-                                    break;
-                                }
-                            }
-                            if (bufW != null) {
-                                brw = new BufferedReader(new CharArrayReader(bufW));
-                                String lineW;
-                                while ((lineW = brw.readLine()) != null) {
-                                    if (lineW.startsWith("@ INSI")) {
-                                        lineW = brw.readLine();
-                                        strLat = lineW.substring(6, 15).trim();
-                                        strLong = lineW.substring(15, 24).trim();
+                            // If lat or long is not valid data, read data from weather file
+                            if (!checkValidValue(strLat) || !checkValidValue(strLong) || (Double.parseDouble(strLat) == 0 && Double.parseDouble(strLong) == 0)) {
+
+                                // check if weather is validable
+                                for (Object key : mapW.keySet()) {
+                                    if (((String) key).contains(wid)) {
+                                        bufW = mapW.get(key);
                                         break;
                                     }
                                 }
+                                if (bufW != null) {
+                                    brw = getBufferedReader(bufW);
+                                    String lineW;
+                                    try {
+                                        while ((lineW = brw.readLine()) != null) {
+                                            if (lineW.startsWith("@ INSI")) {
+                                                lineW = brw.readLine();
+                                                strLat = lineW.substring(6, 15).trim();
+                                                strLong = lineW.substring(15, 24).trim();
+                                                break;
+                                            }
+                                        }
+                                    } finally {
+                                        brw.close();
+                                    }
 
-                                // check if lat and long are valid in the weather file; if not, set invalid value for them
-                                if (!checkValidValue(strLat) || !checkValidValue(strLong) || (Double.parseDouble(strLat) == 0 && Double.parseDouble(strLong) == 0)) {
+                                    // check if lat and long are valid in the weather file; if not, set invalid value for them
+                                    if (!checkValidValue(strLat) || !checkValidValue(strLong) || (Double.parseDouble(strLat) == 0 && Double.parseDouble(strLong) == 0)) {
+                                        strLat = null;
+                                        strLong = null;
+                                    }
+                                } // if weather file is not avaliable to read, set invalid value for lat and long
+                                else {
                                     strLat = null;
                                     strLong = null;
                                 }
-                            } // if weather file is not avaliable to read, set invalid value for lat and long
-                            else {
-                                strLat = null;
-                                strLong = null;
                             }
+
+                            if (tmp.containsKey("fl_lat")) {
+                                tmp.put("fl_lat", strLat);
+                            }
+                            if (tmp.containsKey("fl_long")) {
+                                tmp.put("fl_long", strLong);
+                            }
+                            flMerger.add(tmp);
                         }
 
-                        if (tmp.containsKey("fl_lat")) {
-                            tmp.put("fl_lat", strLat);
+                    } // Read SOIL ANALYSIS Section
+                    else if (ctx.flg[0].startsWith("soil")) {
+
+                        // Read SOIL ANALYSIS global data
+                        if (ctx.flg[1].startsWith("a sadat") && ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, soilAnalysisFormats);
+                            translateDateStr(tmp, "sadat");
+                            saArr.add(tmp);
+                            sadArr = new ArrayList<HashMap>();
+                            tmp.put(icEventKey, sadArr);
+
+                        } // Read SOIL ANALYSIS layer data
+                        else if (ctx.flg[1].startsWith("a  sabl") && ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            sadArr.add(readLine(line, soilAnalysisLayerFormats));
+                        } else {
                         }
-                        if (tmp.containsKey("fl_long")) {
-                            tmp.put("fl_long", strLong);
+
+                    } // Read INITIAL CONDITIONS Section
+                    else if (ctx.flg[0].startsWith("initial")) {
+
+                        // Read INITIAL CONDITIONS global data
+                        if (ctx.flg[1].startsWith("c   pcr") && ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, icFormats);
+                            translateDateStr(tmp, "icdat");
+                            icArr.add(tmp);
+                            icdArr = new ArrayList<HashMap>();
+                            tmp.put(icEventKey, icdArr);
+
+                        } else // INITIAL CONDITIONS layer data
+                        if (ctx.flg[1].startsWith("c  icbl") && ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            icdArr.add(readLine(line, icLayerFormats));
+
+                        } else {
                         }
-                        addToArray(flArr, tmp, "fl");
-                    }
 
-                } // Read SOIL ANALYSIS Section
-                else if (flg[0].startsWith("soil")) {
-
-                    // Read SOIL ANALYSIS global data
-                    if (flg[1].startsWith("a sadat") && flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("sa", 2);
-                        formats.put("sadat", 6);
-                        formats.put("smhb", 6);     // P.S. changed from samhb to smhb to match the soil variable name
-                        formats.put("smpx", 6);     // P.S. changed from sampx to smpx to match the soil variable name
-                        formats.put("smke", 6);     // P.S. changed from samke to smke to match the soil variable name
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        translateDateStr(tmp, "sadat");
-                        saArr.add(tmp);
-                        sadArr = new ArrayList<HashMap>();
-                        tmp.put(icEventKey, sadArr);
-
-                    } // Read SOIL ANALYSIS layer data
-                    else if (flg[1].startsWith("a  sabl") && flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("", 2);         // P.S. ignore the data index "sa"
-                        formats.put("sllb", 6);     // P.S. changed from sabl  to sllb to match the soil variable name
-                        formats.put("slbdm", 6);    // P.S. changed from sabdm to slbdm to match the soil variable name
-                        formats.put("sloc", 6);     // P.S. changed from saoc  to sloc to match the soil variable name
-                        formats.put("slni", 6);     // P.S. changed from sani  to slni to match the soil variable name
-                        formats.put("slphw", 6);    // P.S. changed from saphw to slphw to match the soil variable name
-                        formats.put("slphb", 6);    // P.S. changed from saphb to slphb to match the soil variable name
-                        formats.put("slpx", 6);     // P.S. changed from sapx  to slpx to match the soil variable name
-                        formats.put("slke", 6);     // P.S. changed from sake  to slke to match the soil variable name
-                        formats.put("slsc", 6);     // P.S. changed from sasc  to slsc to match the soil variable name
-                        // Read line and save into return holder
-                        sadArr.add(readLine(line, formats));
-                    } else {
-                    }
+                    } // Read PLANTING DETAILS Section
+                    else if (ctx.flg[0].startsWith("planting")) {
 
-                } // Read INITIAL CONDITIONS Section
-                else if (flg[0].startsWith("initial")) {
-
-                    // Read INITIAL CONDITIONS global data
-                    if (flg[1].startsWith("c   pcr") && flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("ic", 2);
-                        formats.put("icpcr", 6);
-                        formats.put("icdat", 6);
-                        formats.put("icrt", 6);
-                        formats.put("icnd", 6);
-                        formats.put("icrz#", 6);
-                        formats.put("icrze", 6);
-                        formats.put("icwt", 6);
-                        formats.put("icrag", 6);
-                        formats.put("icrn", 6);
-                        formats.put("icrp", 6);
-                        formats.put("icrip", 6);
-                        formats.put("icrdp", 6);
-                        formats.put("ic_name", line.length());
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        translateDateStr(tmp, "icdat");
-                        icArr.add(tmp);
-                        icdArr = new ArrayList<HashMap>();
-                        tmp.put(icEventKey, icdArr);
-
-                    } else // INITIAL CONDITIONS layer data
-                    if (flg[1].startsWith("c  icbl") && flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("", 2);         // P.S. ignore the detail (event) data index "ic"
-                        formats.put("icbl", 6);
-                        formats.put("ich2o", 6);
-                        formats.put("icnh4", 6);
-                        formats.put("icno3", 6);
-                        // Read line and save into return holder
-                        icdArr.add(readLine(line, formats));
+                        // Read PLANTING data
+                        if (ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, plantingFormats);
+                            translateDateStr(tmp, "pdate");
+                            translateDateStr(tmp, "pldae");
+                            plArr.add(tmp);
+                        } else {
+                        }
 
-                    } else {
-                    }
+                    } // Read IRRIGATION AND WATER MANAGEMENT Section
+                    else if (ctx.flg[0].startsWith("irrigation")) {
 
-                } // Read PLANTING DETAILS Section
-                else if (flg[0].startsWith("planting")) {
-
-                    // Read PLANTING data
-                    if (flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("pl", 2);
-                        formats.put("pdate", 6);
-                        formats.put("pldae", 6);
-                        formats.put("plpop", 6);
-                        formats.put("plpoe", 6);
-                        formats.put("plma", 6);     // P.S. 2012.07.13 changed from plme to plma
-                        formats.put("plds", 6);
-                        formats.put("plrs", 6);
-                        formats.put("plrd", 6);
-                        formats.put("pldp", 6);
-                        formats.put("plmwt", 6);
-                        formats.put("page", 6);
-                        formats.put("penv", 6);
-                        formats.put("plph", 6);
-                        formats.put("plspl", 6);
-                        formats.put("pl_name", line.length());
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        translateDateStr(tmp, "pdate");
-                        translateDateStr(tmp, "pldae");
-                        plArr.add(tmp);
-                    } else {
-                    }
+                        // Read IRRIGATION global data
+                        if ((ctx.flg[1].startsWith("i  efir") || ctx.flg4 % 2 == 1) && ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, irrigationFormats);
+                            ireff = (String) tmp.get("ireff");
+                            if (ireff != null) {
+                                tmp.remove("ireff");
+                            }
+                            irArr.add(tmp);
+                            irdArr = new ArrayList<HashMap>();
+                            tmp.put(eventKey, irdArr);
+
+                        } // Read IRRIGATION appliction data
+                        else if (ctx.flg[1].startsWith("i idate") && ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, irrigationEventFormats);
+                            //                    tmp.put("idate", translateDateStr((String) tmp.getOr("idate"))); // P.S. DOY handling
+                            tmp.put("ireff", ireff);
+                            irdArr.add(tmp);
 
-                } // Read IRRIGATION AND WATER MANAGEMENT Section
-                else if (flg[0].startsWith("irrigation")) {
-
-                    // Read IRRIGATION global data
-                    if ((flg[1].startsWith("i  efir") || flg4 % 2 == 1) && flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("ir", 2);
-                        formats.put("ireff", 6);
-                        formats.put("irmdp", 6);
-                        formats.put("irthr", 6);
-                        formats.put("irept", 6);
-                        formats.put("irstg", 6);
-                        formats.put("iame", 6);
-                        formats.put("iamt", 6);
-                        formats.put("ir_name", line.length());
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        ireff = (String) tmp.get("ireff");
-                        if (ireff != null) {
-                            tmp.remove("ireff");
+                        } else {
                         }
-                        irArr.add(tmp);
-                        irdArr = new ArrayList<HashMap>();
-                        tmp.put(eventKey, irdArr);
-
-                    } // Read IRRIGATION appliction data
-                    else if (flg[1].startsWith("i idate") && flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("", 2);         // P.S. ignore the data index "ir"
-                        formats.put("idate", 6);
-                        formats.put("irop", 6);
-                        formats.put("irval", 6);
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        //                    tmp.put("idate", translateDateStr((String) tmp.getOr("idate"))); // P.S. DOY handling
-                        tmp.put("ireff", ireff);
-                        irdArr.add(tmp);
 
-                    } else {
-                    }
+                    } // Read FERTILIZERS (INORGANIC) Section
+                    else if (ctx.flg[0].startsWith("fertilizers")) {
 
-                } // Read FERTILIZERS (INORGANIC) Section
-                else if (flg[0].startsWith("fertilizers")) {
-
-                    // Read FERTILIZERS data
-                    if (flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("fe", 2);
-                        formats.put("fdate", 6);
-                        formats.put("fecd", 6);
-                        formats.put("feacd", 6);
-                        formats.put("fedep", 6);
-                        formats.put("feamn", 6);
-                        formats.put("feamp", 6);
-                        formats.put("feamk", 6);
-                        formats.put("feamc", 6);
-                        formats.put("feamo", 6);
-                        formats.put("feocd", 6);
-                        formats.put("fe_name", line.length());
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        //                    translateDateStr(tmp, "fdate"); // P.S. DOY handling
-                        feArr.add(tmp);
-                    } else {
-                    }
+                        // Read FERTILIZERS data
+                        if (ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, fertilizerFormats);
+                            //                    translateDateStr(tmp, "fdate"); // P.S. DOY handling
+                            feArr.add(tmp);
+                        } else {
+                        }
 
-                } // Read RESIDUES AND OTHER ORGANIC MATERIALS Section
-                else if (flg[0].startsWith("residues")) {
-
-                    // Read ORGANIC MATERIALS data
-                    if (flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("om", 2);
-                        formats.put("omdat", 6);    // P.S. id do not match with the master list "omday"
-                        formats.put("omcd", 6);
-                        formats.put("omamt", 6);
-                        formats.put("omn%", 6);
-                        formats.put("omp%", 6);
-                        formats.put("omk%", 6);
-                        formats.put("ominp", 6);
-                        formats.put("omdep", 6);
-                        formats.put("omacd", 6);
-                        formats.put("om_name", line.length());
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        //                    translateDateStr(tmp, "omdat"); // P.S. DOY handling
-                        omArr.add(tmp);
-                    } else {
-                    }
+                    } // Read RESIDUES AND OTHER ORGANIC MATERIALS Section
+                    else if (ctx.flg[0].startsWith("residues")) {
 
-                } // Read CHEMICAL APPLICATIONS Section
-                else if (flg[0].startsWith("chemical")) {
-
-                    // Read CHEMICAL APPLICATIONS data
-                    if (flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("ch", 2);
-                        formats.put("cdate", 6);
-                        formats.put("chcd", 6);
-                        formats.put("chamt", 6);
-                        formats.put("chacd", 6);
-                        formats.put("chdep", 6);
-                        formats.put("ch_targets", 6);
-                        formats.put("ch_name", line.length());
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        translateDateStr(tmp, "cdate");
-                        chArr.add(tmp);
-                    } else {
-                    }
+                        // Read ORGANIC MATERIALS data
+                        if (ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, residueFormats);
+                            //                    translateDateStr(tmp, "omdat"); // P.S. DOY handling
+                            omArr.add(tmp);
+                        } else {
+                        }
 
-                } // Read TILLAGE Section
-                else if (flg[0].startsWith("tillage")) {
-
-                    // Read TILLAGE data
-                    if (flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("ti", 2);
-                        formats.put("tdate", 6);
-                        formats.put("tiimp", 6);
-                        formats.put("tidep", 6);
-                        formats.put("ti_name", line.length());
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        translateDateStr(tmp, "tdate");
-                        tiArr.add(tmp);
-                    } else {
-                    }
+                    } // Read CHEMICAL APPLICATIONS Section
+                    else if (ctx.flg[0].startsWith("chemical")) {
 
-                } // Read ENVIRONMENT MODIFICATIONS Section
-                else if (flg[0].startsWith("environment")) {
-
-                    // Read ENVIRONMENT MODIFICATIONS data
-                    if (flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("em", 2);
-                        //                    formats.put("emday", 6);
-                        //                    formats.put("ecdyl", 2);
-                        //                    formats.put("emdyl", 4);
-                        //                    formats.put("ecrad", 2);
-                        //                    formats.put("emrad", 4);
-                        //                    formats.put("ecmax", 2);
-                        //                    formats.put("emmax", 4);
-                        //                    formats.put("ecmin", 2);
-                        //                    formats.put("emmin", 4);
-                        //                    formats.put("ecrai", 2);
-                        //                    formats.put("emrai", 4);
-                        //                    formats.put("ecco2", 2);
-                        //                    formats.put("emco2", 4);
-                        //                    formats.put("ecdew", 2);
-                        //                    formats.put("emdew", 4);
-                        //                    formats.put("ecwnd", 2);
-                        //                    formats.put("emwnd", 4);
-                        //                    formats.put("em_name", line.length());
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        //                    translateDateStr(tmp, "emday");
-                        tmp.put("em_data", line.substring(2));
-                        emArr.add(tmp);
-                    } else {
-                    }
+                        // Read CHEMICAL APPLICATIONS data
+                        if (ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, chemicalFormats);
+                            translateDateStr(tmp, "cdate");
+                            chArr.add(tmp);
+                        } else {
+                        }
 
-                } // Read HARVEST DETAILS Section
-                else if (flg[0].startsWith("harvest")) {
-
-                    // Read HARVEST data
-                    if (flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("ha", 2);
-                        formats.put("hdate", 6);
-                        formats.put("hastg", 6);
-                        formats.put("hacom", 6);
-                        formats.put("hasiz", 6);
-                        formats.put("hapc", 6);
-                        formats.put("habpc", 6);
-                        formats.put("ha_name", line.length());
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        translateDateStr(tmp, "hdate");
-                        haArr.add(tmp);
-                    } else {
-                    }
+                    } // Read TILLAGE Section
+                    else if (ctx.flg[0].startsWith("tillage")) {
 
+                        // Read TILLAGE data
+                        if (ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, tillageFormats);
+                            translateDateStr(tmp, "tdate");
+                            tiArr.add(tmp);
+                        } else {
+                        }
 
-                } // Read SIMULATION CONTROLS Section // P.S. no need to be divided
-                else if (flg[0].startsWith("simulation")) {
-
-                    // Read general info
-                    if (flg[1].startsWith("n general") && flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("sm", 2);
-                        formats.put("sm_general", line.length());
-                        //                    formats.put("general", 12);
-                        //                    formats.put("nyers", 6);
-                        //                    formats.put("nreps", 6);
-                        //                    formats.put("start", 6);
-                        //                    formats.put("sdate", 6);
-                        //                    formats.put("rseed", 6);
-                        //                    formats.put("sname", 26);
-                        //                    formats.put("model", line.length());
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        //                    translateDateStr(tmp, "sdate");
-                        //                    smSubArr = new ArrayList();
-                        //                    smArr.add(tmp);
-                        //                    tmp.put(eventKey, smSubArr);
-                        //                    smSubArr.add(line);
-                        addToArray(smArr, tmp, "sm");
-
-
-                    } // Read options info
-                    else if (flg[1].startsWith("n options") && flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("sm", 2);
-                        formats.put("sm_options", line.length());
-                        //                    formats.put("options", 12);
-                        //                    formats.put("water", 6);
-                        //                    formats.put("nitro", 6);
-                        //                    formats.put("symbi", 6);
-                        //                    formats.put("phosp", 6);
-                        //                    formats.put("potas", 6);
-                        //                    formats.put("dises", 6);
-                        //                    formats.put("chem", 6);
-                        //                    formats.put("till", 6);
-                        //                    formats.put("co2", 6);
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        addToArray(smArr, tmp, "sm");
-                        //                    smSubArr.add(line);
-
-                    } // Read methods info
-                    else if (flg[1].startsWith("n methods") && flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("sm", 2);
-                        formats.put("sm_methods", line.length());
-                        //                    formats.put("methods", 12);
-                        //                    formats.put("wther", 6);
-                        //                    formats.put("incon", 6);
-                        //                    formats.put("light", 6);
-                        //                    formats.put("evapo", 6);
-                        //                    formats.put("infil", 6);
-                        //                    formats.put("photo", 6);
-                        //                    formats.put("hydro", 6);
-                        //                    formats.put("nswit", 6);
-                        //                    formats.put("mesom", 6);
-                        //                    formats.put("mesev", 6);
-                        //                    formats.put("mesol", 6);
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        addToArray(smArr, tmp, "sm");
-                        //                    smSubArr.add(line);
-
-                    } // Read management info
-                    else if (flg[1].startsWith("n management") && flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("sm", 2);
-                        formats.put("sm_management", line.length());
-                        //                    formats.put("management", 12);
-                        //                    formats.put("plant", 6);
-                        //                    formats.put("irrig", 6);
-                        //                    formats.put("ferti", 6);
-                        //                    formats.put("resid", 6);
-                        //                    formats.put("harvs", 6);
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        addToArray(smArr, tmp, "sm");
-                        //                    smSubArr.add(line);
-
-                    } // Read outputs info
-                    else if (flg[1].startsWith("n outputs") && flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("sm", 2);
-                        formats.put("sm_outputs", line.length());
-                        //                    formats.put("outputs", 12);
-                        //                    formats.put("fname", 6);
-                        //                    formats.put("ovvew", 6);
-                        //                    formats.put("sumry", 6);
-                        //                    formats.put("fropt", 6);
-                        //                    formats.put("grout", 6);
-                        //                    formats.put("caout", 6);
-                        //                    formats.put("waout", 6);
-                        //                    formats.put("niout", 6);
-                        //                    formats.put("miout", 6);
-                        //                    formats.put("diout", 6);
-                        //                    formats.put("long", 6);
-                        //                    formats.put("chout", 6);
-                        //                    formats.put("opout", 6);
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        addToArray(smArr, tmp, "sm");
-                        //                    smSubArr.add(line);
-
-                    } // Read planting info
-                    else if (flg[1].startsWith("n planting") && flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("sm", 2);
-                        formats.put("sm_planting", line.length());
-                        //                    formats.put("planting", 12);
-                        //                    formats.put("pfrst", 6);
-                        //                    formats.put("plast", 6);
-                        //                    formats.put("ph20l", 6);
-                        //                    formats.put("ph2ou", 6);
-                        //                    formats.put("ph20d", 6);
-                        //                    formats.put("pstmx", 6);
-                        //                    formats.put("pstmn", 6);
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        //                    translateDateStr(tmp, "pfrst");
-                        //                    translateDateStr(tmp, "plast");
-                        addToArray(smArr, tmp, "sm");
-                        //                    smSubArr.add(line);
-
-                    } // Read irrigation info
-                    else if (flg[1].startsWith("n irrigation") && flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("sm", 2);
-                        formats.put("sm_irrigation", line.length());
-                        //                    formats.put("irrigation", 12);
-                        //                    formats.put("imdep", 6);
-                        //                    formats.put("ithrl", 6);
-                        //                    formats.put("ithru", 6);
-                        //                    formats.put("iroff", 6);
-                        //                    formats.put("imeth", 6);
-                        //                    formats.put("iramt", 6);
-                        //                    formats.put("ireff", 6);
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        addToArray(smArr, tmp, "sm");
-                        //                    smSubArr.add(line);
-
-                    } // Read nitrogen info
-                    else if (flg[1].startsWith("n nitrogen") && flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("sm", 2);
-                        formats.put("sm_nitrogen", line.length());
-                        //                    formats.put("nitrogen", 12);
-                        //                    formats.put("nmdep", 6);
-                        //                    formats.put("nmthr", 6);
-                        //                    formats.put("namnt", 6);
-                        //                    formats.put("ncode", 6);
-                        //                    formats.put("naoff", 6);
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        addToArray(smArr, tmp, "sm");
-                        //                    smSubArr.add(line);
-
-                    } // Read residues info
-                    else if (flg[1].startsWith("n residues") && flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("sm", 2);
-                        formats.put("sm_residues", line.length());
-                        //                    formats.put("residues", 12);
-                        //                    formats.put("ripcn", 6);
-                        //                    formats.put("rtime", 6);
-                        //                    formats.put("ridep", 6);
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        addToArray(smArr, tmp, "sm");
-                        //                    smSubArr.add(line);
-
-                    } // Read harvest info
-                    else if (flg[1].startsWith("n harvest") && flg[2].equals("data")) {
-                        // Set variables' formats
-                        formats.clear();
-                        formats.put("sm", 2);
-                        formats.put("sm_harvests", line.length());
-                        //                    formats.put("harvests", 12);
-                        //                    formats.put("hfrst", 6);    // P.S. Keep the original value
-                        //                    formats.put("hlast", 6);
-                        //                    formats.put("hpcnp", 6);
-                        //                    formats.put("hrcnr", 6);
-                        // Read line and save into return holder
-                        HashMap tmp = readLine(line, formats);
-                        //                    translateDateStr(tmp, "hlast");
-                        addToArray(smArr, tmp, "sm");
-                        //                    smSubArr.add(line);
+                    } // Read ENVIRONMENT MODIFICATIONS Section
+                    else if (ctx.flg[0].startsWith("environment")) {
+
+                        // Read ENVIRONMENT MODIFICATIONS data
+                        if (ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, environmentFormats);
+                            //                    translateDateStr(tmp, "emday");
+                            tmp.put("em_data", line.substring(2));
+                            emArr.add(tmp);
+                        } else {
+                        }
+
+                    } // Read HARVEST DETAILS Section
+                    else if (ctx.flg[0].startsWith("harvest")) {
+
+                        // Read HARVEST data
+                        if (ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, harvestFormats);
+                            translateDateStr(tmp, "hdate");
+                            haArr.add(tmp);
+                        } else {
+                        }
+
+
+                    } // Read SIMULATION CONTROLS Section // P.S. no need to be divided
+                    else if (ctx.flg[0].startsWith("simulation")) {
+
+                        // Read general info
+                        if (ctx.flg[1].startsWith("n general") && ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, smGeneralFormats);
+                            //                    translateDateStr(tmp, "sdate");
+                            //                    smSubArr = new ArrayList();
+                            //                    smArr.add(tmp);
+                            //                    tmp.put(eventKey, smSubArr);
+                            //                    smSubArr.add(line);
+                            smMerger.add(tmp);
+
+
+                        } // Read options info
+                        else if (ctx.flg[1].startsWith("n options") && ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, smOptionsFormats);
+                            smMerger.add(tmp);
+                            //                    smSubArr.add(line);
+
+                        } // Read methods info
+                        else if (ctx.flg[1].startsWith("n methods") && ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, smMethodsFormats);
+                            smMerger.add(tmp);
+                            //                    smSubArr.add(line);
+
+                        } // Read management info
+                        else if (ctx.flg[1].startsWith("n management") && ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, smManagementFormats);
+                            smMerger.add(tmp);
+                            //                    smSubArr.add(line);
+
+                        } // Read outputs info
+                        else if (ctx.flg[1].startsWith("n outputs") && ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, smOutputsFormats);
+                            smMerger.add(tmp);
+                            //                    smSubArr.add(line);
+
+                        } // Read planting info
+                        else if (ctx.flg[1].startsWith("n planting") && ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, smPlantingFormats);
+                            //                    translateDateStr(tmp, "pfrst");
+                            //                    translateDateStr(tmp, "plast");
+                            smMerger.add(tmp);
+                            //                    smSubArr.add(line);
+
+                        } // Read irrigation info
+                        else if (ctx.flg[1].startsWith("n irrigation") && ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, smIrrigationFormats);
+                            smMerger.add(tmp);
+                            //                    smSubArr.add(line);
+
+                        } // Read nitrogen info
+                        else if (ctx.flg[1].startsWith("n nitrogen") && ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, smNitrogenFormats);
+                            smMerger.add(tmp);
+                            //                    smSubArr.add(line);
+
+                        } // Read residues info
+                        else if (ctx.flg[1].startsWith("n residues") && ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, smResiduesFormats);
+                            smMerger.add(tmp);
+                            //                    smSubArr.add(line);
+
+                        } // Read harvest info
+                        else if (ctx.flg[1].startsWith("n harvest") && ctx.flg[2].equals("data")) {
+                            // Read line and save into return holder
+                            HashMap tmp = readLine(line, smHarvestFormats);
+                            //                    translateDateStr(tmp, "hlast");
+                            smMerger.add(tmp);
+                            //                    smSubArr.add(line);
+
+                        } else {
+                        }
 
                     } else {
                     }
-
-                } else {
                 }
+            } finally {
+                br.close();
             }
 
-            br.close();
-            if (brw != null) {
-                brw.close();
+            DssatTreatmentTables tables = new DssatTreatmentTables(exname);
+            tables.sqArr = sqArr;
+            tables.cuArr = cuArr;
+            tables.flArr = flArr;
+            tables.saArr = saArr;
+            tables.icArr = icArr;
+            tables.plArr = plArr;
+            tables.irArr = irArr;
+            tables.feArr = feArr;
+            tables.omArr = omArr;
+            tables.chArr = chArr;
+            tables.tiArr = tiArr;
+            tables.emArr = emArr;
+            tables.haArr = haArr;
+            tables.smArr = smArr;
+            ret.add(tables);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Combine the section data into the treatment which starts from the given
+     * row of treatments section. The section tables are shared by the
+     * treatments and never changed, the data which is put into the treatment
+     * is copied from them.
+     *
+     * One meta data block is added for each row of the treatment (same as the
+     * meta data array set by readTreatments()).
+     *
+     * @param tables the section tables of XFile
+     * @param start the index of first row of the treatment
+     * @param trArr the array which the treatment data will be added into
+     * @param trMetaArr the array which the meta data will be added into
+     * @return the index of first row of the next treatment
+     */
+    protected int readTreatment(DssatTreatmentTables tables, int start, ArrayList<HashMap> trArr, ArrayList<HashMap> trMetaArr) {
+
+        ArrayList<HashMap> sqArr = tables.sqArr;
+        HashMap sqData;
+        HashMap trMetaData;
+        HashMap trData = new HashMap();
+        ArrayList<HashMap> evtArr = new ArrayList<HashMap>();
+        trArr.add(trData);
+        trData.put("events", evtArr);
+
+        HashMap dssatSq = new HashMap();
+        ArrayList<HashMap> sqArrNew = new ArrayList<HashMap>();
+        dssatSq.put(eventKey, sqArrNew);
+        trData.put("dssat_sequence", dssatSq);
+
+        String trno = sqArr.get(start).get("trno").toString();
+        int i = start;
+        for (int seqid = 1; i < sqArr.size() && sqArr.get(i).get("trno").equals(trno); i++, seqid++) {
+            // P.S. the row is copied since it will be put into treatment
+            sqData = CopyList(sqArr.get(i));
+
+            trMetaData = new HashMap();
+            trMetaArr.add(trMetaData);
+            if (i == start) {
+                trMetaData.put("tr_name", sqData.get("tr_name"));
+                trMetaData.put("trno", trno);
+                trMetaData.put("exname", tables.exname);
+            }
+            sqData.put("seqid", seqid + "");
+            sqArrNew.add(sqData);
+
+            // cultivar
+            HashMap crData = new HashMap();
+            if (!getObjectOr(sqData, "ge", "0").equals("0")) {
+                // Get related cultivar data
+                crData = CopyList((HashMap) getSectionDataObj(tables.cuArr, "ge", sqData.get("ge").toString()));
             }
 
-            // Combine all the sections data into the related treatment block
-            String trno = null;
-            HashMap dssatSq;
-//        HashMap dssatInfo = new HashMap();
-            ArrayList<HashMap> sqArrNew = new ArrayList<HashMap>();
-            for (int i = 0, seqid = 1; i < sqArr.size(); i++, seqid++) {
-                sqData = (HashMap) sqArr.get(i);
-
-                trMetaData = new HashMap();
-                trMetaArr.add(trMetaData);
-
-                if (!sqData.get("trno").equals(trno)) {
-                    trno = sqData.get("trno").toString();
-                    trData = new HashMap();
-                    evtArr = new ArrayList<HashMap>();
-                    trArr.add(trData);
-                    trData.put("events", evtArr);
-
-                    dssatSq = new HashMap();
-                    sqArrNew = new ArrayList<HashMap>();
-//                dssatInfo = new HashMap();
-                    dssatSq.put(eventKey, sqArrNew);
-                    trData.put("dssat_sequence", dssatSq);
-//                trData.put("dssat_info", dssatInfo);
-                    trMetaData.put("tr_name", sqData.get("tr_name"));
-                    trMetaData.put("trno", trno);
-                    trMetaData.put("exname", exname);
-                    seqid = 1;
-                } else {
-                    trMetaData.remove("tr_name");
-                }
-                sqData.put("seqid", seqid + "");
-                sqArrNew.add(sqData);
-
-                // cultivar
-                HashMap crData = new HashMap();
-                if (!getObjectOr(sqData, "ge", "0").equals("0")) {
-                    // Get related cultivar data
-                    crData = (HashMap) getSectionDataObj(cuArr, "ge", sqData.get("ge").toString());
-                }
+            // field
+            if (!getObjectOr(sqData, "fl", "0").equals("0")) {
+                // Move field info into meta data block
+                trMetaData.putAll(CopyList((HashMap) getSectionDataObj(tables.flArr, "fl", sqData.get("fl").toString())));
+                trMetaData.remove("fl");
+            }
 
-                // field
-                if (!getObjectOr(sqData, "fl", "0").equals("0")) {
-                    // Move field info into meta data block
-                    trMetaData.putAll((HashMap) getSectionDataObj(flArr, "fl", sqData.get("fl").toString()));
-                    trMetaData.remove("fl");
+            // initial_condition
+            if (!getObjectOr(sqData, "ic", "0").equals("0")) {
+                HashMap icTmpArr = (HashMap) getSectionDataObj(tables.icArr, "ic", sqData.get("ic").toString());
+                if (!icTmpArr.isEmpty()) {
+                    trData.put("initial_conditions", CopyList(icTmpArr));
                 }
+            }
 
-                // initial_condition
-                if (!getObjectOr(sqData, "ic", "0").equals("0")) {
-                    HashMap icTmpArr = (HashMap) getSectionDataObj(icArr, "ic", sqData.get("ic").toString());
-                    if (!icTmpArr.isEmpty()) {
-                        trData.put("initial_conditions", icTmpArr);
-                    }
+            // planting
+            String pdate = "";
+            if (!getObjectOr(sqData, "pl", "0").equals("0")) {
+                // add event data into array
+                addEvent(evtArr, (HashMap) getSectionDataObj(tables.plArr, "pl", sqData.get("pl").toString()), "pdate", "planting", seqid);
+
+                // add cultivar data into planting event
+                if (crData != null) {
+                    evtArr.get(evtArr.size() - 1).putAll(crData);
                 }
+                // Get planting date for DOY value handling
+                pdate = getValueOr(evtArr.get(evtArr.size() - 1), "pdate", "");
+                if (pdate.length() > 5) {
+                    pdate = pdate.substring(2);
+                }
+            }
 
-                // planting
-                String pdate = "";
-                if (!getObjectOr(sqData, "pl", "0").equals("0")) {
-                    // add event data into array
-                    addEvent(evtArr, (HashMap) getSectionDataObj(plArr, "pl", sqData.get("pl").toString()), "pdate", "planting", seqid);
+            // irrigation
+            if (!getObjectOr(sqData, "ir", "0").equals("0")) {
+                // add event data into array
+                int evtIdx = evtArr.size();
+                addEvent(evtArr, (HashMap) getSectionDataObj(tables.irArr, "ir", sqData.get("ir").toString()), "idate", "irrigation", seqid);
 
-                    // add cultivar data into planting event
-                    if (crData != null) {
-                        evtArr.get(evtArr.size() - 1).putAll(crData);
-                    }
-                    // Get planting date for DOY value handling
-                    pdate = getValueOr(evtArr.get(evtArr.size() - 1), "pdate", "");
-                    if (pdate.length() > 5) {
-                        pdate = pdate.substring(2);
-                    }
-                }
+                // Date adjust based on realted treatment info (handling for DOY type value)
+                translateEventDates(evtArr, evtIdx, pdate);
+            }
 
-                // irrigation
-                if (!getObjectOr(sqData, "ir", "0").equals("0")) {
-                    // Date adjust based on realted treatment info (handling for DOY type value)
-                    HashMap irTmp = (HashMap) getSectionDataObj(irArr, "ir", sqData.get("ir").toString());
-                    ArrayList<HashMap> irTmpSubs = getObjectOr(irTmp, "data", new ArrayList());
-                    for (int j = 0; j < irTmpSubs.size(); j++) {
-                        HashMap irTmpSub = irTmpSubs.get(j);
-                        translateDateStrForDOY(irTmpSub, "idate", pdate);
-                    }
+            // fertilizer
+            if (!getObjectOr(sqData, "fe", "0").equals("0")) {
 
+                ArrayList<HashMap> feTmps = (ArrayList) getSectionDataObj(tables.feArr, "fe", sqData.get("fe").toString());
+                for (int j = 0; j < feTmps.size(); j++) {
                     // add event data into array
-                    addEvent(evtArr, irTmp, "idate", "irrigation", seqid);
-                }
+                    int evtIdx = evtArr.size();
+                    addEvent(evtArr, feTmps.get(j), "fdate", "fertilizer", seqid);
 
-                // fertilizer
-                if (!getObjectOr(sqData, "fe", "0").equals("0")) {
+                    // Date adjust based on realted treatment info (handling for DOY type value)
+                    translateEventDates(evtArr, evtIdx, pdate);
+                }
+            }
 
-                    ArrayList<HashMap> feTmps = (ArrayList) getSectionDataObj(feArr, "fe", sqData.get("fe").toString());
-                    HashMap feTmp;
-                    for (int j = 0; j < feTmps.size(); j++) {
-                        feTmp = feTmps.get(j);
-                        // Date adjust based on realted treatment info (handling for DOY type value)
-                        translateDateStrForDOY(feTmp, "fdate", pdate);
+            // organic_matter
+            if (!getObjectOr(sqData, "om", "0").equals("0")) {
+                ArrayList<HashMap> omTmps = (ArrayList) getSectionDataObj(tables.omArr, "om", sqData.get("om").toString());
+                for (int j = 0; j < omTmps.size(); j++) {
+                    // add event data into array
+                    int evtIdx = evtArr.size();
+                    addEvent(evtArr, omTmps.get(j), "omdat", "organic_matter", seqid); // P.S. change event name to organic-materials; Back to organic_matter again
 
-                        // add event data into array
-                        addEvent(evtArr, feTmp, "fdate", "fertilizer", seqid);
-                    }
+                    // Date adjust based on realted treatment info (handling for DOY type value)
+                    translateEventDates(evtArr, evtIdx, pdate);
                 }
+            }
 
-                // organic_matter
-                if (!getObjectOr(sqData, "om", "0").equals("0")) {
-                    ArrayList<HashMap> omTmps = (ArrayList) getSectionDataObj(omArr, "om", sqData.get("om").toString());
-                    HashMap omTmp;
-                    for (int j = 0; j < omTmps.size(); j++) {
-                        omTmp = omTmps.get(j);
-                        // Date adjust based on realted treatment info (handling for DOY type value)
-                        translateDateStrForDOY(omTmp, "omdat", pdate);
-                        // add event data into array
-                        addEvent(evtArr, omTmp, "omdat", "organic_matter", seqid); // P.S. change event name to organic-materials; Back to organic_matter again
-                    }
+            // chemical
+            if (!getObjectOr(sqData, "ch", "0").equals("0")) {
+                ArrayList<HashMap> chTmps = (ArrayList) getSectionDataObj(tables.chArr, "ch", sqData.get("ch").toString());
+                for (int j = 0; j < chTmps.size(); j++) {
+                    // add event data into array
+                    addEvent(evtArr, chTmps.get(j), "cdate", "chemical", seqid);
                 }
+            }
 
-                // chemical
-                if (!getObjectOr(sqData, "ch", "0").equals("0")) {
-                    ArrayList<HashMap> chTmps = (ArrayList) getSectionDataObj(chArr, "ch", sqData.get("ch").toString());
-                    for (int j = 0; j < chTmps.size(); j++) {
-                        // add event data into array
-                        addEvent(evtArr, chTmps.get(j), "cdate", "chemical", seqid);
-                    }
+            // tillage
+            if (!getObjectOr(sqData, "ti", "0").equals("0")) {
+                ArrayList<HashMap> tiTmps = (ArrayList) getSectionDataObj(tables.tiArr, "ti", sqData.get("ti").toString());
+                for (int j = 0; j < tiTmps.size(); j++) {
+                    // add event data into array
+                    addEvent(evtArr, tiTmps.get(j), "tdate", "tillage", seqid);
                 }
+            }
 
-                // tillage
-                if (!getObjectOr(sqData, "ti", "0").equals("0")) {
-                    ArrayList<HashMap> tiTmps = (ArrayList) getSectionDataObj(tiArr, "ti", sqData.get("ti").toString());
-                    for (int j = 0; j < tiTmps.size(); j++) {
-                        // add event data into array
-                        addEvent(evtArr, tiTmps.get(j), "tdate", "tillage", seqid);
+            // emvironment  // P.S. keep for furture using
+            if (!getObjectOr(sqData, "em", "0").equals("0")) {
+                String em = (String) sqData.get("em");
+                ArrayList<HashMap> emDataArr = (ArrayList) getSectionDataObj(tables.emArr, "em", em);
+
+                HashMap tmp = getObjectOr(trData, "dssat_environment_modification", new HashMap());
+                ArrayList<HashMap> arr = getObjectOr(tmp, eventKey, new ArrayList());
+                boolean isExistFlg = false;
+                for (int j = 0; j < arr.size(); j++) {
+                    if (em.equals(arr.get(j).get("em"))) {
+                        isExistFlg = true;
+                        break;
                     }
                 }
-
-                // emvironment  // P.S. keep for furture using
-                if (!getObjectOr(sqData, "em", "0").equals("0")) {
-                    String em = (String) sqData.get("em");
-                    ArrayList<HashMap> emDataArr = (ArrayList) getSectionDataObj(emArr, "em", em);
-//                ArrayList arr = new ArrayList();
-//                for (int j = 0; j < emDataArr.size(); j++) {
-//                    arr.add(emDataArr.get(j).get("em_data"));
-//                }
-//                sqData.put("em_data", arr);
-
-                    HashMap tmp = getObjectOr(trData, "dssat_environment_modification", new HashMap());
-                    ArrayList<HashMap> arr = getObjectOr(tmp, eventKey, new ArrayList());
-                    boolean isExistFlg = false;
-                    for (int j = 0; j < arr.size(); j++) {
-                        if (em.equals(arr.get(j).get("em"))) {
-                            isExistFlg = true;
-                            break;
-                        }
-                    }
-                    if (!isExistFlg) {
-                        arr.addAll(emDataArr);
-                    }
-                    tmp.put(eventKey, arr);
-                    trData.put("dssat_environment_modification", tmp);
+                if (!isExistFlg) {
+                    arr.addAll(CopyList(emDataArr));
                 }
+                tmp.put(eventKey, arr);
+                trData.put("dssat_environment_modification", tmp);
+            }
 
-                // harvest
-                if (!getObjectOr(sqData, "ha", "0").equals("0")) {
-                    // add event data into array
-                    addEvent(evtArr, (HashMap) getSectionDataObj(haArr, "ha", sqData.get("ha").toString()), "hdate", "harvest", seqid);
-                }
+            // harvest
+            if (!getObjectOr(sqData, "ha", "0").equals("0")) {
+                // add event data into array
+                addEvent(evtArr, (HashMap) getSectionDataObj(tables.haArr, "ha", sqData.get("ha").toString()), "hdate", "harvest", seqid);
+            }
 
-                // simulation
-                if (!getObjectOr(sqData, "sm", "0").equals("0")) {
-                    String sm = (String) sqData.get("sm");
-                    HashMap smData = (HashMap) getSectionDataObj(smArr, "sm", sm);
-//                sqData.putAll((HashMap) getSectionDataObj(smArr, "sm", sm));
-
-                    HashMap tmp = getObjectOr(trData, "dssat_simulation_control", new HashMap());
-                    ArrayList<HashMap> arr = getObjectOr(tmp, eventKey, new ArrayList());
-                    boolean isExistFlg = false;
-                    for (int j = 0; j < arr.size(); j++) {
-                        if (sm.equals(arr.get(j).get("sm"))) {
-                            isExistFlg = true;
-                            break;
-                        }
-                    }
-                    if (!isExistFlg) {
-                        arr.add(smData);
+            // simulation
+            if (!getObjectOr(sqData, "sm", "0").equals("0")) {
+                String sm = (String) sqData.get("sm");
+                HashMap smData = (HashMap) getSectionDataObj(tables.smArr, "sm", sm);
+
+                HashMap tmp = getObjectOr(trData, "dssat_simulation_control", new HashMap());
+                ArrayList<HashMap> arr = getObjectOr(tmp, eventKey, new ArrayList());
+                boolean isExistFlg = false;
+                for (int j = 0; j < arr.size(); j++) {
+                    if (sm.equals(arr.get(j).get("sm"))) {
+                        isExistFlg = true;
+                        break;
                     }
-                    tmp.put(eventKey, arr);
-                    trData.put("dssat_simulation_control", tmp);
                 }
-
-                // soil_analysis
-                if (!getObjectOr(sqData, "sa", "0").equals("0")) {
-                    HashMap saTmp = (HashMap) getSectionDataObj(saArr, "sa", sqData.get("sa").toString());
-//                ArrayList<HashMap> saSubArr = getObjectOr(saTmp, icEventKey, new ArrayList());
-
-                    // temporally put soil_analysis block into treatment meta data
-                    trMetaData.put("soil_analysis", saTmp);
-
-//                // Add SASC into initial condition block
-//                ArrayList<HashMap> icSubArrNew;
-//                HashMap icTmp;
-//                String[] copyKeys = {"slsc"};
-//                if (!trData.containsKey("initial_condition")) {
-//                    // Add a dummy ic block to hold SASC
-//                    icTmp = new HashMap();
-//                    trData.put("initial_condition", icTmp);
-//                    icSubArrNew = combinLayers(new ArrayList<HashMap>(), saSubArr, "icbl", "sllb", copyKeys);
-//                } else {
-//                    // Add SASC into initial condition block
-//                    icTmp = (HashMap) trData.get("initial_condition");
-//                    ArrayList<HashMap> icSubArr = getObjectOr(icTmp, icEventKey, new ArrayList());
-//                    icSubArrNew = combinLayers(icSubArr, saSubArr, "icbl", "sllb", copyKeys);
-//                }
-//                icTmp.put(icEventKey, icSubArrNew);
+                if (!isExistFlg) {
+                    arr.add(CopyList(smData));
                 }
+                tmp.put(eventKey, arr);
+                trData.put("dssat_simulation_control", tmp);
+            }
+
+            // soil_analysis
+            if (!getObjectOr(sqData, "sa", "0").equals("0")) {
+                HashMap saTmp = (HashMap) getSectionDataObj(tables.saArr, "sa", sqData.get("sa").toString());
 
+                // temporally put soil_analysis block into treatment meta data
+                trMetaData.put("soil_analysis", CopyList(saTmp));
             }
+
+            // Remove relational index
+            removeIndex(trMetaData, getIndexNames());
         }
 
         // Remove relational index
+        removeIndex(trData, getIndexNames());
+
+        return i;
+    }
+
+    /**
+     * Get the names of relational index between treatment and sections
+     *
+     * @return the array of index variable names
+     */
+    private ArrayList getIndexNames() {
         ArrayList idNames = new ArrayList();
         idNames.add("ge");
         idNames.add("fl");
@@ -1140,26 +1208,40 @@ public class DssatXFileInput extends DssatCommonInput {
 //        idNames.add("em");
         idNames.add("ha");
 //        idNames.add("sm");
-        removeIndex(trArr, idNames);
-        removeIndex(metaData, idNames);
+        return idNames;
+    }
 
-        return trArr;
+    /**
+     * Translate the dates of events from the pointed index, for the date
+     * which is given by DOY (handling with the planting date)
+     *
+     * @param events event array
+     * @param start the index of first event need to be handled
+     * @param pdate the related planting date
+     */
+    private void translateEventDates(ArrayList<HashMap> events, int start, String pdate) {
+        for (int i = start; i < events.size(); i++) {
+            translateDateStrForDOY(events.get(i), "date", pdate);
+        }
     }
 
     /**
      * Set reading flags for title lines (marked with *)
      *
+     * @param ctx the parsing context which holds the flgs
      * @param line the string of reading line
      */
     @Override
-    protected void setTitleFlgs(String line) {
-        flg[0] = line.substring(1).trim().toLowerCase();
-        flg[1] = "";
-        flg[2] = "";
+    protected void setTitleFlgs(DssatParseContext ctx, String line) {
+        ctx.flg[0] = line.substring(1).trim().toLowerCase();
+        ctx.flg[1] = "";
+        ctx.flg[2] = "";
     }
 
     /**
-     * Get the section data by given index value and key
+     * Get the section data by given index value and key, the data is shared
+     * with the section array (not copied), so it need to be copied before it
+     * is changed or put into the treatment
      *
      * @param secArr Section data array
      * @param key index variable name
@@ -1192,7 +1274,7 @@ public class DssatXFileInput extends DssatCommonInput {
             if (fstNode.containsKey(eventKey) || fstNode.containsKey(icEventKey) || singleSubRecSecList.contains(key)) {
                 for (int i = 0; i < secArr.size(); i++) {
                     if (value.equals(((HashMap) secArr.get(i)).get(key))) {
-                        return CopyList((HashMap) secArr.get(i));
+                        return secArr.get(i);
                     }
                 }
 
@@ -1202,7 +1284,7 @@ public class DssatXFileInput extends DssatCommonInput {
                 for (int i = 0; i < secArr.size(); i++) {
                     node = (HashMap) secArr.get(i);
                     if (value.equals(node.get(key))) {
-                        ret.add(CopyList(node));
+                        ret.add(node);
                     }
                 }
             }
@@ -1262,13 +1344,26 @@ public class DssatXFileInput extends DssatCommonInput {
      */
     public HashMap setupMetaData(HashMap metaData, int trId) {
 
+        ArrayList<HashMap> trMetaArr = (ArrayList<HashMap>) metaData.get("tr_meta");
+        return setupMetaData(metaData, trMetaArr.get(trId));
+    }
+
+    /**
+     * Setup the meta data block for the treatment
+     *
+     * @param metaData meta data holder
+     * @param trMetaData the meta data of the current treatment
+     *
+     * @return expData experiment data holder (contain all blocks)
+     */
+    public HashMap setupMetaData(HashMap metaData, HashMap trMetaData) {
+
         // Set meta data for all treatment
         HashMap expData = new HashMap();
         // Set meta data per treatment
-        ArrayList<HashMap> trMetaArr = (ArrayList<HashMap>) metaData.get("tr_meta");
-        String exname = getValueOr(trMetaArr.get(trId), "exname", "");
+        String exname = getValueOr(trMetaData, "exname", "");
         expData.putAll(getObjectOr(metaData, exname, new HashMap()));
-        expData.putAll(trMetaArr.get(trId));
+        expData.putAll(trMetaData);
         if (!exname.equals("")) {
             expData.put("exname", exname + "_" + expData.get("trno"));
         }
@@ -2,7 +2,6 @@ package org.agmip.translators.dssat;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -19,6 +18,26 @@ import static org.agmip.util.MapUtil.*;
 public class DssatXFileOutput extends DssatCommonOutput {
     public static final DssatCRIDHelper crHelper = new DssatCRIDHelper();
 
+    // Precompiled layouts of data lines
+    private static final DssatLineTemplate trTemplate = new DssatLineTemplate("%1$2s %2$1s %3$1s %4$1s %5$-25s %6$2s %7$2s %8$2s %9$2s %10$2s %11$2s %12$2s %13$2s %14$2s %15$2s %16$2s %17$2s %18$2s\r\n");
+    private static final DssatLineTemplate cuTemplate = new DssatLineTemplate("%1$2s %2$-2s %3$-6s %4$s\r\n");
+    private static final DssatLineTemplate cuNotesTemplate = new DssatLineTemplate("%1$2s %2$4s %3$s\r\n");
+    private static final DssatLineTemplate flTemplate = new DssatLineTemplate("%1$2s %2$-8s %3$-8s %4$5s %5$5s %6$-5s %7$5s %8$5s %9$-5s %10$-5s%11$5s  %12$-10s %13$s\r\n");
+    private static final DssatLineTemplate flPart2Template = new DssatLineTemplate("%1$2s %2$15s %3$15s %4$9s %5$17s %6$5s %7$5s %8$5s %9$5s %10$5s\r\n");
+    private static final DssatLineTemplate saTemplate = new DssatLineTemplate("%1$2s %2$5s %3$5s %4$5s %5$5s  %6$s\r\n");
+    private static final DssatLineTemplate saLayerTemplate = new DssatLineTemplate("%1$2s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$5s %10$5s\r\n");
+    private static final DssatLineTemplate icTemplate = new DssatLineTemplate("%1$2s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$5s %10$5s %11$5s %12$5s %13$5s %14$s\r\n");
+    private static final DssatLineTemplate icLayerTemplate = new DssatLineTemplate("%1$2s %2$5s %3$5s %4$5s %5$5s\r\n");
+    private static final DssatLineTemplate plTemplate = new DssatLineTemplate("%1$2s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$5s %10$5s %11$5s %12$5s %13$5s %14$5s %15$5s                        %16$s\r\n");
+    private static final DssatLineTemplate irTemplate = new DssatLineTemplate("%1$2s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$s\r\n");
+    private static final DssatLineTemplate irEventTemplate = new DssatLineTemplate("%1$2s %2$5s %3$-5s %4$5s\r\n");
+    private static final DssatLineTemplate feTemplate = new DssatLineTemplate("%1$2s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$5s %10$5s %11$5s %12$s\r\n");
+    private static final DssatLineTemplate omTemplate = new DssatLineTemplate("%1$2s %2$5s %3$-5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$5s %10$5s %11$s\r\n");
+    private static final DssatLineTemplate chTemplate = new DssatLineTemplate("%1$2s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s  %8$s\r\n");
+    private static final DssatLineTemplate tiTemplate = new DssatLineTemplate("%1$2s %2$5s %3$5s %4$5s %5$s\r\n");
+    private static final DssatLineTemplate emTemplate = new DssatLineTemplate("%1$2s%2$s\r\n");
+    private static final DssatLineTemplate haTemplate = new DssatLineTemplate("%1$2s %2$5s %3$-5s %4$-5s %5$-5s %6$5s %7$5s %8$s\r\n");
+
     /**
      * DSSAT Experiment Data Output method
      *
@@ -87,7 +106,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
             String fileName = getFileName(result, "X");
             arg0 = revisePath(arg0);
             outputFile = new File(arg0 + fileName);
-            bwX = new BufferedWriter(new FileWriter(outputFile));
+            bwX = openWriter(outputFile);
 
             // Output XFile
             // EXP.DETAILS Section
@@ -382,7 +401,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
 //                    smNum = 1;
 //                }
 
-                sbData.append(String.format("%1$2s %2$1s %3$1s %4$1s %5$-25s %6$2s %7$2s %8$2s %9$2s %10$2s %11$2s %12$2s %13$2s %14$2s %15$2s %16$2s %17$2s %18$2s\r\n",
+                trTemplate.append(sbData,
                         getValueOr(sqData, "trno", "1").toString(),
                         getValueOr(sqData, "sq", "1").toString(), // P.S. default value here is based on document DSSAT vol2.pdf
                         getValueOr(sqData, "op", "1").toString(),
@@ -400,7 +419,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
                         mtNum, //getObjectOr(data, "ti", defValI).toString(),
                         meNum, //getObjectOr(data, "em", defValI).toString(),
                         mhNum, //getObjectOr(data, "ha", defValI).toString(),
-                        smNum)); // 1
+                        smNum); // 1
 
             }
             sbData.append("\r\n");
@@ -428,11 +447,11 @@ public class DssatXFileOutput extends DssatCommonOutput {
 //                    if (getObjectOr(secData, "cul_id", "").equals("")) {
 //                        sbError.append("! Warning: Incompleted record because missing data : [cul_id], and will use default value '").append(cul_id).append("'\r\n");
                     }
-                    sbData.append(String.format("%1$2s %2$-2s %3$-6s %4$s\r\n",
+                    cuTemplate.append(sbData,
                             idx + 1, //getObjectOr(secData, "ge", defValI).toString(),
                             getObjectOr(secData, "crid", defValBlank).toString(), // P.S. if missing, default value use blank string
                             getObjectOr(secData, "cul_id", defValC).toString(), // P.S. Set default value which is deponds on crid(Cancelled)
-                            getObjectOr(secData, "cul_name", defValC).toString()));
+                            getObjectOr(secData, "cul_name", defValC).toString());
 
                     if (!getObjectOr(secData, "rm", "").equals("") || !getObjectOr(secData, "cul_notes", "").equals("")) {
                         if (sbNotesData.toString().equals("")) {
@@ -440,10 +459,10 @@ public class DssatXFileOutput extends DssatCommonOutput {
                         }
                         sbNotesData.append(" Cultivar Additional Info\r\n");
                         sbNotesData.append(" C   RM CNAME            CUL_NOTES\r\n");
-                        sbNotesData.append(String.format("%1$2s %2$4s %3$s\r\n",
+                        cuNotesTemplate.append(sbNotesData,
                                 idx + 1, //getObjectOr(secData, "ge", defValI).toString(),
                                 getObjectOr(secData, "rm", defValC).toString(),
-                                getObjectOr(secData, "cul_notes", defValC).toString()));
+                                getObjectOr(secData, "cul_notes", defValC).toString());
                     }
 
                 }
@@ -470,7 +489,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
                 if (getObjectOr(secData, "soil_id", "").equals("")) {
                     sbError.append("! Warning: Incompleted record because missing data : [soil_id]\r\n");
                 }
-                sbData.append(String.format("%1$2s %2$-8s %3$-8s %4$5s %5$5s %6$-5s %7$5s %8$5s %9$-5s %10$-5s%11$5s  %12$-10s %13$s\r\n", // P.S. change length definition to match current way
+                flTemplate.append(sbData, // P.S. change length definition to match current way
                         idx + 1, //getObjectOr(secData, "fl", defValI).toString(),
                         getObjectOr(secData, "id_field", defValC).toString(),
                         getObjectOr(secData, "wst_id", defValC).toString(),
@@ -483,9 +502,9 @@ public class DssatXFileOutput extends DssatCommonOutput {
                         getObjectOr(secData, "sltx", defValC).toString(),
                         formatNumStr(5, secData, "sldp", defValR),
                         getObjectOr(secData, "soil_id", defValC).toString(),
-                        getObjectOr(secData, "fl_name", defValC).toString()));
+                        getObjectOr(secData, "fl_name", defValC).toString());
 
-                eventPart2.append(String.format("%1$2s %2$15s %3$15s %4$9s %5$17s %6$5s %7$5s %8$5s %9$5s %10$5s\r\n",
+                flPart2Template.append(eventPart2,
                         idx + 1, //getObjectOr(secData, "fl", defValI).toString(),
                         formatNumStr(15, secData, "fl_lat", defValR),
                         formatNumStr(15, secData, "fl_long", defValR),
@@ -495,7 +514,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
                         formatNumStr(5, secData, "fllwr", defValR),
                         formatNumStr(5, secData, "flsla", defValR),
                         getObjectOr(secData, "flhst", defValC).toString(),
-                        formatNumStr(5, secData, "fhdur", defValR)));
+                        formatNumStr(5, secData, "fhdur", defValR));
             }
             if (!flArr.isEmpty()) {
                 sbData.append(eventPart2.toString()).append("\r\n");
@@ -509,13 +528,13 @@ public class DssatXFileOutput extends DssatCommonOutput {
 
                     secData = (HashMap) saArr.get(idx);
                     sbData.append("@A SADAT  SMHB  SMPX  SMKE  SANAME\r\n");
-                    sbData.append(String.format("%1$2s %2$5s %3$5s %4$5s %5$5s  %6$s\r\n",
+                    saTemplate.append(sbData,
                             idx + 1, //getObjectOr(secData, "sa", defValI).toString(),
                             formatDateStr(getObjectOr(secData, "sadat", defValD).toString()),
                             getObjectOr(secData, "samhb", defValC).toString(),
                             getObjectOr(secData, "sampx", defValC).toString(),
                             getObjectOr(secData, "samke", defValC).toString(),
-                            getObjectOr(secData, "sa_name", defValC).toString()));
+                            getObjectOr(secData, "sa_name", defValC).toString());
 
                     subDataArr = (ArrayList) getObjectOr(secData, "soilLayer", new ArrayList());
                     if (!subDataArr.isEmpty()) {
@@ -523,7 +542,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
                     }
                     for (int j = 0; j < subDataArr.size(); j++) {
                         subData = (HashMap) subDataArr.get(j);
-                        sbData.append(String.format("%1$2s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$5s %10$5s\r\n",
+                        saLayerTemplate.append(sbData,
                                 idx + 1, //getObjectOr(subData, "sa", defValI).toString(),
                                 formatNumStr(5, subData, "sabl", defValR),
                                 formatNumStr(5, subData, "sabdm", defValR),
@@ -533,7 +552,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
                                 formatNumStr(5, subData, "saphb", defValR),
                                 formatNumStr(5, subData, "sapx", defValR),
                                 formatNumStr(5, subData, "sake", defValR),
-                                formatNumStr(5, subData, "sasc", defValR)));
+                                formatNumStr(5, subData, "sasc", defValR));
                     }
 
 
@@ -550,7 +569,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
                     secData = (HashMap) icArr.get(idx);
                     translateTo2BitCrid(secData, "icpcr");
                     sbData.append("@C   PCR ICDAT  ICRT  ICND  ICRN  ICRE  ICWD ICRES ICREN ICREP ICRIP ICRID ICNAME\r\n");
-                    sbData.append(String.format("%1$2s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$5s %10$5s %11$5s %12$5s %13$5s %14$s\r\n",
+                    icTemplate.append(sbData,
                             idx + 1, //getObjectOr(secData, "ic", defValI).toString(),
                             getObjectOr(secData, "icpcr", defValC).toString(),
                             formatDateStr(getObjectOr(secData, "icdat", getPdate(result)).toString()),
@@ -564,7 +583,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
                             formatNumStr(5, secData, "icrp", defValR),
                             formatNumStr(5, secData, "icrip", defValR),
                             formatNumStr(5, secData, "icrdp", defValR),
-                            getObjectOr(secData, "ic_name", defValC).toString()));
+                            getObjectOr(secData, "ic_name", defValC).toString());
 
                     subDataArr = (ArrayList) getObjectOr(secData, "soilLayer", new ArrayList());
                     if (!subDataArr.isEmpty()) {
@@ -572,12 +591,12 @@ public class DssatXFileOutput extends DssatCommonOutput {
                     }
                     for (int j = 0; j < subDataArr.size(); j++) {
                         subData = (HashMap) subDataArr.get(j);
-                        sbData.append(String.format("%1$2s %2$5s %3$5s %4$5s %5$5s\r\n",
+                        icLayerTemplate.append(sbData,
                                 idx + 1, //getObjectOr(subData, "ic", defValI).toString(),
                                 formatNumStr(5, subData, "icbl", defValR),
                                 formatNumStr(5, subData, "ich2o", defValR),
                                 formatNumStr(5, subData, "icnh4", defValR),
-                                formatNumStr(5, subData, "icno3", defValR)));
+                                formatNumStr(5, subData, "icno3", defValR));
                     }
                 }
                 sbData.append("\r\n");
@@ -613,7 +632,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
 //                    if (getObjectOr(secData, "pldp", "").equals("")) {
 //                        sbError.append("! Warning: missing data : [pldp], and will automatically use default value '7'\r\n");
 //                    }
-                    sbData.append(String.format("%1$2s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$5s %10$5s %11$5s %12$5s %13$5s %14$5s %15$5s                        %16$s\r\n",
+                    plTemplate.append(sbData,
                             idx + 1, //getObjectOr(data, "pl", defValI).toString(),
                             formatDateStr(getObjectOr(secData, "date", defValD).toString()),
                             formatDateStr(getObjectOr(secData, "pldae", defValD).toString()),
@@ -629,7 +648,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
                             formatNumStr(5, secData, "penv", defValR),
                             formatNumStr(5, secData, "plph", defValR),
                             formatNumStr(5, secData, "plspl", defValR),
-                            getObjectOr(secData, "pl_name", defValC).toString()));
+                            getObjectOr(secData, "pl_name", defValC).toString());
 
                 }
                 sbData.append("\r\n");
@@ -651,7 +670,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
                         subData = new HashMap();
                     }
                     sbData.append("@I  EFIR  IDEP  ITHR  IEPT  IOFF  IAME  IAMT IRNAME\r\n");
-                    sbData.append(String.format("%1$2s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$s\r\n",
+                    irTemplate.append(sbData,
                             idx + 1, //getObjectOr(data, "ir", defValI).toString(),
                             formatNumStr(5, subData, "ireff", defValR),
                             formatNumStr(5, subData, "irmdp", defValR),
@@ -660,18 +679,18 @@ public class DssatXFileOutput extends DssatCommonOutput {
                             getObjectOr(subData, "irstg", defValC).toString(),
                             getObjectOr(subData, "iame", defValC).toString(),
                             formatNumStr(5, subData, "iamt", defValR),
-                            getObjectOr(subData, "ir_name", defValC).toString()));
+                            getObjectOr(subData, "ir_name", defValC).toString());
 
                     if (!subDataArr.isEmpty()) {
                         sbData.append("@I IDATE  IROP IRVAL\r\n");
                     }
                     for (int j = 0; j < subDataArr.size(); j++) {
                         subData = (HashMap) subDataArr.get(j);
-                        sbData.append(String.format("%1$2s %2$5s %3$-5s %4$5s\r\n",
+                        irEventTemplate.append(sbData,
                                 idx + 1, //getObjectOr(subData, "ir", defValI).toString(),
                                 formatDateStr(getObjectOr(subData, "date", defValD).toString()), // P.S. idate -> date
                                 getObjectOr(subData, "irop", defValC).toString(),
-                                formatNumStr(5, subData, "irval", defValR)));
+                                formatNumStr(5, subData, "irval", defValR));
                     }
                 }
                 sbData.append("\r\n");
@@ -715,7 +734,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
 //                        if (getObjectOr(secData, "feamk", "").equals("")) {
 //                            sbError.append("! Warning: missing data : [feamk], and will automatically use the value of FEK_TOT, '").append(fek_tot).append("'\r\n");
 //                        }
-                        sbData.append(String.format("%1$2s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$5s %10$5s %11$5s %12$s\r\n",
+                        feTemplate.append(sbData,
                                 idx + 1, //getObjectOr(data, "fe", defValI).toString(),
                                 formatDateStr(getObjectOr(secData, "date", defValD).toString()), // P.S. fdate -> date
                                 getObjectOr(secData, "fecd", defValC).toString(), // P.S. Set default value as "FE005"(Cancelled)
@@ -727,7 +746,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
                                 formatNumStr(5, secData, "feamc", defValR),
                                 formatNumStr(5, secData, "feamo", defValR),
                                 getObjectOr(secData, "feocd", defValC).toString(),
-                                getObjectOr(secData, "fe_name", defValC).toString()));
+                                getObjectOr(secData, "fe_name", defValC).toString());
 
                     }
                 }
@@ -744,7 +763,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
 
                     for (int i = 0; i < secDataArr.size(); i++) {
                         secData = (HashMap) secDataArr.get(i);
-                        sbData.append(String.format("%1$2s %2$5s %3$-5s %4$5s %5$5s %6$5s %7$5s %8$5s %9$5s %10$5s %11$s\r\n",
+                        omTemplate.append(sbData,
                                 idx + 1, //getObjectOr(secData, "om", defValI).toString(),
                                 formatDateStr(getObjectOr(secData, "date", defValD).toString()), // P.S. omdat -> date
                                 getObjectOr(secData, "omcd", defValC).toString(),
@@ -755,7 +774,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
                                 formatNumStr(5, secData, "ominp", defValR),
                                 formatNumStr(5, secData, "omdep", defValR),
                                 formatNumStr(5, secData, "omacd", defValR),
-                                getObjectOr(secData, "om_name", defValC).toString()));
+                                getObjectOr(secData, "om_name", defValC).toString());
                     }
                 }
                 sbData.append("\r\n");
@@ -771,7 +790,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
 
                     for (int i = 0; i < secDataArr.size(); i++) {
                         secData = (HashMap) secDataArr.get(i);
-                        sbData.append(String.format("%1$2s %2$5s %3$5s %4$5s %5$5s %6$5s %7$5s  %8$s\r\n",
+                        chTemplate.append(sbData,
                                 idx + 1, //getObjectOr(secData, "ch", defValI).toString(),
                                 formatDateStr(getObjectOr(secData, "date", defValD).toString()), // P.S. cdate -> date
                                 getObjectOr(secData, "chcd", defValC).toString(),
@@ -779,7 +798,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
                                 getObjectOr(secData, "chacd", defValC).toString(),
                                 getObjectOr(secData, "chdep", defValC).toString(),
                                 getObjectOr(secData, "ch_targets", defValC).toString(),
-                                getObjectOr(secData, "ch_name", defValC).toString()));
+                                getObjectOr(secData, "ch_name", defValC).toString());
                     }
                 }
                 sbData.append("\r\n");
@@ -795,12 +814,12 @@ public class DssatXFileOutput extends DssatCommonOutput {
 
                     for (int i = 0; i < secDataArr.size(); i++) {
                         secData = (HashMap) secDataArr.get(i);
-                        sbData.append(String.format("%1$2s %2$5s %3$5s %4$5s %5$s\r\n",
+                        tiTemplate.append(sbData,
                                 idx + 1, //getObjectOr(secData, "ti", defValI).toString(),
                                 formatDateStr(getObjectOr(secData, "date", defValD).toString()), // P.S. tdate -> date
                                 getObjectOr(secData, "tiimp", defValC).toString(),
                                 formatNumStr(5, secData, "tidep", defValR),
-                                getObjectOr(secData, "ti_name", defValC).toString()));
+                                getObjectOr(secData, "ti_name", defValC).toString());
 
                     }
                 }
@@ -820,9 +839,9 @@ public class DssatXFileOutput extends DssatCommonOutput {
                         cnt++;
                         emNumStr = (String) secData.get("em");
                     }
-                    sbData.append(String.format("%1$2s%2$s\r\n",
+                    emTemplate.append(sbData,
                             cnt,
-                            secData.get("em_data")));
+                            secData.get("em_data"));
 //                    for (int i = 0; i < secDataArr.size(); i++) {
 //                        sbData.append(String.format("%1$2s%2$s\r\n",
 //                                idx + 1,
@@ -862,7 +881,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
 
                     for (int i = 0; i < secDataArr.size(); i++) {
                         secData = (HashMap) secDataArr.get(i);
-                        sbData.append(String.format("%1$2s %2$5s %3$-5s %4$-5s %5$-5s %6$5s %7$5s %8$s\r\n",
+                        haTemplate.append(sbData,
                                 idx + 1, //getObjectOr(secData, "ha", defValI).toString(),
                                 formatDateStr(getObjectOr(secData, "date", defValD).toString()), // P.S. hdate -> date
                                 getObjectOr(secData, "hastg", defValC).toString(),
@@ -870,7 +889,7 @@ public class DssatXFileOutput extends DssatCommonOutput {
                                 getObjectOr(secData, "hasiz", defValC).toString(),
                                 formatNumStr(5, secData, "hapc", defValR),
                                 formatNumStr(5, secData, "habpc", defValR),
-                                getObjectOr(secData, "ha_name", defValC).toString()));
+                                getObjectOr(secData, "ha_name", defValC).toString());
 
                     }
                 }
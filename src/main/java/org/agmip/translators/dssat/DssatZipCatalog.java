@@ -0,0 +1,69 @@
+package org.agmip.translators.dssat;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.zip.ZipFile;
+
+/**
+ * DSSAT Zip catalog Class, hold one handle of the input zip package for all
+ * the entries cataloged from its central directory, so the central directory
+ * is only parsed once for one input
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+class DssatZipCatalog implements Closeable {
+
+    private File zipFile;
+    private ZipFile handle;
+
+    /**
+     * Constructor, the zip package is not opened until the first read
+     *
+     * @param zipFile the input zip package
+     */
+    public DssatZipCatalog(File zipFile) {
+        this.zipFile = zipFile;
+    }
+
+    /**
+     * Get the input zip package
+     *
+     * @return the zip package file
+     */
+    public File getFile() {
+        return zipFile;
+    }
+
+    /**
+     * Get the handle of zip package, open it if it is not opened yet (or it
+     * has been closed)
+     *
+     * @return the opened zip package
+     * @throws IOException
+     */
+    public synchronized ZipFile getZipFile() throws IOException {
+        if (handle == null) {
+            handle = new ZipFile(zipFile);
+        }
+        return handle;
+    }
+
+    /**
+     * Close the handle of zip package, the readers opened from it are not
+     * usable after that
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (handle != null) {
+            try {
+                handle.close();
+            } finally {
+                handle = null;
+            }
+        }
+    }
+}
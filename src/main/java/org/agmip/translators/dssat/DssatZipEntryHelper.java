@@ -0,0 +1,86 @@
+package org.agmip.translators.dssat;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * DSSAT Zip entry helper Class, hold the location of one entry in the input
+ * zip package and only decompress it when a reader ask for it. The entries of
+ * one zip package share the handle of its catalog
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+class DssatZipEntryHelper implements Closeable {
+
+    private DssatZipCatalog catalog;
+    private String entryName;
+
+    /**
+     * Constructor, record the location of zip entry
+     *
+     * @param catalog the catalog of input zip package
+     * @param entryName the entry name in the central directory
+     */
+    public DssatZipEntryHelper(DssatZipCatalog catalog, String entryName) {
+        this.catalog = catalog;
+        this.entryName = entryName;
+    }
+
+    /**
+     * Get the entry name in the zip package
+     *
+     * @return entry name
+     */
+    public String getEntryName() {
+        return entryName;
+    }
+
+    /**
+     * Decompress the whole entry into byte array
+     *
+     * @return the content bytes of the entry
+     * @throws IOException
+     */
+    public byte[] getBytes() throws IOException {
+
+        ZipFile zf = catalog.getZipFile();
+        ZipEntry entry = getEntry(zf);
+        return DssatCommonInput.readBytes(zf.getInputStream(entry), entry.getSize());
+    }
+
+    /**
+     * Open a new BufferedReader for the entry, the zip package is kept opened
+     * when the reader is closed
+     *
+     * @return the BufferedReader for the entry content
+     * @throws IOException
+     */
+    public BufferedReader getReader() throws IOException {
+
+        ZipFile zf = catalog.getZipFile();
+        return new BufferedReader(new InputStreamReader(zf.getInputStream(getEntry(zf))));
+    }
+
+    /**
+     * Close the zip package shared by the entries of the same catalog
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        catalog.close();
+    }
+
+    private ZipEntry getEntry(ZipFile zf) throws IOException {
+        ZipEntry entry = zf.getEntry(entryName);
+        if (entry == null) {
+            throw new IOException("Entry [" + entryName + "] is not found in " + catalog.getFile().getPath());
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,452 @@
+package org.agmip.translators.dssat;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DSSAT ZIP output sink Class, write the output files into the ZIP package
+ * directly without creating them on the disk. Each file becomes one entry in
+ * the package when its Writer is closed.
+ *
+ * The files which are shared by several experiments (soil and weather files)
+ * could be written through the shared sink, they are kept in memory until the
+ * package is closed, since the soil file could still be appended by the other
+ * experiments, then they are put into the package once for each location
+ * which refers to them.
+ *
+ * The sink could be shared by several threads, the content of each file is
+ * prepared in the thread which writes it, and only the entry writing is
+ * serialized. The files of one experiment could be written through a batch,
+ * the batches are put into the package in the order of their creation, so the
+ * package is same no matter which thread finishes first. The batch could hold
+ * a permit, which is released only when the batch is put into the package
+ * (or dropped), so the permits also bound the batches kept in memory.
+ *
+ * @author Meng Zhang
+ * @version 1.0
+ */
+public class DssatZipSink implements DssatOutputSink {
+
+    private static final Logger log = LoggerFactory.getLogger(DssatZipSink.class);
+    private File zipFile;
+    private String basePath;
+    private ZipOutputStream out;
+    private HashSet<String> entries = new HashSet<String>();
+    private LinkedHashMap<String, EntryBuffer> sharedEntries = new LinkedHashMap<String, EntryBuffer>();
+    private HashMap<String, LinkedHashSet<String>> sharedCopies = new HashMap<String, LinkedHashSet<String>>();
+    private LinkedList<Batch> batches = new LinkedList<Batch>();
+    private DssatOutputSink sharedSink = new DssatOutputSink() {
+        @Override
+        public boolean exists(File file) {
+            return DssatZipSink.this.exists(file);
+        }
+
+        @Override
+        public Writer getWriter(File file, boolean append) throws IOException {
+            synchronized (DssatZipSink.this) {
+                checkOpen();
+            }
+            final String name = getEntryName(file);
+            final boolean appendFlg = append;
+            return new OutputStreamWriter(new EntryBuffer() {
+                @Override
+                protected void commit() {
+                    synchronized (DssatZipSink.this) {
+                        EntryBuffer existing = sharedEntries.get(name);
+                        if (appendFlg && existing != null) {
+                            existing.write(buf, 0, count);
+                        } else {
+                            sharedEntries.put(name, this);
+                        }
+                    }
+                }
+            });
+        }
+    };
+
+    /**
+     * Constructor, create the ZIP package, the entry names will be relative to
+     * the folder of package
+     *
+     * @param zipFile the output ZIP package
+     * @throws IOException
+     */
+    public DssatZipSink(File zipFile) throws IOException {
+        this.zipFile = zipFile;
+        this.basePath = zipFile.getParent();
+        out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)));
+    }
+
+    /**
+     * Get the output ZIP package
+     *
+     * @return the ZIP package file
+     */
+    public File getZipFile() {
+        return zipFile;
+    }
+
+    /**
+     * Get the sink for the files which will be shared by several experiments
+     *
+     * @return the shared sink
+     */
+    public DssatOutputSink getSharedSink() {
+        return sharedSink;
+    }
+
+    @Override
+    public synchronized boolean exists(File file) {
+        String name = getEntryName(file);
+        return entries.contains(name) || sharedEntries.containsKey(name);
+    }
+
+    @Override
+    public synchronized Writer getWriter(File file, boolean append) throws IOException {
+        checkOpen();
+        // P.S. the entry in package could not be appended, use shared sink for the file need to be appended
+        final String name = getEntryName(file);
+        return new OutputStreamWriter(new EntryBuffer() {
+            @Override
+            protected void commit() throws IOException {
+                putEntry(name, buf, count);
+            }
+        });
+    }
+
+    /**
+     * Create the batch for the files of one experiment, the batch should be
+     * committed when the experiment is done (even if it failed), since the
+     * later batches wait for it
+     *
+     * @return the batch sink
+     * @throws IOException
+     */
+    public Batch newBatch() throws IOException {
+        return newBatch(null);
+    }
+
+    /**
+     * Create the batch for the files of one experiment, which holds one
+     * permit acquired by the caller, the permit is released when the batch is
+     * put into package or dropped
+     *
+     * @param permits the semaphore which the permit belongs to, null for no
+     * permit
+     * @return the batch sink
+     * @throws IOException
+     */
+    public synchronized Batch newBatch(Semaphore permits) throws IOException {
+        checkOpen();
+        Batch batch = new Batch(permits);
+        batches.add(batch);
+        return batch;
+    }
+
+    /**
+     * Get the number of batches which are not put into package yet
+     *
+     * @return the number of batches kept in memory
+     */
+    synchronized int getPendingBatchCount() {
+        return batches.size();
+    }
+
+    /**
+     * Put the shared file into another folder when the package is closed
+     *
+     * @param file the shared file which is written through shared sink
+     * @param dir the folder which refers to the shared file
+     */
+    public synchronized void addSharedCopy(File file, File dir) {
+        if (file == null) {
+            return;
+        }
+        String name = getEntryName(file);
+        LinkedHashSet<String> copies = sharedCopies.get(name);
+        if (copies == null) {
+            copies = new LinkedHashSet<String>();
+            sharedCopies.put(name, copies);
+        }
+        copies.add(getEntryName(new File(dir, file.getName())));
+    }
+
+    /**
+     * Put the shared files into package and finish the package
+     *
+     * @throws IOException
+     */
+    public synchronized void close() throws IOException {
+        if (out == null) {
+            return;
+        }
+        try {
+            // P.S. the batches which are not committed are dropped, the committed ones behind them are still kept
+            for (Batch batch : batches) {
+                if (batch.committed) {
+                    putBatch(batch);
+                } else {
+                    log.warn("Unfinished batch of {} files is dropped from package {}", batch.entries.size(), zipFile.getPath());
+                    release(batch);
+                }
+            }
+            batches.clear();
+            for (Map.Entry<String, EntryBuffer> shared : sharedEntries.entrySet()) {
+                EntryBuffer content = shared.getValue();
+                putEntry(shared.getKey(), content.getBuf(), content.size());
+                LinkedHashSet<String> copies = sharedCopies.get(shared.getKey());
+                if (copies != null) {
+                    for (String copy : copies) {
+                        putEntry(copy, content.getBuf(), content.size());
+                    }
+                }
+            }
+            sharedEntries.clear();
+            sharedCopies.clear();
+            out.close();
+        } finally {
+            out = null;
+        }
+    }
+
+    /**
+     * Stop writing and remove the unfinished package
+     */
+    public synchronized void abort() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.warn("Failed to close package {}", zipFile.getPath());
+            }
+            out = null;
+        }
+        sharedEntries.clear();
+        sharedCopies.clear();
+        for (Batch batch : batches) {
+            release(batch);
+        }
+        batches.clear();
+        zipFile.delete();
+    }
+
+    /**
+     * Mark the batch as committed, and put the committed batches at the head
+     * of queue into package
+     *
+     * @param batch the committed batch
+     * @throws IOException
+     */
+    private synchronized void commitBatch(Batch batch) throws IOException {
+        batch.committed = true;
+        if (out == null) {
+            // P.S. the package has been aborted
+            release(batch);
+            return;
+        }
+        while (!batches.isEmpty() && batches.getFirst().committed) {
+            putBatch(batches.removeFirst());
+        }
+    }
+
+    /**
+     * Write the entries of batch into package
+     *
+     * @param batch the committed batch
+     * @throws IOException
+     */
+    private synchronized void putBatch(Batch batch) throws IOException {
+        try {
+            Iterator<String> names = batch.names.iterator();
+            for (EntryBuffer entry : batch.entries) {
+                putEntry(names.next(), entry.getBuf(), entry.size());
+            }
+            for (File[] copy : batch.copies) {
+                addSharedCopy(copy[0], copy[1]);
+            }
+        } finally {
+            batch.names.clear();
+            batch.entries.clear();
+            batch.copies.clear();
+            release(batch);
+        }
+    }
+
+    /**
+     * Release the permit held by the batch, only once
+     *
+     * @param batch the batch which is put into package or dropped
+     */
+    private synchronized void release(Batch batch) {
+        if (batch.permits != null) {
+            batch.permits.release();
+            batch.permits = null;
+        }
+    }
+
+    /**
+     * Write one entry into package
+     *
+     * @param name the entry name
+     * @param data the content
+     * @param length the length of content
+     * @throws IOException
+     */
+    private synchronized void putEntry(String name, byte[] data, int length) throws IOException {
+        checkOpen();
+        if (!entries.add(name)) {
+            log.warn("Entry [{}] has already been put into package, the later one is skipped", name);
+            return;
+        }
+        out.putNextEntry(new ZipEntry(name));
+        out.write(data, 0, length);
+        out.closeEntry();
+    }
+
+    /**
+     * Get the entry name of the file, which is the path relative to the folder
+     * of package
+     *
+     * @param file the output file
+     * @return the entry name
+     */
+    private String getEntryName(File file) {
+        String path = file.getPath();
+        if (basePath != null && path.startsWith(basePath) && path.length() > basePath.length()) {
+            return path.substring(basePath.length() + 1);
+        } else {
+            return path;
+        }
+    }
+
+    /**
+     * Check if the package is still writable
+     *
+     * @throws IOException
+     */
+    private void checkOpen() throws IOException {
+        if (out == null) {
+            throw new IOException("Package " + zipFile.getPath() + " has been closed");
+        }
+    }
+
+    /**
+     * The sink for the files of one experiment, the files are kept in memory
+     * in the order of closing, and put into package when the batch and the
+     * batches created before it are all committed, then the permit of batch
+     * is released
+     */
+    public class Batch implements DssatOutputSink {
+
+        private ArrayList<String> names = new ArrayList<String>();
+        private ArrayList<EntryBuffer> entries = new ArrayList<EntryBuffer>();
+        private ArrayList<File[]> copies = new ArrayList<File[]>();
+        private boolean committed = false;
+        private Semaphore permits;
+
+        private Batch(Semaphore permits) {
+            this.permits = permits;
+        }
+
+        @Override
+        public boolean exists(File file) {
+            synchronized (DssatZipSink.this) {
+                return names.contains(getEntryName(file)) || DssatZipSink.this.exists(file);
+            }
+        }
+
+        @Override
+        public Writer getWriter(File file, boolean append) throws IOException {
+            synchronized (DssatZipSink.this) {
+                checkOpen();
+                if (committed) {
+                    throw new IOException("Batch has been committed");
+                }
+            }
+            // P.S. the entry in package could not be appended, use shared sink for the file need to be appended
+            final String name = getEntryName(file);
+            return new OutputStreamWriter(new EntryBuffer() {
+                @Override
+                protected void commit() {
+                    synchronized (DssatZipSink.this) {
+                        names.add(name);
+                        entries.add(this);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Put the shared file into another folder, it is recorded when the
+         * batch is put into package, so the order of copies is also stable
+         *
+         * @param file the shared file which is written through shared sink
+         * @param dir the folder which refers to the shared file
+         */
+        public void addSharedCopy(File file, File dir) {
+            synchronized (DssatZipSink.this) {
+                copies.add(new File[]{file, dir});
+            }
+        }
+
+        /**
+         * Finish the batch, the files written after committing are rejected
+         *
+         * @throws IOException
+         */
+        public void commit() throws IOException {
+            commitBatch(this);
+        }
+    }
+
+    /**
+     * The buffer of one entry content, the content is committed when it is
+     * closed, the content which is not closed will be dropped
+     */
+    private static abstract class EntryBuffer extends ByteArrayOutputStream {
+
+        private boolean closed = false;
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                commit();
+            }
+        }
+
+        /**
+         * Get the internal buffer without copy
+         *
+         * @return the buffer array
+         */
+        public byte[] getBuf() {
+            return buf;
+        }
+
+        /**
+         * Commit the content into package
+         *
+         * @throws IOException
+         */
+        protected abstract void commit() throws IOException;
+    }
+}
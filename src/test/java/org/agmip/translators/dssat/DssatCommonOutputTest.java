@@ -0,0 +1,137 @@
+package org.agmip.translators.dssat;
+
+import java.util.Locale;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Check the number formatting of DssatCommonOutput against the previous
+ * split() and String.format() based implementation
+ *
+ * @author Meng Zhang
+ */
+public class DssatCommonOutputTest {
+
+    private static final char[] ALPHABET = {'0', '1', '5', '9', '.', '-', ' ', 'e'};
+    DssatCommonOutput output;
+
+    @Before
+    public void setUp() throws Exception {
+        output = new DssatWeatherOutput();
+        output.sbError = new StringBuilder();
+    }
+
+    @Test
+    public void testAllShortTexts() {
+        // P.S. every text up to 6 chars built from the digits, dot, sign, blank and exponent
+        char[] buf = new char[6];
+        for (int len = 0; len <= buf.length; len++) {
+            int total = (int) Math.pow(ALPHABET.length, len);
+            for (int n = 0; n < total; n++) {
+                int code = n;
+                for (int i = 0; i < len; i++) {
+                    buf[i] = ALPHABET[code % ALPHABET.length];
+                    code /= ALPHABET.length;
+                }
+                String str = new String(buf, 0, len);
+                for (int bits = 1; bits <= 8; bits++) {
+                    check(bits, str);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRandomNumbers() {
+        Random rand = new Random(20130101L);
+        for (int i = 0; i < 200000; i++) {
+            double num = (rand.nextDouble() - 0.5) * Math.pow(10, rand.nextInt(12) - 4);
+            String str;
+            switch (i % 4) {
+                case 0:
+                    str = Double.toString(num);
+                    break;
+                case 1:
+                    str = String.format(Locale.US, "%." + rand.nextInt(8) + "f", num);
+                    break;
+                case 2:
+                    str = Long.toString(Math.round(num));
+                    break;
+                default:
+                    str = String.format(Locale.US, "%" + (1 + rand.nextInt(12)) + "." + rand.nextInt(6) + "f", num);
+            }
+            check(1 + rand.nextInt(15), str);
+        }
+    }
+
+    @Test
+    public void testAppendIntoBuffer() {
+        StringBuilder sb = new StringBuilder("@");
+        output.appendNumStr(sb, 5, "1.05123", "key", "-99");
+        output.appendNumStr(sb, 5, "", "key", "-99");
+        output.appendNumStr(sb, 5, "123456", "key", "-99");
+        assertEquals("@ 1.51  -99  -99", sb.toString());
+        assertEquals("! Waring: There is a variable [key] with oversized number [123456] (Limitation is 5bits)\r\n", output.sbError.toString());
+    }
+
+    /**
+     * Compare the result and the warning message with the old implementation
+     */
+    private void check(int bits, String str) {
+        StringBuilder oldError = new StringBuilder();
+        String expected;
+        try {
+            expected = oldFormatNumStr(oldError, bits, str, "key", "-99");
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // P.S. the text with only dots crashed the old implementation, now it is taken as a blank integer part
+            assertTrue(str.matches("\\.+"));
+            expected = DssatLineTemplate.pad("", bits, false);
+        }
+        output.sbError.setLength(0);
+        assertEquals("[" + str + "] with " + bits + " bits", expected, output.formatNumStr(bits, str, "key", "-99"));
+        assertEquals("[" + str + "] with " + bits + " bits", oldError.toString(), output.sbError.toString());
+    }
+
+    /**
+     * The previous implementation of formatNumStr()
+     */
+    private static String oldFormatNumStr(StringBuilder sbError, int bits, String str, Object key, String defVal) {
+
+        String ret = "";
+        double decimalPower;
+        long decimalPart;
+        double input;
+        String[] inputStr = str.split("\\.");
+        if (str.trim().equals("")) {
+            return String.format("%" + bits + "s", defVal);
+        } else if (inputStr[0].length() > bits) {
+            sbError.append("! Waring: There is a variable [").append(key).append("] with oversized number [").append(str).append("] (Limitation is ").append(bits).append("bits)\r\n");
+            return String.format("%" + bits + "s", defVal);
+        } else {
+            ret = inputStr[0];
+
+            if (inputStr.length > 1 && inputStr[0].length() < bits) {
+
+                if (inputStr[1].length() <= bits - inputStr[0].length() - 1) {
+                    ret = ret + "." + inputStr[1];
+                } else {
+                    try {
+                        input = Math.abs(Double.valueOf(str));
+                    } catch (Exception e) {
+                        return str;
+                    }
+                    decimalPower = Math.pow(10, bits - inputStr[0].length() - 1);
+                    decimalPart = Double.valueOf(Math.round(input * decimalPower) % decimalPower).longValue();
+                    ret = ret + "." + (decimalPart == 0 && (bits - inputStr[0].length() < 2) ? "" : decimalPart);
+                }
+            }
+            if (ret.length() < bits) {
+                ret = String.format("%1$" + bits + "s", ret);
+            }
+        }
+
+        return ret;
+    }
+}
@@ -2,14 +2,31 @@ package org.agmip.translators.dssat;
 
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 import org.agmip.util.JSONAdapter;
+import static org.agmip.util.MapUtil.getObjectOr;
+import static org.agmip.util.MapUtil.getValueOr;
 import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.Test;
@@ -31,6 +48,11 @@ public class DssatControllerTest {
 //            "UFGA8201_MZX.ZIP";
 //            "UFGA8202_MZX.ZIP";
 //            "UFGA8201_MZX_dummy.ZIP";
+    String[] stressFiles = {
+        "UFGA8201_MZX.zip",
+        "UFGA8202_MZX.zip",
+        "UFGA8401_CPX.zip",
+        "APAN9304_PNX.zip"};
 
     @Before
     public void setUp() throws Exception {
@@ -75,4 +97,542 @@ public class DssatControllerTest {
             assertTrue(file.delete());
         }
     }
+
+    @Test
+    public void testConcurrentRead() throws Exception {
+        final String[] paths = new String[stressFiles.length];
+        final HashMap[] expected = new HashMap[stressFiles.length];
+        for (int i = 0; i < stressFiles.length; i++) {
+            paths[i] = this.getClass().getResource("/" + stressFiles[i]).getPath();
+            expected[i] = new DssatControllerInput().readFile(paths[i]);
+        }
+
+        // P.S. one controller (with its readers) is shared by all the threads
+        final DssatControllerInput sharedInput = new DssatControllerInput();
+        final CountDownLatch start = new CountDownLatch(1);
+        int threadNum = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threadNum);
+        ArrayList<Future<Boolean>> tasks = new ArrayList<Future<Boolean>>();
+        try {
+            for (int t = 0; t < threadNum; t++) {
+                final int offset = t;
+                tasks.add(pool.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        start.await();
+                        for (int r = 0; r < 3 * paths.length; r++) {
+                            int i = (offset + r) % paths.length;
+                            if (!expected[i].equals(sharedInput.readFile(paths[i]))) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> task : tasks) {
+                assertTrue(task.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testExecutorRead() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            DssatControllerInput parallelInput = new DssatControllerInput();
+            parallelInput.setExecutor(pool);
+            for (int i = 0; i < stressFiles.length; i++) {
+                String path = this.getClass().getResource("/" + stressFiles[i]).getPath();
+                HashMap expected = new DssatControllerInput().readFile(path);
+                assertFalse(stressFiles[i], expected.isEmpty());
+                // P.S. repeat the reading, since the readers run at the same time in different order each time
+                for (int r = 0; r < 5; r++) {
+                    assertEquals(stressFiles[i], expected, parallelInput.readFile(path));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testZipHandle() throws Exception {
+        String path = this.getClass().getResource("/" + stressFiles[1]).getPath();
+        HashMap brMap = DssatCommonInput.getBufferReader(path);
+        DssatZipCatalog catalog = (DssatZipCatalog) brMap.get("ZIP");
+        ZipFile zf = catalog.getZipFile();
+        HashMap mapX = (HashMap) brMap.get("X");
+        HashMap mapS = (HashMap) brMap.get("S");
+        DssatZipEntryHelper xEntry = (DssatZipEntryHelper) mapX.values().iterator().next();
+        DssatZipEntryHelper sEntry = (DssatZipEntryHelper) mapS.values().iterator().next();
+
+        // P.S. the entries are read from the handle opened for cataloging, closing the reader does not close it
+        BufferedReader br = xEntry.getReader();
+        String first = br.readLine();
+        br.close();
+        assertTrue(sEntry.getBytes().length > 0);
+        assertEquals(first, xEntry.getReader().readLine());
+        assertSame(zf, catalog.getZipFile());
+
+        DssatCommonInput.closeBufferReader(brMap);
+        try {
+            zf.size();
+            fail("The zip file should be closed");
+        } catch (IllegalStateException e) {
+        }
+
+        // P.S. the handle is opened again when the entry is read after closing
+        assertEquals(first, xEntry.getReader().readLine());
+        assertNotSame(zf, catalog.getZipFile());
+        xEntry.close();
+    }
+
+    @Test
+    public void testWeatherWindow() throws Exception {
+        int margin = 10;
+        int fullDays = 0;
+        int windowDays = 0;
+        for (int i = 0; i < stressFiles.length; i++) {
+            String path = this.getClass().getResource("/" + stressFiles[i]).getPath();
+            HashMap full = new DssatControllerInput().readFile(path);
+            DssatControllerInput windowInput = new DssatControllerInput();
+            windowInput.setFullWeatherHistory(false);
+            windowInput.setWeatherMargin(margin);
+            HashMap result = windowInput.readFile(path);
+            windowInput.setWeatherMargin(0);
+            HashMap noMargin = windowInput.readFile(path);
+            assertEquals(stressFiles[i], full.get("experiments"), result.get("experiments"));
+            assertEquals(stressFiles[i], full.get("soils"), result.get("soils"));
+
+            // P.S. the days in window are same as the ones in full history
+            HashMap<String, HashMap<String, HashMap>> fullDaily = getDailyByDate(full);
+            HashMap<String, HashMap<String, HashMap>> windowDaily = getDailyByDate(result);
+            assertEquals(stressFiles[i], fullDaily.keySet(), windowDaily.keySet());
+            for (String wstId : windowDaily.keySet()) {
+                for (String date : windowDaily.get(wstId).keySet()) {
+                    assertEquals(stressFiles[i] + " " + date, fullDaily.get(wstId).get(date), windowDaily.get(wstId).get(date));
+                }
+                fullDays += fullDaily.get(wstId).size();
+                windowDays += windowDaily.get(wstId).size();
+            }
+
+            // P.S. the margin is added on both sides of the simulation window
+            HashMap<String, HashMap<String, HashMap>> noMarginDaily = getDailyByDate(noMargin);
+            for (String wstId : noMarginDaily.keySet()) {
+                ArrayList<String> dates = new ArrayList<String>(noMarginDaily.get(wstId).keySet());
+                Collections.sort(dates);
+                int[] edges = {
+                    DssatDateHelper.addDays(Integer.parseInt(dates.get(0)), -margin),
+                    DssatDateHelper.addDays(Integer.parseInt(dates.get(dates.size() - 1)), margin)};
+                for (int edge : edges) {
+                    String day = Integer.toString(edge);
+                    if (fullDaily.get(wstId).containsKey(day)) {
+                        assertTrue(stressFiles[i] + " " + day, windowDaily.get(wstId).containsKey(day));
+                    }
+                }
+            }
+
+            // P.S. every event date is covered with the margin, as far as the full history goes
+            ArrayList<HashMap> expArr = getObjectOr(result, "experiments", new ArrayList());
+            for (HashMap exp : expArr) {
+                String wstId = getValueOr(exp, "wst_id", "");
+                if (!windowDaily.containsKey(wstId)) {
+                    continue;
+                }
+                HashMap mgnData = getObjectOr(exp, "management", new HashMap());
+                ArrayList<HashMap> events = getObjectOr(mgnData, "events", new ArrayList());
+                for (HashMap event : events) {
+                    int date = Integer.parseInt(getValueOr(event, "date", "0"));
+                    for (int d = -margin; d <= margin; d++) {
+                        String day = Integer.toString(DssatDateHelper.addDays(date, d));
+                        if (fullDaily.get(wstId).containsKey(day)) {
+                            assertTrue(stressFiles[i] + " " + day, windowDaily.get(wstId).containsKey(day));
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue(windowDays > 0);
+        assertTrue(windowDays < fullDays);
+    }
+
+    @Test
+    public void testParseCache() throws Exception {
+        File cacheDir = createTempDir("parse_cache");
+        File smallDir = createTempDir("parse_cache_small");
+        try {
+            String[] paths = new String[stressFiles.length];
+            HashMap[] expected = new HashMap[stressFiles.length];
+            for (int i = 0; i < stressFiles.length; i++) {
+                paths[i] = this.getClass().getResource("/" + stressFiles[i]).getPath();
+                expected[i] = new DssatControllerInput().readFile(paths[i]);
+            }
+
+            // P.S. the first reading fills the cache, the second one is answered by it
+            DssatParseCache cache = new DssatParseCache(cacheDir, Long.MAX_VALUE);
+            DssatControllerInput cachedInput = new DssatControllerInput();
+            cachedInput.setParseCache(cache);
+            for (int i = 0; i < paths.length; i++) {
+                assertEquals(stressFiles[i], expected[i], cachedInput.readFile(paths[i]));
+            }
+            assertEquals(0, cache.getHits());
+            long misses = cache.getMisses();
+            assertTrue(misses > 0);
+            long totalBytes = cache.getTotalBytes();
+            assertTrue(totalBytes > 0);
+            for (int i = 0; i < paths.length; i++) {
+                assertEquals(stressFiles[i], expected[i], cachedInput.readFile(paths[i]));
+            }
+            assertEquals(misses, cache.getHits());
+            assertEquals(misses, cache.getMisses());
+
+            // P.S. the cache files are found again by a new cache on the same directory
+            DssatParseCache reopened = new DssatParseCache(cacheDir, Long.MAX_VALUE);
+            assertEquals(totalBytes, reopened.getTotalBytes());
+            cachedInput.setParseCache(reopened);
+            assertEquals(expected[0], cachedInput.readFile(paths[0]));
+            assertEquals(0, reopened.getMisses());
+
+            // P.S. the total size is kept in bound, the result is not changed by eviction
+            long maxBytes = totalBytes / 3;
+            DssatParseCache small = new DssatParseCache(smallDir, maxBytes);
+            cachedInput.setParseCache(small);
+            for (int r = 0; r < 2; r++) {
+                for (int i = 0; i < paths.length; i++) {
+                    assertEquals(stressFiles[i], expected[i], cachedInput.readFile(paths[i]));
+                    assertTrue(small.getTotalBytes() <= maxBytes);
+                }
+            }
+            assertTrue(small.getMisses() > misses);
+            assertEquals(small.getTotalBytes(), getDirSize(smallDir));
+            assertTrue(new DssatParseCache(cacheDir, maxBytes).getTotalBytes() <= maxBytes);
+            assertTrue(getDirSize(cacheDir) <= maxBytes);
+        } finally {
+            deleteDir(cacheDir);
+            deleteDir(smallDir);
+        }
+    }
+
+    @Test
+    public void testParseCacheXFile() throws Exception {
+        File dir = createTempDir("parse_cache_x");
+        try {
+            // P.S. the T file has a DOY date column, which is converted with PDATE in X file
+            String tFile = "*EXP. DATA (T): UFGA8201MZ\r\n\r\n@TRNO   DATE  ADAT  LAID\r\n     1 82100   132  1.00\r\n";
+            File first = new File(dir, "first.zip");
+            File second = new File(dir, "second.zip");
+            copyZip(this.getClass().getResource("/UFGA8201_MZX.zip").getPath(), first, "UFGA8201.MZT", tFile, null, null);
+            copyZip(this.getClass().getResource("/UFGA8201_MZX.zip").getPath(), second, "UFGA8201.MZT", tFile, " 1 82057 ", " 1 83057 ");
+
+            DssatControllerInput cachedInput = new DssatControllerInput();
+            cachedInput.setParseCache(new DssatParseCache(new File(dir, "cache"), Long.MAX_VALUE));
+            HashMap observed = getFirstObserved(cachedInput.readFile(first.getPath()));
+            assertEquals("19820512", observed.get("adat"));
+            assertEquals("19820512", ((HashMap) ((ArrayList) observed.get("timeSeries")).get(0)).get("adat"));
+
+            // P.S. only the X file is changed, the A/T dates must follow the new planting year
+            observed = getFirstObserved(cachedInput.readFile(second.getPath()));
+            assertEquals("19830512", observed.get("adat"));
+            assertEquals("19830512", ((HashMap) ((ArrayList) observed.get("timeSeries")).get(0)).get("adat"));
+        } finally {
+            deleteDir(new File(dir, "cache"));
+            deleteDir(dir);
+        }
+    }
+
+    @Test
+    public void testOutputFailures() throws Exception {
+        String path = this.getClass().getResource("/UFGA8201_MZX.zip").getPath();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            DssatWthFileHelper wthHelper = new DssatWthFileHelper();
+            DssatParallelOutput parallel = new DssatParallelOutput(pool);
+            parallel.setWthFileHelper(wthHelper);
+            DssatOutputJob job = parallel.execDssatTranslator("", new DssatControllerInput().readFile(path));
+            job.await();
+            assertFalse(job.getFailures().toString(), job.hasFailure());
+            assertTrue(job.getOutputZipFile().delete());
+            // P.S. the weather names are kept in the shared registry
+            assertTrue(wthHelper.size() > 0);
+
+            // P.S. the broken weather data fails the writer, it must be reported by the handle
+            HashMap result = new DssatControllerInput().readFile(path);
+            ArrayList<HashMap> wthArr = getObjectOr(result, "weathers", new ArrayList());
+            wthArr.get(0).put("dailyWeather", "broken");
+            HashMap expData = (HashMap) getObjectOr(result, "experiments", new ArrayList()).get(0);
+            String exname = getValueOr(expData, "exname", "");
+            job = parallel.execDssatTranslator("", result);
+            job.await();
+            assertTrue(job.getFailures().toString(), job.getFailures().containsKey(exname));
+            if (job.getOutputZipFile() != null) {
+                assertTrue(job.getOutputZipFile().delete());
+            }
+
+            // P.S. the single experiment is written in current thread, its errors are reported too
+            HashMap single = new HashMap(expData);
+            single.put("weather", wthArr.get(0));
+            job = parallel.execDssatTranslator("", single);
+            assertTrue(job.isDone());
+            assertTrue(job.getFailures().toString(), job.getFailures().containsKey(""));
+            if (job.getOutputZipFile() != null) {
+                assertTrue(job.getOutputZipFile().delete());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSharedContent() throws Exception {
+        HashMap result = obDssatControllerInput.readFile(this.getClass().getResource("/UFGA8201_MZX.zip").getPath());
+        ArrayList<HashMap> expArr = (ArrayList<HashMap>) result.get("experiments");
+        ArrayList<HashMap> soilArr = (ArrayList<HashMap>) result.get("soils");
+        ArrayList<HashMap> wthArr = (ArrayList<HashMap>) result.get("weathers");
+        assertTrue(expArr.size() > 1);
+
+        // P.S. the last experiment uses the same soil and weather data under different ids
+        HashMap soil = new HashMap(soilArr.get(0));
+        soil.put("soil_id", "IBCOPY0001");
+        soilArr.add(soil);
+        HashMap wth = new HashMap(wthArr.get(0));
+        wth.put("wst_id", "COPY");
+        wthArr.add(wth);
+        HashMap lastExp = expArr.get(expArr.size() - 1);
+        lastExp.put("soil_id", "IBCOPY0001");
+        lastExp.put("wst_id", "COPY");
+
+        obDssatControllerOutput.writeFile("", result);
+        File file = obDssatControllerOutput.getOutputZipFile();
+        DssatDedupStats stats = obDssatControllerOutput.getDedupStats();
+        try {
+            assertEquals(1, stats.getWrittenCount(DssatDedupStats.SOIL));
+            assertEquals(1, stats.getWrittenCount(DssatDedupStats.WEATHER));
+            assertEquals(expArr.size() - 1, stats.getHitCount(DssatDedupStats.SOIL));
+            assertEquals(expArr.size() - 1, stats.getHitCount(DssatDedupStats.WEATHER));
+            assertEquals(1, stats.getContentHitCount(DssatDedupStats.SOIL));
+            assertEquals(1, stats.getContentHitCount(DssatDedupStats.WEATHER));
+            assertTrue(stats.getSavedSize() > 0);
+            assertEquals(soilArr.get(0).get("soil_id"), lastExp.get("soil_id"));
+            assertEquals(expArr.get(0).get("wst_id"), lastExp.get("wst_id"));
+
+            ZipFile zip = new ZipFile(file);
+            try {
+                int solNum = 0;
+                int wthNum = 0;
+                for (ZipEntry entry : Collections.list(zip.entries())) {
+                    if (entry.getName().endsWith(".SOL")) {
+                        solNum++;
+                    } else if (entry.getName().endsWith(".WTH")) {
+                        wthNum++;
+                    }
+                    assertFalse(entry.getName().contains("COPY"));
+                }
+                assertTrue(solNum > 0);
+                assertEquals(solNum, wthNum);
+            } finally {
+                zip.close();
+            }
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testParallelOutput() throws Exception {
+        for (int i = 0; i < stressFiles.length; i++) {
+            String path = this.getClass().getResource("/" + stressFiles[i]).getPath();
+            DssatControllerOutput serial = new DssatControllerOutput();
+            serial.writeFile("", new DssatControllerInput().readFile(path));
+            LinkedHashMap<String, String> expected = readZipEntries(serial.getOutputZipFile());
+
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            try {
+                DssatControllerOutput parallel = new DssatControllerOutput();
+                parallel.setExecutor(pool);
+                parallel.setMaxInFlight(3);
+                parallel.writeFile("", new DssatControllerInput().readFile(path));
+                LinkedHashMap<String, String> actual = readZipEntries(parallel.getOutputZipFile());
+                assertEquals(stressFiles[i], new ArrayList(expected.keySet()), new ArrayList(actual.keySet()));
+                assertEquals(stressFiles[i], expected, actual);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testBoundedInFlight() throws Exception {
+        final String path = this.getClass().getResource("/APAN9304_PNX.zip").getPath();
+        DssatControllerOutput serial = new DssatControllerOutput();
+        serial.writeFile("", new DssatControllerInput().readFile(path));
+        LinkedHashMap<String, String> expected = readZipEntries(serial.getOutputZipFile());
+
+        final int maxInFlight = 2;
+        final CountDownLatch holdFirst = new CountDownLatch(1);
+        final AtomicInteger submitted = new AtomicInteger();
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        // P.S. the first experiment is held back, the later ones finish but could not be put into zip file
+        final Executor executor = new Executor() {
+            @Override
+            public void execute(final Runnable task) {
+                if (submitted.getAndIncrement() == 0) {
+                    pool.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                holdFirst.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            task.run();
+                        }
+                    });
+                } else {
+                    pool.execute(task);
+                }
+            }
+        };
+        try {
+            final HashMap result = new DssatControllerInput().readFile(path);
+            assertTrue(getObjectOr(result, "experiments", new ArrayList()).size() > maxInFlight);
+            final DssatControllerOutput parallel = new DssatControllerOutput();
+            Future<DssatOutputJob> writing = caller.submit(new Callable<DssatOutputJob>() {
+                @Override
+                public DssatOutputJob call() throws Exception {
+                    return parallel.writeMultipleExp("", result, executor, maxInFlight);
+                }
+            });
+            for (int i = 0; i < 100 && submitted.get() < maxInFlight; i++) {
+                Thread.sleep(20);
+            }
+            Thread.sleep(300);
+            assertEquals(maxInFlight, submitted.get());
+            assertFalse(writing.isDone());
+
+            holdFirst.countDown();
+            DssatOutputJob job = writing.get();
+            job.await();
+            assertFalse(job.getFailures().toString(), job.hasFailure());
+            assertEquals(expected, readZipEntries(job.getOutputZipFile()));
+        } finally {
+            holdFirst.countDown();
+            caller.shutdown();
+            pool.shutdown();
+        }
+    }
+
+    private File createTempDir(String prefix) throws IOException {
+        File dir = File.createTempFile(prefix, "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        return dir;
+    }
+
+    private HashMap getFirstObserved(HashMap result) {
+        ArrayList<HashMap> expArr = getObjectOr(result, "experiments", new ArrayList());
+        return getObjectOr(expArr.get(0), "observed", new HashMap());
+    }
+
+    private void copyZip(String source, File target, String replacedName, String replacement, String from, String to) throws IOException {
+        ZipFile zf = new ZipFile(source);
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(target));
+        try {
+            Enumeration<? extends ZipEntry> entries = zf.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String content;
+                if (entry.getName().equals(replacedName)) {
+                    content = replacement;
+                } else {
+                    content = readText(zf.getInputStream(entry));
+                    if (from != null) {
+                        content = content.replace(from, to);
+                    }
+                }
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                out.write(content.getBytes("ISO-8859-1"));
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+            zf.close();
+        }
+    }
+
+    private String readText(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int len;
+        while ((len = in.read(buf)) > 0) {
+            out.write(buf, 0, len);
+        }
+        in.close();
+        return out.toString("ISO-8859-1");
+    }
+
+    private long getDirSize(File dir) {
+        long size = 0;
+        for (File file : dir.listFiles()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    private void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    /**
+     * Read the entries of output zip file in order and delete the file, the
+     * creation time in soil file is removed
+     */
+    private LinkedHashMap<String, String> readZipEntries(File file) throws IOException {
+        LinkedHashMap<String, String> ret = new LinkedHashMap<String, String>();
+        ZipFile zip = new ZipFile(file);
+        try {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                BufferedReader br = new BufferedReader(new InputStreamReader(zip.getInputStream(entry)));
+                StringBuilder sb = new StringBuilder();
+                String line;
+                while ((line = br.readLine()) != null) {
+                    if (!line.startsWith("!This soil file is created")) {
+                        sb.append(line).append("\n");
+                    }
+                }
+                ret.put(entry.getName(), sb.toString());
+            }
+        } finally {
+            zip.close();
+            assertTrue(file.delete());
+        }
+        return ret;
+    }
+
+    /**
+     * Get the daily weather records of each station by date
+     */
+    private HashMap<String, HashMap<String, HashMap>> getDailyByDate(HashMap result) {
+        HashMap<String, HashMap<String, HashMap>> ret = new HashMap<String, HashMap<String, HashMap>>();
+        ArrayList<HashMap> wthArr = getObjectOr(result, "weathers", new ArrayList());
+        for (HashMap wthData : wthArr) {
+            HashMap<String, HashMap> days = new HashMap<String, HashMap>();
+            ArrayList<HashMap> dailyArr = getObjectOr(wthData, "dailyWeather", new ArrayList());
+            for (HashMap daily : dailyArr) {
+                days.put(getValueOr(daily, "w_date", ""), daily);
+            }
+            ret.put(getValueOr(wthData, "wst_id", ""), days);
+        }
+        return ret;
+    }
 }
@@ -0,0 +1,99 @@
+package org.agmip.translators.dssat;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Check the compiled line templates against String.format() with the same
+ * pattern
+ *
+ * @author Meng Zhang
+ */
+public class DssatLineTemplateTest {
+
+    // P.S. blanks, default value, negative numbers, values wider than most of the columns and a null value
+    private static final Object[] VALUES = {"", " ", "-99", "1.5", "-12.34", "-0.5", "UFGA8201MZ", "IBMZ910014 Gainesville FL", "AB", null, -5, 0, 12345678};
+    private static final String[] NUMBERS = {"", "-99", "1.05123", "-1.05123", "123.456", "-123.456", "123456", "-12345", "0.0001", "-.5"};
+
+    @Test
+    public void testOutputTemplates() throws Exception {
+        ArrayList<DssatLineTemplate> templates = getTemplates(DssatWeatherOutput.class, DssatSoilOutput.class, DssatXFileOutput.class);
+        assertTrue(templates.size() > 10);
+        for (DssatLineTemplate template : templates) {
+            for (int r = 0; r < VALUES.length; r++) {
+                Object[] args = new Object[template.size()];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = VALUES[(r + i) % VALUES.length];
+                }
+                check(template, args);
+            }
+        }
+    }
+
+    @Test
+    public void testSpecifiers() {
+        check(new DssatLineTemplate("%s|%5s|%-5s|%d|%4d|%-4d|%%|%2$s\r\n"), "A", "-1.5", "", -7, -123, 42);
+        check(new DssatLineTemplate("%s|%5s|%-5s|%d|%4d|%-4d|%%|%2$s\r\n"), "", "123456", "ABCDEFG", 0, 12345, -12345);
+        check(new DssatLineTemplate("@%3$-6s %1$3s %2$s"), " ", "  ", "-99");
+        check(new DssatLineTemplate("no columns"));
+        assertEquals(String.format("%8s", "-1.5"), DssatLineTemplate.pad("-1.5", 8, false));
+        assertEquals(String.format("%-8s", ""), DssatLineTemplate.pad("", 8, true));
+        assertEquals(String.format("%2s", "-1234"), DssatLineTemplate.pad("-1234", 2, false));
+    }
+
+    @Test
+    public void testNumberColumns() {
+        // P.S. the writers render the numbers into the columns directly, the numbers are cut into the width of column
+        DssatCommonOutput output = new DssatWeatherOutput();
+        output.sbError = new StringBuilder();
+        DssatLineTemplate template = new DssatLineTemplate(" %1$5s %2$5s %3$-5s %4$3s\r\n");
+        int[] widths = {5, 5, 5, 3};
+        for (int r = 0; r < NUMBERS.length; r++) {
+            String[] args = new String[widths.length];
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < widths.length; i++) {
+                String num = NUMBERS[(r + i) % NUMBERS.length];
+                args[i] = output.formatNumStr(widths[i], num, "key", "-99");
+                if (i == 2) {
+                    template.appendColumn(sb, i, args[i]);
+                } else {
+                    template.appendLiteral(sb, i);
+                    output.appendNumStr(sb, widths[i], num, "key", "-99");
+                }
+            }
+            template.appendEnd(sb);
+            assertEquals(String.format(template.getPattern(), (Object[]) args), sb.toString());
+        }
+    }
+
+    /**
+     * Compare the rendered line with String.format(), by both format() and
+     * append()
+     */
+    private void check(DssatLineTemplate template, Object... args) {
+        String expected = String.format(template.getPattern(), args);
+        assertEquals(template.getPattern(), expected, template.format(args));
+        StringBuilder sb = new StringBuilder("@");
+        template.append(sb, args);
+        assertEquals(template.getPattern(), "@" + expected, sb.toString());
+    }
+
+    /**
+     * Get the static templates declared by the output classes
+     */
+    private ArrayList<DssatLineTemplate> getTemplates(Class... classes) throws IllegalAccessException {
+        ArrayList<DssatLineTemplate> ret = new ArrayList<DssatLineTemplate>();
+        for (Class c : classes) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.getType() == DssatLineTemplate.class && Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    ret.add((DssatLineTemplate) field.get(null));
+                }
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,125 @@
+package org.agmip.translators.dssat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Check the shared view of section data could not be changed by the readers
+ *
+ * @author Meng Zhang
+ */
+public class DssatSectionIndexTest {
+
+    ArrayList<HashMap> wthArr;
+    HashMap wthData;
+
+    @Before
+    public void setUp() throws Exception {
+        wthData = new HashMap();
+        wthData.put("wst_id", "UFGA");
+        wthData.put("wst_lat", "29.630");
+        ArrayList<HashMap> dailyArr = new ArrayList<HashMap>();
+        for (int i = 1; i <= 3; i++) {
+            HashMap daily = new HashMap();
+            daily.put("w_date", "1982010" + i);
+            daily.put("srad", "1" + i + ".0");
+            dailyArr.add(daily);
+        }
+        wthData.put("dailyWeather", dailyArr);
+        wthArr = new ArrayList<HashMap>();
+        wthArr.add(wthData);
+    }
+
+    @Test
+    public void testSharedView() {
+        DssatSectionIndex idx = new DssatSectionIndex(wthArr, "wst_id");
+        HashMap view = idx.getSharedView("UFGA");
+        assertEquals(wthData, view);
+        assertSame(view, idx.getSharedView("UFGA"));
+        assertNull(idx.getSharedView("IBMZ"));
+        assertNull(idx.getSharedView(null));
+
+        // P.S. the readers still see the HashMap and ArrayList
+        ArrayList<HashMap> dailyArr = (ArrayList<HashMap>) view.get("dailyWeather");
+        HashMap daily = dailyArr.get(0);
+        assertEquals("19820101", daily.get("w_date"));
+    }
+
+    @Test
+    public void testReadOnly() {
+        HashMap expected = new HashMap(wthData);
+        HashMap view = new DssatSectionIndex(wthArr, "wst_id").getSharedView("UFGA");
+        final ArrayList<HashMap> dailyArr = (ArrayList<HashMap>) view.get("dailyWeather");
+        final HashMap daily = dailyArr.get(0);
+
+        assertReadOnly(new Runnable() {
+            public void run() {
+                dailyArr.add(new HashMap());
+            }
+        });
+        assertReadOnly(new Runnable() {
+            public void run() {
+                dailyArr.remove(0);
+            }
+        });
+        assertReadOnly(new Runnable() {
+            public void run() {
+                Iterator it = dailyArr.iterator();
+                it.next();
+                it.remove();
+            }
+        });
+        assertReadOnly(new Runnable() {
+            public void run() {
+                dailyArr.subList(0, 1).clear();
+            }
+        });
+        assertReadOnly(new Runnable() {
+            public void run() {
+                daily.put("srad", "99.0");
+            }
+        });
+        assertReadOnly(new Runnable() {
+            public void run() {
+                ((Map.Entry) daily.entrySet().iterator().next()).setValue("99.0");
+            }
+        });
+        assertReadOnly(new Runnable() {
+            public void run() {
+                daily.keySet().remove("srad");
+            }
+        });
+        final HashMap viewF = view;
+        assertReadOnly(new Runnable() {
+            public void run() {
+                viewF.put("wst_id", "UFGA0001");
+            }
+        });
+        assertReadOnly(new Runnable() {
+            public void run() {
+                viewF.clear();
+            }
+        });
+
+        assertEquals(expected, wthData);
+        assertEquals(wthData, view);
+
+        // P.S. the copy of view could be changed, the nested data are still read-only
+        HashMap copy = new HashMap(view);
+        copy.put("wst_id", "UFGA0001");
+        assertEquals("UFGA", view.get("wst_id"));
+    }
+
+    private void assertReadOnly(Runnable change) {
+        try {
+            change.run();
+            fail("The shared view should be read-only");
+        } catch (UnsupportedOperationException e) {
+        }
+    }
+}
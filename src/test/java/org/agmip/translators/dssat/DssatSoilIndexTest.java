@@ -0,0 +1,138 @@
+package org.agmip.translators.dssat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Check the saved soil index is only used while the soil file is not changed
+ *
+ * @author Meng Zhang
+ */
+public class DssatSoilIndexTest {
+
+    File dir;
+    File solFile;
+    String profile;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("soil_index", "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        solFile = new File(dir, "IB.SOL");
+        ZipFile zf = new ZipFile(this.getClass().getResource("/UFGA8202_MZX.zip").getPath());
+        try {
+            ZipEntry entry = zf.getEntry("IB.SOL");
+            InputStream in = zf.getInputStream(entry);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int len;
+            while ((len = in.read(buf)) > 0) {
+                out.write(buf, 0, len);
+            }
+            in.close();
+            String content = out.toString("US-ASCII");
+            profile = content.substring(content.indexOf("*IBMZ910014"));
+        } finally {
+            zf.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testChangedFile() throws Exception {
+        writeSoil(solFile, "", ".18");
+        assertEquals(".18", readSalb("IBMZ910015"));
+        File idxFile = DssatSoilIndex.getIndexFile(solFile);
+        assertTrue(idxFile.isFile());
+        long lastModified = solFile.lastModified();
+
+        // P.S. the profiles are moved by the new notes, the saved ranges must not be used
+        writeSoil(solFile, "! the notes added after the index is saved\r\n", ".27");
+        assertTrue(solFile.setLastModified(lastModified + 10000));
+        assertEquals(".27", readSalb("IBMZ910015"));
+        assertEquals(".18", readSalb("IBMZ910014"));
+
+        // P.S. the same size but the profiles are moved, the CRC check catches it
+        long size = solFile.length();
+        writeSoil(solFile, "! the notes added after the index is sav\r\n", ".36", "\r\n");
+        assertEquals(size, solFile.length());
+        assertTrue(solFile.setLastModified(lastModified + 20000));
+        assertEquals(".36", readSalb("IBMZ910015"));
+        assertEquals(".18", readSalb("IBMZ910014"));
+    }
+
+    @Test
+    public void testTouchedFile() throws Exception {
+        writeSoil(solFile, "", ".18");
+        assertEquals(".18", readSalb("IBMZ910015"));
+        DssatSoilIndex index = DssatSoilIndex.load(solFile);
+        assertNotNull(index);
+        assertTrue(index.isUpToDate(solFile));
+
+        // P.S. only the last modified time is changed, the index is reused with the new file information
+        assertTrue(solFile.setLastModified(solFile.lastModified() + 10000));
+        assertEquals(".18", readSalb("IBMZ910015"));
+        assertFalse(index.isUpToDate(solFile));
+        DssatSoilIndex reused = DssatSoilIndex.load(solFile);
+        assertNotSame(index, reused);
+        assertTrue(reused.isUpToDate(solFile));
+        assertEquals(index.size(), reused.size());
+    }
+
+    @Test
+    public void testLoadedBound() throws Exception {
+        for (int i = 0; i < DssatSoilIndex.MAX_LOADED + 5; i++) {
+            File file = new File(dir, "S" + i + ".SOL");
+            writeSoil(file, "", ".18");
+            assertEquals(".18", readSalb(file, "IBMZ910014"));
+        }
+        assertTrue(DssatSoilIndex.getLoadedCount() <= DssatSoilIndex.MAX_LOADED);
+    }
+
+    private void writeSoil(File file, String notes, String salb) throws IOException {
+        writeSoil(file, notes, salb, "");
+    }
+
+    private void writeSoil(File file, String notes, String salb, String tail) throws IOException {
+        String second = profile.replace("*IBMZ910014", "*IBMZ910015").replace("   -99   .18 ", "   -99   " + salb + " ");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(("*SOILS: AgMIP soil file\r\n" + notes + "\r\n" + profile + "\r\n" + second + tail).getBytes("US-ASCII"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private String readSalb(String soilId) {
+        return readSalb(solFile, soilId);
+    }
+
+    private String readSalb(File file, String soilId) {
+        HashSet<String> soilIds = new HashSet<String>();
+        soilIds.add(soilId);
+        ArrayList<HashMap> soils = (ArrayList<HashMap>) new DssatSoilInput().readFile(file.getPath(), soilIds).get("soils");
+        assertEquals(1, soils.size());
+        assertEquals(soilId, soils.get(0).get("soil_id"));
+        return (String) soils.get(0).get("salb");
+    }
+}
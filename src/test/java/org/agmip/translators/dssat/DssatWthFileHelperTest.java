@@ -0,0 +1,160 @@
+package org.agmip.translators.dssat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Check the weather file names given by DssatWthFileHelper
+ *
+ * @author Meng Zhang
+ */
+public class DssatWthFileHelperTest {
+
+    @Test
+    public void testSameStation() {
+        DssatWthFileHelper helper = new DssatWthFileHelper();
+        assertEquals("UFGA8201", helper.createWthFileName(createWeather("UFGA", "19820101", "19821231")));
+        assertEquals("UFGA8201", helper.createWthFileName(createWeather("UFGA", "19820101", "19821231")));
+        // P.S. the same station with another period is another file
+        assertEquals("UFGA8202", helper.createWthFileName(createWeather("UFGA", "19820101", "19831231")));
+        assertEquals("", helper.createWthFileName(new HashMap()));
+        assertEquals(2, helper.size());
+    }
+
+    @Test
+    public void testConflictName() {
+        DssatWthFileHelper helper = new DssatWthFileHelper();
+        HashMap first = createWeather("UFGA0001", "19820101", "19821231");
+        first.put("wst_name", "UFGA Gainesville");
+        HashMap second = createWeather("UFGA0002", "19820101", "19821231");
+        second.put("wst_name", "UFGA Gainesville");
+        // P.S. the institute code in station name is shared, so both names are derived from the station id
+        String firstName = helper.createWthFileName(first);
+        String secondName = helper.createWthFileName(second);
+        assertEquals(8, firstName.length());
+        assertEquals(8, secondName.length());
+        assertTrue(firstName.endsWith("8201"));
+        assertTrue(secondName.endsWith("8201"));
+        assertFalse(firstName.equals(secondName));
+        assertFalse(firstName.equals("UFGA8201"));
+        assertFalse(secondName.equals("UFGA8201"));
+        assertEquals("UFGA8201", helper.createWthFileName(createWeather("UFGA", "19820101", "19821231")));
+
+        // P.S. the conflict name does not depend on the stations named before
+        DssatWthFileHelper other = new DssatWthFileHelper();
+        for (int i = 0; i < 10; i++) {
+            other.createWthFileName(createWeather("IDX" + i + "000", "19820101", "19821231"));
+        }
+        assertEquals(secondName, other.createWthFileName(second));
+        assertEquals(firstName, other.createWthFileName(first));
+    }
+
+    @Test
+    public void testNamingOrder() {
+        ArrayList<HashMap> stations = new ArrayList<HashMap>();
+        stations.add(createWeather("UFGA0001", "19820101", "19821231"));
+        stations.add(createWeather("UFGA", "19820101", "19821231"));
+        stations.add(createWeather("UFGA0002", "19820101", "19821231"));
+        for (HashMap wthData : stations) {
+            wthData.put("wst_name", "UFGA Gainesville");
+        }
+
+        DssatWthFileHelper forward = new DssatWthFileHelper();
+        String[] expected = new String[stations.size()];
+        for (int i = 0; i < stations.size(); i++) {
+            expected[i] = forward.createWthFileName(stations.get(i));
+        }
+        assertEquals("UFGA8201", expected[1]);
+
+        // P.S. the stations which share the institute code get the same names in the reversed order
+        DssatWthFileHelper backward = new DssatWthFileHelper();
+        String[] actual = new String[stations.size()];
+        for (int i = stations.size() - 1; i >= 0; i--) {
+            actual[i] = backward.createWthFileName(stations.get(i));
+        }
+        assertArrayEquals(expected, actual);
+        assertEquals(3, new HashSet<String>(Arrays.asList(actual)).size());
+    }
+
+    @Test
+    public void testConcurrentNaming() throws Exception {
+        final DssatWthFileHelper helper = new DssatWthFileHelper();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        ArrayList<Future<String[]>> tasks = new ArrayList<Future<String[]>>();
+        try {
+            for (int t = 0; t < 8; t++) {
+                tasks.add(pool.submit(new Callable<String[]>() {
+                    @Override
+                    public String[] call() throws Exception {
+                        start.await();
+                        String[] names = new String[200];
+                        for (int i = 0; i < names.length; i++) {
+                            names[i] = helper.createWthFileName(createWeather("ST" + (i % 50) + "XXXXX", "19820101", "198" + (2 + i % 4) + "1231"));
+                        }
+                        return names;
+                    }
+                }));
+            }
+            start.countDown();
+            String[] expected = tasks.get(0).get();
+            for (Future<String[]> task : tasks) {
+                assertArrayEquals(expected, task.get());
+            }
+            HashSet<String> unique = new HashSet<String>();
+            for (int i = 0; i < 50; i++) {
+                unique.add(expected[i]);
+            }
+            assertEquals(50, unique.size());
+            assertEquals(100, helper.size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testPersistentNames() throws Exception {
+        File file = File.createTempFile("wth_names", ".txt");
+        assertTrue(file.delete());
+        try {
+            DssatWthFileHelper helper = new DssatWthFileHelper(file);
+            String first = helper.createWthFileName(createWeather("UFGA", "19820101", "19821231"));
+            String second = helper.createWthFileName(createWeather("UFGA0002", "19820101", "19821231"));
+            helper.save();
+            assertTrue(file.isFile());
+
+            // P.S. the station named in the later run first still gets its own name
+            DssatWthFileHelper loaded = new DssatWthFileHelper(file);
+            assertEquals(2, loaded.size());
+            assertEquals(second, loaded.createWthFileName(createWeather("UFGA0002", "19820101", "19821231")));
+            assertEquals(first, loaded.createWthFileName(createWeather("UFGA", "19820101", "19821231")));
+            assertFalse(first.equals(loaded.createWthFileName(createWeather("UFGA0003", "19820101", "19821231"))));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static HashMap createWeather(String wstId, String startDate, String endDate) {
+        HashMap wthData = new HashMap();
+        wthData.put("wst_id", wstId);
+        ArrayList<HashMap> dailyArr = new ArrayList<HashMap>();
+        HashMap daily = new HashMap();
+        daily.put("w_date", startDate);
+        dailyArr.add(daily);
+        daily = new HashMap();
+        daily.put("w_date", endDate);
+        dailyArr.add(daily);
+        wthData.put("dailyWeather", dailyArr);
+        return wthData;
+    }
+}